@@ -1,17 +1,40 @@
 package eu.lod2.edcat.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.lod2.edcat.format.FormatterRegistry;
+import eu.lod2.edcat.format.ResponseFormatter;
+import eu.lod2.edcat.format.StreamingFormatter;
 import eu.lod2.edcat.model.ErrorResponse;
+import eu.lod2.edcat.utils.BadRequestException;
 import eu.lod2.edcat.utils.NotFoundException;
+import eu.lod2.edcat.utils.ServiceUnavailableException;
 import eu.lod2.hooks.handlers.dcat.ActionAbortException;
+import eu.lod2.hooks.util.HookManager;
+import org.openrdf.rio.RDFHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public abstract class BaseController {
+  /**
+   * Serializes the JSON bodies of responses.  This is the Jackson 2 mapper of the converter which
+   * {@code <mvc:annotation-driven>} registers, so serialized and converted bodies look the same.
+   */
+  private static final ObjectMapper objectMapper = new MappingJackson2HttpMessageConverter().getObjectMapper();
+
   /** Logging aid */
   protected Logger logger = LoggerFactory.getLogger(this.getClass());
 
@@ -26,4 +49,180 @@ public abstract class BaseController {
     logger.info("Request: " + req.getRequestURL() + " resulted in not found exception");
     return new ResponseEntity<Object>( new ErrorResponse(req.getRequestURI() + " not found", HttpStatus.NOT_FOUND.name()), HttpStatus.NOT_FOUND );
   }
+
+  @ExceptionHandler(BadRequestException.class)
+  public ResponseEntity handleBadRequest( HttpServletRequest req, BadRequestException exception ) {
+    logger.info("Request: " + req.getRequestURL() + " was rejected: " + exception.getMessage());
+    return new ResponseEntity<Object>( new ErrorResponse(exception.getMessage(), HttpStatus.BAD_REQUEST.name()), HttpStatus.BAD_REQUEST );
+  }
+
+  @ExceptionHandler(ServiceUnavailableException.class)
+  public ResponseEntity handleServiceUnavailable( HttpServletRequest req, ServiceUnavailableException exception ) {
+    logger.info("Request: " + req.getRequestURL() + " was shed: " + exception.getMessage());
+    HttpHeaders headers = new HttpHeaders();
+    headers.set("Retry-After", String.valueOf(exception.getRetryAfter()));
+    return new ResponseEntity<Object>( new ErrorResponse(exception.getMessage(), HttpStatus.SERVICE_UNAVAILABLE.name()), headers, HttpStatus.SERVICE_UNAVAILABLE );
+  }
+
+  // --- CONTENT NEGOTIATION
+
+  /**
+   * Picks the format of the response from the Accept header of {@code request}, and sets the
+   * Content-Type and Vary headers of the response accordingly.
+   *
+   * @param request Request which may contain an Accept header.
+   * @param formats Formats which the endpoint offers.
+   * @param type    Type of the formatters which may be picked, e.g. {@link StreamingFormatter}.
+   * @param headers Headers of the response.
+   * @return Format in which the response should be sent.
+   * @throws HttpMediaTypeNotAcceptableException Thrown if none of the offered formats is
+   *                                             acceptable, which is answered with 406.
+   */
+  protected FormatterRegistry.Format negotiate( HttpServletRequest request, FormatterRegistry formats, Class<? extends ResponseFormatter> type, HttpHeaders headers ) throws HttpMediaTypeNotAcceptableException {
+    FormatterRegistry.Format format = formats.negotiate( request.getHeader( "Accept" ), type );
+    if ( format == null ) {
+      List<MediaType> offered = new ArrayList<MediaType>();
+      for ( FormatterRegistry.Format candidate : formats.getFormats() )
+        if ( type.isInstance( candidate.getFormatter() ) )
+          offered.add( candidate.getMediaType() );
+      throw new HttpMediaTypeNotAcceptableException( offered );
+    }
+    headers.set( "Content-Type", format.getContentType() );
+    headers.set( "Vary", "Accept" );
+    return format;
+  }
+
+  /**
+   * Rebuilds {@code response} with its body serialized, see {@link #serialize(Object)}, so it is
+   * sent as is with the Content-Type set by {@link #negotiate}.
+   *
+   * @param response Response of which the body was built by a ResponseFormatter.
+   * @return Response with the same headers and status and the serialized body.
+   * @throws IOException Thrown if the body can't be serialized as JSON.
+   */
+  protected static ResponseEntity<Object> serialized( ResponseEntity<Object> response ) throws IOException {
+    if ( response.getBody() == null || response.getBody() instanceof byte[] )
+      return response;
+    return new ResponseEntity<Object>( serialize( response.getBody() ), response.getHeaders(), response.getStatusCode() );
+  }
+
+
+  // --- STREAMING
+
+  /**
+   * Returns true iff the response for {@code formatter} may be written straight to the servlet
+   * output stream.
+   * <p/>
+   * Streaming is only possible when the formatter supports it and when no provider is registered
+   * for {@code postHook}, as such providers expect the full set of statements and may alter the
+   * response before it is sent.
+   *
+   * @param formatter Format in which the response will be sent.
+   * @param postHook  Hook which would receive the response after it was built.
+   * @return true iff the response can be streamed.
+   */
+  protected boolean canStream( ResponseFormatter formatter, Class<?> postHook ) {
+    return formatter instanceof StreamingFormatter && !HookManager.hasHandlers( postHook );
+  }
+
+  /**
+   * Starts a streamed response and returns the RDFHandler to which the statements should be sent.
+   * <p/>
+   * The status, the content type of {@code formatter} and the other {@code headers} are written to
+   * {@code response} before the first statement arrives.
+   *
+   * @param response  Response to which the statements will be written.
+   * @param headers   Headers which should be sent with the response.
+   * @param formatter Formatter which serializes the statements.
+   * @return RDFHandler which writes to the output stream of {@code response}.
+   * @throws IOException Thrown if the output stream could not be opened.
+   */
+  protected RDFHandler openStream( HttpServletResponse response, HttpHeaders headers, StreamingFormatter formatter ) throws IOException {
+    response.setStatus( HttpServletResponse.SC_OK );
+    for ( Map.Entry<String, List<String>> header : headers.entrySet() )
+      if ( !header.getKey().equalsIgnoreCase( "Content-Type" ) )
+        for ( String value : header.getValue() )
+          response.addHeader( header.getKey(), value );
+    response.setContentType( formatter.getContentType() );
+    return formatter.streamTo( response.getOutputStream() );
+  }
+
+
+  /**
+   * Serializes a formatted body the way the message converters would write it, so it can be
+   * cached and sent as is.
+   *
+   * @param body Body as it was returned by a ResponseFormatter.
+   * @return {@code body} itself if it is a byte array, as UTF-8 if it is a String, as JSON
+   *         otherwise.
+   * @throws IOException Thrown if {@code body} can't be serialized as JSON.
+   */
+  protected static byte[] serialize( Object body ) throws IOException {
+    if ( body instanceof byte[] )
+      return ( byte[] ) body;
+    if ( body instanceof String )
+      return ( ( String ) body ).getBytes( "UTF-8" );
+    return objectMapper.writeValueAsBytes( body );
+  }
+
+
+  // --- CONDITIONAL REQUESTS
+
+  /**
+   * Adds the validators of the requested resource to {@code headers} and checks them against the
+   * If-None-Match and If-Modified-Since headers of {@code request}.
+   * <p/>
+   * If-None-Match takes precedence, If-Modified-Since is only consulted when the request has no
+   * If-None-Match header.  Entity tags are compared weakly.
+   *
+   * @param request      Request which may contain conditional headers.
+   * @param headers      Headers of the response, receive the ETag and Last-Modified headers.
+   * @param etag         Quoted entity tag of the representation, may be weak.
+   * @param lastModified Time at which the resource was last modified in milliseconds since the
+   *                     epoch, or -1 if it is not known.
+   * @return true iff the client's copy is still valid and a 304 response should be sent.
+   */
+  protected boolean checkNotModified( HttpServletRequest request, HttpHeaders headers, String etag, long lastModified ) {
+    headers.set( "ETag", etag );
+    if ( lastModified >= 0 )
+      headers.setLastModified( lastModified );
+
+    String ifNoneMatch = request.getHeader( "If-None-Match" );
+    if ( ifNoneMatch != null ) {
+      for ( String candidate : ifNoneMatch.split( "," ) ) {
+        candidate = candidate.trim();
+        if ( candidate.equals( "*" ) || opaqueTag( candidate ).equals( opaqueTag( etag ) ) )
+          return true;
+      }
+      return false;
+    }
+
+    if ( lastModified < 0 )
+      return false;
+    long ifModifiedSince;
+    try {
+      ifModifiedSince = request.getDateHeader( "If-Modified-Since" );
+    } catch ( IllegalArgumentException e ) {
+      return false;
+    }
+    // HTTP dates have a precision of seconds
+    return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+  }
+
+  /**
+   * Builds the response which tells the client its copy is still valid.
+   *
+   * @param headers Headers containing the validators, see {@link #checkNotModified}.
+   * @return Response with status 304 and no body.
+   */
+  protected ResponseEntity<Object> notModified( HttpHeaders headers ) {
+    return new ResponseEntity<Object>( headers, HttpStatus.NOT_MODIFIED );
+  }
+
+  /**
+   * @return {@code etag} without the weakness indicator, for weak comparison.
+   */
+  private static String opaqueTag( String etag ) {
+    return etag.startsWith( "W/" ) ? etag.substring( 2 ) : etag;
+  }
 }
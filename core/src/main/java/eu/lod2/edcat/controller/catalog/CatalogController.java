@@ -13,7 +13,7 @@ public abstract class CatalogController extends BaseController {
   static JsonLdContext.Kind kind = JsonLdContext.Kind.Catalog;
 
   /** JsonLdContext on which the controllers operate. */
-  JsonLdContext jsonLdContext = new JsonLdContext( kind );
+  JsonLdContext jsonLdContext = JsonLdContext.forKind( kind );
 
   // --- routing
 
@@ -23,6 +23,9 @@ public abstract class CatalogController extends BaseController {
   /** show catalog route */
   protected static final String OBJECT_ROUTE = DcatURI.CATALOG_OBJECT_PATH;
 
+  /** dump catalog route */
+  protected static final String DUMP_ROUTE = DcatURI.CATALOG_DUMP_PATH;
+
   //* Returns default headers for the application. These headers should always be present
   protected HttpHeaders getHeaders() throws Exception {
     return new HttpHeaders();
@@ -0,0 +1,152 @@
+package eu.lod2.edcat.controller.catalog;
+
+import eu.lod2.edcat.format.FormatterRegistry;
+import eu.lod2.edcat.format.NQuadsFormatter;
+import eu.lod2.edcat.format.StreamingFormatter;
+import eu.lod2.edcat.model.Catalog;
+import eu.lod2.edcat.utils.NotFoundException;
+import eu.lod2.hooks.contexts.catalog.PreContext;
+import eu.lod2.hooks.handlers.dcat.catalog.PreReadHandler;
+import eu.lod2.hooks.util.HookManager;
+import eu.lod2.query.Db;
+import eu.lod2.query.RowHandler;
+import eu.lod2.query.UnitOfWork;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.query.BindingSet;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerWrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exports a whole catalog: the catalog graph followed by the graph of each of its datasets.
+ * <p/>
+ * The statements are streamed from the store to the response as they are read, graph by graph.
+ * The datasets are enumerated in pages of {@value #PAGE_SIZE}, ordered by URI, so neither the
+ * statements nor the list of datasets are held in memory and the memory use doesn't depend on the
+ * size of the catalog.  The response has no Content-Length, so the container sends it chunked.
+ * <p/>
+ * The whole dump is read in a single unit of work, so all graphs and pages are read from one
+ * connection and the dump is a consistent snapshot of the catalog, within the isolation the store
+ * offers for a transaction.  Nothing is written, the unit of work is rolled back when the dump is
+ * done.
+ * <p/>
+ * Only the PreRead hook of the catalog is called, as the PostRead hook expects the statements of
+ * the response.
+ * <p/>
+ * The dump is offered in each streaming format of {@link FormatterRegistry#rdf()}, N-Quads
+ * first.  Formats without graphs, like N-Triples and Turtle, merge the graphs.
+ */
+@Controller( "CatalogDumpController" )
+public class DumpController extends CatalogController {
+
+  /** Number of datasets which are enumerated by a single query. */
+  static final int PAGE_SIZE = 500;
+
+  /** Formats in which the dump is offered, N-Quads first. */
+  private static final FormatterRegistry formats = new FormatterRegistry( FormatterRegistry.rdf() )
+      .register( "nquads", "application/n-quads;charset=UTF-8", new NQuadsFormatter() );
+
+  // GET /catalogs/{catalogId}/dump
+  @RequestMapping( value = DUMP_ROUTE, method = RequestMethod.GET )
+  public void dump( HttpServletRequest request, HttpServletResponse response, @PathVariable String catalogId ) throws Throwable {
+    HttpHeaders headers = getHeaders();
+    FormatterRegistry.Format format = negotiate( request, formats, StreamingFormatter.class, headers );
+    dump( request, response, catalogId, ( StreamingFormatter ) format.getFormatter(), headers );
+  }
+
+  /**
+   * Streams the catalog graph and the graphs of its datasets to {@code response}.
+   *
+   * @param request   Request for which we want the response.
+   * @param response  Servlet response to which the statements are written.
+   * @param catalogId Id of the catalog which is exported.
+   * @param formatter Format in which the statements are written.
+   * @param headers   Headers of the response, with the negotiated content type.
+   * @throws Throwable Throws an exception if one of the hooks throws one.
+   */
+  private void dump( HttpServletRequest request, HttpServletResponse response, String catalogId, StreamingFormatter formatter, HttpHeaders headers ) throws Throwable {
+    Catalog catalog = new Catalog( catalogId );
+    HookManager.callHook( PreReadHandler.class, "handlePreRead", new PreContext( request, catalog.getUri() ) );
+    if ( !catalog.exists() )
+      throw new NotFoundException( catalog.getUri() + " does not exist" );
+    RDFHandler writer = openStream( response, headers, formatter );
+    UnitOfWork work = Db.beginUnitOfWork();
+    try {
+      writer.startRDF();
+      exportGraph( writer, catalog.getUri() );
+      List<URI> page;
+      URI after = null;
+      do {
+        page = fetchDatasets( catalog.getUri(), after );
+        for ( URI dataset : page )
+          exportGraph( writer, dataset );
+        if ( !page.isEmpty() )
+          after = page.get( page.size() - 1 );
+      } while ( page.size() == PAGE_SIZE );
+      writer.endRDF();
+    } finally {
+      work.close();
+    }
+  }
+
+  /**
+   * Streams the statements of {@code graph} to {@code writer}, with {@code graph} as their
+   * context.  Not every store returns the context of the statements it is asked for.
+   */
+  private static void exportGraph( RDFHandler writer, final URI graph ) {
+    Db.exportStatements( new RDFHandlerWrapper( writer ) {
+      @Override
+      public void handleStatement( Statement st ) throws RDFHandlerException {
+        super.handleStatement( new ContextStatementImpl( st.getSubject(), st.getPredicate(), st.getObject(), graph ) );
+      }
+    }, null, null, null, false, graph );
+  }
+
+  /**
+   * Retrieves the next page of datasets of the catalog, in order of their URI.
+   *
+   * @param catalog URI of the catalog.
+   * @param after   Last dataset of the previous page, or null for the first page.
+   * @return At most {@link #PAGE_SIZE} datasets which follow {@code after}.
+   */
+  private static List<URI> fetchDatasets( URI catalog, URI after ) {
+    final List<URI> datasets = new ArrayList<URI>( PAGE_SIZE );
+    Db.streamQuery( new RowHandler() {
+      @Override
+      public boolean handleRow( BindingSet row ) {
+        Resource dataset = ( Resource ) row.getValue( "dataset" );
+        if ( dataset instanceof URI )
+          datasets.add( ( URI ) dataset );
+        return true;
+      }
+    }, "" +
+        " @PREFIX" +
+        " SELECT DISTINCT ?dataset" +
+        " WHERE {" +
+        "   GRAPH $catalog {" +
+        "     $catalog dcat:dataset ?dataset." +
+        "   }" +
+        ( after == null ? "" : " FILTER( STR( ?dataset ) > $after )" ) +
+        " }" +
+        " ORDER BY STR( ?dataset )" +
+        " LIMIT $limit",
+        "catalog", catalog,
+        "after", after == null ? null : new LiteralImpl( after.stringValue() ),
+        "limit", PAGE_SIZE );
+    return datasets;
+  }
+}
@@ -1,13 +1,16 @@
 package eu.lod2.edcat.controller.catalog;
 
+import eu.lod2.edcat.cache.CatalogListView;
 import eu.lod2.edcat.format.*;
+import eu.lod2.edcat.utils.JsonLdContext;
 import eu.lod2.hooks.contexts.catalog.PostListContext;
 import eu.lod2.hooks.contexts.catalog.PreListContext;
 import eu.lod2.hooks.handlers.dcat.catalog.PostListHandler;
 import eu.lod2.hooks.handlers.dcat.catalog.PreListHandler;
 import eu.lod2.hooks.util.HookManager;
-import eu.lod2.query.Db;
 import org.openrdf.model.Model;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -22,60 +25,46 @@ import javax.servlet.http.HttpServletRequest;
 @Controller("CatalogListController")
 public class ListController extends CatalogController {
 
-  @RequestMapping( value = LIST_ROUTE, method = RequestMethod.GET, produces = "application/json;charset=UTF-8" )
-  public ResponseEntity<Object> listJSON( HttpServletRequest request ) throws Throwable {
-    return list( request, new CompactedListFormatter( jsonLdContext ) );
-  }
-
-  @RequestMapping( value = LIST_ROUTE, method = RequestMethod.GET, produces = "application/rdf+xml;charset=UTF-8" )
-  public ResponseEntity<Object> listXML( HttpServletRequest request ) throws Throwable {
-    return list( request, new XMLRDFFormatter() );
-  }
-
-  @RequestMapping( value = LIST_ROUTE, method = RequestMethod.GET, produces = "text/turtle;charset=UTF-8" )
-  public ResponseEntity<Object> listTurtle( HttpServletRequest request ) throws Throwable {
-    return list( request, new TurtleFormatter() );
-  }
+  /** Formats in which the catalogs are listed, the compacted JSON first. */
+  private static final FormatterRegistry formats = new FormatterRegistry( FormatterRegistry.rdf() )
+      .register( "json", "application/json;charset=UTF-8", new CompactedListFormatter( JsonLdContext.forKind( kind ) ) );
 
-  @RequestMapping( value = LIST_ROUTE, method = RequestMethod.GET, produces = "application/ld+json;charset=UTF-8" )
-  public ResponseEntity<Object> listJSONLD( HttpServletRequest request ) throws Throwable {
-    return list( request, new JsonLDFormatter() );
+  @RequestMapping( value = LIST_ROUTE, method = RequestMethod.GET )
+  public ResponseEntity<Object> list( HttpServletRequest request ) throws Throwable {
+    HttpHeaders headers = getHeaders();
+    FormatterRegistry.Format format = negotiate( request, formats, ResponseFormatter.class, headers );
+    return list( request, format.getFormatter(), format.getName(), headers );
   }
 
   /**
    * Constructs a response for the specified response formatter and calls the necessary hooks.
+   * <p/>
+   * The catalogs are read from the {@link CatalogListView}, not from the store.  Unless PostList
+   * handlers need to see the statements and the response, the body is serialized once per
+   * snapshot of the view and {@code variant}, and sent as is afterwards.
    *
    * @param request   Request for which we want the response.
    * @param formatter Format in which the response will be sent.
+   * @param variant   Name of the format, distinguishes the cached serializations.
+   * @param headers   Headers of the response, with the negotiated content type.
    * @return Response which can be sent to the user.
    * @throws Throwable Throws an exception if one of the hooks throws one.
    */
-  public ResponseEntity<Object> list( HttpServletRequest request, ResponseFormatter formatter ) throws Throwable {
+  public ResponseEntity<Object> list( HttpServletRequest request, ResponseFormatter formatter, String variant, HttpHeaders headers ) throws Throwable {
     HookManager.callHook( PreListHandler.class, "handlePreList", new PreListContext( request ) );
-    Model model = fetchCatalogInfo( request );
+    CatalogListView.Snapshot catalogs = CatalogListView.getInstance().snapshot();
+    if ( !HookManager.hasHandlers( PostListHandler.class ) ) {
+      byte[] body = catalogs.getSerialized( variant );
+      if ( body == null ) {
+        body = serialize( formatter.format( catalogs.getStatements() ) );
+        catalogs.putSerialized( variant, body );
+      }
+      return new ResponseEntity<Object>( body, headers, HttpStatus.OK );
+    }
+    Model model = new LinkedHashModel( catalogs.getStatements() );
     Object body = formatter.format( model );
-    ResponseEntity<Object> response = new ResponseEntity<Object>( body, getHeaders(), HttpStatus.OK );
+    ResponseEntity<Object> response = new ResponseEntity<Object>( body, headers, HttpStatus.OK );
     HookManager.callHook( PostListHandler.class, "handlePostList", new PostListContext( request, response , model ) );
-    return response;
-  }
-
-  /**
-   * Retrieves triples which describe the catalogs managed by the E-DCAT.
-   *
-   * @return Model describing the catalogs.
-   */
-  private Model fetchCatalogInfo( HttpServletRequest request ){
-    return Db.construct( "" +
-        " @PREFIX" +
-        " CONSTRUCT { ?s ?p ?o }" +
-        " WHERE {" +
-        "   GRAPH @CONFIG_GRAPH {" +
-        "     ?s a dcat:Catalog." +
-        "   }." +
-        "   GRAPH ?s {" +
-        "     ?s dct:title ?o." +
-        "     BIND( dct:title AS ?p )" +
-        "   }" +
-        " }");
+    return serialized( response );
   }
-}
\ No newline at end of file
+}
@@ -11,11 +11,17 @@ import eu.lod2.hooks.handlers.dcat.catalog.PostReadHandler;
 import eu.lod2.hooks.handlers.dcat.catalog.PreReadHandler;
 import eu.lod2.hooks.util.HookManager;
 import eu.lod2.query.Db;
+import eu.lod2.query.RowHandler;
+import org.openrdf.model.Literal;
 import org.openrdf.model.Model;
 import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
+import org.openrdf.model.Value;
 import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.vocabulary.DCTERMS;
 import org.openrdf.query.BindingSet;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -24,8 +30,11 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 
 import javax.servlet.http.HttpServletRequest;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-
 /**
  * Renders basic information about the Catalog.
  */
@@ -40,9 +49,12 @@ public class ShowController extends CatalogController {
     Model statements = loadStatements( catalog );
     if (statements.size() == 0 )
       throw new NotFoundException();
-    ResponseFormatter formatter = new CompactedObjectFormatter( new JsonLdContext( JsonLdContext.Kind.Catalog ) );
+    HttpHeaders headers = getHeaders();
+    if ( checkNotModified( request, headers, contentTag( statements ), lastModified( catalog, statements ) ) )
+      return notModified( headers );
+    ResponseFormatter formatter = new CompactedObjectFormatter( JsonLdContext.forKind( JsonLdContext.Kind.Catalog ) );
     Object body = formatter.format( statements );
-    ResponseEntity<Object> response = new ResponseEntity<Object>( body, getHeaders(), HttpStatus.OK );
+    ResponseEntity<Object> response = new ResponseEntity<Object>( body, headers, HttpStatus.OK );
     HookManager.callHook( PostReadHandler.class, "handlePostRead", new PostContext( catalog, request, response, statements ) );
     return response;
   }
@@ -54,7 +66,17 @@ public class ShowController extends CatalogController {
    * @return Model containing the statements.
    */
   public Model loadStatements( Catalog catalog ) {
-    List<BindingSet> result = Db.rawQuery( "" +
+    final Model statements = new LinkedHashModel();
+    Db.streamQuery( new RowHandler() {
+      @Override
+      public boolean handleRow( BindingSet binding ) {
+        statements.add(
+            ( Resource ) binding.getValue( "s" ),
+            ( URI ) binding.getValue( "p" ),
+            binding.getValue( "o" ) );
+        return true;
+      }
+    }, "" +
         " @PREFIX" +
         " SELECT ?s ?p ?o" +
         " FROM $catalog" +
@@ -65,13 +87,48 @@ public class ShowController extends CatalogController {
         " }",
         "catalog", catalog.getUri() );
 
-    Model statements = new LinkedHashModel();
-    for ( BindingSet binding : result )
-      statements.add(
-          ( Resource ) binding.getValue( "s" ),
-          ( URI ) binding.getValue( "p" ),
-          binding.getValue( "o" ) );
-
     return statements;
   }
+
+  /**
+   * Builds an entity tag from the content of {@code statements}.
+   * <p/>
+   * The catalog description doesn't carry a timestamp which is maintained on every change, so the
+   * tag is a hash of the statements which are rendered.  These are few, as the links to the
+   * datasets are not part of the description, and the tag is checked before they are formatted.
+   *
+   * @param statements Statements describing the catalog.
+   * @return Quoted entity tag.
+   */
+  private static String contentTag( Model statements ) {
+    List<String> lines = new ArrayList<String>( statements.size() );
+    for ( Statement statement : statements )
+      lines.add( statement.getSubject() + " " + statement.getPredicate() + " " + statement.getObject() );
+    Collections.sort( lines );
+    try {
+      MessageDigest digest = MessageDigest.getInstance( "MD5" );
+      for ( String line : lines )
+        digest.update( ( line + "\n" ).getBytes( "UTF-8" ) );
+      return "\"" + new BigInteger( 1, digest.digest() ).toString( 16 ) + "\"";
+    } catch ( Exception e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  /**
+   * @return dct:modified timestamp of the catalog in milliseconds since the epoch, or -1 if the
+   *         catalog has none.
+   */
+  private static long lastModified( Catalog catalog, Model statements ) {
+    for ( Value value : statements.filter( catalog.getUri(), DCTERMS.MODIFIED, null ).objects() ) {
+      if ( value instanceof Literal ) {
+        try {
+          return ( ( Literal ) value ).calendarValue().toGregorianCalendar().getTimeInMillis();
+        } catch ( IllegalArgumentException e ) {
+          // not a timestamp, try the next value
+        }
+      }
+    }
+    return -1;
+  }
 }
@@ -3,6 +3,7 @@ package eu.lod2.edcat.controller.dataset;
 import eu.lod2.edcat.format.DatasetFormatter;
 import eu.lod2.edcat.format.ResponseFormatter;
 import eu.lod2.edcat.model.Catalog;
+import eu.lod2.edcat.search.DatasetIndexer;
 import eu.lod2.edcat.utils.DcatURI;
 import eu.lod2.edcat.utils.JsonLdContext;
 import eu.lod2.hooks.contexts.dataset.AtContext;
@@ -13,6 +14,7 @@ import eu.lod2.hooks.handlers.dcat.dataset.PostCreateHandler;
 import eu.lod2.hooks.handlers.dcat.dataset.PreCreateHandler;
 import eu.lod2.hooks.util.HookManager;
 import eu.lod2.query.Db;
+import eu.lod2.query.UnitOfWork;
 import org.openrdf.model.Model;
 import org.openrdf.model.URI;
 import org.springframework.http.HttpStatus;
@@ -35,12 +37,21 @@ public class CreateController extends DatasetController {
     String datasetBaseId = getId();
     URI datasetUri = DcatURI.datasetURI(catalogId, datasetBaseId);
     HookManager.callHook( PreCreateHandler.class, "handlePreCreate", new PreContext( catalog, request, datasetUri ) );
-    Model record = catalog.createRecord(datasetBaseId);
-    Model statements = buildModel( request, datasetUri );
-    HookManager.callHook( AtCreateHandler.class, "handleAtCreate", new AtContext( catalog, request, statements, datasetUri ) );
-    Db.add( statements, datasetUri );
+    Model record;
+    Model statements;
+    UnitOfWork work = Db.beginUnitOfWork();
+    try {
+      record = catalog.createRecord(datasetBaseId);
+      statements = buildModel( request, datasetUri );
+      HookManager.callHook( AtCreateHandler.class, "handleAtCreate", new AtContext( catalog, request, statements, datasetUri ) );
+      Db.add( statements, datasetUri );
+      work.commit();
+    } finally {
+      work.close();
+    }
     statements.addAll( record );
-    ResponseFormatter formatter = new DatasetFormatter( new JsonLdContext( kind ) );
+    DatasetIndexer.created( catalog.getUri(), datasetUri, statements );
+    ResponseFormatter formatter = new DatasetFormatter( JsonLdContext.forKind( kind ) );
     Object compactedJsonLD = formatter.format( statements );
     ResponseEntity<Object> response = new ResponseEntity<Object>( compactedJsonLD, getHeaders(), HttpStatus.OK );
     HookManager.callHook( PostCreateHandler.class, "handlePostCreate", new PostContext( catalog, request, response, datasetUri, statements ) );
@@ -28,6 +28,9 @@ public abstract class DatasetController extends BaseController {
   /** show dataset route */
   protected static final String OBJECT_ROUTE = DcatURI.DATASET_OBJECT_PATH;
 
+  /** bulk import datasets route */
+  protected static final String IMPORT_ROUTE = DcatURI.DATASET_IMPORT_PATH;
+
 
   // --- HELPERS
 
@@ -40,7 +43,7 @@ public abstract class DatasetController extends BaseController {
   protected Model buildModel( HttpServletRequest request, URI dataset ) throws Exception {
     InputStream in = request.getInputStream();
     Model statements = DcatJsonParser.jsonLDToStatements(
-        in, new JsonLdContext( kind ),
+        in, JsonLdContext.forKind( kind ),
         dataset, Sparql.namespaced( "dcat", "Dataset" ) );
     BlankNodeNuker.nuke( statements, kind );
     in.close();
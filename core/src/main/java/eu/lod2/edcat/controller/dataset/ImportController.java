@@ -0,0 +1,453 @@
+package eu.lod2.edcat.controller.dataset;
+
+import eu.lod2.edcat.format.DatasetFormatter;
+import eu.lod2.edcat.model.Catalog;
+import eu.lod2.edcat.search.DatasetIndexer;
+import eu.lod2.edcat.utils.*;
+import eu.lod2.hooks.contexts.dataset.AtContext;
+import eu.lod2.hooks.contexts.dataset.PostContext;
+import eu.lod2.hooks.contexts.dataset.PreContext;
+import eu.lod2.hooks.handlers.dcat.dataset.AtCreateHandler;
+import eu.lod2.hooks.handlers.dcat.dataset.PostCreateHandler;
+import eu.lod2.hooks.handlers.dcat.dataset.PreCreateHandler;
+import eu.lod2.hooks.handlers.dcat.dataset.PrepareImportHandler;
+import eu.lod2.hooks.util.HookManager;
+import eu.lod2.query.Db;
+import eu.lod2.query.Sparql;
+import eu.lod2.query.UnitOfWork;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.PrettyPrinter;
+import org.codehaus.jackson.util.MinimalPrettyPrinter;
+import org.openrdf.model.Model;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports many datasets into a catalog in a single request.
+ * <p/>
+ * The body is a JSON array of datasets or a stream of newline delimited datasets (NDJSON), in the
+ * format accepted by {@code POST /catalogs/{catalogId}/datasets}.  The datasets are read one at a
+ * time.  Converting them to statements and nuking their blank nodes happens in parallel on a
+ * shared pool of workers.  The prepared datasets are written to the store in batches, each in one
+ * unit of work.  If a batch fails, its datasets are written one by one, so a single bad dataset
+ * only fails itself.
+ * <p/>
+ * The hooks are called as they are for a single create, on the thread which handles the request:
+ * the PreCreate hooks when a dataset has been read, the AtCreate hooks inside the unit of work
+ * which stores the batch, so their writes are committed or rolled back with it, and the PostCreate
+ * hooks once a dataset has been committed.  When a batch is retried one dataset at a time, the
+ * AtCreate hooks are called again for each dataset, on a fresh copy of its statements.  Providers
+ * which want to do expensive work on imported datasets in parallel can opt in to {@link
+ * PrepareImportHandler}, which is called on the workers.  All hooks receive a {@link
+ * RequestSnapshot} instead of the request itself, which is not safe to share between threads and
+ * whose body is being read by the import.
+ * <p/>
+ * The response is NDJSON which is written while the import runs: a line for each dataset which
+ * was created or failed, a progress line after each batch and a summary line at the end.
+ * <p/>
+ * The pool reads the following keys of sparql.properties:
+ * <ul>
+ * <li>{@code import.workers}: number of workers preparing datasets (default: number of
+ * processors)</li>
+ * <li>{@code import.batchSize}: number of datasets stored in one unit of work (default 500)</li>
+ * </ul>
+ */
+@Controller
+public class ImportController extends DatasetController {
+
+  /** Content type of the report. */
+  public static final String REPORT_CONTENT_TYPE = "application/x-ndjson;charset=UTF-8";
+
+  /** Shared factory, JsonFactory is thread-safe once configured. */
+  private static final JsonFactory jsonFactory = new JsonFactory();
+
+  static {
+    jsonFactory.disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET );
+  }
+
+  /** Separates the lines of the report, instead of the space Jackson puts between root values. */
+  private static final PrettyPrinter lineSeparator = new MinimalPrettyPrinter() {
+    @Override
+    public void writeRootValueSeparator( JsonGenerator generator ) throws IOException {
+      generator.writeRaw( '\n' );
+    }
+  };
+
+  /** Workers preparing datasets, shared by all imports.  See {@link #workers()}. */
+  private static ExecutorService workers;
+
+  /** Number of datasets stored in one unit of work. */
+  private static int batchSize;
+
+  // POST /catalogs/{catalogId}/datasets/import
+  @RequestMapping(value = IMPORT_ROUTE, method = RequestMethod.POST)
+  public void importDatasets( HttpServletRequest request, HttpServletResponse response, @PathVariable String catalogId ) throws Throwable {
+    Catalog catalog = new Catalog( catalogId );
+    verifyCatalogExists( catalog );
+    ExecutorService pool = workers();
+    response.setStatus( HttpServletResponse.SC_OK );
+    response.setContentType( REPORT_CONTENT_TYPE );
+    ImportReport report = new ImportReport( jsonFactory.createJsonGenerator( response.getOutputStream(), JsonEncoding.UTF8 ) );
+    HttpServletRequest snapshot = new RequestSnapshot( request );
+    InputStream in = request.getInputStream();
+    try {
+      runImport( snapshot, catalog, new JsonItemReader( in ), new ExecutorCompletionService<PreparedDataset>( pool ), report );
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads, prepares and stores the datasets, reporting each of them.
+   * <p/>
+   * At most two batches of datasets are read ahead of the store, so a large import doesn't fill
+   * the memory with prepared datasets when the store is the bottleneck.
+   */
+  private void runImport( HttpServletRequest request, Catalog catalog, JsonItemReader reader, CompletionService<PreparedDataset> preparations, ImportReport report ) throws IOException {
+    List<PreparedDataset> batch = new ArrayList<PreparedDataset>( batchSize );
+    int maxInFlight = 2 * batchSize;
+    int inFlight = 0;
+    String failure = null;
+    while ( true ) {
+      Map<String, Object> json;
+      try {
+        json = reader.next();
+      } catch ( IOException e ) {
+        failure = "Could not read dataset " + reader.getCount() + ": " + e.getMessage();
+        logger.warn( "Import into " + catalog.getUri() + " stopped. " + failure );
+        break;
+      }
+      if ( json == null )
+        break;
+      PreparedDataset dataset = callPreCreate( reader.getCount() - 1, catalog, request );
+      if ( dataset.error != null ) {
+        report.failed( dataset );
+        continue;
+      }
+      preparations.submit( new Preparation( request, catalog, dataset, json ) );
+      inFlight++;
+      while ( inFlight >= maxInFlight ) {
+        inFlight--;
+        collect( take( preparations ), batch, catalog, request, report );
+      }
+    }
+    while ( inFlight > 0 ) {
+      inFlight--;
+      collect( take( preparations ), batch, catalog, request, report );
+    }
+    store( batch, catalog, request, report );
+    report.summary( reader.getCount(), failure );
+  }
+
+  /**
+   * Picks the identifier of a dataset which has been read and calls the PreCreate hooks for it.
+   *
+   * @return Dataset to prepare, with an error if a hook aborted its creation.
+   */
+  private PreparedDataset callPreCreate( int index, Catalog catalog, HttpServletRequest request ) {
+    String id = UUID.randomUUID().toString();
+    PreparedDataset dataset = new PreparedDataset( index, id, DcatURI.datasetURI( catalog.getId(), id ) );
+    try {
+      HookManager.callHook( PreCreateHandler.class, "handlePreCreate", new PreContext( catalog, request, dataset.uri ) );
+    } catch ( Throwable e ) {
+      dataset.error = message( e );
+    }
+    return dataset;
+  }
+
+  /**
+   * Adds a prepared dataset to {@code batch}, storing the batch once it is full.  Datasets which
+   * could not be prepared are reported right away.
+   */
+  private void collect( PreparedDataset dataset, List<PreparedDataset> batch, Catalog catalog, HttpServletRequest request, ImportReport report ) throws IOException {
+    if ( dataset.error != null ) {
+      report.failed( dataset );
+      return;
+    }
+    batch.add( dataset );
+    if ( batch.size() >= batchSize ) {
+      store( batch, catalog, request, report );
+      report.progress();
+    }
+  }
+
+  /**
+   * Stores the datasets of {@code batch} in one unit of work, falling back to a unit of work per
+   * dataset if that fails, and empties the batch.
+   */
+  private void store( List<PreparedDataset> batch, Catalog catalog, HttpServletRequest request, ImportReport report ) throws IOException {
+    if ( batch.isEmpty() )
+      return;
+    try {
+      UnitOfWork work = Db.beginUnitOfWork();
+      try {
+        for ( PreparedDataset dataset : batch )
+          add( dataset, catalog, request );
+        work.commit();
+      } finally {
+        work.close();
+      }
+    } catch ( Throwable e ) {
+      logger.warn( "Storing a batch of " + batch.size() + " datasets failed, storing them one by one: " + e.getMessage() );
+      for ( PreparedDataset dataset : batch ) {
+        try {
+          UnitOfWork work = Db.beginUnitOfWork();
+          try {
+            add( dataset, catalog, request );
+            work.commit();
+          } finally {
+            work.close();
+          }
+        } catch ( Throwable ex ) {
+          dataset.error = "Could not store the dataset: " + message( ex );
+        }
+      }
+    }
+    for ( PreparedDataset dataset : batch ) {
+      if ( dataset.error != null ) {
+        report.failed( dataset );
+        continue;
+      }
+      dataset.stored.addAll( dataset.record );
+      DatasetIndexer.created( catalog.getUri(), dataset.uri, dataset.stored );
+      report.created( dataset, callPostCreate( dataset, catalog, request ) );
+    }
+    batch.clear();
+  }
+
+  /**
+   * Calls the AtCreate hooks on a copy of the prepared statements and adds the result to the
+   * active unit of work.
+   */
+  private static void add( PreparedDataset dataset, Catalog catalog, HttpServletRequest request ) throws Throwable {
+    Model statements = new LinkedHashModel( dataset.statements );
+    HookManager.callHook( AtCreateHandler.class, "handleAtCreate", new AtContext( catalog, request, statements, dataset.uri ) );
+    Db.add( statements, dataset.uri );
+    Db.add( dataset.record, catalog.getUri() );
+    dataset.stored = statements;
+  }
+
+  /**
+   * Calls the PostCreate hooks for a stored dataset.  The dataset is formatted only when there are
+   * handlers which would receive it.
+   *
+   * @return Message of the exception thrown by a hook, or null if the hooks succeeded.
+   */
+  private String callPostCreate( PreparedDataset dataset, Catalog catalog, HttpServletRequest request ) {
+    if ( !HookManager.hasHandlers( PostCreateHandler.class ) )
+      return null;
+    try {
+      Model statements = dataset.stored;
+      Object body = new DatasetFormatter( JsonLdContext.forKind( kind ) ).format( statements );
+      ResponseEntity<Object> response = new ResponseEntity<Object>( body, getHeaders(), HttpStatus.OK );
+      HookManager.callHook( PostCreateHandler.class, "handlePostCreate", new PostContext( catalog, request, response, dataset.uri, statements ) );
+      return null;
+    } catch ( Throwable e ) {
+      logger.warn( "PostCreate hook failed for imported dataset " + dataset.uri + ": " + e.getMessage() );
+      return e.getMessage();
+    }
+  }
+
+  /**
+   * Waits for the next prepared dataset.
+   */
+  private static PreparedDataset take( CompletionService<PreparedDataset> preparations ) throws IOException {
+    try {
+      return preparations.take().get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new IOException( "Interrupted while waiting for the import workers" );
+    } catch ( ExecutionException e ) {
+      // Preparation catches everything it throws
+      throw new IllegalStateException( e.getCause() );
+    }
+  }
+
+  /**
+   * Retrieves the pool of workers, constructing it from sparql.properties the first time.  The
+   * workers are daemon threads, they don't keep the container from shutting down.
+   */
+  private static synchronized ExecutorService workers() {
+    if ( workers == null ) {
+      Properties properties = SparqlEngine.loadConfiguration();
+      int size = intProperty( properties, "import.workers", Runtime.getRuntime().availableProcessors() );
+      batchSize = intProperty( properties, "import.batchSize", 500 );
+      if ( size < 1 || batchSize < 1 )
+        throw new IllegalArgumentException( "import.workers and import.batchSize must be positive" );
+      final AtomicInteger threads = new AtomicInteger();
+      workers = Executors.newFixedThreadPool( size, new ThreadFactory() {
+        @Override
+        public Thread newThread( Runnable runnable ) {
+          Thread thread = new Thread( runnable, "edcat-import-" + threads.incrementAndGet() );
+          thread.setDaemon( true );
+          return thread;
+        }
+      } );
+    }
+    return workers;
+  }
+
+  /**
+   * @return Message which reports {@code e} to the client.
+   */
+  private static String message( Throwable e ) {
+    return e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+  }
+
+  private static int intProperty( Properties properties, String key, int defaultValue ) {
+    String value = properties.getProperty( key );
+    if ( value == null )
+      return defaultValue;
+    try {
+      return Integer.parseInt( value.trim() );
+    } catch ( NumberFormatException e ) {
+      throw new IllegalArgumentException( key + " must be a number, got " + value, e );
+    }
+  }
+
+
+  // --- PREPARATION
+
+  /** Dataset which has been read and converted to statements, or the reason why it couldn't be. */
+  private static class PreparedDataset {
+    final int index;
+    final String id;
+    final URI uri;
+    /** Statements as converted on a worker. */
+    Model statements;
+    /** Statements as stored, after the AtCreate hooks were called, and the record once committed. */
+    Model stored;
+    Model record;
+    String error;
+
+    PreparedDataset( int index, String id, URI uri ) {
+      this.index = index;
+      this.id = id;
+      this.uri = uri;
+    }
+  }
+
+  /**
+   * Converts one dataset to statements on a worker and calls the {@link PrepareImportHandler}
+   * hooks for it.
+   */
+  private static class Preparation implements Callable<PreparedDataset> {
+    private final HttpServletRequest request;
+    private final Catalog catalog;
+    private final PreparedDataset dataset;
+    private final Map<String, Object> json;
+
+    Preparation( HttpServletRequest request, Catalog catalog, PreparedDataset dataset, Map<String, Object> json ) {
+      this.request = request;
+      this.catalog = catalog;
+      this.dataset = dataset;
+      this.json = json;
+    }
+
+    @Override
+    public PreparedDataset call() {
+      try {
+        Model statements = DcatJsonParser.jsonLDToStatements(
+            json, JsonLdContext.forKind( kind ),
+            dataset.uri, Sparql.namespaced( "dcat", "Dataset" ) );
+        BlankNodeNuker.nuke( statements, kind );
+        HookManager.callHook( PrepareImportHandler.class, "handlePrepareImport", new AtContext( catalog, request, statements, dataset.uri ) );
+        dataset.statements = statements;
+        dataset.record = catalog.buildRecord( dataset.id );
+      } catch ( Throwable e ) {
+        dataset.error = message( e );
+      }
+      return dataset;
+    }
+  }
+
+
+  // --- REPORT
+
+  /** Writes the NDJSON report of an import. */
+  private static class ImportReport {
+    private final JsonGenerator generator;
+    private int created = 0;
+    private int failed = 0;
+
+    ImportReport( JsonGenerator generator ) {
+      this.generator = generator;
+      generator.setPrettyPrinter( lineSeparator );
+    }
+
+    void created( PreparedDataset dataset, String hookError ) throws IOException {
+      created++;
+      generator.writeStartObject();
+      generator.writeNumberField( "item", dataset.index );
+      generator.writeStringField( "status", "created" );
+      generator.writeStringField( "id", dataset.id );
+      generator.writeStringField( "uri", dataset.uri.stringValue() );
+      if ( hookError != null )
+        generator.writeStringField( "warning", hookError );
+      endLine();
+    }
+
+    void failed( PreparedDataset dataset ) throws IOException {
+      failed++;
+      generator.writeStartObject();
+      generator.writeNumberField( "item", dataset.index );
+      generator.writeStringField( "status", "failed" );
+      generator.writeStringField( "error", dataset.error );
+      endLine();
+    }
+
+    /** Writes the counters so far and sends everything written to the client. */
+    void progress() throws IOException {
+      generator.writeStartObject();
+      generator.writeObjectFieldStart( "progress" );
+      writeCounters();
+      generator.writeEndObject();
+      endLine();
+      generator.flush();
+    }
+
+    /**
+     * Writes the final counters.
+     *
+     * @param read  Number of datasets which were read.
+     * @param error Reason why the import stopped early, or null if the whole body was read.
+     */
+    void summary( int read, String error ) throws IOException {
+      generator.writeStartObject();
+      generator.writeObjectFieldStart( "summary" );
+      generator.writeNumberField( "read", read );
+      writeCounters();
+      if ( error != null )
+        generator.writeStringField( "error", error );
+      generator.writeEndObject();
+      endLine();
+      generator.writeRaw( '\n' );
+      generator.flush();
+    }
+
+    private void writeCounters() throws IOException {
+      generator.writeNumberField( "created", created );
+      generator.writeNumberField( "failed", failed );
+    }
+
+    private void endLine() throws IOException {
+      generator.writeEndObject();
+    }
+  }
+}
@@ -2,17 +2,32 @@ package eu.lod2.edcat.controller.dataset;
 
 import eu.lod2.edcat.format.*;
 import eu.lod2.edcat.model.Catalog;
+import eu.lod2.edcat.search.FacetIndex;
+import eu.lod2.edcat.search.SearchIndex;
+import eu.lod2.edcat.utils.BadRequestException;
+import eu.lod2.edcat.utils.ContinuationToken;
 import eu.lod2.edcat.utils.JsonLdContext;
-import eu.lod2.edcat.utils.QueryResult;
+import eu.lod2.edcat.utils.RequestLimiter;
 import eu.lod2.hooks.contexts.dataset.PostListContext;
 import eu.lod2.hooks.contexts.dataset.PreListContext;
 import eu.lod2.hooks.handlers.dcat.dataset.PostListHandler;
 import eu.lod2.hooks.handlers.dcat.dataset.PreListHandler;
 import eu.lod2.hooks.util.HookManager;
 import eu.lod2.query.Db;
-import org.openrdf.model.Model;
-import org.openrdf.model.URI;
+import eu.lod2.query.RowHandler;
+import eu.lod2.query.Sparql;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openrdf.model.*;
 import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.vocabulary.DCTERMS;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.SKOS;
+import org.openrdf.query.BindingSet;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.StatementCollector;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -21,52 +36,131 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.Map;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.*;
 
 /**
  * Lists all datasets in the application.
+ * <p/>
+ * The datasets are ordered by the dct:modified timestamp of their CatalogRecord and by their URI.
+ * The list is paged with a continuation token: when more datasets follow, the response carries the
+ * token of the next page in the {@value #CONTINUATION_HEADER} header and a {@code Link} header
+ * with {@code rel="next"}.  The next page is requested by passing the token as the {@value
+ * #AFTER_PARAMETER} parameter.  The older {@code page} parameter is still understood, but its
+ * pages shift when datasets are modified in between two requests.
+ * <p/>
+ * When the {@value #QUERY_PARAMETER} parameter is supplied, the list only contains the datasets
+ * whose title, description or keywords contain all words of the query, best match first, see
+ * {@link SearchIndex}.  The {@value #LANGUAGE_PARAMETER} parameter restricts the match to texts in
+ * that language.  Search results are paged with the {@code page} and {@code pageSize} parameters,
+ * the number of matching datasets is returned in the {@value #TOTAL_HEADER} header.
+ * <p/>
+ * The {@value #THEME_PARAMETER} parameter, which may be repeated, restricts the list to the
+ * datasets with all of the supplied themes.  Without a query these datasets are ordered by their
+ * URI and paged like search results.  When the {@value #FACETS_PARAMETER} parameter is true, the
+ * number of listed datasets per theme, publisher, language and distribution format is returned in
+ * the {@value #FACETS_HEADER} header as a JSON object, see {@link FacetIndex}.  As the counts are
+ * sent in a header, the {@value #FACET_LIMIT_PARAMETER} parameter can only lower the number of
+ * values per facet: it defaults to and is capped at {@value #MAX_FACET_LIMIT}.
  */
 @Controller
 public class ListController extends DatasetController {
 
-  @RequestMapping( value = LIST_ROUTE, method = RequestMethod.GET, produces = "application/json;charset=UTF-8" )
-  public ResponseEntity<Object> listJSON( HttpServletRequest request, @PathVariable String catalogId ) throws Throwable {
-    JsonLdContext context = new JsonLdContext( JsonLdContext.Kind.Dataset );
-    return list(request, new CompactedListFormatter( context ), catalogId );
-  }
+  /** Header which contains the continuation token of the next page. */
+  public static final String CONTINUATION_HEADER = "X-Continuation-Token";
 
-  @RequestMapping(value = LIST_ROUTE, method = RequestMethod.GET, produces = "application/rdf+xml;charset=UTF-8")
-  public ResponseEntity<Object> listXML( HttpServletRequest request, @PathVariable String catalogId ) throws Throwable {
-    return list( request, new XMLRDFFormatter(), catalogId );
-  }
+  /** Parameter through which the continuation token of a page is supplied. */
+  public static final String AFTER_PARAMETER = "after";
 
-  @RequestMapping(value = LIST_ROUTE, method = RequestMethod.GET, produces = "text/turtle;charset=UTF-8")
-  public ResponseEntity<Object> listTurtle( HttpServletRequest request, @PathVariable String catalogId ) throws Throwable {
-    return list( request, new TurtleFormatter(), catalogId );
-  }
+  /** Parameter through which a free text query is supplied. */
+  public static final String QUERY_PARAMETER = "q";
+
+  /** Parameter through which the language of the free text query is supplied. */
+  public static final String LANGUAGE_PARAMETER = "lang";
+
+  /** Header which contains the number of datasets matching the free text query. */
+  public static final String TOTAL_HEADER = "X-Total-Count";
+
+  /** Parameter through which the themes of the listed datasets are supplied. */
+  public static final String THEME_PARAMETER = "theme";
+
+  /** Parameter which requests the facet counts of the list. */
+  public static final String FACETS_PARAMETER = "facets";
+
+  /** Header which contains the facet counts of the list. */
+  public static final String FACETS_HEADER = "X-Facet-Counts";
+
+  /** Parameter through which the number of values per facet is supplied. */
+  public static final String FACET_LIMIT_PARAMETER = "facetLimit";
 
-  @RequestMapping(value = LIST_ROUTE, method = RequestMethod.GET, produces = "application/ld+json;charset=UTF-8")
-  public ResponseEntity<Object> listJSONLD( HttpServletRequest request, @PathVariable String catalogId ) throws Throwable {
-    return list( request, new JsonLDFormatter(), catalogId );
+  /** Default and maximum number of values per facet, keeps the facet header small. */
+  public static final int MAX_FACET_LIMIT = 20;
+
+  /** Writes the facet counts as JSON which can be sent in a header. */
+  private static final ObjectMapper headerMapper = new ObjectMapper().configure( JsonGenerator.Feature.ESCAPE_NON_ASCII, true );
+
+  /** Formats in which the datasets are listed, the compacted JSON first. */
+  private static final FormatterRegistry formats = new FormatterRegistry( FormatterRegistry.rdf() )
+      .register( "json", "application/json;charset=UTF-8", new CompactedListFormatter( JsonLdContext.forKind( kind ) ) );
+
+  @RequestMapping( value = LIST_ROUTE, method = RequestMethod.GET )
+  public ResponseEntity<Object> list( HttpServletRequest request, HttpServletResponse response, @PathVariable String catalogId ) throws Throwable {
+    HttpHeaders headers = getHeaders();
+    FormatterRegistry.Format format = negotiate( request, formats, ResponseFormatter.class, headers );
+    return list( request, response, format.getFormatter(), catalogId, headers );
   }
 
   /**
    * Constructs a response for the specified response formatter and calls the necessary hooks.
+   * <p/>
+   * If the response can be streamed, the statements are written straight to {@code
+   * httpResponse} and null is returned.
+   * <p/>
+   * The queries for the page run under a permit of {@link RequestLimiter#forLists()}, a request
+   * which can't get one in time is answered with 503.
    *
-   * @param request   Request for which we want the response.
-   * @param formatter Format in which the response will be sent.
-   * @return Response which can be sent to the user.
+   * @param request      Request for which we want the response.
+   * @param httpResponse Servlet response to which a streamed response is written.
+   * @param formatter    Format in which the response will be sent.
+   * @param headers      Headers of the response, with the negotiated content type.
+   * @return Response which can be sent to the user, or null if it was streamed.
    * @throws Throwable Throws an exception if one of the hooks throws one.
    */
-  public ResponseEntity<Object> list( HttpServletRequest request, ResponseFormatter formatter, String catalogId ) throws Throwable {
+  public ResponseEntity<Object> list( HttpServletRequest request, HttpServletResponse httpResponse, ResponseFormatter formatter, String catalogId, HttpHeaders headers ) throws Throwable {
     HookManager.callHook( PreListHandler.class, "handlePreList", new PreListContext( request ) );
     Catalog catalog = new Catalog(catalogId);
     verifyCatalogExists(catalog);
-    Model m = fetchDatasets(catalog.getUri(), request);
+    boolean facets = Boolean.parseBoolean( request.getParameter( FACETS_PARAMETER ) );
+    int facetLimit = facets ? getFacetLimit( request ) : 0;
+    RequestLimiter limiter = RequestLimiter.forLists();
+    limiter.acquire();
+    Model m = new LinkedHashModel();
+    try {
+      List<URI> matches = findMatches( catalog.getUri(), request );
+      DatasetPage page;
+      if ( matches != null )
+        page = matchPage( matches, request, headers );
+      else {
+        page = fetchPage( catalog.getUri(), request );
+        addContinuationHeaders( request, headers, page );
+      }
+      if ( facets )
+        addFacetHeader( catalog.getUri(), matches, facetLimit, headers );
+      if ( canStream( formatter, PostListHandler.class ) ) {
+        fetchDatasets( page, openStream( httpResponse, headers, ( StreamingFormatter ) formatter ) );
+        return null;
+      }
+      fetchDatasets( page, new StatementCollector( m ) );
+    } finally {
+      limiter.release();
+    }
     Object body = formatter.format( m );
-    ResponseEntity<Object> response = new ResponseEntity<Object>( body, getHeaders(), HttpStatus.OK );
+    ResponseEntity<Object> response = new ResponseEntity<Object>( body, headers, HttpStatus.OK );
     HookManager.callHook( PostListHandler.class, "handlePostList", new PostListContext( request, response, m ) );
-    return response;
+    return serialized( response );
   }
 
   /**
@@ -74,9 +168,10 @@ public class ListController extends DatasetController {
    * Defaulting to 0;
    *
    * @return Supplied or default int for the pageNumber parameter.
+   * @throws BadRequestException Thrown if the supplied page number is negative.
    */
-  private int getPageNumberParameter( HttpServletRequest request ) {
-    return getIntParameter( request, "page", 0 );
+  private int getPageNumberParameter( HttpServletRequest request ) throws BadRequestException {
+    return getNonNegativeParameter( request, "page", 0 );
   }
 
   /**
@@ -84,9 +179,37 @@ public class ListController extends DatasetController {
    * Defaulting to 100;
    *
    * @return Supplied or default int for the pageSize parameter.
+   * @throws BadRequestException Thrown if the supplied page size is negative.
    */
-  private int getPageSizeParameter( HttpServletRequest request ) {
-    return getIntParameter( request, "pageSize", 100 );
+  private int getPageSizeParameter( HttpServletRequest request ) throws BadRequestException {
+    return getNonNegativeParameter( request, "pageSize", 100 );
+  }
+
+  /**
+   * Returns the free text query which is found in the request for the "q" parameter.
+   *
+   * @return Supplied query or null if none was supplied.
+   */
+  private String getQueryParameter( HttpServletRequest request ) {
+    String query = request.getParameter( QUERY_PARAMETER );
+    return query == null || query.trim().isEmpty() ? null : query;
+  }
+
+  /**
+   * Returns the continuation token which is found in the request for the "after" parameter.
+   *
+   * @return Supplied continuation token or null if none was supplied.
+   * @throws BadRequestException Thrown if the supplied token could not be decoded.
+   */
+  private ContinuationToken getAfterParameter( HttpServletRequest request ) throws BadRequestException {
+    String token = request.getParameter( AFTER_PARAMETER );
+    if ( token == null || token.isEmpty() )
+      return null;
+    try {
+      return ContinuationToken.decode( token );
+    } catch ( IllegalArgumentException e ) {
+      throw new BadRequestException( e.getMessage(), e );
+    }
   }
 
   /**
@@ -107,24 +230,169 @@ public class ListController extends DatasetController {
   }
 
   /**
-   * Fetches the information we want to list about the datasets.
+   * Retrieves the value of an integer parameter in the request which may not be negative.
    *
-   * @param catalog catalogURI for which we want to list the DataSets.
-   * @param request Request for which the dataset should be fetched (used for parametrization)
-   * @return Model containing the information we want to render out.
+   * @see #getIntParameter(HttpServletRequest, String, int)
+   * @throws BadRequestException Thrown if the supplied value is negative.
+   */
+  private int getNonNegativeParameter( HttpServletRequest request, String name, int defaultValue ) throws BadRequestException {
+    int value = getIntParameter( request, name, defaultValue );
+    if ( value < 0 )
+      throw new BadRequestException( name + " must not be negative, not " + value );
+    return value;
+  }
+
+  /**
+   * Adds the continuation token of the next page to {@code headers}, if there is a next page.
    */
-  private Model fetchDatasets( URI catalog, HttpServletRequest request ) {
+  private void addContinuationHeaders( HttpServletRequest request, HttpHeaders headers, DatasetPage page ) throws UnsupportedEncodingException {
+    if ( page.nextPageNumber > 0 )
+      headers.add( "Link", "<" + nextPageUrl( request, "page", String.valueOf( page.nextPageNumber ) ) + ">; rel=\"next\"" );
+    if ( page.next == null )
+      return;
+    String token = page.next.encode();
+    headers.add( CONTINUATION_HEADER, token );
+    headers.add( "Link", "<" + nextPageUrl( request, AFTER_PARAMETER, token ) + ">; rel=\"next\"" );
+  }
+
+  /**
+   * Builds the URL of the next page.  The URL repeats the parameters of {@code request}, except for
+   * the paging parameters, so the next page is built from the same query.
+   *
+   * @param request   Request for the current page.
+   * @param parameter Paging parameter which selects the next page.
+   * @param value     Value of {@code parameter} for the next page, URL-safe.
+   * @return URL of the next page.
+   */
+  private static String nextPageUrl( HttpServletRequest request, String parameter, String value ) throws UnsupportedEncodingException {
+    StringBuilder next = new StringBuilder( request.getRequestURL() ).append( "?" );
+    @SuppressWarnings( "unchecked" )
+    Map<String, String[]> parameters = request.getParameterMap();
+    for ( Map.Entry<String, String[]> entry : parameters.entrySet() ) {
+      if ( entry.getKey().equals( AFTER_PARAMETER ) || entry.getKey().equals( "page" ) )
+        continue;
+      for ( String parameterValue : entry.getValue() )
+        next.append( URLEncoder.encode( entry.getKey(), "UTF-8" ) ).append( "=" )
+            .append( URLEncoder.encode( parameterValue, "UTF-8" ) ).append( "&" );
+    }
+    return next.append( parameter ).append( "=" ).append( value ).toString();
+  }
+
+  /**
+   * Finds the datasets which match the query and the themes in {@code request}, using {@link
+   * SearchIndex} and {@link FacetIndex} rather than the store.
+   *
+   * @param catalog Catalog whose datasets are listed.
+   * @param request Request containing the query and the themes.
+   * @return All matching datasets, best match first, or null if the request contains neither a
+   *         query nor themes.
+   */
+  private List<URI> findMatches( URI catalog, HttpServletRequest request ) {
+    String[] themes = request.getParameterValues( THEME_PARAMETER );
+    Set<URI> within = themes == null || themes.length == 0 ? null :
+        FacetIndex.forDatasets().filter( catalog, FacetIndex.Facet.THEME, Arrays.asList( themes ) );
+    String query = getQueryParameter( request );
+    if ( query != null )
+      return SearchIndex.forDatasets().search( catalog, query, request.getParameter( LANGUAGE_PARAMETER ), within, 0, 0 ).getDatasets();
+    if ( within == null )
+      return null;
+    List<URI> matches = new ArrayList<URI>( within );
+    Collections.sort( matches, new Comparator<URI>() {
+      @Override
+      public int compare( URI a, URI b ) {
+        return a.stringValue().compareTo( b.stringValue() );
+      }
+    } );
+    return matches;
+  }
+
+  /**
+   * Fetches the page of {@code matches} which is requested in {@code request}, in the order of
+   * {@code matches}.  The number of matching datasets and the link to the next page are added to
+   * {@code headers}.
+   *
+   * @param matches All matching datasets, in the order in which they are listed.
+   * @param request Request containing the paging parameters.
+   * @param headers Headers of the response.
+   * @return DatasetPage with the statements describing the datasets on the page.
+   */
+  private DatasetPage matchPage( List<URI> matches, HttpServletRequest request, HttpHeaders headers ) throws UnsupportedEncodingException, RDFHandlerException, BadRequestException {
     int pageSize = getPageSizeParameter( request );
     int pageNumber = getPageNumberParameter( request );
-    int limit = pageSize;
-    int offset = pageSize * pageNumber;
+    int from = ( int ) Math.min( ( long ) pageSize * pageNumber, matches.size() );
+    int to = pageSize == 0 ? matches.size() : Math.min( from + pageSize, matches.size() );
+    headers.add( TOTAL_HEADER, String.valueOf( matches.size() ) );
+    if ( to < matches.size() )
+      headers.add( "Link", "<" + nextPageUrl( request, "page", String.valueOf( pageNumber + 1 ) ) + ">; rel=\"next\"" );
+
+    DatasetPage page = new DatasetPage();
+    List<URI> datasets = matches.subList( from, to );
+    for ( URI dataset : datasets )
+      page.datasets.append( "<" ).append( dataset.stringValue() ).append( ">" );
+    Model description = new LinkedHashModel();
+    fetchDatasets( page, new StatementCollector( description ) );
+    page.statements = new LinkedHashModel();
+    for ( URI dataset : datasets ) {
+      for ( Statement statement : description.filter( dataset, null, null ) ) {
+        page.statements.add( statement );
+        if ( statement.getObject() instanceof Resource )
+          page.statements.addAll( description.filter( ( Resource ) statement.getObject(), null, null ) );
+      }
+    }
+    return page;
+  }
 
-    String datasetList = buildDatasetList(catalog, limit, offset);
+  /**
+   * Returns the number of values per facet which is requested through the {@value
+   * #FACET_LIMIT_PARAMETER} parameter, capped at {@value #MAX_FACET_LIMIT}.
+   *
+   * @return Supplied limit, or {@value #MAX_FACET_LIMIT} if none or a larger one was supplied.
+   * @throws BadRequestException Thrown if the supplied limit is not a positive integer.
+   */
+  private static int getFacetLimit( HttpServletRequest request ) throws BadRequestException {
+    String limit = request.getParameter( FACET_LIMIT_PARAMETER );
+    if ( limit == null || limit.isEmpty() )
+      return MAX_FACET_LIMIT;
+    try {
+      int value = Integer.parseInt( limit );
+      if ( value > 0 )
+        return Math.min( value, MAX_FACET_LIMIT );
+    } catch ( NumberFormatException e ) {
+      // reported below
+    }
+    throw new BadRequestException( FACET_LIMIT_PARAMETER + " must be a positive integer, not " + limit );
+  }
 
-    if (datasetList.isEmpty())
-      return new LinkedHashModel();
+  /**
+   * Adds the facet counts of the listed datasets to {@code headers}.
+   *
+   * @param catalog Catalog whose datasets are listed.
+   * @param matches Datasets which match the request, or null if all datasets of {@code catalog}
+   *                are listed.
+   * @param limit   Maximum number of values per facet, positive.
+   */
+  private void addFacetHeader( URI catalog, List<URI> matches, int limit, HttpHeaders headers ) throws IOException {
+    Map<String, Map<String, Integer>> counts = FacetIndex.forDatasets().counts( catalog, matches, limit );
+    headers.add( FACETS_HEADER, headerMapper.writeValueAsString( counts ) );
+  }
 
-    return Db.construct(
+  /**
+   * Fetches the information we want to list about the datasets on {@code page}.
+   *
+   * @param page    Page of datasets which should be described.
+   * @param handler RDFHandler which receives the information we want to render out.
+   */
+  private void fetchDatasets( DatasetPage page, RDFHandler handler ) throws RDFHandlerException {
+    if ( page.statements != null || page.datasets.length() == 0 ) {
+      handler.startRDF();
+      if ( page.statements != null )
+        for ( Statement statement : page.statements )
+          handler.handleStatement( statement );
+      handler.endRDF();
+      return;
+    }
+
+    Db.streamConstruct( handler,
         " @PREFIX " +
             "CONSTRUCT { " +
             " ?dataset a dcat:Dataset. " +
@@ -136,47 +404,283 @@ public class ListController extends DatasetController {
             "WHERE {" +
             " VALUES ?dataset {$datasets}" +
             " GRAPH ?dataset { " +
-            "   ?dataset dct:title ?title. " +
-            "   OPTIONAL {?dataset dct:description ?desc.} " +
-            "   OPTIONAL {" +
-            "     ?dataset dcat:theme ?theme. " +
-            "     ?theme skos:prefLabel ?themeLabel" +
-            "   } " +
+            DESCRIPTION_PATTERN +
             " }" +
             "}",
-        "catalog", catalog,
-        "datasets", datasetList
+        "datasets", page.datasets.toString()
     );
   }
 
   /**
-   * Builds a value list of datasets based on the page requested
-   * @param catalog
-   * @param limit
-   * @param offset
-   * @return
+   * Fetches the datasets of the page which is requested in {@code request}.
+   * <p/>
+   * If the store evaluates sub-selects, the page and the description of its datasets are fetched
+   * with a single query.  Otherwise the URIs of the datasets are fetched first and described by
+   * a second query when the response is written.
+   *
+   * @param catalog catalogURI for which we want to list the DataSets.
+   * @param request Request for which the dataset should be fetched (used for parametrization)
+   * @return DatasetPage with the datasets and the position of the next page.
+   * @throws BadRequestException Thrown if the request contains an invalid continuation token.
+   */
+  private DatasetPage fetchPage( URI catalog, HttpServletRequest request ) throws BadRequestException {
+    int pageSize = getPageSizeParameter( request );
+    ContinuationToken after = getAfterParameter( request );
+    int pageNumber = getPageNumberParameter( request );
+    if ( after != null || pageNumber == 0 )
+      return fetchPage( keysetSelection( pageSize, after ), keysetArguments( catalog, pageSize, after ), pageSize, after );
+
+    DatasetPage page = fetchPage( offsetSelection( pageSize ), offsetArguments( catalog, pageSize, pageNumber ), pageSize, null );
+    // the token counts the ties of the earlier pages, which an offset page doesn't see
+    if ( page.next != null )
+      page.nextPageNumber = pageNumber + 1;
+    page.next = null;
+    return page;
+  }
+
+  /**
+   * Fetches the page which is selected by {@code selection}, described if the store evaluates
+   * sub-selects.
+   */
+  private DatasetPage fetchPage( String selection, Object[] arguments, int limit, ContinuationToken after ) {
+    if ( Db.supportsSubSelects() )
+      return fetchDescribedPage( selection, arguments, limit, after );
+    else
+      return buildDatasetList( selection, arguments, limit, after );
+  }
+
+  /** Pattern which describes ?dataset in its own graph, shared by both list strategies. */
+  private static final String DESCRIPTION_PATTERN =
+      "   ?dataset dct:title ?title. " +
+      "   OPTIONAL {?dataset dct:description ?desc.} " +
+      "   OPTIONAL {" +
+      "     ?dataset dcat:theme ?theme. " +
+      "     ?theme skos:prefLabel ?themeLabel" +
+      "   } ";
+
+  /** Pattern which binds the datasets of $catalog and the dct:modified of their records. */
+  private static final String RECORD_PATTERN =
+      " GRAPH $catalog {" +
+      "   $catalog dcat:record ?record. " +
+      "   ?record foaf:primaryTopic ?dataset; " +
+      "           dct:modified ?modified. " +
+      " }";
+
+  /**
+   * Builds the query which selects the datasets on a page of the catalog which starts at a
+   * continuation token, ordered by the dct:modified timestamps of their CatalogRecords and by
+   * their URI.
+   * <p/>
+   * The page is selected by a range on ?modified and ordered by the terms themselves, so the store
+   * can serve it from its index on the timestamps instead of reading and sorting every record of
+   * the catalog.  SPARQL can't compare URIs with {@code >}, so the filter also returns the datasets
+   * with the timestamp of the token which were listed before, and {@link PageCollector} skips
+   * them; the token counts how many there are.  One dataset more than {@code limit} is requested
+   * to know whether a next page exists.
+   *
+   * @param limit Maximum amount of datasets on the page, 0 for all datasets.
+   * @param after Continuation token of the previous page, or null for the first page.
+   * @return SELECT query without prologue, binding ?dataset and ?modified.
+   */
+  private static String keysetSelection( int limit, ContinuationToken after ) {
+    return "SELECT ?dataset ?modified " +
+        "WHERE { " +
+        RECORD_PATTERN +
+        ( after == null ? "" : " FILTER( ?modified >= $afterModified )" ) +
+        "}" +
+        " ORDER BY ?modified ?dataset" +
+        ( limit == 0 ? "" : " LIMIT $limit" );
+  }
+
+  /**
+   * @return Arguments for the query built by {@link #keysetSelection(int, ContinuationToken)}.
+   */
+  private static Object[] keysetArguments( URI catalog, int limit, ContinuationToken after ) {
+    return new Object[]{
+        "catalog", catalog,
+        "afterModified", after == null ? null : after.getModified(),
+        "limit", limit + 1 + ( after == null ? 0 : after.getTies() )
+    };
+  }
+
+  /**
+   * Builds the query which selects the datasets on a page of the catalog which is requested with
+   * the legacy page parameter.  The store has to skip the datasets of all earlier pages.
+   *
+   * @param limit Maximum amount of datasets on the page, 0 for all datasets.
+   * @return SELECT query without prologue, binding ?dataset and ?modified.
+   */
+  private static String offsetSelection( int limit ) {
+    return "SELECT ?dataset ?modified " +
+        "WHERE { " +
+        RECORD_PATTERN +
+        "}" +
+        " ORDER BY ?modified ?dataset" +
+        ( limit == 0 ? "" : " LIMIT $limit" ) +
+        " OFFSET $offset";
+  }
+
+  /**
+   * @return Arguments for the query built by {@link #offsetSelection(int)}.
+   */
+  private static Object[] offsetArguments( URI catalog, int limit, int pageNumber ) {
+    return new Object[]{
+        "catalog", catalog,
+        "limit", limit + 1,
+        "offset", ( long ) limit * pageNumber
+    };
+  }
+
+  /**
+   * Fetches a single page of the catalog together with the description of its datasets, in one
+   * query.  The page is selected by a sub-select, see {@link #keysetSelection(int,
+   * ContinuationToken)} and {@link #offsetSelection(int)}.
+   *
+   * @return DatasetPage with the statements describing the datasets and the continuation token of
+   *         the next page.
    */
-  private String buildDatasetList(URI catalog, int limit, int offset) {
-    QueryResult r = Db.query(
+  private DatasetPage fetchDescribedPage( String selection, Object[] arguments, int limit, ContinuationToken after ) {
+    final DatasetPage page = new DatasetPage();
+    page.statements = new LinkedHashModel();
+    Db.streamQuery( new PageCollector( page, limit, after ) {
+      @Override
+      protected void describe( URI dataset, BindingSet row ) {
+        if ( !row.hasBinding( "title" ) )
+          return;
+        page.statements.add( dataset, RDF.TYPE, DCAT_DATASET );
+        page.statements.add( dataset, DCTERMS.TITLE, row.getValue( "title" ) );
+        if ( row.hasBinding( "desc" ) )
+          page.statements.add( dataset, DCTERMS.DESCRIPTION, row.getValue( "desc" ) );
+        if ( row.hasBinding( "theme" ) && row.hasBinding( "themeLabel" ) ) {
+          Resource theme = ( Resource ) row.getValue( "theme" );
+          page.statements.add( dataset, DCAT_THEME, theme );
+          page.statements.add( theme, SKOS.PREF_LABEL, row.getValue( "themeLabel" ) );
+        }
+      }
+    },
         "@PREFIX " +
-            "SELECT DISTINCT ?dataset " +
+            "SELECT ?dataset ?modified ?title ?desc ?theme ?themeLabel " +
             "WHERE { " +
-            " GRAPH $catalog {" +
-            "   $catalog dcat:dataset ?dataset " +
-            " }" +
+            " { " + selection + " } " +
+            " OPTIONAL { GRAPH ?dataset { " +
+            DESCRIPTION_PATTERN +
+            " } }" +
             "}" +
-            (limit == 0 ? "" : " LIMIT $limit") +
-            (offset == 0 ? "" : " OFFSET $offset"),
-        "catalog", catalog,
-        "limit", limit,
-        "offset", offset
+            " ORDER BY ?modified ?dataset",
+        arguments
     );
-    StringBuilder builder = new StringBuilder();
-    for (Map<String,String> map: r) {
-      if (map.containsKey("dataset"))
-        builder.append("<" + map.get("dataset") + ">");
+    return page;
+  }
+
+  /**
+   * Builds a value list of the datasets on a single page of the catalog, for stores which can't
+   * evaluate the sub-select of {@link #fetchDescribedPage(String, Object[], int,
+   * ContinuationToken)}.
+   *
+   * @param selection Query which selects the page.
+   * @param arguments Arguments of {@code selection}.
+   * @param limit     Maximum amount of datasets on the page, 0 for all datasets.
+   * @param after     Continuation token of the previous page, or null for the first page.
+   * @return DatasetPage with the datasets and the continuation token of the next page.
+   */
+  private DatasetPage buildDatasetList( String selection, Object[] arguments, int limit, ContinuationToken after ) {
+    DatasetPage page = new DatasetPage();
+    Db.streamQuery( new PageCollector( page, limit, after ), "@PREFIX " + selection, arguments );
+    return page;
+  }
+
+  private static final URI DCAT_DATASET = Sparql.namespaced( "dcat", "Dataset" );
+  private static final URI DCAT_THEME = Sparql.namespaced( "dcat", "theme" );
+
+  /**
+   * Datasets on a single page of the list.
+   */
+  private static class DatasetPage {
+    /** Value list containing the URIs of the datasets on the page. */
+    private final StringBuilder datasets = new StringBuilder();
+
+    /** Statements describing the datasets, null if they still have to be fetched. */
+    private Model statements;
+
+    /** Continuation token of the next page, null if this is the last page. */
+    private ContinuationToken next;
+
+    /** Legacy page number of the next page, 0 if there is none or if it has a token. */
+    private int nextPageNumber = 0;
+  }
+
+  /**
+   * Collects the datasets of a page from rows which are ordered by timestamp and dataset, stopping
+   * at the first dataset beyond the page, for which the continuation token of the next page is
+   * built.
+   * <p/>
+   * When the page continues after a token, the rows start with the datasets which share the
+   * timestamp of the token and were listed on earlier pages.  Those are skipped: the count of the
+   * token of them, or up to the dataset of the token if fewer remain.
+   */
+  private static class PageCollector implements RowHandler {
+    private final DatasetPage page;
+    private final int limit;
+    private final ContinuationToken after;
+    private boolean caughtUp;
+    private int count = 0;
+    private Literal lastModified;
+    private URI lastDataset;
+    private boolean lastListed;
+    private int ties = 0;
+
+    PageCollector( DatasetPage page, int limit, ContinuationToken after ) {
+      this.page = page;
+      this.limit = limit;
+      this.after = after;
+      this.caughtUp = after == null;
+    }
+
+    @Override
+    public boolean handleRow( BindingSet row ) {
+      URI dataset = ( URI ) row.getValue( "dataset" );
+      if ( !dataset.equals( lastDataset ) ) {
+        Literal modified = ( Literal ) row.getValue( "modified" );
+        if ( isListed( dataset, modified ) ) {
+          ties++;
+          lastListed = false;
+        } else {
+          if ( limit != 0 && count == limit ) {
+            page.next = new ContinuationToken( lastModified, lastDataset, ties );
+            return false;
+          }
+          ties = modified.equals( lastModified ) ? ties + 1 : 1;
+          page.datasets.append( "<" ).append( dataset.stringValue() ).append( ">" );
+          count++;
+          lastListed = true;
+        }
+        lastModified = modified;
+        lastDataset = dataset;
+      }
+      if ( lastListed )
+        describe( dataset, row );
+      return true;
+    }
+
+    /**
+     * @return true iff {@code dataset} was listed on an earlier page.
+     */
+    private boolean isListed( URI dataset, Literal modified ) {
+      if ( caughtUp )
+        return false;
+      if ( !modified.equals( after.getModified() ) ) {
+        caughtUp = true;
+        return false;
+      }
+      if ( dataset.equals( after.getResource() ) || ties + 1 == after.getTies() )
+        caughtUp = true;
+      return true;
+    }
 
+    /**
+     * Handles the description of {@code dataset} in {@code row}, if the query contains one.
+     */
+    protected void describe( URI dataset, BindingSet row ) {
     }
-    return builder.toString();
   }
 }
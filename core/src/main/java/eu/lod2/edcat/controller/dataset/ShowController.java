@@ -1,10 +1,9 @@
 package eu.lod2.edcat.controller.dataset;
 
+import eu.lod2.edcat.cache.ResponseCache;
 import eu.lod2.edcat.format.DatasetFormatter;
-import eu.lod2.edcat.format.JsonLDFormatter;
+import eu.lod2.edcat.format.FormatterRegistry;
 import eu.lod2.edcat.format.ResponseFormatter;
-import eu.lod2.edcat.format.TurtleFormatter;
-import eu.lod2.edcat.format.XMLRDFFormatter;
 import eu.lod2.edcat.model.Catalog;
 import eu.lod2.edcat.utils.DcatURI;
 import eu.lod2.edcat.utils.JsonLdContext;
@@ -14,8 +13,10 @@ import eu.lod2.hooks.handlers.dcat.dataset.PostReadHandler;
 import eu.lod2.hooks.handlers.dcat.dataset.PreReadHandler;
 import eu.lod2.hooks.util.HookManager;
 import eu.lod2.query.Db;
+import org.openrdf.model.Literal;
 import org.openrdf.model.Model;
 import org.openrdf.model.URI;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -28,45 +29,84 @@ import javax.servlet.http.HttpServletRequest;
 @Controller
 public class ShowController extends DatasetController {
 
-  // GET /datasets/{datasetId}
-  @RequestMapping(value = OBJECT_ROUTE, method = RequestMethod.GET, produces = "application/json;charset=UTF-8")
-  public ResponseEntity<Object> show( HttpServletRequest request, @PathVariable String catalogId , @PathVariable String datasetId ) throws Throwable {
-    this.datasetId = datasetId;
-    ResponseFormatter formatter = new DatasetFormatter( new JsonLdContext( kind ) );
-    return show( request, formatter, catalogId );
-  }
-
-  // GET /datasets/{datasetId}
-  @RequestMapping(value = OBJECT_ROUTE, method = RequestMethod.GET, produces = "application/ld+json;charset=UTF-8")
-  public ResponseEntity<Object> showLD( HttpServletRequest request, @PathVariable String catalogId , @PathVariable String datasetId ) throws Throwable {
-    this.datasetId = datasetId;
-    ResponseFormatter formatter = new JsonLDFormatter();
-    return show( request, formatter, catalogId );
-  }
+  /** Formats in which a dataset is shown, the compacted JSON first. */
+  private static final FormatterRegistry formats = new FormatterRegistry( FormatterRegistry.rdf() )
+      .register( "json", "application/json;charset=UTF-8", new DatasetFormatter( JsonLdContext.forKind( kind ) ) );
 
   // GET /datasets/{datasetId}
-  @RequestMapping(value = OBJECT_ROUTE, method = RequestMethod.GET, produces = "application/rdf+xml;charset=UTF-8")
-  public ResponseEntity<Object> showRDF( HttpServletRequest request, @PathVariable String catalogId , @PathVariable String datasetId ) throws Throwable {
-    this.datasetId = datasetId;
-    ResponseFormatter formatter = new XMLRDFFormatter();
-    return show( request, formatter, catalogId );
-  }
-
-  @RequestMapping(value = OBJECT_ROUTE, method = RequestMethod.GET, produces = "text/turtle;charset=UTF-8")
-  public ResponseEntity<Object> showTurtle( HttpServletRequest request, @PathVariable String catalogId , @PathVariable String datasetId ) throws Throwable {
+  @RequestMapping( value = OBJECT_ROUTE, method = RequestMethod.GET )
+  public ResponseEntity<Object> show( HttpServletRequest request, @PathVariable String catalogId , @PathVariable String datasetId ) throws Throwable {
     this.datasetId = datasetId;
-    ResponseFormatter formatter = new TurtleFormatter();
-    return show( request, formatter, catalogId );
+    HttpHeaders headers = getHeaders();
+    FormatterRegistry.Format format = negotiate( request, formats, ResponseFormatter.class, headers );
+    return show( request, format.getFormatter(), catalogId, format.getName(), headers );
   }
 
-  private ResponseEntity<Object> show( HttpServletRequest request, ResponseFormatter formatter, String catalogId ) throws Throwable {
+  /**
+   * Renders the dataset in the format of {@code formatter}.
+   * <p/>
+   * The ETag and Last-Modified headers are derived from the dct:modified timestamp of the
+   * dataset's CatalogRecord.  A conditional request for a copy which is still valid is answered
+   * with 304 from that timestamp alone, without loading the dataset.
+   * <p/>
+   * Unless PostRead handlers need to see the statements and the response, the serialized body is
+   * kept in {@link ResponseCache#forDatasets()} with the same timestamp as its validator.  The
+   * cache is invalidated by {@link eu.lod2.edcat.cache.DatasetCacheInvalidator} when the dataset
+   * changes, the validator protects against a change which bypassed the hooks.
+   *
+   * @param request   Request for which we want the response.
+   * @param formatter Format in which the response will be sent.
+   * @param catalogId Id of the catalog containing the dataset.
+   * @param variant   Name of the format, distinguishes the entity tags of the representations.
+   * @param headers   Headers of the response, with the negotiated content type.
+   * @return Response which can be sent to the user.
+   * @throws Throwable Throws an exception if one of the hooks throws one.
+   */
+  private ResponseEntity<Object> show( HttpServletRequest request, ResponseFormatter formatter, String catalogId, String variant, HttpHeaders headers ) throws Throwable {
     Catalog catalog = new Catalog( catalogId );
     URI datasetUri = DcatURI.datasetURI(catalogId, datasetId);
     HookManager.callHook( PreReadHandler.class, "handlePreRead", new PreContext( catalog, request, datasetUri ) );
+    long modified = modifiedMillis( catalog.getRecordModified( datasetId ) );
+    if ( modified >= 0
+        && checkNotModified( request, headers, "W/\"" + Long.toHexString( modified ) + "-" + variant + "\"", modified ) )
+      return notModified( headers );
+    if ( modified >= 0 && !HookManager.hasHandlers( PostReadHandler.class ) )
+      return cachedShow( formatter, datasetUri, variant, String.valueOf( modified ), headers );
     Model statements = Db.getStatements( datasetUri );
     Object body = formatter.format( statements );
-    ResponseEntity<Object> response = new ResponseEntity<Object>( body, getHeaders(), HttpStatus.OK );
+    ResponseEntity<Object> response = new ResponseEntity<Object>( body, headers, HttpStatus.OK );
     HookManager.callHook( PostReadHandler.class, "handlePostRead", new PostContext( catalog, request, response, datasetUri, statements ) );
-    return response;
+    return serialized( response );
+  }
+
+  /**
+   * Renders the dataset from {@link ResponseCache#forDatasets()}, formatting and caching it if
+   * no response for {@code validator} is cached.
+   *
+   * @param validator Validator of the current state of the dataset.
+   * @return Response with the serialized dataset as its body.
+   */
+  private ResponseEntity<Object> cachedShow( ResponseFormatter formatter, URI datasetUri, String variant, String validator, HttpHeaders headers ) throws Throwable {
+    ResponseCache cache = ResponseCache.forDatasets();
+    byte[] body = cache.get( datasetUri.stringValue(), variant, validator );
+    if ( body == null ) {
+      body = serialize( formatter.format( Db.getStatements( datasetUri ) ) );
+      cache.put( datasetUri.stringValue(), variant, validator, body );
+    }
+    return new ResponseEntity<Object>( body, headers, HttpStatus.OK );
+  }
+
+  /**
+   * @return {@code modified} in milliseconds since the epoch, or -1 if it is null or not a valid
+   *         timestamp.
+   */
+  private static long modifiedMillis( Literal modified ) {
+    if ( modified == null )
+      return -1;
+    try {
+      return modified.calendarValue().toGregorianCalendar().getTimeInMillis();
+    } catch ( IllegalArgumentException e ) {
+      return -1;
+    }
   }
 }
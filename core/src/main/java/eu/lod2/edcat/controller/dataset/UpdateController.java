@@ -13,6 +13,7 @@ import eu.lod2.hooks.handlers.dcat.dataset.PostUpdateHandler;
 import eu.lod2.hooks.handlers.dcat.dataset.PreUpdateHandler;
 import eu.lod2.hooks.util.HookManager;
 import eu.lod2.query.Db;
+import eu.lod2.query.UnitOfWork;
 import org.openrdf.model.Model;
 import org.openrdf.model.URI;
 import org.springframework.http.HttpStatus;
@@ -33,13 +34,20 @@ public class UpdateController extends DatasetController {
     Catalog catalog = new Catalog( catalogId );
     URI datasetUri = DcatURI.datasetURI(catalogId, getId());
     HookManager.callHook( PreUpdateHandler.class, "handlePreUpdate", new PreContext( catalog, request, datasetUri ) );
-    Model record = catalog.updateRecord(getId());
-    Model statements = buildModel( request, datasetUri );
-    statements.addAll( record );
-    HookManager.callHook( AtUpdateHandler.class, "handleAtUpdate", new AtContext( catalog, request, statements, datasetUri ) );
-    Db.clearGraph( datasetUri );
-    Db.add( statements, datasetUri );
-    ResponseFormatter formatter = new DatasetFormatter( new JsonLdContext( kind ) );
+    Model statements;
+    UnitOfWork work = Db.beginUnitOfWork();
+    try {
+      Model record = catalog.updateRecord(getId());
+      statements = buildModel( request, datasetUri );
+      statements.addAll( record );
+      HookManager.callHook( AtUpdateHandler.class, "handleAtUpdate", new AtContext( catalog, request, statements, datasetUri ) );
+      Db.clearGraph( datasetUri );
+      Db.add( statements, datasetUri );
+      work.commit();
+    } finally {
+      work.close();
+    }
+    ResponseFormatter formatter = new DatasetFormatter( JsonLdContext.forKind( kind ) );
     Object compactedJsonLD = formatter.format( statements );
     ResponseEntity<Object> response = new ResponseEntity<Object>( compactedJsonLD, getHeaders(), HttpStatus.OK );
     HookManager.callHook( PostUpdateHandler.class, "handlePostUpdate", new PostContext( catalog, request, response, datasetUri, statements ) );
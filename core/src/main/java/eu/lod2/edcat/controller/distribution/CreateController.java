@@ -2,6 +2,7 @@ package eu.lod2.edcat.controller.distribution;
 
 import eu.lod2.edcat.format.CompactedObjectFormatter;
 import eu.lod2.edcat.format.ResponseFormatter;
+import eu.lod2.edcat.model.Catalog;
 import eu.lod2.edcat.utils.DcatURI;
 import eu.lod2.edcat.utils.JsonLdContext;
 import eu.lod2.hooks.contexts.distribution.AtContext;
@@ -13,6 +14,7 @@ import eu.lod2.hooks.handlers.dcat.distribution.PreCreateHandler;
 import eu.lod2.hooks.util.HookManager;
 import eu.lod2.query.Db;
 import eu.lod2.query.Sparql;
+import eu.lod2.query.UnitOfWork;
 import org.openrdf.model.Model;
 import org.openrdf.model.URI;
 import org.springframework.http.HttpHeaders;
@@ -38,9 +40,17 @@ public class CreateController extends DistributionController {
     HookManager.callHook(PreCreateHandler.class, "handlePreCreate", new PreContext(request,datasetUri,distributionUri));
     Model statements = buildModel( request, distributionUri );
     statements.add(datasetUri, Sparql.namespaced("dcat","distribution"),distributionUri);
-    HookManager.callHook(AtCreateHandler.class, "handleAtCreate", new AtContext(request, datasetUri, distributionUri, statements));
-    Db.add(statements, datasetUri);
-    ResponseFormatter formatter = new CompactedObjectFormatter( new JsonLdContext( kind ) );
+    UnitOfWork work = Db.beginUnitOfWork();
+    try {
+      HookManager.callHook(AtCreateHandler.class, "handleAtCreate", new AtContext(request, datasetUri, distributionUri, statements));
+      Db.add(statements, datasetUri);
+      // the dataset changed, its record's timestamp validates conditional requests for it
+      new Catalog(catalogId).updateRecord(datasetId);
+      work.commit();
+    } finally {
+      work.close();
+    }
+    ResponseFormatter formatter = new CompactedObjectFormatter( JsonLdContext.forKind( kind ) );
     statements.remove(datasetUri,Sparql.namespaced("dcat","distribution"),distributionUri);
     Object compactedJsonLD = formatter.format( statements );
     ResponseEntity<Object> response = new ResponseEntity<Object>( compactedJsonLD, new HttpHeaders(), HttpStatus.OK );
@@ -16,7 +16,7 @@ public class DistributionController  extends BaseController {
   static JsonLdContext.Kind kind = JsonLdContext.Kind.Dataset;
 
   /** JsonLdContext on which the controllers operate. */
-  JsonLdContext jsonLdContext = new JsonLdContext( kind );
+  JsonLdContext jsonLdContext = JsonLdContext.forKind( kind );
 
   // --- ROUTING
 
@@ -38,7 +38,7 @@ public class DistributionController  extends BaseController {
   protected Model buildModel( HttpServletRequest request, URI distribution ) throws Exception {
     InputStream in = request.getInputStream();
     Model statements = DcatJsonParser.jsonLDToStatements(
-        in, new JsonLdContext(kind),
+        in, JsonLdContext.forKind( kind ),
         distribution, Sparql.namespaced("dcat", "Distribution"));
     BlankNodeNuker.nuke(statements, kind);
     in.close();
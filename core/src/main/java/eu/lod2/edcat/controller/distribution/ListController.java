@@ -2,6 +2,8 @@ package eu.lod2.edcat.controller.distribution;
 
 import eu.lod2.edcat.format.*;
 import eu.lod2.edcat.utils.DcatURI;
+import eu.lod2.edcat.utils.JsonLdContext;
+import eu.lod2.edcat.utils.RequestLimiter;
 import eu.lod2.hooks.contexts.distribution.PostListContext;
 import eu.lod2.hooks.contexts.distribution.PreListContext;
 import eu.lod2.hooks.handlers.dcat.distribution.PostListHandler;
@@ -10,6 +12,9 @@ import eu.lod2.hooks.util.HookManager;
 import eu.lod2.query.Db;
 import org.openrdf.model.Model;
 import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.helpers.StatementCollector;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -19,6 +24,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 /**
  * Lists all distributions in the dataset.
@@ -26,55 +32,63 @@ import javax.servlet.http.HttpServletRequest;
 @Controller("DistributionListController")
 public class ListController extends DistributionController {
 
-  @RequestMapping(value = LIST_ROUTE, method = RequestMethod.GET, produces = "application/json;charset=UTF-8")
-  public ResponseEntity<Object> listJSON(HttpServletRequest request, @PathVariable String catalogId, @PathVariable String datasetId) throws Throwable {
-    return list(request,catalogId, datasetId, new CompactedListFormatter(jsonLdContext));
-  }
-
-  @RequestMapping(value = LIST_ROUTE, method = RequestMethod.GET, produces = "application/rdf+xml;charset=UTF-8")
-  public ResponseEntity<Object> listXML(HttpServletRequest request, @PathVariable String catalogId, @PathVariable String datasetId) throws Throwable {
-    return list(request,catalogId, datasetId, new XMLRDFFormatter());
-  }
-
-  @RequestMapping(value = LIST_ROUTE, method = RequestMethod.GET, produces = "text/turtle;charset=UTF-8")
-  public ResponseEntity<Object> listTurtle(HttpServletRequest request, @PathVariable String catalogId, @PathVariable String datasetId) throws Throwable {
-    return list(request,catalogId, datasetId, new TurtleFormatter());
-  }
+  /** Formats in which the distributions are listed, the compacted JSON first. */
+  private static final FormatterRegistry formats = new FormatterRegistry(FormatterRegistry.rdf())
+      .register("json", "application/json;charset=UTF-8", new CompactedListFormatter(JsonLdContext.forKind(kind)));
 
-  @RequestMapping(value = LIST_ROUTE, method = RequestMethod.GET, produces = "application/ld+json;charset=UTF-8")
-  public ResponseEntity<Object> listJSONLD(HttpServletRequest request, @PathVariable("catalogId") String catalogId, @PathVariable String datasetId) throws Throwable {
-    return list(request,catalogId, datasetId, new JsonLDFormatter());
+  @RequestMapping(value = LIST_ROUTE, method = RequestMethod.GET)
+  public ResponseEntity<Object> list(HttpServletRequest request, HttpServletResponse response, @PathVariable String catalogId, @PathVariable String datasetId) throws Throwable {
+    HttpHeaders headers = new HttpHeaders();
+    FormatterRegistry.Format format = negotiate(request, formats, ResponseFormatter.class, headers);
+    return list(request, response, catalogId, datasetId, format.getFormatter(), headers);
   }
 
   /**
    * Constructs a response for the specified response formatter and calls the necessary hooks.
+   * <p/>
+   * If the response can be streamed, the statements are written straight to {@code
+   * httpResponse} and null is returned.  The distributions are fetched under a permit of {@link
+   * RequestLimiter#forLists()}.
    *
-   * @param request   Request for which we want the response.
-   * @param catalogId UUID of the catalog
-   * @param datasetId UUID of the dataset
-   * @param formatter Format in which the response will be sent.
-   * @return Response which can be sent to the user.
+   * @param request      Request for which we want the response.
+   * @param httpResponse Servlet response to which a streamed response is written.
+   * @param catalogId    UUID of the catalog
+   * @param datasetId    UUID of the dataset
+   * @param formatter    Format in which the response will be sent.
+   * @param headers      Headers of the response, with the negotiated content type.
+   * @return Response which can be sent to the user, or null if it was streamed.
    * @throws Throwable Throws an exception if one of the hooks throws one.
    */
-  public ResponseEntity<Object> list(HttpServletRequest request, String catalogId, String datasetId, ResponseFormatter formatter) throws Throwable {
+  public ResponseEntity<Object> list(HttpServletRequest request, HttpServletResponse httpResponse, String catalogId, String datasetId, ResponseFormatter formatter, HttpHeaders headers) throws Throwable {
     HookManager.callHook(PreListHandler.class, "handlePreList", new PreListContext(request));
     URI datasetUri = DcatURI.datasetURI(catalogId, datasetId);
     verifyDatasetExists(datasetUri);
     URI catalogUri = DcatURI.catalogUri(catalogId);
-    Model model = getDistributions(catalogUri, datasetUri);
+    RequestLimiter limiter = RequestLimiter.forLists();
+    limiter.acquire();
+    Model model = new LinkedHashModel();
+    try {
+      if (canStream(formatter, PostListHandler.class)) {
+        getDistributions(catalogUri, datasetUri, openStream(httpResponse, headers, (StreamingFormatter) formatter));
+        return null;
+      }
+      getDistributions(catalogUri, datasetUri, new StatementCollector(model));
+    } finally {
+      limiter.release();
+    }
     Object body = formatter.format(model);
-    ResponseEntity<Object> response = new ResponseEntity<Object>(body, new HttpHeaders(), HttpStatus.OK);
+    ResponseEntity<Object> response = new ResponseEntity<Object>(body, headers, HttpStatus.OK);
     HookManager.callHook(PostListHandler.class, "handlePostList", new PostListContext(request, response, model));
-    return response;
+    return serialized(response);
   }
 
   /**
-   * Retrieves triples which describe the catalogs managed by the E-DCAT.
+   * Retrieves triples which describe the distributions of the dataset.
    *
-   * @return Model describing the catalogs.
+   * @param handler RDFHandler which receives the statements describing the distributions.
    */
-  private Model getDistributions(URI catalogUri, URI datasetUri) {
-    return Db.construct("" +
+  private void getDistributions(URI catalogUri, URI datasetUri, RDFHandler handler) {
+    Db.streamConstruct(handler, "" +
         " @PREFIX" +
         " CONSTRUCT { ?s ?p ?o }" +
         " WHERE {" +
@@ -0,0 +1,135 @@
+package eu.lod2.edcat.controller.catalog;
+
+import eu.lod2.edcat.model.Catalog;
+import eu.lod2.edcat.utils.DcatURI;
+import eu.lod2.edcat.utils.NotFoundException;
+import eu.lod2.query.Db;
+import eu.lod2.query.UnitOfWork;
+import org.openrdf.model.Model;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.DCTERMS;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.servlet.ServletOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Tests the export of a whole catalog against the memory store.
+ */
+public class DumpControllerTest {
+
+  static final URI DATASET = new URIImpl( "http://www.w3.org/ns/dcat#dataset" );
+
+  /**
+   * Response which records the unit of work and the number of borrowed engines on each write of
+   * the body.
+   */
+  private static class RecordingResponse extends MockHttpServletResponse {
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    final List<UnitOfWork> units = new ArrayList<UnitOfWork>();
+    int maxBorrowed = 0;
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+      return new ServletOutputStream() {
+        @Override
+        public void write( int b ) throws IOException {
+          record();
+          body.write( b );
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException {
+          record();
+          body.write( b, off, len );
+        }
+      };
+    }
+
+    private void record() {
+      units.add( Db.currentUnitOfWork() );
+      maxBorrowed = Math.max( maxBorrowed, Db.singleton.getBorrowedCount() );
+    }
+
+    String getBody() throws IOException {
+      return body.toString( "UTF-8" );
+    }
+  }
+
+  private Catalog catalog;
+
+  @BeforeMethod
+  public void createCatalog() {
+    catalog = new Catalog();
+    Db.add( catalog.getStatements(), catalog.getUri() );
+  }
+
+  @Test
+  public void itShouldExportTheCatalogAndItsDatasets() throws Throwable {
+    URI first = addDataset( "first" );
+    URI second = addDataset( "second" );
+
+    RecordingResponse response = dump();
+
+    String quads = response.getBody();
+    Assert.assertEquals( response.getContentType(), "application/n-quads;charset=UTF-8" );
+    Assert.assertTrue( quads.contains( "<" + catalog.getUri() + "> <" + DATASET + "> <" + first + "> <" + catalog.getUri() + "> ." ), quads );
+    Assert.assertTrue( quads.contains( "<" + first + "> <" + DCTERMS.TITLE + "> \"first\" <" + first + "> ." ), quads );
+    Assert.assertTrue( quads.contains( "<" + second + "> <" + DCTERMS.TITLE + "> \"second\" <" + second + "> ." ), quads );
+  }
+
+  @Test
+  public void itShouldReadTheWholeDumpOnOneEngine() throws Throwable {
+    addDataset( "first" );
+    addDataset( "second" );
+
+    RecordingResponse response = dump();
+
+    Assert.assertFalse( response.units.isEmpty() );
+    Assert.assertNotNull( response.units.get( 0 ) );
+    for ( UnitOfWork work : response.units )
+      Assert.assertSame( work, response.units.get( 0 ), "the dump should run in a single unit of work" );
+    Assert.assertEquals( response.maxBorrowed, 1 );
+    Assert.assertNull( Db.currentUnitOfWork() );
+    Assert.assertEquals( Db.singleton.getBorrowedCount(), 0 );
+  }
+
+  @Test( expectedExceptions = NotFoundException.class )
+  public void itShouldRejectAnUnknownCatalog() throws Throwable {
+    MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/catalogs/unknown/dump" );
+    new DumpController().dump( request, new RecordingResponse(), UUID.randomUUID().toString() );
+  }
+
+  /**
+   * Adds a dataset with {@code title} to the catalog and returns its URI.
+   */
+  private URI addDataset( String title ) {
+    URI dataset = DcatURI.datasetURI( catalog.getId(), UUID.randomUUID().toString() );
+    Model link = new LinkedHashModel();
+    link.add( catalog.getUri(), DATASET, dataset );
+    Db.add( link, catalog.getUri() );
+    Model description = new LinkedHashModel();
+    description.add( dataset, DCTERMS.TITLE, new LiteralImpl( title ) );
+    Db.add( description, dataset );
+    return dataset;
+  }
+
+  private RecordingResponse dump() throws Throwable {
+    MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/catalogs/" + catalog.getId() + "/dump" );
+    request.addHeader( "Accept", "application/n-quads" );
+    RecordingResponse response = new RecordingResponse();
+    new DumpController().dump( request, response, catalog.getId() );
+    return response;
+  }
+}
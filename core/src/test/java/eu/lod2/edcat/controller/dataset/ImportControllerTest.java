@@ -0,0 +1,151 @@
+package eu.lod2.edcat.controller.dataset;
+
+import eu.lod2.edcat.model.Catalog;
+import eu.lod2.edcat.search.SearchIndex;
+import eu.lod2.edcat.utils.DcatURI;
+import eu.lod2.edcat.utils.RequestSnapshot;
+import eu.lod2.hooks.handlers.dcat.dataset.PostCreateHandler;
+import eu.lod2.hooks.util.HookManager;
+import eu.lod2.query.Db;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openrdf.model.URI;
+import org.openrdf.model.vocabulary.DCTERMS;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the bulk import of datasets against the memory store.
+ */
+public class ImportControllerTest {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private Catalog catalog;
+
+  @BeforeMethod
+  public void createCatalog() {
+    catalog = new Catalog();
+    Db.add( catalog.getStatements(), catalog.getUri() );
+    RejectingAtCreateHandler.calls.clear();
+  }
+
+  @Test
+  public void itShouldOnlyFailTheRejectedDatasetOfABatch() throws Throwable {
+    List<Map<String, Object>> report = importDatasets(
+        "{\"title\": \"first\"}\n" +
+        "{\"title\": \"" + RejectingAtCreateHandler.REJECTED_TITLE + "\"}\n" +
+        "{\"title\": \"second\"}\n" );
+
+    Assert.assertEquals( report.size(), 4, report.toString() );
+    Map<String, Object> first = item( report, 0 );
+    Map<String, Object> rejected = item( report, 1 );
+    Map<String, Object> second = item( report, 2 );
+    Assert.assertEquals( first.get( "status" ), "created" );
+    Assert.assertEquals( rejected.get( "status" ), "failed" );
+    Assert.assertTrue( ( ( String ) rejected.get( "error" ) ).contains( RejectingAtCreateHandler.REJECTED_TITLE ) );
+    Assert.assertEquals( second.get( "status" ), "created" );
+    Assert.assertEquals( summary( report ).get( "read" ), 3 );
+    Assert.assertEquals( summary( report ).get( "created" ), 2 );
+    Assert.assertEquals( summary( report ).get( "failed" ), 1 );
+
+    URI firstUri = datasetUri( first );
+    URI secondUri = datasetUri( second );
+    Assert.assertTrue( Db.hasStatement( firstUri, DCTERMS.TITLE, null, firstUri ) );
+    Assert.assertTrue( Db.hasStatement( secondUri, DCTERMS.TITLE, null, secondUri ) );
+    Assert.assertTrue( Db.hasStatement( firstUri, RejectingAtCreateHandler.MARKED, null, RejectingAtCreateHandler.MARKS ) );
+    Assert.assertTrue( Db.hasStatement( secondUri, RejectingAtCreateHandler.MARKED, null, RejectingAtCreateHandler.MARKS ) );
+
+    // the write of the hook for the rejected dataset is rolled back with it
+    for ( RejectingAtCreateHandler.Call call : RejectingAtCreateHandler.calls ) {
+      URI dataset = call.context.getDatasetUri();
+      if ( !dataset.equals( firstUri ) && !dataset.equals( secondUri ) ) {
+        Assert.assertFalse( Db.hasStatement( dataset, RejectingAtCreateHandler.MARKED, null, RejectingAtCreateHandler.MARKS ) );
+        Assert.assertFalse( Db.hasStatement( dataset, DCTERMS.TITLE, null, dataset ) );
+      }
+    }
+  }
+
+  @Test
+  public void itShouldCallAtCreateOnTheRequestThreadInsideTheUnitOfWork() throws Throwable {
+    importDatasets( "[{\"title\": \"first\"}, {\"title\": \"second\"}]" );
+
+    Assert.assertEquals( RejectingAtCreateHandler.calls.size(), 2 );
+    for ( RejectingAtCreateHandler.Call call : RejectingAtCreateHandler.calls ) {
+      Assert.assertSame( call.thread, Thread.currentThread() );
+      Assert.assertTrue( call.inUnitOfWork );
+      Assert.assertTrue( call.context.getRequest() instanceof RequestSnapshot );
+      Assert.assertEquals( call.context.getRequest().getParameter( "source" ), "test" );
+    }
+  }
+
+  @Test
+  public void itShouldIndexImportedDatasetsWithoutPostCreateHooks() throws Throwable {
+    // loads the index from the store before the import
+    Assert.assertEquals( SearchIndex.forDatasets().search( catalog.getUri(), "aardvark", null, 0, 10 ).getTotal(), 0 );
+
+    List<Map<String, Object>> report = importDatasets( "{\"title\": \"aardvark\"}\n" );
+
+    Assert.assertFalse( HookManager.hasHandlers( PostCreateHandler.class ), "no built-in PostCreate handler should be registered" );
+    SearchIndex.Result result = SearchIndex.forDatasets().search( catalog.getUri(), "aardvark", null, 0, 10 );
+    Assert.assertEquals( result.getDatasets(), Arrays.asList( datasetUri( item( report, 0 ) ) ) );
+  }
+
+  @Test
+  public void itShouldReportUnreadableDatasets() throws Throwable {
+    List<Map<String, Object>> report = importDatasets(
+        "{\"title\": \"first\"}\n" +
+        "{\"title\": \"broken\"" );
+
+    Assert.assertEquals( item( report, 0 ).get( "status" ), "created" );
+    Assert.assertEquals( summary( report ).get( "read" ), 1 );
+    Assert.assertEquals( summary( report ).get( "created" ), 1 );
+    Assert.assertNotNull( summary( report ).get( "error" ) );
+  }
+
+  /**
+   * Imports {@code body} into the catalog and returns the lines of the report.
+   */
+  @SuppressWarnings( "unchecked" )
+  private List<Map<String, Object>> importDatasets( String body ) throws Throwable {
+    MockHttpServletRequest request = new MockHttpServletRequest( "POST", "/catalogs/" + catalog.getId() + "/datasets/import" );
+    request.setQueryString( "source=test" );
+    request.setContentType( "application/x-ndjson" );
+    request.setContent( body.getBytes( "UTF-8" ) );
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    new ImportController().importDatasets( request, response, catalog.getId() );
+
+    Assert.assertEquals( response.getContentType(), ImportController.REPORT_CONTENT_TYPE );
+    List<Map<String, Object>> lines = new ArrayList<Map<String, Object>>();
+    for ( String line : response.getContentAsString().split( "\n" ) )
+      if ( !line.trim().isEmpty() )
+        lines.add( mapper.readValue( line, Map.class ) );
+    return lines;
+  }
+
+  private static Map<String, Object> item( List<Map<String, Object>> report, int index ) {
+    for ( Map<String, Object> line : report )
+      if ( Integer.valueOf( index ).equals( line.get( "item" ) ) )
+        return line;
+    throw new AssertionError( "no report line for item " + index + " in " + report );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private static Map<String, Object> summary( List<Map<String, Object>> report ) {
+    return ( Map<String, Object> ) report.get( report.size() - 1 ).get( "summary" );
+  }
+
+  private URI datasetUri( Map<String, Object> line ) {
+    URI uri = DcatURI.datasetURI( catalog.getId(), ( String ) line.get( "id" ) );
+    Assert.assertEquals( uri.stringValue(), line.get( "uri" ) );
+    return uri;
+  }
+}
@@ -0,0 +1,229 @@
+package eu.lod2.edcat.controller.dataset;
+
+import eu.lod2.edcat.model.Catalog;
+import eu.lod2.edcat.search.DatasetIndexer;
+import eu.lod2.edcat.utils.BadRequestException;
+import eu.lod2.edcat.utils.DcatURI;
+import eu.lod2.query.Db;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.DCTERMS;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.Rio;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Tests the paging and the facet counts of the dataset list against the memory store.
+ */
+public class ListControllerTest {
+
+  static final URI DATASET = new URIImpl( "http://www.w3.org/ns/dcat#dataset" );
+  static final URI THEME = new URIImpl( "http://www.w3.org/ns/dcat#theme" );
+  static final URI RECORD = new URIImpl( "http://www.w3.org/ns/dcat#record" );
+  static final URI DCAT_DATASET = new URIImpl( "http://www.w3.org/ns/dcat#Dataset" );
+  static final URI PRIMARY_TOPIC = new URIImpl( "http://xmlns.com/foaf/0.1/primaryTopic" );
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private Catalog catalog;
+
+  /**
+   * Creates a catalog with more themes than the facet header may contain, one dataset per theme,
+   * and indexes the datasets as the create controller does.
+   */
+  @BeforeClass
+  public void createCatalog() {
+    catalog = new Catalog();
+    Db.add( catalog.getStatements(), catalog.getUri() );
+    for ( int i = 0; i < ListController.MAX_FACET_LIMIT + 5; i++ ) {
+      URI dataset = DcatURI.datasetURI( catalog.getId(), UUID.randomUUID().toString() );
+      Model link = new LinkedHashModel();
+      link.add( catalog.getUri(), DATASET, dataset );
+      Db.add( link, catalog.getUri() );
+      Model description = new LinkedHashModel();
+      description.add( dataset, THEME, new URIImpl( "http://example.com/themes/" + i ) );
+      Db.add( description, dataset );
+      DatasetIndexer.created( catalog.getUri(), dataset, description );
+    }
+  }
+
+  @Test
+  public void itShouldCapTheFacetLimit() throws Throwable {
+    Assert.assertEquals( themeCount( "1000" ), ListController.MAX_FACET_LIMIT );
+  }
+
+  @Test
+  public void itShouldDefaultTheFacetLimitToItsMaximum() throws Throwable {
+    Assert.assertEquals( themeCount( null ), ListController.MAX_FACET_LIMIT );
+  }
+
+  @Test
+  public void itShouldLowerTheFacetLimit() throws Throwable {
+    Assert.assertEquals( themeCount( "3" ), 3 );
+  }
+
+  @Test( expectedExceptions = BadRequestException.class )
+  public void itShouldRejectAFacetLimitOfZero() throws Throwable {
+    themeCount( "0" );
+  }
+
+  @Test( expectedExceptions = BadRequestException.class )
+  public void itShouldRejectAFacetLimitWhichIsNoNumber() throws Throwable {
+    themeCount( "all" );
+  }
+
+  @Test
+  public void itShouldListEachDatasetOnceWhenTimestampsAreShared() throws Throwable {
+    Catalog paged = new Catalog();
+    Db.add( paged.getStatements(), paged.getUri() );
+    List<URI> expected = new ArrayList<URI>();
+    expected.addAll( addDatasets( paged, "2014-03-01T12:00:00Z", 1 ) );
+    expected.addAll( addDatasets( paged, "2014-03-02T12:00:00Z", 5 ) );
+    expected.addAll( addDatasets( paged, "2014-03-03T12:00:00Z", 2 ) );
+
+    List<URI> listed = new ArrayList<URI>();
+    String after = null;
+    int pages = 0;
+    do {
+      MockHttpServletResponse response = listPage( paged, "after", after );
+      listed.addAll( datasets( response ) );
+      after = response.getHeader( ListController.CONTINUATION_HEADER );
+      pages++;
+    } while ( after != null && pages < 10 );
+
+    Assert.assertEquals( pages, 4 );
+    Assert.assertEquals( listed, expected );
+  }
+
+  @Test
+  public void itShouldLinkTheNextLegacyPage() throws Throwable {
+    Catalog paged = new Catalog();
+    Db.add( paged.getStatements(), paged.getUri() );
+    List<URI> expected = addDatasets( paged, "2014-03-01T12:00:00Z", 5 );
+
+    MockHttpServletResponse response = listPage( paged, "page", "1" );
+
+    Assert.assertEquals( datasets( response ), expected.subList( 2, 4 ) );
+    Assert.assertNull( response.getHeader( ListController.CONTINUATION_HEADER ) );
+    Assert.assertTrue( response.getHeader( "Link" ).contains( "page=2" ), response.getHeader( "Link" ) );
+  }
+
+  @Test( expectedExceptions = BadRequestException.class )
+  public void itShouldRejectANegativePageSize() throws Throwable {
+    MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/catalogs/" + catalog.getId() + "/datasets" );
+    request.addParameter( "pageSize", "-1" );
+    new ListController().list( request, new MockHttpServletResponse(), catalog.getId() );
+  }
+
+  @Test( expectedExceptions = BadRequestException.class )
+  public void itShouldRejectANegativePageNumber() throws Throwable {
+    MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/catalogs/" + catalog.getId() + "/datasets" );
+    request.addParameter( "page", "-1" );
+    new ListController().list( request, new MockHttpServletResponse(), catalog.getId() );
+  }
+
+  @Test( expectedExceptions = BadRequestException.class )
+  public void itShouldRejectANegativePageNumberWhenSearching() throws Throwable {
+    MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/catalogs/" + catalog.getId() + "/datasets" );
+    request.addParameter( ListController.QUERY_PARAMETER, "themes" );
+    request.addParameter( "page", "-1" );
+    new ListController().list( request, new MockHttpServletResponse(), catalog.getId() );
+  }
+
+  /**
+   * Adds {@code amount} datasets with a CatalogRecord modified at {@code modified} to {@code
+   * catalog}.
+   *
+   * @return The datasets in the order in which they are listed.
+   */
+  private static List<URI> addDatasets( Catalog catalog, String modified, int amount ) {
+    List<URI> datasets = new ArrayList<URI>();
+    for ( int i = 0; i < amount; i++ ) {
+      String id = UUID.randomUUID().toString();
+      URI dataset = DcatURI.datasetURI( catalog.getId(), id );
+      URI record = DcatURI.recordURI( catalog.getId(), id );
+      Model records = new LinkedHashModel();
+      records.add( catalog.getUri(), DATASET, dataset );
+      records.add( catalog.getUri(), RECORD, record );
+      records.add( record, PRIMARY_TOPIC, dataset );
+      records.add( record, DCTERMS.MODIFIED, new LiteralImpl( modified, XMLSchema.DATETIME ) );
+      Db.add( records, catalog.getUri() );
+      Model description = new LinkedHashModel();
+      description.add( dataset, DCTERMS.TITLE, new LiteralImpl( "Dataset " + id ) );
+      Db.add( description, dataset );
+      datasets.add( dataset );
+    }
+    Collections.sort( datasets, new Comparator<URI>() {
+      @Override
+      public int compare( URI a, URI b ) {
+        return a.stringValue().compareTo( b.stringValue() );
+      }
+    } );
+    return datasets;
+  }
+
+  /**
+   * Lists a page of two datasets of {@code catalog} as N-Triples.
+   *
+   * @param parameter Paging parameter, "after" or "page".
+   * @param value     Value of {@code parameter}, null to list the first page.
+   */
+  private static MockHttpServletResponse listPage( Catalog catalog, String parameter, String value ) throws Throwable {
+    MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/catalogs/" + catalog.getId() + "/datasets" );
+    request.addHeader( "Accept", "application/n-triples" );
+    request.addParameter( "pageSize", "2" );
+    if ( value != null )
+      request.addParameter( parameter, value );
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    Assert.assertNull( new ListController().list( request, response, catalog.getId() ) );
+    return response;
+  }
+
+  /**
+   * @return Datasets in the body of {@code response}, in the order in which they are written.
+   */
+  private static List<URI> datasets( MockHttpServletResponse response ) throws Exception {
+    Model statements = Rio.parse( new StringReader( response.getContentAsString() ), "", RDFFormat.NTRIPLES );
+    List<URI> datasets = new ArrayList<URI>();
+    for ( Statement statement : statements.filter( null, RDF.TYPE, DCAT_DATASET ) )
+      datasets.add( ( URI ) statement.getSubject() );
+    return datasets;
+  }
+
+  /**
+   * Lists the datasets with their facet counts and returns the number of themes in the header.
+   */
+  @SuppressWarnings( "unchecked" )
+  private int themeCount( String facetLimit ) throws Throwable {
+    MockHttpServletRequest request = new MockHttpServletRequest( "GET", "/catalogs/" + catalog.getId() + "/datasets" );
+    request.addHeader( "Accept", "application/json" );
+    request.addParameter( ListController.FACETS_PARAMETER, "true" );
+    if ( facetLimit != null )
+      request.addParameter( ListController.FACET_LIMIT_PARAMETER, facetLimit );
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    // the list is streamed, the headers are written to the servlet response
+    Assert.assertNull( new ListController().list( request, response, catalog.getId() ) );
+    String header = response.getHeader( ListController.FACETS_HEADER );
+    Map<String, Map<String, Integer>> counts = mapper.readValue( header, Map.class );
+    return counts.get( "theme" ).size();
+  }
+}
@@ -0,0 +1,66 @@
+package eu.lod2.edcat.controller.dataset;
+
+import eu.lod2.hooks.constraints.Priority;
+import eu.lod2.hooks.contexts.dataset.AtContext;
+import eu.lod2.hooks.handlers.dcat.ActionAbortException;
+import eu.lod2.hooks.handlers.dcat.dataset.AtCreateHandler;
+import eu.lod2.query.Db;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.DCTERMS;
+import org.springframework.http.HttpStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * AtCreate hook for the tests, which marks each dataset it sees in the store and aborts the
+ * creation of datasets titled {@value #REJECTED_TITLE}.
+ */
+public class RejectingAtCreateHandler implements AtCreateHandler {
+
+  /** Title of the datasets of which the creation is aborted. */
+  static final String REJECTED_TITLE = "rejected by the hook";
+
+  /** Graph in which the hook marks the datasets it has seen. */
+  static final URI MARKS = new URIImpl( "http://example.com/test/marks" );
+
+  /** Predicate with which the hook marks the datasets it has seen. */
+  static final URI MARKED = new URIImpl( "http://example.com/test/marked" );
+
+  /** Contexts with which the hook was called. */
+  static final List<Call> calls = new CopyOnWriteArrayList<Call>();
+
+  @Override
+  public void handleAtCreate( AtContext context ) throws ActionAbortException {
+    calls.add( new Call( context, Thread.currentThread(), Db.currentUnitOfWork() != null ) );
+    LinkedHashModel mark = new LinkedHashModel();
+    mark.add( context.getDatasetUri(), MARKED, new LiteralImpl( "true" ) );
+    Db.add( mark, MARKS );
+    for ( Value title : context.getStatements().filter( context.getDatasetUri(), DCTERMS.TITLE, null ).objects() )
+      if ( title.stringValue().equals( REJECTED_TITLE ) )
+        throw new ActionAbortException( HttpStatus.BAD_REQUEST, REJECTED_TITLE );
+  }
+
+  @Override
+  public Collection<Priority> getConstraints( String hook ) {
+    return null;
+  }
+
+  /** Call of the hook. */
+  static class Call {
+    final AtContext context;
+    final Thread thread;
+    final boolean inUnitOfWork;
+
+    Call( AtContext context, Thread thread, boolean inUnitOfWork ) {
+      this.context = context;
+      this.thread = thread;
+      this.inUnitOfWork = inUnitOfWork;
+    }
+  }
+}
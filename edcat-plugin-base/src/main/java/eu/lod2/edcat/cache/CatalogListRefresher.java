@@ -0,0 +1,51 @@
+package eu.lod2.edcat.cache;
+
+import eu.lod2.hooks.constraints.Priority;
+import eu.lod2.hooks.contexts.CatalogInstallationContext;
+import eu.lod2.hooks.contexts.catalog.PostContext;
+import eu.lod2.hooks.handlers.dcat.CatalogInstallationHandler;
+import eu.lod2.hooks.handlers.dcat.catalog.PostCreateHandler;
+import eu.lod2.hooks.handlers.dcat.catalog.PostUpdateHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+
+/**
+ * Rebuilds the {@link CatalogListView} when a catalog is installed, created or updated.
+ * <p/>
+ * The change has already been stored when these hooks run.  A failing rebuild is logged and
+ * doesn't fail the request, the view is then rebuilt when it is requested.
+ */
+public class CatalogListRefresher implements CatalogInstallationHandler, PostCreateHandler, PostUpdateHandler {
+
+  private static final Logger log = LoggerFactory.getLogger( CatalogListRefresher.class );
+
+  @Override
+  public void handleCatalogInstall( CatalogInstallationContext context ) {
+    refresh();
+  }
+
+  @Override
+  public void handlePostCreate( PostContext context ) {
+    refresh();
+  }
+
+  @Override
+  public void handlePostUpdate( PostContext context ) {
+    refresh();
+  }
+
+  @Override
+  public Collection<Priority> getConstraints( String hook ) {
+    return null;
+  }
+
+  private static void refresh() {
+    try {
+      CatalogListView.getInstance().refresh();
+    } catch ( RuntimeException e ) {
+      log.warn( "Could not rebuild the catalog list: {}", e.getMessage() );
+    }
+  }
+}
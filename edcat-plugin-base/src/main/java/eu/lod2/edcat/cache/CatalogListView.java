@@ -0,0 +1,157 @@
+package eu.lod2.edcat.cache;
+
+import eu.lod2.query.Db;
+import org.openrdf.model.Model;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.helpers.StatementCollector;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-process copy of the statements which describe the catalogs of the installation, with their
+ * serialized responses.
+ * <p/>
+ * The set of catalogs only changes when a catalog is installed, created or updated.  The view is
+ * built from the store the first time it is requested and is rebuilt by {@link
+ * CatalogListRefresher} after each of those changes, so listing the catalogs doesn't need a round
+ * trip to the store.  Readers keep using the previous {@link Snapshot} while a new one is built.
+ */
+public class CatalogListView {
+
+  /** View shared by all requests. */
+  private static final CatalogListView catalogs = new CatalogListView();
+
+  /** Serializes the rebuilds of the view, so the last rebuild sees the last change. */
+  private final Object refreshLock = new Object();
+
+  /** Current snapshot, null if it must be built before it is used. */
+  private volatile Snapshot snapshot;
+
+  /**
+   * @return CatalogListView shared by all requests.
+   */
+  public static CatalogListView getInstance() {
+    return catalogs;
+  }
+
+  /**
+   * Retrieves the current snapshot of the catalogs, building it if it doesn't exist yet.
+   *
+   * @return Snapshot describing the catalogs.
+   */
+  public Snapshot snapshot() {
+    Snapshot current = snapshot;
+    if ( current != null )
+      return current;
+    synchronized ( refreshLock ) {
+      if ( snapshot == null )
+        snapshot = build();
+      return snapshot;
+    }
+  }
+
+  /**
+   * Rebuilds the snapshot from the store.  Should be called after the catalogs have changed.
+   * <p/>
+   * Readers keep getting the previous snapshot until the new one is built.  If the snapshot can't
+   * be built, the view is emptied and the exception is passed on, the next request will try to
+   * build it again.
+   */
+  public void refresh() {
+    synchronized ( refreshLock ) {
+      Snapshot rebuilt;
+      try {
+        rebuilt = build();
+      } catch ( RuntimeException e ) {
+        snapshot = null;
+        throw e;
+      }
+      snapshot = rebuilt;
+    }
+  }
+
+  /**
+   * Drops the current snapshot, the next request will build a new one.
+   */
+  public void invalidate() {
+    synchronized ( refreshLock ) {
+      snapshot = null;
+    }
+  }
+
+  /**
+   * Retrieves the statements which describe the catalogs from the store.
+   *
+   * @param handler RDFHandler which receives the statements.
+   */
+  protected void fetchCatalogInfo( RDFHandler handler ) {
+    Db.streamConstruct( handler, "" +
+        " @PREFIX" +
+        " CONSTRUCT { ?s ?p ?o }" +
+        " WHERE {" +
+        "   GRAPH @CONFIG_GRAPH {" +
+        "     ?s a dcat:Catalog." +
+        "   }." +
+        "   GRAPH ?s {" +
+        "     ?s dct:title ?o." +
+        "     BIND( dct:title AS ?p )" +
+        "   }" +
+        " }" );
+  }
+
+
+  // --- SNAPSHOT
+
+  /**
+   * Immutable description of the catalogs at one point in time, with the responses which have been
+   * serialized from it.
+   */
+  public static class Snapshot {
+
+    /** Statements describing the catalogs. */
+    private final Model statements;
+
+    /** Serialized responses by media type. */
+    private final ConcurrentMap<String, byte[]> serialized = new ConcurrentHashMap<String, byte[]>( 4 );
+
+    Snapshot( Model statements ) {
+      this.statements = statements.unmodifiable();
+    }
+
+    /**
+     * @return Unmodifiable Model describing the catalogs.
+     */
+    public Model getStatements() {
+      return statements;
+    }
+
+    /**
+     * @param mediaType Media type of the response.
+     * @return Body which was serialized from this snapshot, or null if it wasn't serialized yet.
+     */
+    public byte[] getSerialized( String mediaType ) {
+      return serialized.get( mediaType );
+    }
+
+    /**
+     * Stores the serialization of {@link #getStatements()} in {@code mediaType}.
+     *
+     * @param mediaType Media type of the response.
+     * @param body      Serialized response, must not be altered afterwards.
+     */
+    public void putSerialized( String mediaType, byte[] body ) {
+      serialized.put( mediaType, body );
+    }
+  }
+
+
+  // --- IMPLEMENTATION
+
+  private Snapshot build() {
+    Model model = new LinkedHashModel();
+    fetchCatalogInfo( new StatementCollector( model ) );
+    return new Snapshot( model );
+  }
+}
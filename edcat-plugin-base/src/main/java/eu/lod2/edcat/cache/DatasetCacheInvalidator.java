@@ -0,0 +1,36 @@
+package eu.lod2.edcat.cache;
+
+import eu.lod2.hooks.constraints.Priority;
+import eu.lod2.hooks.contexts.dataset.PostContext;
+import eu.lod2.hooks.handlers.dcat.dataset.PostDestroyHandler;
+import eu.lod2.hooks.handlers.dcat.dataset.PostUpdateHandler;
+import eu.lod2.hooks.handlers.dcat.distribution.PostCreateHandler;
+
+import java.util.Collection;
+
+/**
+ * Drops the cached responses of a dataset from {@link ResponseCache#forDatasets()} when the
+ * dataset is updated or destroyed, or when a distribution is added to it.
+ */
+public class DatasetCacheInvalidator implements PostUpdateHandler, PostDestroyHandler, PostCreateHandler {
+
+  @Override
+  public void handlePostUpdate( PostContext context ) {
+    ResponseCache.forDatasets().invalidate( context.getDatasetUri().stringValue() );
+  }
+
+  @Override
+  public void handlePostDestroy( PostContext context ) {
+    ResponseCache.forDatasets().invalidate( context.getDatasetUri().stringValue() );
+  }
+
+  @Override
+  public void handlePostCreate( eu.lod2.hooks.contexts.distribution.PostContext context ) {
+    ResponseCache.forDatasets().invalidate( context.getDatasetUri().stringValue() );
+  }
+
+  @Override
+  public Collection<Priority> getConstraints( String hook ) {
+    return null;
+  }
+}
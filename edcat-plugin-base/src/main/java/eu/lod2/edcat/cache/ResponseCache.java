@@ -0,0 +1,269 @@
+package eu.lod2.edcat.cache;
+
+import eu.lod2.edcat.utils.SparqlEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Bounded cache of serialized responses, keyed by the resource they describe and their media type.
+ * <p/>
+ * The cache is bounded by the total size of the cached bodies and evicts the least recently used
+ * responses first.  Responses which are larger than a configurable part of the cache are not
+ * cached at all.  Each response carries a validator, e.g. the modified timestamp of the resource
+ * at the time the response was built: a cached response is only returned if the caller supplies
+ * the same validator, so an entry which missed an invalidation is never served.
+ * <p/>
+ * The cache for dataset responses is retrieved through {@link #forDatasets()}, it reads the
+ * following keys of sparql.properties:
+ * <ul>
+ * <li>{@code responseCache.datasets.maxBytes}: total size of the cached bodies, 0 disables the
+ * cache (default 33554432)</li>
+ * <li>{@code responseCache.datasets.maxEntryBytes}: size of the largest body which is cached
+ * (default 1048576)</li>
+ * </ul>
+ * The counters of the cache are exposed through JMX as {@code eu.lod2.edcat:type=ResponseCache,
+ * name=datasets}.
+ */
+public class ResponseCache implements ResponseCacheMXBean {
+
+  /** Default total size of the cached bodies. */
+  public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+  /** Default size of the largest body which is cached. */
+  public static final long DEFAULT_MAX_ENTRY_BYTES = 1024L * 1024;
+
+  private static final Logger log = LoggerFactory.getLogger( ResponseCache.class );
+
+  /** Cache for dataset responses, see {@link #forDatasets()}. */
+  private static ResponseCache datasets;
+
+  /** Total size of the cached bodies. */
+  private final long maxBytes;
+
+  /** Size of the largest body which is cached. */
+  private final long maxEntryBytes;
+
+  /** Cached responses by key, in access order. */
+  private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<String, CachedResponse>( 16, 0.75f, true );
+
+  /** Keys of the cached responses of each resource. */
+  private final Map<String, Set<String>> keysByResource = new HashMap<String, Set<String>>();
+
+  /** Total size of the bodies which are currently cached. */
+  private long weight = 0;
+
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+  private long invalidations = 0;
+
+  /**
+   * Constructs a new cache.
+   *
+   * @param maxBytes      Total size of the cached bodies, 0 disables the cache.
+   * @param maxEntryBytes Size of the largest body which is cached.
+   */
+  public ResponseCache( long maxBytes, long maxEntryBytes ) {
+    if ( maxBytes < 0 || maxEntryBytes < 0 )
+      throw new IllegalArgumentException( "The size of a response cache must not be negative" );
+    this.maxBytes = maxBytes;
+    this.maxEntryBytes = Math.min( maxEntryBytes, maxBytes );
+  }
+
+  /**
+   * Retrieves the cache for dataset responses, constructing it from sparql.properties and
+   * registering it with JMX the first time.
+   *
+   * @return ResponseCache shared by all requests.
+   */
+  public static synchronized ResponseCache forDatasets() {
+    if ( datasets == null ) {
+      Properties properties = SparqlEngine.loadConfiguration();
+      datasets = new ResponseCache(
+          longProperty( properties, "responseCache.datasets.maxBytes", DEFAULT_MAX_BYTES ),
+          longProperty( properties, "responseCache.datasets.maxEntryBytes", DEFAULT_MAX_ENTRY_BYTES ) );
+      register( datasets, "datasets" );
+    }
+    return datasets;
+  }
+
+  /**
+   * Retrieves the cached response for {@code resource} in {@code mediaType}.
+   *
+   * @param resource  URI of the resource which is described.
+   * @param mediaType Media type of the response.
+   * @param validator Validator of the current state of the resource.
+   * @return Cached body or null if no response with the same validator is cached.
+   */
+  public synchronized byte[] get( String resource, String mediaType, String validator ) {
+    CachedResponse response = entries.get( key( resource, mediaType ) );
+    if ( response == null || !response.validator.equals( validator ) ) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return response.body;
+  }
+
+  /**
+   * Caches {@code body} as the response for {@code resource} in {@code mediaType}, evicting the
+   * least recently used responses if the cache becomes too large.
+   *
+   * @param resource  URI of the resource which is described.
+   * @param mediaType Media type of the response.
+   * @param validator Validator of the state of the resource from which {@code body} was built.
+   * @param body      Serialized response, must not be altered afterwards.
+   */
+  public synchronized void put( String resource, String mediaType, String validator, byte[] body ) {
+    if ( maxBytes == 0 || body.length > maxEntryBytes )
+      return;
+    String key = key( resource, mediaType );
+    remove( key );
+    entries.put( key, new CachedResponse( resource, validator, body ) );
+    Set<String> keys = keysByResource.get( resource );
+    if ( keys == null ) {
+      keys = new HashSet<String>( 4 );
+      keysByResource.put( resource, keys );
+    }
+    keys.add( key );
+    weight += body.length;
+
+    Iterator<Map.Entry<String, CachedResponse>> eldest = entries.entrySet().iterator();
+    while ( weight > maxBytes && eldest.hasNext() ) {
+      Map.Entry<String, CachedResponse> entry = eldest.next();
+      eldest.remove();
+      forget( entry.getKey(), entry.getValue() );
+      evictions++;
+    }
+  }
+
+  /**
+   * Drops all cached responses for {@code resource}.
+   *
+   * @param resource URI of the resource which has changed.
+   */
+  public synchronized void invalidate( String resource ) {
+    Set<String> keys = keysByResource.remove( resource );
+    if ( keys == null )
+      return;
+    for ( String key : keys ) {
+      CachedResponse response = entries.remove( key );
+      if ( response != null )
+        weight -= response.body.length;
+    }
+    invalidations++;
+  }
+
+  @Override
+  public synchronized void clear() {
+    entries.clear();
+    keysByResource.clear();
+    weight = 0;
+  }
+
+
+  // --- METRICS
+
+  @Override
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  @Override
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  @Override
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  @Override
+  public synchronized long getInvalidations() {
+    return invalidations;
+  }
+
+  @Override
+  public synchronized int getEntries() {
+    return entries.size();
+  }
+
+  @Override
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  @Override
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+
+  // --- IMPLEMENTATION
+
+  /** Cached response, with the resource it describes and the validator it was built for. */
+  private static class CachedResponse {
+    final String resource;
+    final String validator;
+    final byte[] body;
+
+    CachedResponse( String resource, String validator, byte[] body ) {
+      this.resource = resource;
+      this.validator = validator;
+      this.body = body;
+    }
+  }
+
+  /**
+   * Removes the response with {@code key}, if it is cached.
+   */
+  private void remove( String key ) {
+    CachedResponse response = entries.remove( key );
+    if ( response != null )
+      forget( key, response );
+  }
+
+  /**
+   * Updates the weight and the resource index for a response which has left {@link #entries}.
+   */
+  private void forget( String key, CachedResponse response ) {
+    weight -= response.body.length;
+    Set<String> keys = keysByResource.get( response.resource );
+    if ( keys != null ) {
+      keys.remove( key );
+      if ( keys.isEmpty() )
+        keysByResource.remove( response.resource );
+    }
+  }
+
+  private static String key( String resource, String mediaType ) {
+    return mediaType + " " + resource;
+  }
+
+  private static long longProperty( Properties properties, String key, long defaultValue ) {
+    String value = properties.getProperty( key );
+    if ( value == null )
+      return defaultValue;
+    try {
+      return Long.parseLong( value.trim() );
+    } catch ( NumberFormatException e ) {
+      throw new IllegalArgumentException( key + " must be a number, got " + value, e );
+    }
+  }
+
+  /**
+   * Registers {@code cache} with the platform MBeanServer, failures are logged and ignored.
+   */
+  private static void register( ResponseCache cache, String name ) {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean( cache, new ObjectName( "eu.lod2.edcat:type=ResponseCache,name=" + name ) );
+    } catch ( Exception e ) {
+      log.warn( "Could not register the {} response cache with JMX: {}", name, e.getMessage() );
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package eu.lod2.edcat.cache;
+
+/**
+ * Management interface of a {@link ResponseCache}, exposes its counters through JMX.
+ */
+public interface ResponseCacheMXBean {
+
+  /**
+   * @return Amount of lookups which were answered from the cache.
+   */
+  public long getHits();
+
+  /**
+   * @return Amount of lookups which found no valid response in the cache.
+   */
+  public long getMisses();
+
+  /**
+   * @return Amount of responses which were dropped to keep the cache within its size.
+   */
+  public long getEvictions();
+
+  /**
+   * @return Amount of resources for which the cached responses were dropped because they changed.
+   */
+  public long getInvalidations();
+
+  /**
+   * @return Amount of responses in the cache.
+   */
+  public int getEntries();
+
+  /**
+   * @return Total size in bytes of the responses in the cache.
+   */
+  public long getWeight();
+
+  /**
+   * @return Maximum total size in bytes of the responses in the cache.
+   */
+  public long getMaxBytes();
+
+  /**
+   * Drops all responses from the cache.
+   */
+  public void clear();
+}
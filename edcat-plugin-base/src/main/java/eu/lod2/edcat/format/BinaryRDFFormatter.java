@@ -0,0 +1,36 @@
+package eu.lod2.edcat.format;
+
+import org.openrdf.model.Model;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.Rio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Formats statements in Sesame's binary RDF format.  The formatted body is a byte array.
+ */
+public class BinaryRDFFormatter implements StreamingFormatter {
+  @Override
+  public Object format(Model statements) throws FormatException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      Rio.write(statements, output, RDFFormat.BINARY);
+      return output.toByteArray();
+    } catch (RDFHandlerException e) {
+      throw new FormatException(e);
+    }
+  }
+
+  @Override
+  public RDFHandler streamTo(OutputStream out) {
+    return Rio.createWriter(RDFFormat.BINARY, out);
+  }
+
+  @Override
+  public String getContentType() {
+    return "application/x-binary-rdf";
+  }
+}
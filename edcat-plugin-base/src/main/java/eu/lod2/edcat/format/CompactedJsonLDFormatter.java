@@ -4,11 +4,17 @@ import eu.lod2.edcat.utils.DcatJsonCompacter;
 import eu.lod2.edcat.utils.JsonLdContext;
 import org.openrdf.model.*;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
+/**
+ * Formats a Model as a list of nested JSON objects, one for each resource which isn't referred to
+ * by another resource in the Model.
+ * <p/>
+ * The statements are indexed by subject and by object once per response, see {@link
+ * StatementIndex}.  Each object which has statements of its own is nested in the resource which
+ * refers to it.  A resource which refers back to one of the resources in which it is nested is
+ * rendered as its URI instead, so cyclic descriptions terminate.
+ */
 public abstract class CompactedJsonLDFormatter implements ResponseFormatter {
 
   /** Context by the triples will be encoded */
@@ -29,9 +35,11 @@ public abstract class CompactedJsonLDFormatter implements ResponseFormatter {
 
   @Override
   public Object format(Model statements) throws FormatException {
+    StatementIndex index = new StatementIndex(statements);
     List<Map<String,Object>> graph = new ArrayList<Map<String,Object>>();
-    for (Resource topNode : getTopNodes(statements)) {
-      Map<String,Object> resource = buildGraph(topNode, "", statements);
+    Set<Resource> path = new HashSet<Resource>();
+    for (Resource topNode : index.topNodes()) {
+      Map<String,Object> resource = buildGraph(topNode, "", index, path);
       resource.put(URI_KEY,topNode);
       graph.add(resource);
     }
@@ -42,25 +50,32 @@ public abstract class CompactedJsonLDFormatter implements ResponseFormatter {
     return graph;
   }
 
-  private HashMap<String, Object> buildGraph(Resource topNode, String parentShortName, Model statements) {
+  /**
+   * Builds the JSON object describing {@code topNode}, nesting the resources it refers to.
+   *
+   * @param topNode         Resource which is described.
+   * @param parentShortName Short name of the predicate through which {@code topNode} was reached.
+   * @param index           Index of the statements which are formatted.
+   * @param path            Resources in which {@code topNode} is nested, these are not nested
+   *                        again.
+   * @return Map containing the description of {@code topNode}.
+   */
+  private HashMap<String, Object> buildGraph(Resource topNode, String parentShortName, StatementIndex index, Set<Resource> path) {
     DcatJsonHashMap graph = new DcatJsonHashMap();
-    Model description = statements.filter(topNode, null, null);
-    for (Statement s : description) {
+    path.add(topNode);
+    for (Statement s : index.describe(topNode)) {
       Value val = s.getObject();
-      if (resourceIsDefinedInStatements(statements, val)) {
-        Map<String, Object> subNode = buildGraph((Resource) val, shortNameFor(s.getPredicate(), parentShortName), statements);
+      if (index.isDescribed(val) && !path.contains(val)) {
+        Map<String, Object> subNode = buildGraph((Resource) val, shortNameFor(s.getPredicate(), parentShortName), index, path);
         subNode.put(URI_KEY,val.stringValue()) ;
         graph.put(shortNameFor(s.getPredicate()), subNode);
       } else
         graph.put(shortNameFor(s.getPredicate()), val);
     }
+    path.remove(topNode);
     return graph;
   }
 
-  private boolean resourceIsDefinedInStatements(Model statements, Value val) {
-    return val instanceof Resource && statements.filter((Resource) val, null, null).size() > 0;
-  }
-
   private String shortNameFor(URI predicate, String parent) {
     return predicate.stringValue();
   }
@@ -70,11 +85,6 @@ public abstract class CompactedJsonLDFormatter implements ResponseFormatter {
   }
 
   public List<Resource> getTopNodes(Model statements) {
-    List<Resource> topNodes = new ArrayList<Resource>();
-    for (Resource subj : statements.subjects())
-      if (statements.filter(null, null, subj).size() == 0)
-        topNodes.add(subj);
-    return topNodes;
+    return new StatementIndex(statements).topNodes();
   }
-
 }
@@ -0,0 +1,191 @@
+package eu.lod2.edcat.format;
+
+import eu.lod2.edcat.utils.JsonLdContext;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+
+/**
+ * RDFHandler which writes the statements it receives as compacted JSON, the format of {@link
+ * CompactedListFormatter}, straight to an OutputStream.
+ * <p/>
+ * The statements are indexed as they arrive (see {@link StatementIndex}), which top nodes exist is
+ * only known once all statements have been received.  The JSON is written by a streaming
+ * JsonGenerator when the RDF ends: the keys are compacted through the reverse keyword map of the
+ * JsonLdContext while they are written, so neither the nested maps of {@link DcatJsonHashMap} nor
+ * their compacted copies are built.
+ */
+public class CompactedJsonWriter extends RDFHandlerBase {
+
+  /** Shared factory, JsonFactory is thread-safe once configured. */
+  private static final JsonFactory jsonFactory = new JsonFactory();
+
+  static {
+    jsonFactory.disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET );
+  }
+
+  /** Stream to which the JSON is written. */
+  private final OutputStream out;
+
+  /** Mapping from predicate URIs to JSON keywords, empty if the keys aren't compacted. */
+  private final Map<String, String> reverseKeywordMap;
+
+  /** Statements received so far. */
+  private StatementIndex index;
+
+  /**
+   * Constructs a writer which writes the compacted JSON to {@code out}.
+   *
+   * @param out     Stream to which the JSON is written.  The stream is flushed, not closed.
+   * @param context Context through which the keys are compacted, may be null.
+   */
+  public CompactedJsonWriter( OutputStream out, JsonLdContext context ) {
+    this.out = out;
+    this.reverseKeywordMap = context == null ? Collections.<String, String>emptyMap() : context.getReverseKeywordMap();
+  }
+
+  @Override
+  public void startRDF() throws RDFHandlerException {
+    index = new StatementIndex();
+  }
+
+  @Override
+  public void handleStatement( Statement statement ) throws RDFHandlerException {
+    index.add( statement );
+  }
+
+  @Override
+  public void endRDF() throws RDFHandlerException {
+    try {
+      JsonGenerator generator = jsonFactory.createJsonGenerator( out, JsonEncoding.UTF8 );
+      Set<Resource> path = new HashSet<Resource>();
+      generator.writeStartArray();
+      for ( Resource topNode : index.topNodes() )
+        writeNode( generator, topNode, path );
+      generator.writeEndArray();
+      generator.flush();
+    } catch ( IOException e ) {
+      throw new RDFHandlerException( e );
+    } finally {
+      index = null;
+    }
+  }
+
+
+  // --- IMPLEMENTATION
+
+  /**
+   * Writes the JSON object describing {@code node}, nesting the resources it refers to.
+   *
+   * @param path Resources in which {@code node} is nested, these are written as their URI.
+   */
+  private void writeNode( JsonGenerator generator, Resource node, Set<Resource> path ) throws IOException {
+    path.add( node );
+    generator.writeStartObject();
+    for ( Map.Entry<String, List<Value>> property : properties( node ).entrySet() ) {
+      generator.writeFieldName( property.getKey() );
+      writeValues( generator, property.getValue(), path );
+    }
+    generator.writeStringField( CompactedJsonLDFormatter.URI_KEY, node.stringValue() );
+    generator.writeEndObject();
+    path.remove( node );
+  }
+
+  /**
+   * Groups the objects of the statements describing {@code node} by their compacted key.
+   */
+  private Map<String, List<Value>> properties( Resource node ) {
+    Map<String, List<Value>> properties = new LinkedHashMap<String, List<Value>>();
+    for ( Statement statement : index.describe( node ) ) {
+      String key = keyFor( statement.getPredicate().stringValue() );
+      List<Value> values = properties.get( key );
+      if ( values == null ) {
+        values = new ArrayList<Value>( 1 );
+        properties.put( key, values );
+      }
+      values.add( statement.getObject() );
+    }
+    return properties;
+  }
+
+  /**
+   * Writes the values of a single key.  One value is written as is, several values as an array.
+   * Language-tagged literals are collected in a single object keyed by their language, like {@link
+   * DcatJsonHashMap} does.
+   */
+  private void writeValues( JsonGenerator generator, List<Value> values, Set<Resource> path ) throws IOException {
+    Map<String, List<String>> languages = new LinkedHashMap<String, List<String>>();
+    List<Value> others = new ArrayList<Value>( values.size() );
+    for ( Value value : values ) {
+      String language = value instanceof Literal ? ( ( Literal ) value ).getLanguage() : null;
+      if ( language == null ) {
+        others.add( value );
+        continue;
+      }
+      List<String> strings = languages.get( language );
+      if ( strings == null ) {
+        strings = new ArrayList<String>( 1 );
+        languages.put( language, strings );
+      }
+      strings.add( value.stringValue() );
+    }
+
+    boolean array = others.size() + ( languages.isEmpty() ? 0 : 1 ) > 1;
+    if ( array )
+      generator.writeStartArray();
+    if ( !languages.isEmpty() ) {
+      generator.writeStartObject();
+      for ( Map.Entry<String, List<String>> language : languages.entrySet() ) {
+        generator.writeFieldName( language.getKey() );
+        writeStrings( generator, language.getValue() );
+      }
+      generator.writeEndObject();
+    }
+    for ( Value value : others )
+      writeValue( generator, value, path );
+    if ( array )
+      generator.writeEndArray();
+  }
+
+  /**
+   * Writes a single value, nesting it if it is a resource with a description of its own.
+   */
+  private void writeValue( JsonGenerator generator, Value value, Set<Resource> path ) throws IOException {
+    if ( index.isDescribed( value ) && !path.contains( value ) )
+      writeNode( generator, ( Resource ) value, path );
+    else
+      generator.writeString( value.stringValue() );
+  }
+
+  /**
+   * Writes a single string as is, several strings as an array.
+   */
+  private static void writeStrings( JsonGenerator generator, List<String> strings ) throws IOException {
+    if ( strings.size() == 1 ) {
+      generator.writeString( strings.get( 0 ) );
+      return;
+    }
+    generator.writeStartArray();
+    for ( String string : strings )
+      generator.writeString( string );
+    generator.writeEndArray();
+  }
+
+  /**
+   * @return JSON keyword for {@code predicate}, or the predicate itself if it has no keyword.
+   */
+  private String keyFor( String predicate ) {
+    String keyword = reverseKeywordMap.get( predicate );
+    return keyword == null ? predicate : keyword;
+  }
+}
@@ -2,11 +2,13 @@ package eu.lod2.edcat.format;
 
 import eu.lod2.edcat.utils.JsonLdContext;
 import org.openrdf.model.Model;
+import org.openrdf.rio.RDFHandler;
 
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
-public class CompactedListFormatter extends CompactedJsonLDFormatter {
+public class CompactedListFormatter extends CompactedJsonLDFormatter implements StreamingFormatter {
   public CompactedListFormatter(JsonLdContext context){
     this.context = context;
   }
@@ -14,4 +16,14 @@ public class CompactedListFormatter extends CompactedJsonLDFormatter {
   public List format(Model statements) throws FormatException {
      return (List<Map<String,Object>>) super.format(statements);
   }
+
+  @Override
+  public RDFHandler streamTo(OutputStream out) {
+    return new CompactedJsonWriter(out, context);
+  }
+
+  @Override
+  public String getContentType() {
+    return "application/json;charset=UTF-8";
+  }
 }
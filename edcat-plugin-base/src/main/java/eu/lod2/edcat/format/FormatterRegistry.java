@@ -0,0 +1,229 @@
+package eu.lod2.edcat.format;
+
+import org.springframework.http.MediaType;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Formats in which an endpoint can render its statements, keyed by media type, in order of
+ * preference.
+ * <p/>
+ * A registry holds one formatter instance per format, which is shared by all requests: the
+ * formatters keep no state between calls.  An endpoint usually builds a registry with its own
+ * JSON format on top of {@link #rdf()}, which holds the formats that render any statements.  A
+ * format which is registered in {@link #rdf()}, e.g. by a plugin when it is installed, is thereby
+ * offered by every such endpoint.
+ * <p/>
+ * The format of a response is picked from the Accept header of the request, see {@link
+ * #negotiate(String, Class)}.
+ */
+public class FormatterRegistry {
+
+  /** Formats which render any statements, see {@link #rdf()}. */
+  private static final FormatterRegistry rdf = new FormatterRegistry()
+      .register( "jsonld", "application/ld+json;charset=UTF-8", new JsonLDFormatter() )
+      .register( "rdfxml", "application/rdf+xml;charset=UTF-8", new XMLRDFFormatter() )
+      .register( "turtle", "text/turtle;charset=UTF-8", new TurtleFormatter() )
+      .register( "ntriples", "application/n-triples;charset=UTF-8", new NTriplesFormatter() )
+      .register( "nquads", "application/n-quads;charset=UTF-8", new NQuadsFormatter() )
+      .register( "trig", "application/trig;charset=UTF-8", new TriGFormatter() )
+      .register( "binary", "application/x-binary-rdf", new BinaryRDFFormatter() );
+
+  /** Registry whose formats follow the formats of this registry, may be null. */
+  private final FormatterRegistry parent;
+
+  /** Formats of this registry, in order of preference. */
+  private final List<Format> formats = new CopyOnWriteArrayList<Format>();
+
+  /**
+   * Constructs an empty registry.
+   */
+  public FormatterRegistry() {
+    this( null );
+  }
+
+  /**
+   * Constructs a registry which offers the formats of {@code parent} after its own.
+   *
+   * @param parent Registry whose formats are offered as well, its later registrations included.
+   */
+  public FormatterRegistry( FormatterRegistry parent ) {
+    this.parent = parent;
+  }
+
+  /**
+   * Retrieves the registry of the formats which render any statements: JSON-LD, RDF/XML, Turtle,
+   * N-Triples, N-Quads, TriG and binary RDF.
+   *
+   * @return FormatterRegistry shared by all endpoints.
+   */
+  public static FormatterRegistry rdf() {
+    return rdf;
+  }
+
+  /**
+   * Registers {@code formatter} after the formats of this registry.  A format with the same name
+   * is replaced in place.
+   *
+   * @param name        Short name of the format, distinguishes the representations of a resource
+   *                    in entity tags and caches.
+   * @param contentType Content type of the rendered statements, including its parameters.
+   * @param formatter   Formatter which renders the statements, must be thread-safe.
+   * @return This registry.
+   */
+  public synchronized FormatterRegistry register( String name, String contentType, ResponseFormatter formatter ) {
+    Format format = new Format( name, contentType, formatter );
+    for ( int i = 0; i < formats.size(); i++ ) {
+      if ( formats.get( i ).getName().equals( name ) ) {
+        formats.set( i, format );
+        return this;
+      }
+    }
+    formats.add( format );
+    return this;
+  }
+
+  /**
+   * @return Formats of this registry followed by those of its parent which it doesn't replace, in
+   *         order of preference.
+   */
+  public List<Format> getFormats() {
+    List<Format> all = new ArrayList<Format>( formats );
+    if ( parent != null ) {
+      Set<String> names = new HashSet<String>();
+      for ( Format format : formats )
+        names.add( format.getName() );
+      for ( Format format : parent.getFormats() )
+        if ( names.add( format.getName() ) )
+          all.add( format );
+    }
+    return all;
+  }
+
+  /**
+   * Retrieves the format with {@code name}.
+   *
+   * @param name Short name of the format.
+   * @return Format with {@code name}, or null if there is none.
+   */
+  public Format get( String name ) {
+    for ( Format format : getFormats() )
+      if ( format.getName().equals( name ) )
+        return format;
+    return null;
+  }
+
+  /**
+   * Picks the format of a response from the Accept header of its request.
+   * <p/>
+   * The accepted media types are tried by quality and specificity, the registered formats in
+   * order of preference.  A format is never picked if the most specific media type which includes
+   * it is refused with q=0, e.g. {@code application/json;q=0, *}{@code /*} picks anything but
+   * JSON.  The most preferred format is returned if the request accepts anything, or if its Accept
+   * header can't be parsed.
+   *
+   * @param accept Accept header of the request, may be null.
+   * @param type   Type of the formatters which may be picked, e.g. {@link StreamingFormatter}.
+   * @return Picked format, or null if none of the acceptable formats is registered.
+   */
+  public Format negotiate( String accept, Class<? extends ResponseFormatter> type ) {
+    List<Format> candidates = new ArrayList<Format>();
+    for ( Format format : getFormats() )
+      if ( type.isInstance( format.getFormatter() ) )
+        candidates.add( format );
+    if ( candidates.isEmpty() )
+      return null;
+    if ( accept == null || accept.trim().isEmpty() )
+      return candidates.get( 0 );
+
+    List<MediaType> accepted;
+    try {
+      accepted = MediaType.parseMediaTypes( accept );
+    } catch ( IllegalArgumentException e ) {
+      return candidates.get( 0 );
+    }
+    MediaType.sortByQualityValue( accepted );
+    List<Format> acceptable = new ArrayList<Format>();
+    for ( Format format : candidates )
+      if ( !isRefused( accepted, format.getMediaType() ) )
+        acceptable.add( format );
+    for ( MediaType mediaType : accepted ) {
+      if ( mediaType.getQualityValue() == 0 )
+        continue;
+      for ( Format format : acceptable )
+        if ( mediaType.includes( format.getMediaType() ) )
+          return format;
+    }
+    return null;
+  }
+
+  /**
+   * Returns true iff the most specific of the {@code accepted} media types which includes {@code
+   * mediaType} has a quality of 0.
+   *
+   * @param accepted  Media types of the Accept header, sorted by quality.
+   * @param mediaType Media type of a format, without parameters.
+   */
+  private static boolean isRefused( List<MediaType> accepted, MediaType mediaType ) {
+    MediaType match = null;
+    for ( MediaType range : accepted )
+      if ( range.includes( mediaType ) && ( match == null || specificity( range ) > specificity( match ) ) )
+        match = range;
+    return match != null && match.getQualityValue() == 0;
+  }
+
+  /**
+   * @return 0 for {@code *}{@code /*}, 1 for {@code type/*} and 2 for a concrete media type.
+   */
+  private static int specificity( MediaType range ) {
+    return range.isWildcardType() ? 0 : range.isWildcardSubtype() ? 1 : 2;
+  }
+
+
+  // --- FORMAT
+
+  /** Format in which statements can be rendered. */
+  public static class Format {
+    private final String name;
+    private final String contentType;
+    private final MediaType mediaType;
+    private final ResponseFormatter formatter;
+
+    Format( String name, String contentType, ResponseFormatter formatter ) {
+      MediaType parsed = MediaType.parseMediaType( contentType );
+      this.name = name;
+      this.contentType = contentType;
+      this.mediaType = new MediaType( parsed.getType(), parsed.getSubtype() );
+      this.formatter = formatter;
+    }
+
+    /**
+     * @return Short name of the format.
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return Content type of the rendered statements, including its parameters.
+     */
+    public String getContentType() {
+      return contentType;
+    }
+
+    /**
+     * @return Media type of the format, without parameters.
+     */
+    public MediaType getMediaType() {
+      return mediaType;
+    }
+
+    /**
+     * @return Formatter which renders the statements.
+     */
+    public ResponseFormatter getFormatter() {
+      return formatter;
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package eu.lod2.edcat.format;
+
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+public class NQuadsFormatter implements StreamingFormatter {
+  @Override
+  public Object format(Model statements) throws FormatException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      RDFHandler writer = streamTo(output);
+      writer.startRDF();
+      for (Statement statement : statements)
+        writer.handleStatement(statement);
+      writer.endRDF();
+      return new String(output.toByteArray(), Charset.forName("UTF-8"));
+    } catch (RDFHandlerException e) {
+      throw new FormatException(e);
+    }
+  }
+
+  @Override
+  public RDFHandler streamTo(OutputStream out) {
+    return new NQuadsWriter(out);
+  }
+
+  @Override
+  public String getContentType() {
+    return "application/n-quads;charset=UTF-8";
+  }
+}
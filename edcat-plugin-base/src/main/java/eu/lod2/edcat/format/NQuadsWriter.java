@@ -0,0 +1,59 @@
+package eu.lod2.edcat.format;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+import org.openrdf.rio.ntriples.NTriplesUtil;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * RDFHandler which writes the statements it receives as N-Quads, one line per statement.
+ * <p/>
+ * The terms are written as in N-Triples, followed by the context of the statement.  A statement
+ * without a context belongs to the default graph and is written as a triple.
+ */
+public class NQuadsWriter extends RDFHandlerBase {
+
+  /** Writer to which the lines are written. */
+  private final Writer writer;
+
+  /**
+   * Constructs a writer which writes to {@code out}.
+   *
+   * @param out Stream to which the N-Quads are written.  The stream is flushed, not closed.
+   */
+  public NQuadsWriter( OutputStream out ) {
+    this.writer = new BufferedWriter( new OutputStreamWriter( out, Charset.forName( "UTF-8" ) ) );
+  }
+
+  @Override
+  public void handleStatement( Statement statement ) throws RDFHandlerException {
+    try {
+      NTriplesUtil.append( statement.getSubject(), writer );
+      writer.write( ' ' );
+      NTriplesUtil.append( statement.getPredicate(), writer );
+      writer.write( ' ' );
+      NTriplesUtil.append( statement.getObject(), writer );
+      Resource context = statement.getContext();
+      if ( context != null ) {
+        writer.write( ' ' );
+        NTriplesUtil.append( context, writer );
+      }
+      writer.write( " .\n" );
+    } catch ( IOException e ) {
+      throw new RDFHandlerException( e );
+    }
+  }
+
+  @Override
+  public void endRDF() throws RDFHandlerException {
+    try {
+      writer.flush();
+    } catch ( IOException e ) {
+      throw new RDFHandlerException( e );
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package eu.lod2.edcat.format;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+
+import java.util.*;
+
+/**
+ * Subject and object indexes of the statements which are formatted as compacted JSON.
+ * <p/>
+ * Statements are indexed as they are added, so the index can be filled from a Model or from a
+ * stream of statements.  Statements which are added twice are indexed once.
+ */
+class StatementIndex {
+
+  /** Statements which have been indexed. */
+  private final Set<Statement> statements = new HashSet<Statement>();
+
+  /** Statements of each subject, subjects in the order in which they were first added. */
+  private final Map<Resource, List<Statement>> bySubject = new LinkedHashMap<Resource, List<Statement>>();
+
+  /** Values which appear as the object of a statement. */
+  private final Set<Value> referenced = new HashSet<Value>();
+
+  StatementIndex() {
+  }
+
+  StatementIndex( Iterable<Statement> statements ) {
+    for ( Statement statement : statements )
+      add( statement );
+  }
+
+  /**
+   * Adds {@code statement} to the index.
+   */
+  void add( Statement statement ) {
+    if ( !statements.add( statement ) )
+      return;
+    List<Statement> description = bySubject.get( statement.getSubject() );
+    if ( description == null ) {
+      description = new ArrayList<Statement>();
+      bySubject.put( statement.getSubject(), description );
+    }
+    description.add( statement );
+    referenced.add( statement.getObject() );
+  }
+
+  /**
+   * @return Statements with {@code subject} as subject.
+   */
+  List<Statement> describe( Resource subject ) {
+    List<Statement> description = bySubject.get( subject );
+    return description == null ? Collections.<Statement>emptyList() : description;
+  }
+
+  /**
+   * @return true iff {@code value} is a resource which has statements of its own.
+   */
+  boolean isDescribed( Value value ) {
+    return value instanceof Resource && bySubject.containsKey( value );
+  }
+
+  /**
+   * @return Subjects which aren't the object of any statement.
+   */
+  List<Resource> topNodes() {
+    List<Resource> topNodes = new ArrayList<Resource>();
+    for ( Resource subject : bySubject.keySet() )
+      if ( !referenced.contains( subject ) )
+        topNodes.add( subject );
+    return topNodes;
+  }
+}
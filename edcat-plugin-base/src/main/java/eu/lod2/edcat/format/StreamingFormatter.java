@@ -0,0 +1,25 @@
+package eu.lod2.edcat.format;
+
+import org.openrdf.rio.RDFHandler;
+
+import java.io.OutputStream;
+
+/**
+ * ResponseFormatter which can also write statements to an OutputStream as they arrive, without
+ * building a Model or a String first.
+ */
+public interface StreamingFormatter extends ResponseFormatter {
+
+  /**
+   * Constructs an RDFHandler which serializes the statements it receives to {@code out}.
+   *
+   * @param out Stream to which the serialized statements are written.
+   * @return RDFHandler which may be fed the statements to render.
+   */
+  public RDFHandler streamTo( OutputStream out );
+
+  /**
+   * @return Content type of the output written by {@link #streamTo(java.io.OutputStream)}.
+   */
+  public String getContentType();
+}
@@ -0,0 +1,34 @@
+package eu.lod2.edcat.format;
+
+import org.openrdf.model.Model;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.Rio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+public class TriGFormatter implements StreamingFormatter {
+  @Override
+  public Object format(Model statements) throws FormatException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      Rio.write(statements, output, RDFFormat.TRIG);
+      return new String(output.toByteArray(), Charset.forName("UTF-8"));
+    } catch (RDFHandlerException e) {
+      throw new FormatException(e);
+    }
+  }
+
+  @Override
+  public RDFHandler streamTo(OutputStream out) {
+    return Rio.createWriter(RDFFormat.TRIG, out);
+  }
+
+  @Override
+  public String getContentType() {
+    return "application/trig;charset=UTF-8";
+  }
+}
@@ -2,13 +2,15 @@ package eu.lod2.edcat.format;
 
 import org.openrdf.model.Model;
 import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
 import org.openrdf.rio.Rio;
 
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 
-public class TurtleFormatter implements ResponseFormatter {
+public class TurtleFormatter implements StreamingFormatter {
   @Override
   public Object format(Model statements) throws FormatException {
     ByteArrayOutputStream output = new ByteArrayOutputStream();
@@ -19,4 +21,14 @@ public class TurtleFormatter implements ResponseFormatter {
       throw new FormatException(e);
     }
   }
+
+  @Override
+  public RDFHandler streamTo(OutputStream out) {
+    return Rio.createWriter(RDFFormat.TURTLE, out);
+  }
+
+  @Override
+  public String getContentType() {
+    return "text/turtle;charset=UTF-8";
+  }
 }
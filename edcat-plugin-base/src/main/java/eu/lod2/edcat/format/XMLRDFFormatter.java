@@ -2,13 +2,15 @@ package eu.lod2.edcat.format;
 
 import org.openrdf.model.Model;
 import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
 import org.openrdf.rio.RDFHandlerException;
 import org.openrdf.rio.Rio;
 
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 
-public class XMLRDFFormatter implements ResponseFormatter {
+public class XMLRDFFormatter implements StreamingFormatter {
   @Override
   public Object format(Model statements) throws FormatException {
     ByteArrayOutputStream output = new ByteArrayOutputStream();
@@ -20,4 +22,14 @@ public class XMLRDFFormatter implements ResponseFormatter {
     }
 
   }
+
+  @Override
+  public RDFHandler streamTo(OutputStream out) {
+    return Rio.createWriter(RDFFormat.RDFXML, out);
+  }
+
+  @Override
+  public String getContentType() {
+    return "application/rdf+xml;charset=UTF-8";
+  }
 }
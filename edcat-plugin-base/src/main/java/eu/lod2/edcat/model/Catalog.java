@@ -10,6 +10,7 @@ import org.openrdf.model.Literal;
 import org.openrdf.model.Model;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
+import org.openrdf.model.Value;
 import org.openrdf.model.impl.LinkedHashModel;
 import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.model.impl.ValueFactoryImpl;
@@ -135,7 +136,7 @@ public class Catalog {
    */
   public void add( JsonLD json ) throws JsonLdError {
     json.setId( getUri() );
-    json.setContext( new JsonLdContext( JsonLdContext.Kind.Catalog ) );
+    json.setContext( JsonLdContext.forKind( JsonLdContext.Kind.Catalog ) );
     add( json.getStatements() );
   }
 
@@ -149,6 +150,19 @@ public class Catalog {
    * @return Model containing the statements which have been inserted into the Catalog graph.
    */
   public Model createRecord(String datasetId) {
+    Model statements = buildRecord( datasetId );
+    Db.add(statements, getUri());
+    return statements;
+  }
+
+  /**
+   * Builds the statements which identify a new CatalogRecord for this Catalog, without inserting
+   * them.  They belong in the Catalog graph.
+   *
+   * @param datasetId UUID identifier of the Dataset.
+   * @return Model containing the statements which {@link #createRecord(String)} would insert.
+   */
+  public Model buildRecord(String datasetId) {
     Model statements = new LinkedHashModel();
     URI dataset = DcatURI.datasetURI(getId(), datasetId);
     URI record = DcatURI.recordURI(getId(), datasetId);
@@ -159,7 +173,6 @@ public class Catalog {
     statements.add( record, Sparql.namespaced( "foaf", "primaryTopic" ), dataset );
     statements.add( getUri(), Sparql.namespaced( "dcat","dataset" ), dataset );
     statements.add( getUri(), Sparql.namespaced( "dcat", "record" ), record );
-    Db.add(statements, getUri());
     return statements;
   }
 
@@ -168,6 +181,21 @@ public class Catalog {
     return Db.getStatements( DcatURI.recordURI(getId(), datasetId), null, null, true, getUri() );
   }
 
+  /**
+   * Retrieves the dct:modified timestamp of the CatalogRecord of a Dataset.
+   * <p/>
+   * This is a single statement lookup in the Catalog graph, which is cheap enough to answer
+   * conditional requests without loading the Dataset.
+   *
+   * @param datasetId UUID identifier of the Dataset.
+   * @return Literal containing the timestamp or null if the Dataset has no CatalogRecord.
+   */
+  public Literal getRecordModified( String datasetId ) {
+    Model modified = Db.getStatements( DcatURI.recordURI(getId(), datasetId), DCTERMS.MODIFIED, null, false, getUri() );
+    Value value = modified.isEmpty() ? null : modified.iterator().next().getObject();
+    return value instanceof Literal ? ( Literal ) value : null;
+  }
+
   /**
    * Indicates that the Dataset is changed.
    * <p/>
@@ -179,75 +207,67 @@ public class Catalog {
    */
   public Model updateRecord(String datasetId) {
     URI record = DcatURI.recordURI(getId(), datasetId);
-    Db.update( Sparql.query( "" +
-            " @PREFIX" +
-            " DELETE {" +
-            "   GRAPH $catalog {" +
-            "     $record dct:modified ?modified" +
-            "   }" +
-            " } WHERE {" +
-            "   GRAPH $catalog {" +
-            "     $record dct:modified ?modified" +
-            "   }" +
-            " }",
-            "catalog", getUri(),
-            "record", record ) );
-    Model statements = new LinkedHashModel();
     Literal now = ValueFactoryImpl.getInstance().createLiteral( new Date() );
-    statements.add( record, DCTERMS.MODIFIED, now, getUri() );
-    Db.add( statements, getUri() );
+    Db.updateBatch( UPDATE_RECORD,
+        "catalog", getUri(),
+        "record", record,
+        "now", now );
     return Db.getStatements( record, null, null, true, getUri() );
   }
 
+  /** Operations which replace the dct:modified timestamp of a CatalogRecord. */
+  private static final String[] UPDATE_RECORD = {
+      " DELETE {" +
+      "   GRAPH $catalog {" +
+      "     $record dct:modified ?modified" +
+      "   }" +
+      " } WHERE {" +
+      "   GRAPH $catalog {" +
+      "     $record dct:modified ?modified" +
+      "   }" +
+      " }",
+      " INSERT {" +
+      "   GRAPH $catalog {" +
+      "     $record dct:modified $now" +
+      "   }" +
+      " } WHERE {}"
+  };
+
   /**
    * Removes the CatalogRecord for a Dataset with UUID {@code datasetId} from the Database.
    *
    * @param datasetId UUID identifier of the Dataset which we want to remove.
    */
   public void deleteRecord(String datasetId) {
-//    Db.update( Sparql.query( "" +
-//            " @PREFIX" +
-//            " DELETE WHERE {" +
-//            "   GRAPH $catalog {" +
-//            "     $record ?p ?o." +
-//            "     OPTIONAL { ?o ?op ?oo. }" +
-//            "   }" +
-//            " }",
-//            "catalog", getUri(),
-//            "record", DcatURI.recordURI(getId(), datasetId)));
-
-    // Execute multiple SPARQL DELETES because OWLIM doesn't support OPTIONAL/UNION in DELETE WHERE clause
-    Db.update( Sparql.query( "" +
-        " @PREFIX" +
-        " DELETE WHERE {" +
-        "   GRAPH $catalog {" +
-        "     $record ?p ?o." +
-        "     ?o ?op ?oo." +
-        "   }" +
-        " }",
-        "catalog", getUri(),
-        "record", DcatURI.recordURI(getId(), datasetId)));
-    Db.update( Sparql.query( "" +
-        " @PREFIX" +
-        " DELETE WHERE {" +
-        "   GRAPH $catalog {" +
-        "     $record ?p ?o." +
-        "   }" +
-        " }",
-        "catalog", getUri(),
-        "record", DcatURI.recordURI(getId(), datasetId)));
-    Db.update( Sparql.query( "" +
-        " @PREFIX" +
-        " DELETE WHERE {" +
-        "   GRAPH $catalog {" +
-        "     $catalog $p1 $record ." +
-        "     $catalog $p2 $dataset ." +
-        "   }" +
-        " }",
+    Db.updateBatch( DELETE_RECORD,
         "catalog", getUri(),
         "record", DcatURI.recordURI(getId(), datasetId),
-        "dataset", DcatURI.datasetURI(getId(), datasetId)));
+        "dataset", DcatURI.datasetURI(getId(), datasetId));
   }
 
-
+  /**
+   * Operations which remove a CatalogRecord.
+   * <p/>
+   * These are separate DELETE WHERE operations because OWLIM doesn't support OPTIONAL/UNION in
+   * a DELETE WHERE clause.
+   */
+  private static final String[] DELETE_RECORD = {
+      " DELETE WHERE {" +
+      "   GRAPH $catalog {" +
+      "     $record ?p ?o." +
+      "     ?o ?op ?oo." +
+      "   }" +
+      " }",
+      " DELETE WHERE {" +
+      "   GRAPH $catalog {" +
+      "     $record ?p ?o." +
+      "   }" +
+      " }",
+      " DELETE WHERE {" +
+      "   GRAPH $catalog {" +
+      "     $catalog $p1 $record ." +
+      "     $catalog $p2 $dataset ." +
+      "   }" +
+      " }"
+  };
 }
\ No newline at end of file
@@ -138,7 +138,7 @@ public abstract class DomainObject {
    */
   public void add( JsonLD json ) {
     json.setId( getUri() );
-    json.setContext( new JsonLdContext( JsonLdContext.Kind.Catalog ) );
+    json.setContext( JsonLdContext.forKind( JsonLdContext.Kind.Catalog ) );
 
   }
 
@@ -0,0 +1,73 @@
+package eu.lod2.edcat.search;
+
+import eu.lod2.hooks.constraints.Priority;
+import eu.lod2.hooks.contexts.dataset.PostContext;
+import eu.lod2.hooks.handlers.dcat.dataset.PostDestroyHandler;
+import eu.lod2.hooks.handlers.dcat.dataset.PostUpdateHandler;
+import org.openrdf.model.Model;
+import org.openrdf.model.URI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+
+/**
+ * Keeps {@link SearchIndex#forDatasets()} and {@link FacetIndex#forDatasets()} up to date when a
+ * dataset is created, updated or destroyed.  New distributions are handled by {@link
+ * DistributionIndexer}.
+ * <p/>
+ * Updates and destroys are picked up through the hooks.  Creates are not: the controllers which
+ * create datasets call {@link #created(URI, URI, Model)} themselves.  A built-in PostCreate
+ * handler would make {@link eu.lod2.hooks.util.HookManager#hasHandlers(Class)} true for every
+ * create, and the import would format each dataset for PostCreate hooks which don't read the
+ * response.
+ * <p/>
+ * The change has already been stored when the index is updated.  A failing update is logged and
+ * doesn't fail the request.
+ */
+public class DatasetIndexer implements PostUpdateHandler, PostDestroyHandler {
+
+  private static final Logger log = LoggerFactory.getLogger( DatasetIndexer.class );
+
+  /**
+   * Indexes a dataset which has been created.
+   *
+   * @param catalog    URI of the catalog which contains the dataset.
+   * @param dataset    URI of the dataset.
+   * @param statements Description of the dataset, with its CatalogRecord.
+   */
+  public static void created( URI catalog, URI dataset, Model statements ) {
+    index( catalog, dataset, statements );
+  }
+
+  @Override
+  public void handlePostUpdate( PostContext context ) {
+    index( context.getCatalog().getUri(), context.getDatasetUri(), context.getStatements() );
+  }
+
+  @Override
+  public void handlePostDestroy( PostContext context ) {
+    try {
+      SearchIndex.forDatasets().remove( context.getDatasetUri() );
+      FacetIndex.forDatasets().remove( context.getDatasetUri() );
+    } catch ( RuntimeException e ) {
+      log.warn( "Could not remove {} from the search index: {}", context.getDatasetUri(), e.getMessage() );
+    }
+  }
+
+  @Override
+  public Collection<Priority> getConstraints( String hook ) {
+    return null;
+  }
+
+  private static void index( URI catalog, URI dataset, Model statements ) {
+    if ( statements == null )
+      return;
+    try {
+      SearchIndex.forDatasets().index( catalog, dataset, statements );
+      FacetIndex.forDatasets().index( catalog, dataset, statements );
+    } catch ( RuntimeException e ) {
+      log.warn( "Could not index {}: {}", dataset, e.getMessage() );
+    }
+  }
+}
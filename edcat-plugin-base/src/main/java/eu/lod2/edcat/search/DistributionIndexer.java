@@ -0,0 +1,34 @@
+package eu.lod2.edcat.search;
+
+import eu.lod2.hooks.constraints.Priority;
+import eu.lod2.hooks.contexts.distribution.PostContext;
+import eu.lod2.hooks.handlers.dcat.distribution.PostCreateHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+
+/**
+ * Adds the formats of a new distribution to {@link FacetIndex#forDatasets()}.
+ * <p/>
+ * The distribution has already been stored when this hook runs.  A failing update is logged and
+ * doesn't fail the request.
+ */
+public class DistributionIndexer implements PostCreateHandler {
+
+  private static final Logger log = LoggerFactory.getLogger( DistributionIndexer.class );
+
+  @Override
+  public void handlePostCreate( PostContext context ) {
+    try {
+      FacetIndex.forDatasets().addDistribution( context.getDatasetUri(), context.getDistributionUri(), context.getStatements() );
+    } catch ( RuntimeException e ) {
+      log.warn( "Could not index {}: {}", context.getDistributionUri(), e.getMessage() );
+    }
+  }
+
+  @Override
+  public Collection<Priority> getConstraints( String hook ) {
+    return null;
+  }
+}
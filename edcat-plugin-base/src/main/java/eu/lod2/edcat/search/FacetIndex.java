@@ -0,0 +1,385 @@
+package eu.lod2.edcat.search;
+
+import eu.lod2.query.Db;
+import eu.lod2.query.RowHandler;
+import eu.lod2.query.Sparql;
+import org.openrdf.model.*;
+import org.openrdf.model.vocabulary.DCTERMS;
+import org.openrdf.query.BindingSet;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process index of the values of a few facets of the datasets, see {@link Facet}, which counts
+ * the datasets of a catalog per value and finds the datasets with a given value without querying
+ * the store.
+ * <p/>
+ * The index for datasets, see {@link #forDatasets()}, is loaded from the store when it is first
+ * used, and kept up to date by {@link DatasetIndexer} afterwards.
+ */
+public class FacetIndex {
+
+  /** Facets of a dataset which are counted. */
+  public enum Facet {
+    THEME( "theme" ),
+    PUBLISHER( "publisher" ),
+    LANGUAGE( "language" ),
+    FORMAT( "format" );
+
+    /** Name of the facet in requests and responses. */
+    public final String facetName;
+
+    Facet( String facetName ) {
+      this.facetName = facetName;
+    }
+  }
+
+  private static final URI DCAT_THEME = Sparql.namespaced( "dcat", "theme" );
+  private static final URI DCAT_DISTRIBUTION = Sparql.namespaced( "dcat", "distribution" );
+
+  /** Index over the datasets, see {@link #forDatasets()}. */
+  private static FacetIndex datasets;
+
+  /** Datasets by facet value, by facet, by catalog. */
+  private final Map<URI, Map<Facet, Map<String, Set<URI>>>> catalogs = new HashMap<URI, Map<Facet, Map<String, Set<URI>>>>();
+
+  /** Indexed datasets. */
+  private final Map<URI, Entry> entries = new HashMap<URI, Entry>();
+
+  /** Whether the index reflects the store, false until it has been loaded. */
+  private boolean loaded;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Constructs an empty index.
+   */
+  public FacetIndex() {
+    this( true );
+  }
+
+  private FacetIndex( boolean loaded ) {
+    this.loaded = loaded;
+  }
+
+  /**
+   * Retrieves the index over the facets of the datasets.
+   *
+   * @return FacetIndex shared by all requests.
+   */
+  public static synchronized FacetIndex forDatasets() {
+    if ( datasets == null )
+      datasets = new FacetIndex( false );
+    return datasets;
+  }
+
+  /**
+   * Finds the facet with {@code name}.
+   *
+   * @param name Name of the facet, as used in requests.
+   * @return Facet with {@code name}, or null if there is none.
+   */
+  public static Facet findFacet( String name ) {
+    for ( Facet facet : Facet.values() )
+      if ( facet.facetName.equals( name ) )
+        return facet;
+    return null;
+  }
+
+  /**
+   * Replaces the indexed facets of {@code dataset} by its values in {@code statements}.  The
+   * formats are taken from the distributions of the dataset which are described in {@code
+   * statements}.
+   *
+   * @param catalog    Catalog which contains the dataset.
+   * @param dataset    Dataset which is indexed.
+   * @param statements Statements describing the dataset.
+   */
+  public void index( URI catalog, URI dataset, Model statements ) {
+    lock.writeLock().lock();
+    try {
+      if ( !loaded )
+        return;
+      removeEntry( dataset );
+      Entry entry = new Entry( catalog );
+      entries.put( dataset, entry );
+      for ( Statement statement : statements.filter( dataset, null, null ) ) {
+        URI predicate = statement.getPredicate();
+        if ( predicate.equals( DCAT_DISTRIBUTION ) && statement.getObject() instanceof Resource )
+          for ( Value format : statements.filter( ( Resource ) statement.getObject(), DCTERMS.FORMAT, null ).objects() )
+            addValue( dataset, entry, Facet.FORMAT, format );
+        else if ( facetOf( predicate ) != null )
+          addValue( dataset, entry, facetOf( predicate ), statement.getObject() );
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Adds the formats of a new distribution of {@code dataset}.
+   *
+   * @param dataset      Dataset to which the distribution was added.
+   * @param distribution Distribution which was added.
+   * @param statements   Statements describing the distribution.
+   */
+  public void addDistribution( URI dataset, URI distribution, Model statements ) {
+    lock.writeLock().lock();
+    try {
+      Entry entry = entries.get( dataset );
+      if ( entry == null )
+        return;
+      for ( Value format : statements.filter( distribution, DCTERMS.FORMAT, null ).objects() )
+        addValue( dataset, entry, Facet.FORMAT, format );
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes {@code dataset} from the index.
+   *
+   * @param dataset Dataset which was destroyed.
+   */
+  public void remove( URI dataset ) {
+    lock.writeLock().lock();
+    try {
+      removeEntry( dataset );
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the datasets of {@code catalog} which have all {@code values} for {@code facet}.
+   *
+   * @param catalog Catalog whose datasets are filtered.
+   * @param facet   Facet which is filtered on.
+   * @param values  Values which the datasets should have.
+   * @return Matching datasets, may be empty.
+   */
+  public Set<URI> filter( URI catalog, Facet facet, Collection<String> values ) {
+    ensureLoaded();
+    lock.readLock().lock();
+    try {
+      Map<String, Set<URI>> index = facetIndex( catalog, facet );
+      Set<URI> matches = null;
+      for ( String value : values ) {
+        Set<URI> datasets = index == null ? null : index.get( value );
+        if ( datasets == null )
+          return new HashSet<URI>();
+        if ( matches == null )
+          matches = new HashSet<URI>( datasets );
+        else
+          matches.retainAll( datasets );
+      }
+      return matches == null ? new HashSet<URI>() : matches;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Counts the datasets per value of each facet.
+   *
+   * @param catalog Catalog whose datasets are counted.
+   * @param within  Datasets which are counted, or null to count all datasets of {@code catalog}.
+   * @param limit   Maximum number of values which are returned per facet, 0 for all of them.
+   * @return Number of datasets by value by facet name, most frequent value first.
+   */
+  public Map<String, Map<String, Integer>> counts( URI catalog, Collection<URI> within, int limit ) {
+    ensureLoaded();
+    Map<Facet, Map<String, Integer>> counts = new EnumMap<Facet, Map<String, Integer>>( Facet.class );
+    for ( Facet facet : Facet.values() )
+      counts.put( facet, new HashMap<String, Integer>() );
+    lock.readLock().lock();
+    try {
+      if ( within == null ) {
+        for ( Facet facet : Facet.values() ) {
+          Map<String, Set<URI>> index = facetIndex( catalog, facet );
+          if ( index != null )
+            for ( Map.Entry<String, Set<URI>> value : index.entrySet() )
+              counts.get( facet ).put( value.getKey(), value.getValue().size() );
+        }
+      } else {
+        for ( URI dataset : within ) {
+          Entry entry = entries.get( dataset );
+          if ( entry == null || !entry.catalog.equals( catalog ) )
+            continue;
+          for ( Map.Entry<Facet, Set<String>> values : entry.values.entrySet() )
+            for ( String value : values.getValue() )
+              increment( counts.get( values.getKey() ), value );
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    Map<String, Map<String, Integer>> sorted = new LinkedHashMap<String, Map<String, Integer>>();
+    for ( Map.Entry<Facet, Map<String, Integer>> facet : counts.entrySet() )
+      sorted.put( facet.getKey().facetName, mostFrequent( facet.getValue(), limit ) );
+    return sorted;
+  }
+
+
+  // --- LOADING
+
+  /**
+   * Loads the facets of all datasets in the store.
+   */
+  protected void load() {
+    Db.streamQuery( new RowHandler() {
+      @Override
+      public boolean handleRow( BindingSet row ) {
+        Value catalog = row.getValue( "catalog" );
+        Value dataset = row.getValue( "dataset" );
+        if ( !( catalog instanceof URI ) || !( dataset instanceof URI ) )
+          return true;
+        Entry entry = entries.get( dataset );
+        if ( entry == null ) {
+          entry = new Entry( ( URI ) catalog );
+          entries.put( ( URI ) dataset, entry );
+        }
+        Facet facet = row.hasBinding( "p" ) ? facetOf( ( URI ) row.getValue( "p" ) ) : Facet.FORMAT;
+        if ( facet != null )
+          addValue( ( URI ) dataset, entry, facet, row.getValue( "o" ) );
+        return true;
+      }
+    }, "" +
+        " @PREFIX" +
+        " SELECT ?catalog ?dataset ?p ?o" +
+        " WHERE {" +
+        "   GRAPH ?catalog {" +
+        "     ?catalog dcat:dataset ?dataset." +
+        "   }" +
+        "   GRAPH ?dataset {" +
+        "     {" +
+        "       ?dataset ?p ?o." +
+        "       FILTER( ?p IN ( dcat:theme, dct:publisher, dct:language ) )" +
+        "     } UNION {" +
+        "       ?dataset dcat:distribution ?distribution." +
+        "       ?distribution dct:format ?o." +
+        "     }" +
+        "   }" +
+        " }" );
+  }
+
+
+  // --- IMPLEMENTATION
+
+  /** Facet values of an indexed dataset. */
+  private static class Entry {
+    final URI catalog;
+    final Map<Facet, Set<String>> values = new EnumMap<Facet, Set<String>>( Facet.class );
+
+    Entry( URI catalog ) {
+      this.catalog = catalog;
+    }
+  }
+
+  private void ensureLoaded() {
+    lock.readLock().lock();
+    try {
+      if ( loaded )
+        return;
+    } finally {
+      lock.readLock().unlock();
+    }
+    lock.writeLock().lock();
+    try {
+      if ( !loaded ) {
+        load();
+        loaded = true;
+      }
+    } catch ( RuntimeException e ) {
+      catalogs.clear();
+      entries.clear();
+      throw e;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private static Facet facetOf( URI predicate ) {
+    if ( predicate.equals( DCAT_THEME ) )
+      return Facet.THEME;
+    if ( predicate.equals( DCTERMS.PUBLISHER ) )
+      return Facet.PUBLISHER;
+    if ( predicate.equals( DCTERMS.LANGUAGE ) )
+      return Facet.LANGUAGE;
+    return null;
+  }
+
+  private Map<String, Set<URI>> facetIndex( URI catalog, Facet facet ) {
+    Map<Facet, Map<String, Set<URI>>> facets = catalogs.get( catalog );
+    return facets == null ? null : facets.get( facet );
+  }
+
+  private void addValue( URI dataset, Entry entry, Facet facet, Value value ) {
+    Set<String> values = entry.values.get( facet );
+    if ( values == null ) {
+      values = new HashSet<String>( 2 );
+      entry.values.put( facet, values );
+    }
+    if ( !values.add( value.stringValue() ) )
+      return;
+
+    Map<Facet, Map<String, Set<URI>>> facets = catalogs.get( entry.catalog );
+    if ( facets == null ) {
+      facets = new EnumMap<Facet, Map<String, Set<URI>>>( Facet.class );
+      catalogs.put( entry.catalog, facets );
+    }
+    Map<String, Set<URI>> index = facets.get( facet );
+    if ( index == null ) {
+      index = new HashMap<String, Set<URI>>();
+      facets.put( facet, index );
+    }
+    Set<URI> datasets = index.get( value.stringValue() );
+    if ( datasets == null ) {
+      datasets = new HashSet<URI>();
+      index.put( value.stringValue(), datasets );
+    }
+    datasets.add( dataset );
+  }
+
+  private void removeEntry( URI dataset ) {
+    Entry entry = entries.remove( dataset );
+    if ( entry == null )
+      return;
+    for ( Map.Entry<Facet, Set<String>> values : entry.values.entrySet() ) {
+      Map<String, Set<URI>> index = facetIndex( entry.catalog, values.getKey() );
+      for ( String value : values.getValue() ) {
+        Set<URI> datasets = index.get( value );
+        datasets.remove( dataset );
+        if ( datasets.isEmpty() )
+          index.remove( value );
+      }
+    }
+  }
+
+  private static void increment( Map<String, Integer> counts, String value ) {
+    Integer count = counts.get( value );
+    counts.put( value, count == null ? 1 : count + 1 );
+  }
+
+  /**
+   * @return The {@code limit} most frequent values in {@code counts}, most frequent first, ties
+   *         ordered by value.
+   */
+  private static Map<String, Integer> mostFrequent( final Map<String, Integer> counts, int limit ) {
+    List<String> values = new ArrayList<String>( counts.keySet() );
+    Collections.sort( values, new Comparator<String>() {
+      @Override
+      public int compare( String a, String b ) {
+        int byCount = counts.get( b ).compareTo( counts.get( a ) );
+        return byCount != 0 ? byCount : a.compareTo( b );
+      }
+    } );
+    Map<String, Integer> sorted = new LinkedHashMap<String, Integer>();
+    for ( String value : limit == 0 ? values : values.subList( 0, Math.min( limit, values.size() ) ) )
+      sorted.put( value, counts.get( value ) );
+    return sorted;
+  }
+}
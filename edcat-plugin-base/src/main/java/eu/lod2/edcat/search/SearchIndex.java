@@ -0,0 +1,433 @@
+package eu.lod2.edcat.search;
+
+import eu.lod2.edcat.utils.JsonLdContext;
+import eu.lod2.query.Db;
+import eu.lod2.query.RowHandler;
+import org.openrdf.model.*;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.query.BindingSet;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-process inverted index over the literals of a few fields of the datasets, which ranks the
+ * datasets matching a free text query.
+ * <p/>
+ * The literals are split into lowercase terms without diacritics.  Each term keeps the datasets in
+ * which it occurs, with a frequency weighted by the field it occurs in, and the languages of the
+ * literals it occurs in.  A query matches the datasets which contain all of its terms.  When the
+ * query asks for a language, the terms must occur in a literal of that language or in a literal
+ * without a language.  The matches are ranked with BM25.
+ * <p/>
+ * The index for datasets, see {@link #forDatasets()}, is loaded from the store when it is first
+ * searched, and kept up to date by {@link DatasetIndexer} afterwards.
+ */
+public class SearchIndex {
+
+  /** Weight of a term in the title of a dataset. */
+  public static final float TITLE_WEIGHT = 3;
+
+  /** Weight of a keyword of a dataset. */
+  public static final float KEYWORD_WEIGHT = 2;
+
+  /** Weight of a term in the description of a dataset. */
+  public static final float DESCRIPTION_WEIGHT = 1;
+
+  /** Language under which terms of literals without a language are kept. */
+  private static final String ANY_LANGUAGE = "";
+
+  /** BM25 saturation of the term frequency. */
+  private static final double K1 = 1.2;
+
+  /** BM25 normalization by the length of the dataset. */
+  private static final double B = 0.75;
+
+  private static final Pattern DIACRITICS = Pattern.compile( "\\p{M}+" );
+
+  /** Index over the datasets, see {@link #forDatasets()}. */
+  private static SearchIndex datasets;
+
+  /** Weight of each indexed predicate. */
+  private final Map<URI, Float> fields;
+
+  /** Indexed datasets by term. */
+  private final Map<String, Map<URI, Posting>> postings = new HashMap<String, Map<URI, Posting>>();
+
+  /** Indexed datasets. */
+  private final Map<URI, Document> documents = new HashMap<URI, Document>();
+
+  /** Sum of the lengths of the indexed datasets. */
+  private double totalLength = 0;
+
+  /** Whether the index reflects the store, false until it has been loaded. */
+  private boolean loaded;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Constructs an empty index.
+   *
+   * @param fields Weight of each predicate whose literals are indexed.
+   */
+  public SearchIndex( Map<URI, Float> fields ) {
+    this( fields, true );
+  }
+
+  private SearchIndex( Map<URI, Float> fields, boolean loaded ) {
+    this.fields = new HashMap<URI, Float>( fields );
+    this.loaded = loaded;
+  }
+
+  /**
+   * Retrieves the index over the title, description and keywords of the datasets.  The predicates
+   * of these fields are taken from the JSON-LD context of the datasets.
+   *
+   * @return SearchIndex shared by all requests.
+   */
+  public static synchronized SearchIndex forDatasets() {
+    if ( datasets == null ) {
+      Map<String, String> keywords = JsonLdContext.forKind( JsonLdContext.Kind.Dataset ).getKeywordMap();
+      Map<URI, Float> fields = new HashMap<URI, Float>();
+      addField( fields, keywords, "title", TITLE_WEIGHT );
+      addField( fields, keywords, "keyword", KEYWORD_WEIGHT );
+      addField( fields, keywords, "description", DESCRIPTION_WEIGHT );
+      datasets = new SearchIndex( fields, false );
+    }
+    return datasets;
+  }
+
+  /**
+   * Splits {@code text} into the terms under which it is indexed: lowercase runs of letters and
+   * digits, without diacritics, of at least two characters.
+   *
+   * @param text     Text which should be split.
+   * @param language Language of {@code text}, used to lowercase it, may be null.
+   * @return Terms in {@code text}, in order and with duplicates.
+   */
+  public static List<String> tokenize( String text, String language ) {
+    Locale locale = language == null || language.isEmpty() ? Locale.ROOT : new Locale( primaryLanguage( language ) );
+    String folded = DIACRITICS.matcher( Normalizer.normalize( text.toLowerCase( locale ), Normalizer.Form.NFD ) ).replaceAll( "" );
+    List<String> terms = new ArrayList<String>();
+    int start = -1;
+    for ( int i = 0; i <= folded.length(); i++ ) {
+      boolean inTerm = i < folded.length() && Character.isLetterOrDigit( folded.charAt( i ) );
+      if ( inTerm && start < 0 )
+        start = i;
+      if ( !inTerm && start >= 0 ) {
+        if ( i - start >= 2 )
+          terms.add( folded.substring( start, i ) );
+        start = -1;
+      }
+    }
+    return terms;
+  }
+
+  /**
+   * Replaces the indexed content of {@code dataset} by its literals in {@code statements}.
+   * Statements about other subjects and other predicates are ignored.
+   *
+   * @param catalog    Catalog which contains the dataset.
+   * @param dataset    Dataset which is indexed.
+   * @param statements Statements describing the dataset.
+   */
+  public void index( URI catalog, URI dataset, Model statements ) {
+    lock.writeLock().lock();
+    try {
+      if ( !loaded )
+        return;
+      removeDocument( dataset );
+      Document document = new Document( catalog );
+      documents.put( dataset, document );
+      for ( Statement statement : statements.filter( dataset, null, null ) )
+        addStatement( dataset, document, statement.getPredicate(), statement.getObject() );
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes {@code dataset} from the index.
+   *
+   * @param dataset Dataset which was destroyed.
+   */
+  public void remove( URI dataset ) {
+    lock.writeLock().lock();
+    try {
+      removeDocument( dataset );
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Searches the datasets of {@code catalog} which contain all terms of {@code query}.
+   *
+   * @param catalog  Catalog whose datasets are searched.
+   * @param query    Free text query.
+   * @param language Language in which the terms should occur, or null for any language.
+   * @param offset   Number of ranked datasets which are skipped.
+   * @param limit    Maximum number of datasets which are returned, 0 for all of them.
+   * @return Result with the requested part of the ranking and the number of matching datasets.
+   */
+  public Result search( URI catalog, String query, String language, int offset, int limit ) {
+    return search( catalog, query, language, null, offset, limit );
+  }
+
+  /**
+   * Searches the datasets of {@code catalog} which contain all terms of {@code query}, among
+   * {@code within}.
+   *
+   * @param catalog  Catalog whose datasets are searched.
+   * @param query    Free text query.
+   * @param language Language in which the terms should occur, or null for any language.
+   * @param within   Datasets which may match, or null if all datasets of {@code catalog} may.
+   * @param offset   Number of ranked datasets which are skipped.
+   * @param limit    Maximum number of datasets which are returned, 0 for all of them.
+   * @return Result with the requested part of the ranking and the number of matching datasets.
+   */
+  public Result search( URI catalog, String query, String language, Set<URI> within, int offset, int limit ) {
+    ensureLoaded();
+    final Map<URI, Double> scores = new HashMap<URI, Double>();
+    lock.readLock().lock();
+    try {
+      Set<String> terms = new LinkedHashSet<String>( tokenize( query, language ) );
+      List<Map<URI, Posting>> lists = new ArrayList<Map<URI, Posting>>( terms.size() );
+      for ( String term : terms ) {
+        Map<URI, Posting> list = postings.get( term );
+        if ( list == null )
+          return new Result( Collections.<URI>emptyList(), 0 );
+        lists.add( list );
+      }
+      if ( lists.isEmpty() )
+        return new Result( Collections.<URI>emptyList(), 0 );
+      Collections.sort( lists, new Comparator<Map<URI, Posting>>() {
+        @Override
+        public int compare( Map<URI, Posting> a, Map<URI, Posting> b ) {
+          return a.size() - b.size();
+        }
+      } );
+      String wanted = language == null || language.isEmpty() ? null : primaryLanguage( language );
+      double averageLength = totalLength / documents.size();
+      candidates:
+      for ( URI dataset : lists.get( 0 ).keySet() ) {
+        Document document = documents.get( dataset );
+        if ( !document.catalog.equals( catalog ) || ( within != null && !within.contains( dataset ) ) )
+          continue;
+        double score = 0;
+        for ( Map<URI, Posting> list : lists ) {
+          Posting posting = list.get( dataset );
+          if ( posting == null || !posting.matches( wanted ) )
+            continue candidates;
+          double idf = Math.log( 1 + ( documents.size() - list.size() + 0.5 ) / ( list.size() + 0.5 ) );
+          score += idf * posting.weight * ( K1 + 1 ) / ( posting.weight + K1 * ( 1 - B + B * document.length / averageLength ) );
+        }
+        scores.put( dataset, score );
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    List<URI> ranking = new ArrayList<URI>( scores.keySet() );
+    Collections.sort( ranking, new Comparator<URI>() {
+      @Override
+      public int compare( URI a, URI b ) {
+        int byScore = scores.get( b ).compareTo( scores.get( a ) );
+        return byScore != 0 ? byScore : a.stringValue().compareTo( b.stringValue() );
+      }
+    } );
+    int from = Math.min( offset, ranking.size() );
+    int to = limit == 0 ? ranking.size() : Math.min( from + limit, ranking.size() );
+    return new Result( new ArrayList<URI>( ranking.subList( from, to ) ), ranking.size() );
+  }
+
+  /**
+   * @return Number of indexed datasets.
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return documents.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+
+  // --- RESULT
+
+  /** Part of the ranking of a search. */
+  public static class Result {
+    private final List<URI> datasets;
+    private final int total;
+
+    Result( List<URI> datasets, int total ) {
+      this.datasets = datasets;
+      this.total = total;
+    }
+
+    /**
+     * @return Matching datasets on the requested part of the ranking, best match first.
+     */
+    public List<URI> getDatasets() {
+      return datasets;
+    }
+
+    /**
+     * @return Number of datasets which match the query.
+     */
+    public int getTotal() {
+      return total;
+    }
+  }
+
+
+  // --- LOADING
+
+  /**
+   * Loads the literals of the indexed fields of all datasets in the store.  Changes which are
+   * reported while the index is loaded wait for the load to finish.
+   */
+  protected void load() {
+    StringBuilder predicates = new StringBuilder();
+    for ( URI field : fields.keySet() )
+      predicates.append( predicates.length() == 0 ? "" : ", " ).append( "<" ).append( field.stringValue() ).append( ">" );
+    Db.streamQuery( new RowHandler() {
+      @Override
+      public boolean handleRow( BindingSet row ) {
+        Value catalog = row.getValue( "catalog" );
+        Value dataset = row.getValue( "dataset" );
+        if ( !( catalog instanceof URI ) || !( dataset instanceof URI ) )
+          return true;
+        Document document = documents.get( dataset );
+        if ( document == null ) {
+          document = new Document( ( URI ) catalog );
+          documents.put( ( URI ) dataset, document );
+        }
+        addStatement( ( URI ) dataset, document, ( URI ) row.getValue( "p" ), row.getValue( "o" ) );
+        return true;
+      }
+    }, "" +
+        " @PREFIX" +
+        " SELECT ?catalog ?dataset ?p ?o" +
+        " WHERE {" +
+        "   GRAPH ?catalog {" +
+        "     ?catalog dcat:dataset ?dataset." +
+        "   }" +
+        "   GRAPH ?dataset {" +
+        "     ?dataset ?p ?o." +
+        "     FILTER( ?p IN ( " + predicates + " ) )" +
+        "   }" +
+        " }" );
+  }
+
+
+  // --- IMPLEMENTATION
+
+  /** Occurrences of a term in a dataset. */
+  private static class Posting {
+    /** Frequency of the term, weighted by the fields it occurs in. */
+    float weight = 0;
+
+    /** Primary languages of the literals in which the term occurs. */
+    final Set<String> languages = new HashSet<String>( 2 );
+
+    boolean matches( String language ) {
+      return language == null || languages.contains( language ) || languages.contains( ANY_LANGUAGE );
+    }
+  }
+
+  /** Indexed dataset. */
+  private static class Document {
+    final URI catalog;
+
+    /** Terms which occur in the dataset. */
+    final Set<String> terms = new HashSet<String>();
+
+    /** Number of terms in the dataset, weighted by the fields they occur in. */
+    double length = 0;
+
+    Document( URI catalog ) {
+      this.catalog = catalog;
+    }
+  }
+
+  private void ensureLoaded() {
+    lock.readLock().lock();
+    try {
+      if ( loaded )
+        return;
+    } finally {
+      lock.readLock().unlock();
+    }
+    lock.writeLock().lock();
+    try {
+      if ( !loaded ) {
+        load();
+        loaded = true;
+      }
+    } catch ( RuntimeException e ) {
+      postings.clear();
+      documents.clear();
+      totalLength = 0;
+      throw e;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Indexes the terms of {@code object} if it is a literal of an indexed field.
+   */
+  private void addStatement( URI dataset, Document document, URI predicate, Value object ) {
+    Float weight = fields.get( predicate );
+    if ( weight == null || !( object instanceof Literal ) )
+      return;
+    Literal literal = ( Literal ) object;
+    String language = literal.getLanguage() == null ? ANY_LANGUAGE : primaryLanguage( literal.getLanguage() );
+    for ( String term : tokenize( literal.getLabel(), literal.getLanguage() ) ) {
+      Map<URI, Posting> list = postings.get( term );
+      if ( list == null ) {
+        list = new HashMap<URI, Posting>( 4 );
+        postings.put( term, list );
+      }
+      Posting posting = list.get( dataset );
+      if ( posting == null ) {
+        posting = new Posting();
+        list.put( dataset, posting );
+      }
+      posting.weight += weight;
+      posting.languages.add( language );
+      document.terms.add( term );
+      document.length += weight;
+      totalLength += weight;
+    }
+  }
+
+  private void removeDocument( URI dataset ) {
+    Document document = documents.remove( dataset );
+    if ( document == null )
+      return;
+    for ( String term : document.terms ) {
+      Map<URI, Posting> list = postings.get( term );
+      list.remove( dataset );
+      if ( list.isEmpty() )
+        postings.remove( term );
+    }
+    totalLength -= document.length;
+  }
+
+  private static String primaryLanguage( String language ) {
+    int dash = language.indexOf( '-' );
+    return ( dash < 0 ? language : language.substring( 0, dash ) ).toLowerCase( Locale.ROOT );
+  }
+
+  private static void addField( Map<URI, Float> fields, Map<String, String> keywords, String keyword, float weight ) {
+    String predicate = keywords.get( keyword );
+    if ( predicate != null )
+      fields.put( new URIImpl( predicate ), weight );
+  }
+}
@@ -0,0 +1,15 @@
+package eu.lod2.edcat.utils;
+
+public class BadRequestException extends Exception {
+  public BadRequestException() {
+    super();
+  }
+
+  public BadRequestException(String message) {
+    super(message);
+  }
+
+  public BadRequestException(String message,Throwable t) {
+    super(message,t);
+  }
+}
@@ -1,86 +1,179 @@
 package eu.lod2.edcat.utils;
 
 import org.openrdf.model.*;
-import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.ContextStatementImpl;
 import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.model.impl.URIImpl;
 
-import java.util.UUID;
+import java.util.*;
 
 /**
  * This class helps in converting blank nodes in a Model to URIs.
+ * <p/>
+ * A blank node which has statements of its own and which is referred to by a URI through a
+ * predicate known by the JsonLdContext is renamed to {@code <uri>/<keyword>/<uuid>}.  Blank nodes
+ * nested in renamed blank nodes are renamed in turn.  The statements are indexed once and the
+ * blank nodes are named through a worklist, so the work is linear in the size of the model.
  */
 public class BlankNodeNuker {
 
   /** Contains the model in which we will nuke the blank nodes. */
   private Model model;
 
-  /** JsonLdContext for translating predicates */
-  private JsonLdContext ldContext;
+  /** Mapping from a predicate URI to the JSON keyword used to build the new URIs */
+  private Map<String, String> reverseKeywordMap;
+
+  /** Statements with the blank node as subject, in model order. */
+  private Map<BNode, List<Statement>> bySubject = new LinkedHashMap<BNode, List<Statement>>();
+
+  /** Statements with the blank node as object. */
+  private Map<BNode, List<Statement>> byObject = new HashMap<BNode, List<Statement>>();
+
+  /** URIs which have been chosen for the nuked blank nodes. */
+  private Map<BNode, URI> names = new HashMap<BNode, URI>();
 
   /**
    * Constructs a new BlankNodeNuker
    *
-   * @param model Contains all statements in which we will try to nuke the blank nodes.
-   * @param kind  Contextual kind based on which the nodes will be nuked.  This calculates the
-   *              paths.
+   * @param model   Contains all statements in which we will try to nuke the blank nodes.
+   * @param context JsonLdContext based on which the nodes will be nuked.  This calculates the
+   *                paths.
    */
-  private BlankNodeNuker( Model model, JsonLdContext.Kind kind ) {
+  private BlankNodeNuker( Model model, JsonLdContext context ) {
     this.model = model;
-    this.ldContext = new JsonLdContext( kind );
+    this.reverseKeywordMap = context.getReverseKeywordMap();
   }
 
   /**
    * Nukes the recognized blank nodes in {@code model}, converting them to resources instead.
    *
    * @param model Model of which we will nuke the blank nodes.
+   * @param kind  Contextual kind based on which the nodes will be nuked.
    */
   public static void nuke( Model model , JsonLdContext.Kind kind ) {
-    (new BlankNodeNuker( model , kind )).nukeBlankNodes();
+    nuke( model, JsonLdContext.forKind( kind ) );
+  }
+
+  /**
+   * Nukes the recognized blank nodes in {@code model}, converting them to resources instead.
+   *
+   * @param model   Model of which we will nuke the blank nodes.
+   * @param context JsonLdContext based on which the nodes will be nuked.
+   */
+  public static void nuke( Model model, JsonLdContext context ) {
+    (new BlankNodeNuker( model , context )).nukeBlankNodes();
   }
 
   /**
    * Nukes the understood blank nodes in {@link BlankNodeNuker#model} and translates them to URIs.
    */
   private void nukeBlankNodes() {
-    // until we have changes
-    int changes;
-    do {
-      changes = 0;
-      // walk over each triple
-      Model walkingModel = new LinkedHashModel( model );
-      for ( Statement s : walkingModel ) {
-        walkingModel = new LinkedHashModel( model ); // reinitialize model, some triples may have changed during this step
-        Resource target = s.getSubject();
-        // if the triple is a blank node
-        if ( target instanceof BNode
-            && model.contains( s.getSubject(), s.getPredicate(), s.getObject() ) ) {
-          // find a connection which refers to our blank node through a predicate known by the jsonLdContext
-          for ( Statement nameConnection : walkingModel.filter( null, null, s.getSubject() ) ) {
-            Resource connectingSubject = nameConnection.getSubject();
-            URI connectingPredicate = nameConnection.getPredicate();
-            if ( ldContext.getReverseKeywordMap().containsKey( connectingPredicate.stringValue() )
-                && connectingSubject instanceof URI ) {
-              // build the new URI
-              URI newTarget = new URIImpl( ""
-                  + connectingSubject.stringValue() + "/"
-                  + ldContext.getReverseKeywordMap().get( connectingPredicate.stringValue() ) + "/"
-                  + UUID.randomUUID() );
-              // replace the triples which have the blank node as subject or as object.
-              for ( Statement changeMySubject : walkingModel.filter( target, null, null ) ) {
-                model.remove( changeMySubject );
-                model.add( new StatementImpl( newTarget, changeMySubject.getPredicate(), changeMySubject.getObject() ) );
-              }
-              for ( Statement changeMyObject : walkingModel.filter( null, null, target ) ) {
-                model.remove( changeMyObject );
-                model.add( new StatementImpl( changeMyObject.getSubject(), changeMyObject.getPredicate(), newTarget ) );
-              }
-              // indicate something changed
-              changes++;
-            }
-          }
+    indexBlankNodes();
+    if ( bySubject.isEmpty() )
+      return;
+
+    // name the blank nodes which are connected directly to a URI
+    Deque<BNode> worklist = new ArrayDeque<BNode>();
+    for ( BNode node : bySubject.keySet() ) {
+      List<Statement> connections = byObject.get( node );
+      if ( connections == null )
+        continue;
+      for ( Statement connection : connections )
+        if ( connection.getSubject() instanceof URI
+            && nameFrom( node, connection.getSubject().stringValue(), connection.getPredicate() ) ) {
+          worklist.add( node );
+          break;
         }
+    }
+
+    // name the blank nodes which hang under a blank node which received a name
+    while ( !worklist.isEmpty() ) {
+      BNode parent = worklist.poll();
+      String parentName = names.get( parent ).stringValue();
+      for ( Statement statement : bySubject.get( parent ) ) {
+        Value child = statement.getObject();
+        if ( child instanceof BNode
+            && bySubject.containsKey( child )
+            && nameFrom( ( BNode ) child, parentName, statement.getPredicate() ) )
+          worklist.add( ( BNode ) child );
       }
-    } while ( changes > 0 );
+    }
+
+    rewriteStatements();
+  }
+
+  /**
+   * Builds the subject and object indexes for the blank nodes in the model.
+   */
+  private void indexBlankNodes() {
+    for ( Statement statement : model ) {
+      if ( statement.getSubject() instanceof BNode )
+        indexed( bySubject, ( BNode ) statement.getSubject() ).add( statement );
+      if ( statement.getObject() instanceof BNode )
+        indexed( byObject, ( BNode ) statement.getObject() ).add( statement );
+    }
+  }
+
+  /**
+   * Retrieves the list of statements for {@code node} in {@code index}, creating it if needed.
+   */
+  private static List<Statement> indexed( Map<BNode, List<Statement>> index, BNode node ) {
+    List<Statement> statements = index.get( node );
+    if ( statements == null ) {
+      statements = new ArrayList<Statement>();
+      index.put( node, statements );
+    }
+    return statements;
+  }
+
+  /**
+   * Names {@code node} after the resource it is connected to, if it wasn't named yet and if
+   * {@code predicate} is known by the JsonLdContext.
+   *
+   * @param node      Blank node which should receive a name.
+   * @param parent    URI of the resource which refers to {@code node}.
+   * @param predicate Predicate through which {@code parent} refers to {@code node}.
+   * @return true iff {@code node} received a name.
+   */
+  private boolean nameFrom( BNode node, String parent, URI predicate ) {
+    if ( names.containsKey( node ) )
+      return false;
+    String keyword = reverseKeywordMap.get( predicate.stringValue() );
+    if ( keyword == null )
+      return false;
+    names.put( node, new URIImpl( parent + "/" + keyword + "/" + UUID.randomUUID() ) );
+    return true;
+  }
+
+  /**
+   * Replaces the named blank nodes in the statements of the model.
+   * <p/>
+   * The model is rebuilt as a whole, removing single statements from a Model scans the statements
+   * of their context, which would make this step quadratic again.
+   */
+  private void rewriteStatements() {
+    if ( names.isEmpty() )
+      return;
+    List<Statement> rewritten = new ArrayList<Statement>( model.size() );
+    for ( Statement statement : model )
+      rewritten.add( rename( statement ) );
+    model.clear();
+    model.addAll( rewritten );
+  }
+
+  /**
+   * Builds a copy of {@code statement} in which the named blank nodes have been replaced.
+   */
+  private Statement rename( Statement statement ) {
+    Resource subject = statement.getSubject();
+    Value object = statement.getObject();
+    if ( names.containsKey( subject ) )
+      subject = names.get( subject );
+    if ( names.containsKey( object ) )
+      object = names.get( object );
+    if ( statement.getContext() == null )
+      return new StatementImpl( subject, statement.getPredicate(), object );
+    else
+      return new ContextStatementImpl( subject, statement.getPredicate(), object, statement.getContext() );
   }
-}
\ No newline at end of file
+}
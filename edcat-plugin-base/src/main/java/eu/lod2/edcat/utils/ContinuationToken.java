@@ -0,0 +1,169 @@
+package eu.lod2.edcat.utils;
+
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.datatypes.XMLDatatypeUtil;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.XMLSchema;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Position in a list of resources which is ordered by a dct:modified timestamp and the URI of the
+ * resource.
+ * <p/>
+ * The token is handed to the client as an opaque string.  The next page of the list starts with
+ * the first resource which sorts after the position of the token, so pages stay stable when
+ * resources are added or removed while a client walks the list.  SPARQL can't compare URIs with
+ * {@code >}, so the token doesn't locate the next resource by its URI: it also holds the number of
+ * listed resources with the same timestamp, which the next page skips.  A decoded token only
+ * contains a valid xsd:dateTime, a positive count and an absolute URI without characters which
+ * would have to be escaped in a SPARQL IRI, so its values may be used in a query as is.
+ */
+public class ContinuationToken {
+
+  /** Version of the token layout, lets us change the layout without breaking running clients. */
+  private static final String VERSION = "2";
+
+  /** Separates the parts of an encoded token. */
+  private static final char SEPARATOR = '\n';
+
+  /** Characters which may not appear in an IRI reference in SPARQL. */
+  private static final String ILLEGAL_IRI_CHARACTERS = "<>\"{}|^`\\";
+
+  /** Hexadecimal digits used to encode the token. */
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /** dct:modified timestamp of the last resource on the page. */
+  private final Literal modified;
+
+  /** URI of the last resource on the page. */
+  private final URI resource;
+
+  /** Number of resources up to and including {@link #resource} with the same timestamp. */
+  private final int ties;
+
+  /**
+   * Constructs a token which points after {@code resource}.
+   *
+   * @param modified xsd:dateTime at which {@code resource} was last modified.
+   * @param resource Last resource on the page.
+   * @param ties     Number of resources in the list up to and including {@code resource} which
+   *                 were modified at {@code modified}, at least 1.
+   */
+  public ContinuationToken( Literal modified, URI resource, int ties ) {
+    if ( ties < 1 )
+      throw new IllegalArgumentException( "A continuation token counts at least its own resource" );
+    this.modified = modified;
+    this.resource = resource;
+    this.ties = ties;
+  }
+
+  /**
+   * @return dct:modified timestamp of the last resource on the page.
+   */
+  public Literal getModified() {
+    return modified;
+  }
+
+  /**
+   * @return URI of the last resource on the page.
+   */
+  public URI getResource() {
+    return resource;
+  }
+
+  /**
+   * @return Number of resources up to and including the last resource on the page which were
+   *         modified at {@link #getModified()}.
+   */
+  public int getTies() {
+    return ties;
+  }
+
+  /**
+   * Encodes this token as an opaque string which is safe to use in a URL.
+   *
+   * @return String which can be decoded by {@link #decode(String)}.
+   */
+  public String encode() {
+    String plain = VERSION + SEPARATOR + modified.getLabel() + SEPARATOR + ties + SEPARATOR + resource.stringValue();
+    byte[] bytes = utf8( plain );
+    char[] encoded = new char[bytes.length * 2];
+    for ( int i = 0; i < bytes.length; i++ ) {
+      encoded[2 * i] = HEX[( bytes[i] >> 4 ) & 0xf];
+      encoded[2 * i + 1] = HEX[bytes[i] & 0xf];
+    }
+    return new String( encoded );
+  }
+
+  /**
+   * Decodes a token which was built by {@link #encode()}.
+   *
+   * @param token String as it was handed to the client.
+   * @return ContinuationToken which was encoded in {@code token}.
+   * @throws IllegalArgumentException Thrown if {@code token} is not a valid continuation token.
+   */
+  public static ContinuationToken decode( String token ) {
+    if ( token.length() % 2 != 0 )
+      throw new IllegalArgumentException( "Malformed continuation token" );
+    byte[] bytes = new byte[token.length() / 2];
+    for ( int i = 0; i < bytes.length; i++ ) {
+      int high = Character.digit( token.charAt( 2 * i ), 16 );
+      int low = Character.digit( token.charAt( 2 * i + 1 ), 16 );
+      if ( high < 0 || low < 0 )
+        throw new IllegalArgumentException( "Malformed continuation token" );
+      bytes[i] = ( byte ) ( ( high << 4 ) | low );
+    }
+    String[] parts = fromUtf8( bytes ).split( String.valueOf( SEPARATOR ), -1 );
+    if ( parts.length != 4 || !VERSION.equals( parts[0] ) )
+      throw new IllegalArgumentException( "Unknown continuation token" );
+    if ( !XMLDatatypeUtil.isValidDateTime( parts[1] ) )
+      throw new IllegalArgumentException( "Continuation token does not contain a valid timestamp" );
+    int ties;
+    try {
+      ties = Integer.parseInt( parts[2] );
+    } catch ( NumberFormatException e ) {
+      ties = 0;
+    }
+    if ( ties < 1 )
+      throw new IllegalArgumentException( "Continuation token does not contain a valid count" );
+    if ( !isSafeURI( parts[3] ) )
+      throw new IllegalArgumentException( "Continuation token does not contain a valid URI" );
+    return new ContinuationToken( new LiteralImpl( parts[1], XMLSchema.DATETIME ), new URIImpl( parts[3] ), ties );
+  }
+
+
+  // --- IMPLEMENTATION
+
+  /**
+   * @return true iff {@code uri} is an absolute URI which can be written in a SPARQL query as is.
+   */
+  private static boolean isSafeURI( String uri ) {
+    if ( uri.indexOf( ':' ) < 1 )
+      return false;
+    for ( int i = 0; i < uri.length(); i++ ) {
+      char c = uri.charAt( i );
+      if ( c <= ' ' || ILLEGAL_IRI_CHARACTERS.indexOf( c ) >= 0 )
+        return false;
+    }
+    return true;
+  }
+
+  private static byte[] utf8( String string ) {
+    try {
+      return string.getBytes( "UTF-8" );
+    } catch ( UnsupportedEncodingException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  private static String fromUtf8( byte[] bytes ) {
+    try {
+      return new String( bytes, "UTF-8" );
+    } catch ( UnsupportedEncodingException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+}
@@ -12,7 +12,7 @@ public class DcatJsonCompacter {
   private JsonLdContext context;
 
   public DcatJsonCompacter( JsonLdContext.Kind kind ) {
-    this.context = new JsonLdContext( kind );
+    this.context = JsonLdContext.forKind( kind );
   }
 
   public DcatJsonCompacter( JsonLdContext context ) {
@@ -21,7 +21,7 @@ public class DcatJsonCompacter {
 
   @SuppressWarnings( "UnusedDeclaration" )
   public DcatJsonCompacter( URL context ){
-    this.context = new JsonLdContext( context );
+    this.context = JsonLdContext.forLocation( context );
   }
 
   public List<Map<String, Object>> compact (List<Map<String,Object>> list) {
@@ -17,8 +17,10 @@ public class DcatURI {
   );
   public static final String CATALOG_LIST_PATH = "/catalogs";
   public static final String CATALOG_OBJECT_PATH = "/catalogs/{catalogId}";
+  public static final String CATALOG_DUMP_PATH = "/catalogs/{catalogId}/dump";
   public static final String DATASET_LIST_PATH = "/catalogs/{catalogId}/datasets";
   public static final String DATASET_OBJECT_PATH = "/catalogs/{catalogId}/datasets/{datasetId}";
+  public static final String DATASET_IMPORT_PATH = "/catalogs/{catalogId}/datasets/import";
   public static final String DISTRIBUTION_LIST_PATH = "/catalogs/{catalogId}/datasets/{datasetId}/distributions";
   public static final String DISTRIBUTION_OBJECT_PATH = "/catalogs/{catalogId}/datasets/{datasetId}/distributions/{distributionId}";
 
@@ -0,0 +1,115 @@
+package eu.lod2.edcat.utils;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a stream of JSON objects one at a time, without loading the whole stream.
+ * <p/>
+ * The stream may either be a single JSON array of objects, or a sequence of JSON objects such as
+ * newline delimited JSON (NDJSON).  Each object is returned as the Map which {@link
+ * DcatJsonParser#convertToJsonMap(java.io.InputStream)} would have built for it.
+ */
+public class JsonItemReader {
+
+  /** Shared factory, JsonFactory is thread-safe once configured. */
+  private static final JsonFactory jsonFactory = new JsonFactory();
+
+  /** Parser reading the stream. */
+  private final JsonParser parser;
+
+  /** Whether the objects are the elements of a top level array. */
+  private Boolean inArray = null;
+
+  /** Number of objects which have been read. */
+  private int count = 0;
+
+  /**
+   * Constructs a reader for {@code in}.  The stream is not closed by the reader.
+   *
+   * @param in Stream containing a JSON array or a sequence of JSON objects.
+   * @throws IOException Thrown if the stream can't be read.
+   */
+  public JsonItemReader( InputStream in ) throws IOException {
+    this.parser = jsonFactory.createJsonParser( in );
+    this.parser.disable( JsonParser.Feature.AUTO_CLOSE_SOURCE );
+  }
+
+  /**
+   * Reads the next object of the stream.
+   *
+   * @return Map containing the next object, or null if the stream has ended.
+   * @throws IOException Thrown if the stream can't be read or does not contain a JSON object
+   *                     where one was expected.  The reader can't continue after the latter.
+   */
+  @SuppressWarnings( "unchecked" )
+  public Map<String, Object> next() throws IOException {
+    JsonToken token = parser.nextToken();
+    if ( inArray == null ) {
+      inArray = token == JsonToken.START_ARRAY;
+      if ( inArray )
+        token = parser.nextToken();
+    }
+    if ( token == null || ( inArray && token == JsonToken.END_ARRAY ) )
+      return null;
+    if ( token != JsonToken.START_OBJECT )
+      throw new JsonParseException( "Expected a JSON object for item " + count, parser.getCurrentLocation() );
+    Map<String, Object> item = ( Map<String, Object> ) readValue();
+    count++;
+    return item;
+  }
+
+  /**
+   * @return Number of objects which have been read completely, which is also the index of the
+   *         object which is read next.
+   */
+  public int getCount() {
+    return count;
+  }
+
+
+  // --- IMPLEMENTATION
+
+  /**
+   * Reads the value which starts at the current token.
+   */
+  private Object readValue() throws IOException {
+    switch ( parser.getCurrentToken() ) {
+      case START_OBJECT:
+        Map<String, Object> object = new LinkedHashMap<String, Object>();
+        while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+          String key = parser.getCurrentName();
+          parser.nextToken();
+          object.put( key, readValue() );
+        }
+        return object;
+      case START_ARRAY:
+        List<Object> array = new ArrayList<Object>();
+        while ( parser.nextToken() != JsonToken.END_ARRAY )
+          array.add( readValue() );
+        return array;
+      case VALUE_STRING:
+        return parser.getText();
+      case VALUE_NUMBER_INT:
+      case VALUE_NUMBER_FLOAT:
+        return parser.getNumberValue();
+      case VALUE_TRUE:
+        return Boolean.TRUE;
+      case VALUE_FALSE:
+        return Boolean.FALSE;
+      case VALUE_NULL:
+        return null;
+      default:
+        throw new JsonParseException( "Unexpected " + parser.getCurrentToken(), parser.getCurrentLocation() );
+    }
+  }
+}
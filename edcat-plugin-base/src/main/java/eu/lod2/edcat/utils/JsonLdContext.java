@@ -3,8 +3,13 @@ package eu.lod2.edcat.utils;
 import com.github.jsonldjava.utils.JsonUtils;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This is a supporting class to help in the use of the @marshaledJsonLdContext used in JSON-LD,
@@ -31,13 +36,73 @@ import java.util.Map;
 public class JsonLdContext {
 
   /** Contains mapping from the JSON keyword to a string representation of the predicate. */
-  private Map<String, String> keywordMap;
+  private final Map<String, String> keywordMap;
 
   /** Contains mapping from a string representation of the predicate, to the JSON keyword. */
-  private Map<String, String> reverseKeywordMap;
+  private final Map<String, String> reverseKeywordMap;
+
+  /** Contents of the @context of the JSON-LD context file, never altered after loading. */
+  private final Map<String, Object> marshaledJsonLdContext;
 
   /** Location where the context can be found */
-  private URL contextLocation;
+  private final URL contextLocation;
+
+
+  // --- REGISTRY
+
+  /**
+   * Process-wide registry of the parsed contexts, keyed by the location of their JSON-LD file.
+   * <p/>
+   * A JsonLdContext is immutable once constructed, so one instance per location is shared by all
+   * threads.  The contexts of all {@link Kind}s are loaded when this class is initialized.
+   */
+  private static final ConcurrentMap<String, JsonLdContext> registry = new ConcurrentHashMap<String, JsonLdContext>();
+
+  static {
+    for ( Kind kind : Kind.values() ) {
+      URL location = getContextLocation( kind );
+      try {
+        if ( location != null )
+          registry.put( location.toString(), new JsonLdContext( location, true ) );
+      } catch ( IllegalStateException e ) {
+        // loading is retried when the context is first requested
+      }
+    }
+  }
+
+  /**
+   * Retrieves the shared JsonLdContext for {@code kind}.
+   *
+   * @param kind Kind for which we want the JsonLdContext.
+   * @return Shared, immutable JsonLdContext for {@code kind}.
+   * @throws IllegalStateException Thrown if the context for {@code kind} could not be loaded.
+   */
+  public static JsonLdContext forKind( Kind kind ) {
+    if ( kind == null )
+      throw new IllegalArgumentException( "unknown kind" );
+    return forLocation( getContextLocation( kind ) );
+  }
+
+  /**
+   * Retrieves the shared JsonLdContext for the context file at {@code contextLocation}, loading it
+   * on first use.
+   *
+   * @param contextLocation Location of the JSON-LD context file.
+   * @return Shared, immutable JsonLdContext for {@code contextLocation}.
+   * @throws IllegalStateException Thrown if the context could not be loaded.
+   */
+  public static JsonLdContext forLocation( URL contextLocation ) {
+    if ( contextLocation == null )
+      throw new IllegalStateException( "illegal context" );
+    JsonLdContext context = registry.get( contextLocation.toString() );
+    if ( context == null ) {
+      JsonLdContext loaded = new JsonLdContext( contextLocation, true );
+      context = registry.putIfAbsent( contextLocation.toString(), loaded );
+      if ( context == null )
+        context = loaded;
+    }
+    return context;
+  }
 
   /**
    * Retrieves the URL at which the JSON-LD context can be fetched.
@@ -91,13 +156,12 @@ public class JsonLdContext {
   /**
    * Simple constructor for a JsonLdContext.
    * <p/>
-   * Many operations on the JsonLdContext are instance methods for performance and threading
-   * reasons.
+   * Shares the parsed context of {@link #forKind(Kind)}, the context file is not read again.
    *
    * @param kind The kind for which we want to manage the JsonLdContext.
    */
   public JsonLdContext( Kind kind ) {
-    this.contextLocation = getContextLocation( kind );
+    this( forKind( kind ) );
   }
 
   /**
@@ -114,25 +178,47 @@ public class JsonLdContext {
 
   /**
    * Simple constructor for the JsonLdContext.
+   * <p/>
+   * Shares the parsed context of {@link #forLocation(java.net.URL)}.
    *
    * @param contextLocation Location where the context handled by this JsonLdContext can be found.
    */
   public JsonLdContext( URL contextLocation ) {
+    this( forLocation( contextLocation ) );
+  }
+
+  /**
+   * Constructs a JsonLdContext which shares the parsed maps of {@code shared}.
+   */
+  private JsonLdContext( JsonLdContext shared ) {
+    this.contextLocation = shared.contextLocation;
+    this.marshaledJsonLdContext = shared.marshaledJsonLdContext;
+    this.keywordMap = shared.keywordMap;
+    this.reverseKeywordMap = shared.reverseKeywordMap;
+  }
+
+  /**
+   * Loads and parses the context file at {@code contextLocation}.
+   *
+   * @param contextLocation Location of the JSON-LD context file.
+   * @param load            Distinguishes this constructor from the public one.
+   */
+  private JsonLdContext( URL contextLocation, boolean load ) {
     this.contextLocation = contextLocation;
+    this.marshaledJsonLdContext = loadMarshaledJsonLdContext( contextLocation );
+    this.keywordMap = Collections.unmodifiableMap( loadMapping( marshaledJsonLdContext ) );
+    this.reverseKeywordMap = Collections.unmodifiableMap( loadReverseMapping( keywordMap ) );
   }
 
   /**
    * Retrieves a reverse keyword map. Contains mapping from a string representation of the
    * predicate, to the JSON keyword.
    * <p/>
-   * The retrieved map must not be altered.
+   * The retrieved map can not be altered.
    *
    * @return Reverse context which maps from a property URI to the short name in JSON.
    */
   public Map<String, String> getReverseKeywordMap() {
-    if ( reverseKeywordMap == null )
-      reverseKeywordMap = loadReverseMapping();
-
     return reverseKeywordMap;
   }
 
@@ -140,43 +226,73 @@ public class JsonLdContext {
    * Retrieves the keyword map. Contains mapping from the JSON keyword to a string representation
    * of the predicate.
    * <p/>
-   * The retrieved map must not be altered.
+   * The retrieved map can not be altered.
    *
    * @return Mapping from JSON keywords to the URI of the predicate matching it.
    */
   public Map<String, String> getKeywordMap() {
-    if ( keywordMap == null )
-      keywordMap = loadMapping();
-
     return keywordMap;
   }
 
   /**
-   * Loads the marshaled context, as used by jsonld-java.
+   * Retrieves the marshaled context, as used by jsonld-java.
    * <p/>
    * The predicate is either an IRI or an expanded term definition.
    * <p/>
    * {@link "http://www.w3.org/TR/json-ld/#dfn-expanded-term-definition"}
    * {@link "http://www.w3.org/TR/json-ld/#h3_context-definitions"}
+   * <p/>
+   * The context is parsed once and shared, the retrieved map (and the maps and lists it contains)
+   * can not be altered.
    *
    * @return Marshaled context.
    */
   public Map<String, Object> getMarshaledJsonLdContext() {
+    return marshaledJsonLdContext;
+  }
+
+  /**
+   * Reads the marshaled context from the context file.
+   *
+   * @param contextLocation Location of the JSON-LD context file.
+   * @return Immutable copy of the @context in the file.
+   */
+  @SuppressWarnings( "unchecked" )
+  private static Map<String, Object> loadMarshaledJsonLdContext( URL contextLocation ) {
     try {
       Map<String, Object> json = ( Map<String, Object> ) JsonUtils.fromURL( contextLocation );
-      return ( Map<String, Object> ) json.get( "@context" );
+      return ( Map<String, Object> ) immutableCopy( json.get( "@context" ) );
     } catch ( Exception e ) {
       throw new IllegalStateException( "illegal context" );
     }
   }
 
+  /**
+   * Recursively copies the maps and lists in {@code json} to unmodifiable ones so the shared
+   * context can't be altered by its users.
+   */
+  @SuppressWarnings( "unchecked" )
+  private static Object immutableCopy( Object json ) {
+    if ( json instanceof Map ) {
+      Map<String, Object> copy = new LinkedHashMap<String, Object>();
+      for ( Map.Entry<String, Object> entry : (( Map<String, Object> ) json).entrySet() )
+        copy.put( entry.getKey(), immutableCopy( entry.getValue() ) );
+      return Collections.unmodifiableMap( copy );
+    } else if ( json instanceof List ) {
+      List<Object> copy = new ArrayList<Object>();
+      for ( Object item : ( List<Object> ) json )
+        copy.add( immutableCopy( item ) );
+      return Collections.unmodifiableList( copy );
+    } else
+      return json;
+  }
+
   /**
    * Performs the actual loading of the reverse context.
    *
    * @return New reverse context map.
    */
-  private Map<String, String> loadReverseMapping() {
-    Map<String, String> regularMap = getKeywordMap();
+  private static Map<String, String> loadReverseMapping( Map<String, String> regularMap ) {
     Map<String, String> reverseMap = new LinkedHashMap<String, String>();
     for ( String key : regularMap.keySet() )
       reverseMap.put( regularMap.get( key ), key );
@@ -188,9 +304,8 @@ public class JsonLdContext {
    *
    * @return New context map.
    */
-  private Map<String, String> loadMapping() {
+  private static Map<String, String> loadMapping( Map<String, Object> marshaledJsonLdContext ) {
     Map<String, String> mapping = new LinkedHashMap<String, String>();
-    Map<String, Object> marshaledJsonLdContext = getMarshaledJsonLdContext();
 
     for ( String key : marshaledJsonLdContext.keySet() ) {
       Object o = marshaledJsonLdContext.get( key );
@@ -212,7 +327,7 @@ public class JsonLdContext {
    * @param key String which should be expanded, if possible.
    * @return Expanded version of the supplied string, or the string itself if expanding failed.
    */
-  private String expandNamespacedUrl( String key, Map<String, Object> marshaledJsonLdContext ) {
+  private static String expandNamespacedUrl( String key, Map<String, Object> marshaledJsonLdContext ) {
     String[] split = key.split( ":" );
     if ( split.length == 2 && marshaledJsonLdContext.containsKey( split[0] ) ) {
       String prefix = split[0];
@@ -0,0 +1,146 @@
+package eu.lod2.edcat.utils;
+
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the number of requests which may run an expensive query against the store at the same
+ * time.
+ * <p/>
+ * A request which finds all permits taken waits in a bounded queue for a limited time.  When the
+ * queue is full or the wait times out, the request is shed with a {@link
+ * ServiceUnavailableException}, which is sent as 503 with a Retry-After header.  This keeps slow
+ * queries from occupying every servlet thread, so cheap requests are still served under load.
+ * <p/>
+ * The limiter for list requests is retrieved through {@link #forLists()}, it reads the following
+ * keys of sparql.properties:
+ * <ul>
+ * <li>{@code loadShedding.lists.maxConcurrent}: number of list requests which may query the store
+ * at the same time, 0 disables the limit (default 8)</li>
+ * <li>{@code loadShedding.lists.maxQueued}: number of list requests which may wait for a permit
+ * (default 16)</li>
+ * <li>{@code loadShedding.lists.queueTimeout}: milliseconds a request waits for a permit (default
+ * 2000)</li>
+ * <li>{@code loadShedding.lists.retryAfter}: seconds after which a shed request may be retried
+ * (default 5)</li>
+ * </ul>
+ */
+public class RequestLimiter {
+
+  /** Limiter for list requests, see {@link #forLists()}. */
+  private static RequestLimiter lists;
+
+  /** Permits for the requests which are running, null if the number isn't limited. */
+  private final Semaphore permits;
+
+  /** Number of requests which may wait for a permit. */
+  private final int maxQueued;
+
+  /** Milliseconds a request waits for a permit. */
+  private final long queueTimeout;
+
+  /** Seconds after which a shed request may be retried. */
+  private final int retryAfter;
+
+  /** Number of requests which are waiting for a permit. */
+  private final AtomicInteger queued = new AtomicInteger();
+
+  /** Number of requests which were shed. */
+  private final AtomicLong shed = new AtomicLong();
+
+  /**
+   * Constructs a new limiter.
+   *
+   * @param maxConcurrent Number of requests which may run at the same time, 0 for no limit.
+   * @param maxQueued     Number of requests which may wait for a permit.
+   * @param queueTimeout  Milliseconds a request waits for a permit.
+   * @param retryAfter    Seconds after which a shed request may be retried.
+   */
+  public RequestLimiter( int maxConcurrent, int maxQueued, long queueTimeout, int retryAfter ) {
+    if ( maxConcurrent < 0 || maxQueued < 0 || queueTimeout < 0 || retryAfter < 0 )
+      throw new IllegalArgumentException( "The limits of a RequestLimiter must not be negative" );
+    this.permits = maxConcurrent == 0 ? null : new Semaphore( maxConcurrent, true );
+    this.maxQueued = maxQueued;
+    this.queueTimeout = queueTimeout;
+    this.retryAfter = retryAfter;
+  }
+
+  /**
+   * Retrieves the limiter for list requests, constructing it from sparql.properties the first time.
+   *
+   * @return RequestLimiter shared by all list requests.
+   */
+  public static synchronized RequestLimiter forLists() {
+    if ( lists == null ) {
+      Properties properties = SparqlEngine.loadConfiguration();
+      lists = new RequestLimiter(
+          intProperty( properties, "loadShedding.lists.maxConcurrent", 8 ),
+          intProperty( properties, "loadShedding.lists.maxQueued", 16 ),
+          intProperty( properties, "loadShedding.lists.queueTimeout", 2000 ),
+          intProperty( properties, "loadShedding.lists.retryAfter", 5 ) );
+    }
+    return lists;
+  }
+
+  /**
+   * Takes a permit, waiting for one if necessary.  Each successful call must be followed by a call
+   * to {@link #release()}.
+   *
+   * @throws ServiceUnavailableException Thrown if the queue is full or no permit became available
+   *                                     in time.
+   */
+  public void acquire() throws ServiceUnavailableException {
+    if ( permits == null || permits.tryAcquire() )
+      return;
+    if ( queued.incrementAndGet() > maxQueued ) {
+      queued.decrementAndGet();
+      throw shed( "Too many requests are waiting for the store" );
+    }
+    try {
+      if ( !permits.tryAcquire( queueTimeout, TimeUnit.MILLISECONDS ) )
+        throw shed( "The store is busy" );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw shed( "Interrupted while waiting for the store" );
+    } finally {
+      queued.decrementAndGet();
+    }
+  }
+
+  /**
+   * Returns the permit which was taken by {@link #acquire()}.
+   */
+  public void release() {
+    if ( permits != null )
+      permits.release();
+  }
+
+  /**
+   * @return Number of requests which were shed since the limiter was constructed.
+   */
+  public long getShed() {
+    return shed.get();
+  }
+
+
+  // --- IMPLEMENTATION
+
+  private ServiceUnavailableException shed( String message ) {
+    shed.incrementAndGet();
+    return new ServiceUnavailableException( message, retryAfter );
+  }
+
+  private static int intProperty( Properties properties, String key, int defaultValue ) {
+    String value = properties.getProperty( key );
+    if ( value == null )
+      return defaultValue;
+    try {
+      return Integer.parseInt( value.trim() );
+    } catch ( NumberFormatException e ) {
+      throw new IllegalArgumentException( key + " must be a number, got " + value, e );
+    }
+  }
+}
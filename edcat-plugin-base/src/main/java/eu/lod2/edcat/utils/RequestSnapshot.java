@@ -0,0 +1,502 @@
+package eu.lod2.edcat.utils;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import java.io.BufferedReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.security.Principal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Immutable copy of the data of an HttpServletRequest, which may be handed to hooks that run on
+ * other threads or after the request has been recycled by the container.
+ * <p/>
+ * The request line, the headers, the cookies, the locales, the attributes and the connection and
+ * authentication details are copied when the snapshot is taken.  The parameters are parsed from
+ * the query string only: reading the parameters of the request itself could consume a form
+ * encoded body which the controller still has to read.
+ * <p/>
+ * Everything which needs the container is not available: the body can't be read, there is no
+ * session or dispatcher, attributes can't be changed and {@link #isUserInRole(String)} always
+ * answers false.
+ */
+public class RequestSnapshot implements HttpServletRequest {
+
+  /** Format of HTTP dates, see RFC 2616, section 3.3.1. */
+  private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+  private final String method;
+  private final String requestUri;
+  private final String requestUrl;
+  private final String queryString;
+  private final String contextPath;
+  private final String servletPath;
+  private final String pathInfo;
+  private final String pathTranslated;
+  private final String protocol;
+  private final String scheme;
+  private final String serverName;
+  private final int serverPort;
+  private final boolean secure;
+  private final String remoteAddr;
+  private final String remoteHost;
+  private final int remotePort;
+  private final String localName;
+  private final String localAddr;
+  private final int localPort;
+  private final String characterEncoding;
+  private final int contentLength;
+  private final String contentType;
+  private final String authType;
+  private final String remoteUser;
+  private final Principal userPrincipal;
+  private final String requestedSessionId;
+  private final boolean requestedSessionIdValid;
+  private final boolean requestedSessionIdFromCookie;
+  private final boolean requestedSessionIdFromUrl;
+  private final Cookie[] cookies;
+  private final List<Locale> locales;
+
+  /** Header values by header name, names are compared case-insensitively. */
+  private final Map<String, List<String>> headers;
+
+  /** Parameter values by parameter name, as parsed from the query string. */
+  private final Map<String, String[]> parameters;
+
+  private final Map<String, Object> attributes;
+
+  /**
+   * Copies the data of {@code request}.  Must be called on the thread which handles the request.
+   *
+   * @param request Request which is being handled.
+   */
+  @SuppressWarnings( "unchecked" )
+  public RequestSnapshot( HttpServletRequest request ) {
+    method = request.getMethod();
+    requestUri = request.getRequestURI();
+    requestUrl = request.getRequestURL() == null ? null : request.getRequestURL().toString();
+    queryString = request.getQueryString();
+    contextPath = request.getContextPath();
+    servletPath = request.getServletPath();
+    pathInfo = request.getPathInfo();
+    pathTranslated = request.getPathTranslated();
+    protocol = request.getProtocol();
+    scheme = request.getScheme();
+    serverName = request.getServerName();
+    serverPort = request.getServerPort();
+    secure = request.isSecure();
+    remoteAddr = request.getRemoteAddr();
+    remoteHost = request.getRemoteHost();
+    remotePort = request.getRemotePort();
+    localName = request.getLocalName();
+    localAddr = request.getLocalAddr();
+    localPort = request.getLocalPort();
+    characterEncoding = request.getCharacterEncoding();
+    contentLength = request.getContentLength();
+    contentType = request.getContentType();
+    authType = request.getAuthType();
+    remoteUser = request.getRemoteUser();
+    userPrincipal = request.getUserPrincipal();
+    requestedSessionId = request.getRequestedSessionId();
+    requestedSessionIdValid = request.isRequestedSessionIdValid();
+    requestedSessionIdFromCookie = request.isRequestedSessionIdFromCookie();
+    requestedSessionIdFromUrl = request.isRequestedSessionIdFromURL();
+    cookies = request.getCookies() == null ? null : request.getCookies().clone();
+
+    List<Locale> locales = new ArrayList<Locale>();
+    for ( Enumeration<Locale> e = request.getLocales(); e != null && e.hasMoreElements(); )
+      locales.add( e.nextElement() );
+    this.locales = Collections.unmodifiableList( locales );
+
+    Map<String, List<String>> headers = new TreeMap<String, List<String>>( String.CASE_INSENSITIVE_ORDER );
+    for ( Enumeration<String> names = request.getHeaderNames(); names != null && names.hasMoreElements(); ) {
+      String name = names.nextElement();
+      List<String> values = new ArrayList<String>();
+      for ( Enumeration<String> e = request.getHeaders( name ); e != null && e.hasMoreElements(); )
+        values.add( e.nextElement() );
+      headers.put( name, Collections.unmodifiableList( values ) );
+    }
+    this.headers = Collections.unmodifiableMap( headers );
+
+    this.parameters = Collections.unmodifiableMap( parseQuery( queryString, characterEncoding ) );
+
+    Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+    for ( Enumeration<String> names = request.getAttributeNames(); names != null && names.hasMoreElements(); ) {
+      String name = names.nextElement();
+      attributes.put( name, request.getAttribute( name ) );
+    }
+    this.attributes = Collections.unmodifiableMap( attributes );
+  }
+
+  /**
+   * Parses the parameters of a query string.
+   */
+  private static Map<String, String[]> parseQuery( String query, String encoding ) {
+    Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+    if ( query != null ) {
+      for ( String pair : query.split( "&" ) ) {
+        if ( pair.isEmpty() )
+          continue;
+        int split = pair.indexOf( '=' );
+        String name = decode( split < 0 ? pair : pair.substring( 0, split ), encoding );
+        String value = split < 0 ? "" : decode( pair.substring( split + 1 ), encoding );
+        if ( !values.containsKey( name ) )
+          values.put( name, new ArrayList<String>() );
+        values.get( name ).add( value );
+      }
+    }
+    Map<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+    for ( Map.Entry<String, List<String>> entry : values.entrySet() )
+      parameters.put( entry.getKey(), entry.getValue().toArray( new String[entry.getValue().size()] ) );
+    return parameters;
+  }
+
+  private static String decode( String value, String encoding ) {
+    try {
+      return URLDecoder.decode( value, encoding == null ? "UTF-8" : encoding );
+    } catch ( UnsupportedEncodingException e ) {
+      return value;
+    } catch ( IllegalArgumentException e ) {
+      // malformed escape, keep the raw value like most containers do
+      return value;
+    }
+  }
+
+
+  // --- REQUEST LINE AND PATHS
+
+  @Override
+  public String getMethod() {
+    return method;
+  }
+
+  @Override
+  public String getRequestURI() {
+    return requestUri;
+  }
+
+  @Override
+  public StringBuffer getRequestURL() {
+    return requestUrl == null ? null : new StringBuffer( requestUrl );
+  }
+
+  @Override
+  public String getQueryString() {
+    return queryString;
+  }
+
+  @Override
+  public String getContextPath() {
+    return contextPath;
+  }
+
+  @Override
+  public String getServletPath() {
+    return servletPath;
+  }
+
+  @Override
+  public String getPathInfo() {
+    return pathInfo;
+  }
+
+  @Override
+  public String getPathTranslated() {
+    return pathTranslated;
+  }
+
+  @Override
+  public String getProtocol() {
+    return protocol;
+  }
+
+  @Override
+  public String getScheme() {
+    return scheme;
+  }
+
+  @Override
+  public String getServerName() {
+    return serverName;
+  }
+
+  @Override
+  public int getServerPort() {
+    return serverPort;
+  }
+
+  @Override
+  public boolean isSecure() {
+    return secure;
+  }
+
+
+  // --- HEADERS
+
+  @Override
+  public String getHeader( String name ) {
+    List<String> values = headers.get( name );
+    return values == null || values.isEmpty() ? null : values.get( 0 );
+  }
+
+  @Override
+  public Enumeration getHeaders( String name ) {
+    List<String> values = headers.get( name );
+    return Collections.enumeration( values == null ? Collections.<String>emptyList() : values );
+  }
+
+  @Override
+  public Enumeration getHeaderNames() {
+    return Collections.enumeration( headers.keySet() );
+  }
+
+  @Override
+  public long getDateHeader( String name ) {
+    String value = getHeader( name );
+    if ( value == null )
+      return -1;
+    SimpleDateFormat format = new SimpleDateFormat( HTTP_DATE_FORMAT, Locale.US );
+    format.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+    try {
+      return format.parse( value ).getTime();
+    } catch ( ParseException e ) {
+      throw new IllegalArgumentException( "Header " + name + " is not a date: " + value );
+    }
+  }
+
+  @Override
+  public int getIntHeader( String name ) {
+    String value = getHeader( name );
+    return value == null ? -1 : Integer.parseInt( value.trim() );
+  }
+
+  @Override
+  public Cookie[] getCookies() {
+    return cookies == null ? null : cookies.clone();
+  }
+
+  @Override
+  public Locale getLocale() {
+    return locales.isEmpty() ? Locale.getDefault() : locales.get( 0 );
+  }
+
+  @Override
+  public Enumeration getLocales() {
+    return Collections.enumeration( locales.isEmpty() ? Collections.singletonList( Locale.getDefault() ) : locales );
+  }
+
+  @Override
+  public String getCharacterEncoding() {
+    return characterEncoding;
+  }
+
+  @Override
+  public int getContentLength() {
+    return contentLength;
+  }
+
+  @Override
+  public String getContentType() {
+    return contentType;
+  }
+
+
+  // --- PARAMETERS AND ATTRIBUTES
+
+  @Override
+  public String getParameter( String name ) {
+    String[] values = parameters.get( name );
+    return values == null ? null : values[0];
+  }
+
+  @Override
+  public String[] getParameterValues( String name ) {
+    String[] values = parameters.get( name );
+    return values == null ? null : values.clone();
+  }
+
+  @Override
+  public Enumeration getParameterNames() {
+    return Collections.enumeration( parameters.keySet() );
+  }
+
+  @Override
+  public Map getParameterMap() {
+    return parameters;
+  }
+
+  @Override
+  public Object getAttribute( String name ) {
+    return attributes.get( name );
+  }
+
+  @Override
+  public Enumeration getAttributeNames() {
+    return Collections.enumeration( attributes.keySet() );
+  }
+
+  /**
+   * @throws UnsupportedOperationException The snapshot can't be changed.
+   */
+  @Override
+  public void setAttribute( String name, Object value ) {
+    throw new UnsupportedOperationException( "A request snapshot can't be changed" );
+  }
+
+  /**
+   * @throws UnsupportedOperationException The snapshot can't be changed.
+   */
+  @Override
+  public void removeAttribute( String name ) {
+    throw new UnsupportedOperationException( "A request snapshot can't be changed" );
+  }
+
+  /**
+   * @throws UnsupportedOperationException The snapshot can't be changed.
+   */
+  @Override
+  public void setCharacterEncoding( String encoding ) {
+    throw new UnsupportedOperationException( "A request snapshot can't be changed" );
+  }
+
+
+  // --- CONNECTION AND AUTHENTICATION
+
+  @Override
+  public String getRemoteAddr() {
+    return remoteAddr;
+  }
+
+  @Override
+  public String getRemoteHost() {
+    return remoteHost;
+  }
+
+  @Override
+  public int getRemotePort() {
+    return remotePort;
+  }
+
+  @Override
+  public String getLocalName() {
+    return localName;
+  }
+
+  @Override
+  public String getLocalAddr() {
+    return localAddr;
+  }
+
+  @Override
+  public int getLocalPort() {
+    return localPort;
+  }
+
+  @Override
+  public String getAuthType() {
+    return authType;
+  }
+
+  @Override
+  public String getRemoteUser() {
+    return remoteUser;
+  }
+
+  @Override
+  public Principal getUserPrincipal() {
+    return userPrincipal;
+  }
+
+  /**
+   * @return false, the roles of the user can only be consulted through the container.
+   */
+  @Override
+  public boolean isUserInRole( String role ) {
+    return false;
+  }
+
+  @Override
+  public String getRequestedSessionId() {
+    return requestedSessionId;
+  }
+
+  @Override
+  public boolean isRequestedSessionIdValid() {
+    return requestedSessionIdValid;
+  }
+
+  @Override
+  public boolean isRequestedSessionIdFromCookie() {
+    return requestedSessionIdFromCookie;
+  }
+
+  @Override
+  public boolean isRequestedSessionIdFromURL() {
+    return requestedSessionIdFromUrl;
+  }
+
+  @Override
+  @SuppressWarnings( "deprecation" )
+  public boolean isRequestedSessionIdFromUrl() {
+    return requestedSessionIdFromUrl;
+  }
+
+
+  // --- CONTAINER SERVICES
+
+  /**
+   * @throws IllegalStateException The body is read by the controller which took the snapshot.
+   */
+  @Override
+  public ServletInputStream getInputStream() {
+    throw new IllegalStateException( "The body of a request snapshot can't be read" );
+  }
+
+  /**
+   * @throws IllegalStateException The body is read by the controller which took the snapshot.
+   */
+  @Override
+  public BufferedReader getReader() {
+    throw new IllegalStateException( "The body of a request snapshot can't be read" );
+  }
+
+  /**
+   * @return null, a snapshot has no session.
+   */
+  @Override
+  public HttpSession getSession( boolean create ) {
+    if ( create )
+      throw new IllegalStateException( "A request snapshot can't create a session" );
+    return null;
+  }
+
+  /**
+   * @throws IllegalStateException A snapshot has no session and can't create one.
+   */
+  @Override
+  public HttpSession getSession() {
+    return getSession( true );
+  }
+
+  /**
+   * @return null, a snapshot can't be dispatched.
+   */
+  @Override
+  public RequestDispatcher getRequestDispatcher( String path ) {
+    return null;
+  }
+
+  /**
+   * @return null, a snapshot doesn't know the servlet context.
+   */
+  @Override
+  public String getRealPath( String path ) {
+    return null;
+  }
+}
@@ -0,0 +1,15 @@
+package eu.lod2.edcat.utils;
+
+public class ServiceUnavailableException extends Exception {
+  /** Number of seconds after which the client may retry the request. */
+  private final int retryAfter;
+
+  public ServiceUnavailableException(String message, int retryAfter) {
+    super(message);
+    this.retryAfter = retryAfter;
+  }
+
+  public int getRetryAfter() {
+    return retryAfter;
+  }
+}
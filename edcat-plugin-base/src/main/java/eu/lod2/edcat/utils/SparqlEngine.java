@@ -1,6 +1,9 @@
 package eu.lod2.edcat.utils;
 
+import eu.lod2.query.PreparedQueryCache;
+import eu.lod2.query.RowHandler;
 import eu.lod2.query.Sparql;
+import eu.lod2.query.SparqlTemplate;
 import info.aduna.iteration.Iterations;
 import org.openrdf.model.*;
 import org.openrdf.model.impl.LinkedHashModel;
@@ -12,13 +15,17 @@ import org.openrdf.repository.RepositoryResult;
 import org.openrdf.repository.manager.RemoteRepositoryManager;
 import org.openrdf.repository.manager.RepositoryManager;
 import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
 import org.openrdf.sail.memory.MemoryStore;
+import org.openrdf.sail.nativerdf.NativeStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import virtuoso.sesame2.driver.VirtuosoRepository;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -35,11 +42,43 @@ public class SparqlEngine {
   protected Repository repository;
   protected RepositoryConnection connection;
 
+  /** Whether the repository is shared with other engines and must outlive this engine. */
+  private boolean sharedRepository = false;
+
+  /** Prepared queries and updates of {@link #connection}, see {@link PreparedQueryCache}. */
+  private PreparedQueryCache preparedQueries;
+
+  /**
+   * Whether the store accepts several operations in one SPARQL Update request, separated by ';'.
+   * Set through update.compound in sparql.properties, defaults to true for memory and native
+   * stores only.
+   */
+  private boolean compoundUpdates;
+
+  /**
+   * Whether the store evaluates SPARQL 1.1 sub-selects, including ORDER BY and LIMIT inside them.
+   * Set through query.subSelect in sparql.properties, defaults to true.
+   */
+  private boolean subSelects = true;
+
+  /** Variables for templates which don't have any. */
+  private static final Object[] NO_VARIABLES = new Object[0];
+
 
   public SparqlEngine() {
     this.readConfiguration();
   }
 
+  /**
+   * Constructs an engine for the store described by {@code properties}, which hold the same keys
+   * as sparql.properties.
+   *
+   * @param properties Properties describing the store to connect to.
+   */
+  public SparqlEngine( Properties properties ) {
+    this.readConfiguration( properties );
+  }
+
   public SparqlEngine( Repository repos ) {
     try {
       this.repository = repos;
@@ -47,23 +86,57 @@ public class SparqlEngine {
         repos.initialize();
       }
       this.connection = this.repository.getConnection();
+      this.preparedQueries = PreparedQueryCache.fromProperties( connection, new Properties(), repos instanceof SailRepository );
+      this.compoundUpdates = repos instanceof SailRepository;
     } catch ( Exception e ) {
       log.error( "Could not establish connection to repository, error message: {}", e );
     }
 
   }
 
-  public void readConfiguration() {
+  /**
+   * Reads sparql.properties from the directory specified by the ext.properties.dir system property.
+   *
+   * @return Properties describing the store to connect to.
+   * @throws IllegalArgumentException Thrown if the ext.properties.dir system property is not set.
+   * @throws IllegalStateException    Thrown if the properties file could not be read.
+   */
+  public static Properties loadConfiguration() {
+    if (System.getProperty("ext.properties.dir") == null) throw new IllegalArgumentException("System property 'ext.properties.dir' is not set.");
     Properties properties = new Properties();
     try {
-      if (System.getProperty("ext.properties.dir") == null) throw new IllegalArgumentException("System property 'ext.properties.dir' is not set.");
-      properties.load( new FileInputStream(new File(System.getProperty("ext.properties.dir"), "sparql.properties") ) );
+      FileInputStream in = new FileInputStream(new File(System.getProperty("ext.properties.dir"), "sparql.properties") );
+      try {
+        properties.load( in );
+      } finally {
+        in.close();
+      }
+    } catch ( IOException e ) {
+      throw new IllegalStateException( e );
+    }
+    return properties;
+  }
+
+  public void readConfiguration() {
+    readConfiguration( loadConfiguration() );
+  }
+
+  /**
+   * Connects this engine to the store described by {@code properties}.
+   *
+   * @param properties Properties describing the store, with the keys of sparql.properties.
+   */
+  public void readConfiguration( Properties properties ) {
+    try {
       String storeType = properties.getProperty("storeType");
 
-      switch (StoreType.valueOf(storeType)) {
+      switch (StoreType.fromConfiguration(storeType)) {
         case memory:
           initMemoryStore();
           break;
+        case native_store:
+          initNativeStore(properties);
+          break;
         case virtuoso:
           initVirtuosoStore(properties);
           break;
@@ -73,16 +146,96 @@ public class SparqlEngine {
         default:
           throw new IllegalArgumentException("invalid store type specified in sparql.properties");
       }
-      this.repository.initialize();
+      if ( !this.repository.isInitialized() )
+        this.repository.initialize();
       this.connection = this.repository.getConnection();
+      this.preparedQueries = PreparedQueryCache.fromProperties( connection, properties, repository instanceof SailRepository );
+      String compound = properties.getProperty( "update.compound" );
+      this.compoundUpdates = compound == null ? repository instanceof SailRepository : Boolean.parseBoolean( compound.trim() );
+      this.subSelects = supportsSubSelects( properties );
     } catch ( Exception e ) {
       log.error( "Could not establish connection to repository, error message: {}", e );
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * The memory store is shared by all engines so pooled engines see the same data, and so an
+   * engine which is evicted from the pool doesn't take the data with it.
+   */
+  private static Repository sharedMemoryRepository;
+
   private void initMemoryStore() throws Exception {
-    this.repository = new SailRepository( new MemoryStore() );
+    synchronized ( SparqlEngine.class ) {
+      if ( sharedMemoryRepository == null )
+        sharedMemoryRepository = new SailRepository( new MemoryStore() );
+      this.repository = sharedMemoryRepository;
+      this.sharedRepository = true;
+    }
+  }
+
+  /** Triple indexes of the native store when native.tripleIndexes isn't set. */
+  public static final String DEFAULT_NATIVE_TRIPLE_INDEXES = "spoc,posc,cspo";
+
+  /**
+   * Native stores by canonical data directory.  A NativeStore locks its data directory, so all
+   * engines share a single repository per directory, which is shut down when the JVM exits.
+   */
+  private static Map<File, Repository> sharedNativeRepositories = new HashMap<File, Repository>();
+
+  /**
+   * Connects to an embedded NativeStore.  The following keys of sparql.properties are understood:
+   * <ul>
+   * <li>{@code native.dataDir}: directory in which the store keeps its data (required)</li>
+   * <li>{@code native.tripleIndexes}: comma separated index orders, e.g. "spoc,posc,cspo".  The
+   * cspo index serves the graph-per-dataset lookups (default {@value #DEFAULT_NATIVE_TRIPLE_INDEXES})</li>
+   * <li>{@code native.forceSync}: force the data to disk on each commit (default false)</li>
+   * <li>{@code native.valueCacheSize}, {@code native.valueIDCacheSize}: sizes of the value caches
+   * (Sesame defaults if not set)</li>
+   * </ul>
+   */
+  private void initNativeStore(Properties properties) throws Exception {
+    String dataDir = properties.getProperty( "native.dataDir" );
+    if ( dataDir == null || dataDir.trim().isEmpty() )
+      throw new IllegalArgumentException( "native.dataDir must be set in sparql.properties for storeType native" );
+    File directory = new File( dataDir.trim() ).getCanonicalFile();
+
+    synchronized ( SparqlEngine.class ) {
+      Repository nativeRepository = sharedNativeRepositories.get( directory );
+      if ( nativeRepository == null ) {
+        NativeStore store = new NativeStore( directory, properties.getProperty( "native.tripleIndexes", DEFAULT_NATIVE_TRIPLE_INDEXES ).trim() );
+        store.setForceSync( Boolean.parseBoolean( properties.getProperty( "native.forceSync", "false" ).trim() ) );
+        String valueCacheSize = properties.getProperty( "native.valueCacheSize" );
+        if ( valueCacheSize != null )
+          store.setValueCacheSize( Integer.parseInt( valueCacheSize.trim() ) );
+        String valueIDCacheSize = properties.getProperty( "native.valueIDCacheSize" );
+        if ( valueIDCacheSize != null )
+          store.setValueIDCacheSize( Integer.parseInt( valueIDCacheSize.trim() ) );
+
+        nativeRepository = new SailRepository( store );
+        nativeRepository.initialize();
+        shutDownOnExit( nativeRepository );
+        sharedNativeRepositories.put( directory, nativeRepository );
+      }
+      this.repository = nativeRepository;
+      this.sharedRepository = true;
+    }
+  }
+
+  /**
+   * Shuts {@code repository} down when the JVM exits, so its files are closed cleanly.
+   */
+  private static void shutDownOnExit( final Repository repository ) {
+    Runtime.getRuntime().addShutdownHook( new Thread( "shut down " + repository ) {
+      @Override
+      public void run() {
+        try {
+          repository.shutDown();
+        } catch ( RepositoryException e ) {
+          log.error( "Could not shut down repository {}, error message {}", repository, e );
+        }
+      }
+    } );
   }
 
   private void initRemoteSesameStore(Properties properties) throws Exception {
@@ -107,17 +260,30 @@ public class SparqlEngine {
   }
 
   public QueryResult sparqlSelect( String query ) throws IllegalArgumentException, IllegalStateException {
-    Collection<BindingSet> bindings = sparqlRawSelect( query );
-
-    QueryResult results = new QueryResult();
+    return sparqlSelect( SparqlTemplate.literal( query ), NO_VARIABLES );
+  }
 
-    for ( BindingSet binding : bindings ) {
-      Map<String, String> currentRow = new HashMap<String, String>();
-      for ( String name : binding.getBindingNames() )
-        if ( binding.getValue( name ) != null )
-          currentRow.put( name, binding.getValue( name ).stringValue() );
-      results.add( currentRow );
-    }
+  /**
+   * Performs the SPARQL query built from {@code template} and returns the rows as Strings.
+   *
+   * @param template  Template of the SPARQL query.
+   * @param variables Plist containing the local key-value pairs for {@code template}.
+   * @return QueryResult containing a map per row.
+   * @see #sparqlStreamingSelect(eu.lod2.query.SparqlTemplate, Object[], eu.lod2.query.RowHandler)
+   */
+  public QueryResult sparqlSelect( SparqlTemplate template, Object[] variables ) throws IllegalArgumentException, IllegalStateException {
+    final QueryResult results = new QueryResult();
+
+    sparqlStreamingSelect( template, variables, new RowHandler() {
+      @Override
+      public boolean handleRow( BindingSet binding ) {
+        Map<String, String> currentRow = new HashMap<String, String>();
+        for ( Binding value : binding )
+          currentRow.put( value.getName(), value.getValue().stringValue() );
+        results.add( currentRow );
+        return true;
+      }
+    } );
 
     return results;
   }
@@ -131,16 +297,76 @@ public class SparqlEngine {
    * @throws IllegalStateException    Thrown if the query wasn't ready for accepting data.
    */
   public List<BindingSet> sparqlRawSelect( String query ) throws IllegalArgumentException, IllegalStateException {
+    return sparqlRawSelect( SparqlTemplate.literal( query ), NO_VARIABLES );
+  }
+
+  /**
+   * Performs the SPARQL query built from {@code template} and returns the raw BindingSets.
+   *
+   * @param template  Template of the SPARQL query.
+   * @param variables Plist containing the local key-value pairs for {@code template}.
+   * @return List containing one BindingSet per match.
+   * @see #sparqlStreamingSelect(eu.lod2.query.SparqlTemplate, Object[], eu.lod2.query.RowHandler)
+   */
+  public List<BindingSet> sparqlRawSelect( SparqlTemplate template, Object[] variables ) throws IllegalArgumentException, IllegalStateException {
+    final List<BindingSet> bindings = new ArrayList<BindingSet>();
+
+    sparqlStreamingSelect( template, variables, new RowHandler() {
+      @Override
+      public boolean handleRow( BindingSet row ) {
+        bindings.add( row );
+        return true;
+      }
+    } );
+
+    return bindings;
+  }
+
+  /**
+   * Performs a SPARQL query on the engine and hands each row to {@code handler} as it is read.
+   * <p/>
+   * The query result is closed when all rows have been visited, when the handler stops the
+   * iteration or when an exception is thrown.
+   *
+   * @param query   Posed SPARQL query.
+   * @param handler Handler which receives the rows.
+   * @return Amount of rows which were handed to the handler.
+   * @throws IllegalArgumentException Thrown if the supplied query couldn't be evaluated.
+   * @throws IllegalStateException    Thrown if the query wasn't ready for accepting data.
+   */
+  public int sparqlStreamingSelect( String query, RowHandler handler ) throws IllegalArgumentException, IllegalStateException {
+    return sparqlStreamingSelect( SparqlTemplate.literal( query ), NO_VARIABLES, handler );
+  }
+
+  /**
+   * Performs the SPARQL query built from {@code template} and hands each row to {@code handler}
+   * as it is read.
+   * <p/>
+   * The query is prepared through the {@link PreparedQueryCache} of this engine, so the RDF values
+   * in {@code variables} may be supplied as bindings instead of being rendered in the query.
+   *
+   * @param template  Template of the SPARQL query.
+   * @param variables Plist containing the local key-value pairs for {@code template}.
+   * @param handler   Handler which receives the rows.
+   * @return Amount of rows which were handed to the handler.
+   * @throws IllegalArgumentException Thrown if the supplied query couldn't be evaluated.
+   * @throws IllegalStateException    Thrown if the query wasn't ready for accepting data.
+   */
+  public int sparqlStreamingSelect( SparqlTemplate template, Object[] variables, RowHandler handler ) throws IllegalArgumentException, IllegalStateException {
     try {
       TupleQueryResult tupleQueryResult =
-          this.connection.prepareTupleQuery( QueryLanguage.SPARQL, query ).evaluate();
-      List<BindingSet> bindings = new ArrayList<BindingSet>();
-
-      while ( tupleQueryResult.hasNext() ) {
-        BindingSet set = tupleQueryResult.next();
-        bindings.add( set );
+          preparedQueries.tupleQuery( template, variables ).evaluate();
+      int rows = 0;
+      try {
+        while ( tupleQueryResult.hasNext() ) {
+          rows++;
+          if ( !handler.handleRow( tupleQueryResult.next() ) )
+            break;
+        }
+      } finally {
+        tupleQueryResult.close();
       }
-      return bindings;
+      return rows;
 
     } catch ( RepositoryException e ) {
       throw new IllegalStateException( e );
@@ -160,30 +386,27 @@ public class SparqlEngine {
    * @throws IllegalStateException    Thrown if the query wasn't ready for accepting data.
    */
   public Model sparqlGraphQuery( String query ) throws IllegalArgumentException, IllegalStateException {
-    try {
-      GraphQueryResult queryResult =
-              this.connection.prepareGraphQuery( QueryLanguage.SPARQL, query ).evaluate();
-      Model statements = new LinkedHashModel();
-      while ( queryResult.hasNext() ) {
-        statements.add(queryResult.next());
-      }
-      queryResult.close();
-      return statements;
-
-    } catch ( RepositoryException e ) {
-      throw new IllegalStateException( e );
-    } catch ( MalformedQueryException e ) {
-      throw new IllegalArgumentException( e );
-    } catch ( QueryEvaluationException e ) {
-      throw new IllegalArgumentException( e );
-    }
+    return sparqlModelConstruct( SparqlTemplate.literal( query ), NO_VARIABLES );
   }
 
 
 
   public void sparqlUpdate( String query ) throws IllegalArgumentException, IllegalStateException {
+    sparqlUpdate( SparqlTemplate.literal( query ), NO_VARIABLES );
+  }
+
+  /**
+   * Executes the SPARQL update built from {@code template}.
+   *
+   * @param template  Template of the SPARQL update.
+   * @param variables Plist containing the local key-value pairs for {@code template}.
+   * @throws IllegalArgumentException Thrown if the supplied update couldn't be parsed.
+   * @throws IllegalStateException    Thrown if the update couldn't be executed.
+   * @see #sparqlStreamingSelect(eu.lod2.query.SparqlTemplate, Object[], eu.lod2.query.RowHandler)
+   */
+  public void sparqlUpdate( SparqlTemplate template, Object[] variables ) throws IllegalArgumentException, IllegalStateException {
     try {
-      this.connection.prepareUpdate( QueryLanguage.SPARQL, query ).execute();
+      preparedQueries.update( template, variables ).execute();
     } catch ( RepositoryException e ) {
       throw new IllegalStateException( e );
     } catch ( UpdateExecutionException e ) {
@@ -262,13 +485,107 @@ public class SparqlEngine {
   //* frees resources
   public void terminate() {
     try {
+      if ( preparedQueries != null )
+        preparedQueries.clear();
       this.connection.close();
-      this.repository.shutDown();
+      if ( !sharedRepository )
+        this.repository.shutDown();
     } catch ( Exception e ) {
       log.error( "Could not close repository, error message {}", e );
     }
   }
 
+  /**
+   * Checks whether the connection of this engine can still be used by asking a trivial query.
+   *
+   * @return true iff the connection is open and the store answered the query.
+   */
+  public boolean isAlive() {
+    try {
+      return this.connection != null
+          && this.connection.isOpen()
+          && this.connection.prepareBooleanQuery( QueryLanguage.SPARQL, "ASK {}" ).evaluate();
+    } catch ( Exception e ) {
+      log.warn( "Connection to repository is not alive, error message {}", e );
+      return false;
+    }
+  }
+
+  /**
+   * @return true iff the store accepts several operations in one SPARQL Update request.
+   */
+  public boolean supportsCompoundUpdates() {
+    return compoundUpdates;
+  }
+
+  /**
+   * @return true iff the store evaluates sub-selects with their own ORDER BY and LIMIT.
+   */
+  public boolean supportsSubSelects() {
+    return subSelects;
+  }
+
+  /**
+   * Reads the query.subSelect setting, which defaults to true.
+   *
+   * @param properties Properties describing the store, with the keys of sparql.properties.
+   * @return true iff the configured store evaluates sub-selects with their own ORDER BY and LIMIT.
+   */
+  public static boolean supportsSubSelects( Properties properties ) {
+    return Boolean.parseBoolean( properties.getProperty( "query.subSelect", "true" ).trim() );
+  }
+
+  /**
+   * Starts a transaction on the connection of this engine.  All following operations on this
+   * engine are part of the transaction until {@link #commit()} or {@link #rollback()} is called.
+   *
+   * @throws IllegalStateException Thrown if the transaction could not be started.
+   */
+  public void begin() {
+    try {
+      this.connection.begin();
+    } catch ( RepositoryException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  /**
+   * Commits the transaction which was started through {@link #begin()}.
+   *
+   * @throws IllegalStateException Thrown if the transaction could not be committed.
+   */
+  public void commit() {
+    try {
+      this.connection.commit();
+    } catch ( RepositoryException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  /**
+   * Rolls back the transaction which was started through {@link #begin()}.
+   *
+   * @throws IllegalStateException Thrown if the transaction could not be rolled back.
+   */
+  public void rollback() {
+    try {
+      this.connection.rollback();
+    } catch ( RepositoryException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  /**
+   * @return true iff a transaction is active on the connection of this engine.
+   */
+  public boolean isInTransaction() {
+    try {
+      return this.connection.isActive();
+    } catch ( RepositoryException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
   public void clearGraph( URI graph ) {
     try {
       this.connection.clear( graph );
@@ -380,17 +697,27 @@ public class SparqlEngine {
    * Runs the given sparql construct query and returns the results in a Model.
    */
   public Model sparqlModelConstruct( String query ) {
+    return sparqlModelConstruct( SparqlTemplate.literal( query ), NO_VARIABLES );
+  }
+
+  /**
+   * Runs the sparql construct query built from {@code template} and returns the results in a
+   * Model.
+   *
+   * @param template  Template of the SPARQL construct query.
+   * @param variables Plist containing the local key-value pairs for {@code template}.
+   * @return Model containing the resulting statements.
+   * @see #sparqlStreamingSelect(eu.lod2.query.SparqlTemplate, Object[], eu.lod2.query.RowHandler)
+   */
+  public Model sparqlModelConstruct( SparqlTemplate template, Object[] variables ) {
     try {
-      GraphQueryResult result = this.connection.prepareGraphQuery( QueryLanguage.SPARQL, query ).evaluate();
+      GraphQueryResult result = preparedQueries.graphQuery( template, variables ).evaluate();
       Model model = new LinkedHashModel();
-
-      while ( result.hasNext() ) {
-        Statement statement = result.next();
-        try {
-          model.add( statement );
-        } catch ( Exception e ) {
-          log.error( "Could not add catalog statement {} to memory store for processing. Error message: {}", statement, e );
-        }
+      try {
+        while ( result.hasNext() )
+          model.add( result.next() );
+      } finally {
+        result.close();
       }
       return model;
     } catch ( RepositoryException e ) {
@@ -403,6 +730,45 @@ public class SparqlEngine {
   }
 
 
+  /**
+   * Runs the given sparql construct query and hands the resulting statements to {@code handler}
+   * as they are read from the store, without collecting them first.
+   *
+   * @param query   SPARQL construct query.
+   * @param handler Handler which receives the resulting statements.
+   * @throws IllegalArgumentException Thrown if the supplied query couldn't be evaluated.
+   * @throws IllegalStateException    Thrown if the store or the handler failed.
+   */
+  public void sparqlStreamingConstruct( String query, RDFHandler handler ) throws IllegalArgumentException, IllegalStateException {
+    sparqlStreamingConstruct( SparqlTemplate.literal( query ), NO_VARIABLES, handler );
+  }
+
+  /**
+   * Runs the sparql construct query built from {@code template} and hands the resulting
+   * statements to {@code handler} as they are read from the store.
+   *
+   * @param template  Template of the SPARQL construct query.
+   * @param variables Plist containing the local key-value pairs for {@code template}.
+   * @param handler   Handler which receives the resulting statements.
+   * @throws IllegalArgumentException Thrown if the supplied query couldn't be evaluated.
+   * @throws IllegalStateException    Thrown if the store or the handler failed.
+   * @see #sparqlStreamingSelect(eu.lod2.query.SparqlTemplate, Object[], eu.lod2.query.RowHandler)
+   */
+  public void sparqlStreamingConstruct( SparqlTemplate template, Object[] variables, RDFHandler handler ) throws IllegalArgumentException, IllegalStateException {
+    try {
+      preparedQueries.graphQuery( template, variables ).evaluate( handler );
+    } catch ( RepositoryException e ) {
+      throw new IllegalStateException( e );
+    } catch ( RDFHandlerException e ) {
+      throw new IllegalStateException( e );
+    } catch ( MalformedQueryException e ) {
+      throw new IllegalArgumentException( e );
+    } catch ( QueryEvaluationException e ) {
+      throw new IllegalArgumentException( e );
+    }
+  }
+
+
   private void addStatement( Statement next ) throws Exception {
     this.connection.add( next );
   }
@@ -479,6 +845,30 @@ public class SparqlEngine {
     }
   }
 
+  /**
+   * Hands the statements matching the pattern to {@code handler} while they are read from the
+   * store, without collecting them.  The handler's startRDF and endRDF are not called, so several
+   * exports may be written to the same handler.
+   *
+   * @param handler Handler which receives the statements.
+   * @throws IllegalStateException Thrown if the store or the handler failed.
+   */
+  public void exportStatements( RDFHandler handler, Resource subject, URI predicate, Value value, boolean includeInferred, Resource... contexts ) {
+    try {
+      RepositoryResult<Statement> statements = this.connection.getStatements( subject, predicate, value, includeInferred, contexts );
+      try {
+        while ( statements.hasNext() )
+          handler.handleStatement( statements.next() );
+      } finally {
+        statements.close();
+      }
+    } catch ( RepositoryException e ) {
+      throw new IllegalStateException( e );
+    } catch ( RDFHandlerException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
   public Model getStatements( Resource... contexts ) {
     try {
       RepositoryResult<Statement> statements = this.connection.getStatements( null, null, null, true, contexts );
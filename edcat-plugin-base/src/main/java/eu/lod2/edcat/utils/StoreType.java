@@ -1,5 +1,22 @@
 package eu.lod2.edcat.utils;
 
 public enum StoreType {
-  memory,virtuoso,sesame_remote
+  memory,virtuoso,sesame_remote,native_store;
+
+  /**
+   * Parses the storeType setting of sparql.properties.
+   * <p/>
+   * {@code native} is a reserved word in Java, so it is accepted as an alias for native_store.
+   *
+   * @param storeType Value of the storeType setting.
+   * @return StoreType which is configured.
+   * @throws IllegalArgumentException Thrown if the store type is not known.
+   */
+  public static StoreType fromConfiguration( String storeType ) {
+    if ( storeType == null )
+      throw new IllegalArgumentException( "no store type specified in sparql.properties" );
+    if ( "native".equals( storeType.trim() ) )
+      return native_store;
+    return valueOf( storeType.trim() );
+  }
 }
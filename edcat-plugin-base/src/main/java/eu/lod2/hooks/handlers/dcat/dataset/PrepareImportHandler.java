@@ -0,0 +1,41 @@
+package eu.lod2.hooks.handlers.dcat.dataset;
+
+
+import eu.lod2.hooks.contexts.dataset.AtContext;
+import eu.lod2.hooks.handlers.HookHandler;
+import eu.lod2.hooks.handlers.dcat.ActionAbortException;
+
+
+/**
+ * Implement if you are a provider for the PrepareImportHook for DataSets.
+ * <p/>
+ * Implementing this interface requires the hook to exist.  If you don't want to depend
+ * on the hook being loaded, check out {@link eu.lod2.hooks.handlers.OptionalHookHandler}.
+ * The supplied {@code args} are the same as the ones specified in this interface.
+ * The name for this hook is {@code "eu.lod2.hooks.handlers.dcat.dataset.PrepareImportHandler"}.
+ * <p/>
+ * This hook is an opt-in for expensive work on imported DataSets, e.g. enriching their
+ * description from another service, which benefits from running in parallel.  Unlike {@link
+ * AtCreateHandler}, which is called on the request thread inside the unit of work which stores the
+ * DataSet, this hook is called concurrently on the import workers:
+ * <ul>
+ * <li>the provider must be thread-safe and must not depend on state bound to the thread</li>
+ * <li>the request in the context is a {@link eu.lod2.edcat.utils.RequestSnapshot}</li>
+ * <li>the call is not part of a unit of work, the provider must not write to the store</li>
+ * </ul>
+ */
+@SuppressWarnings( "UnusedDeclaration" )
+public interface PrepareImportHandler extends HookHandler {
+
+  /**
+   * Called on an import worker when an imported DataSet has been converted to statements, before
+   * the AtCreate hook is called for it.
+   * <p/>
+   * This hook allows you to modify and extend the description of the DataSet.
+   *
+   * @param context Contains all information the consumer provides to this provider.
+   * @exception ActionAbortException Throwing this exception fails the import of the DataSet.
+   * @see eu.lod2.hooks.contexts.dataset.AtContext
+   */
+  public void handlePrepareImport( AtContext context ) throws ActionAbortException;
+}
@@ -8,9 +8,11 @@ import org.openrdf.model.Resource;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
 import org.openrdf.query.BindingSet;
+import org.openrdf.rio.RDFHandler;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 
 /**
@@ -36,50 +38,125 @@ public class Db {
   }
 
 
+  // --- UNIT OF WORK
+
+  /**
+   * Starts a unit of work on the current thread.  Until the unit of work is closed, all database
+   * operations of this class which are executed from the current thread run in a single
+   * transaction on a single connection.
+   *
+   * @return UnitOfWork which must be committed and closed by the caller.
+   * @throws IllegalStateException Thrown if a unit of work is already active on this thread.
+   * @see UnitOfWork
+   */
+  public static UnitOfWork beginUnitOfWork() {
+    if ( UnitOfWork.current() != null )
+      throw new IllegalStateException( "A unit of work is already active on this thread" );
+    SparqlEngine engine = singleton.retrieve();
+    try {
+      return new UnitOfWork( engine, singleton );
+    } catch ( RuntimeException e ) {
+      singleton.invalidate( engine );
+      throw e;
+    }
+  }
+
+  /**
+   * @return UnitOfWork which is active on the current thread, null if there is none.
+   */
+  public static UnitOfWork currentUnitOfWork() {
+    return UnitOfWork.current();
+  }
+
+
   // --- DATABASE OPERATIONS
   //
   // if you can't find the necessary operation, get hold of a SparqlEngine through #retrieve() and
   // #release(Object) if you need more specific custom functionality of a SparqlEngine.
 
+  // Templates are compiled once and prepared once per engine, the RDF values in the arguments may
+  // be supplied as bindings, see PreparedQueryCache.
+
   /**
    * Executes a query on an Engine.
    * <p/>
-   * The query is built using {@link Sparql#query(String, Object...)}.
-   * The built query is executed using {@link SparqlEngine#sparqlSelect(String)}.
+   * The query is compiled using {@link Sparql#compile(String)}.
+   * The template is executed using {@link SparqlEngine#sparqlSelect(SparqlTemplate, Object[])}.
    *
    * @param query Query as sent to Sparql#query.
    * @param args  Arguments supplied to Sparql#query.
    * @return QueryResult from executing the supplied query.
    */
   public static QueryResult query( String query, Object... args ) {
-    SparqlEngine engine = singleton.retrieve();
+    SparqlEngine engine = engine();
+    boolean healthy = false;
     try {
-      return engine.sparqlSelect(Sparql.query(query, args));
+      QueryResult result = engine.sparqlSelect( Sparql.compile( query ), args );
+      healthy = true;
+      return result;
     } finally {
-      singleton.release( engine );
+      done( engine, healthy );
     }
   }
 
   /**
    * Performs a SPARQL query on the engine and returns the raw BindingSets.
    * <p/>
-   * The query is built using {@link Sparql#query(String, Object...)}.
-   * The built query is executed using {@link SparqlEngine#sparqlRawSelect(String)}.
+   * The query is compiled using {@link Sparql#compile(String)}.
+   * The template is executed using {@link SparqlEngine#sparqlRawSelect(SparqlTemplate, Object[])}.
    *
    * @param query SPARQL query template.
    * @param args  SPARQL query template parameters.
    * @return List containing one BindingSet per match.
-   * @see eu.lod2.edcat.utils.SparqlEngine#sparqlRawSelect(String)
+   * @see eu.lod2.edcat.utils.SparqlEngine#sparqlRawSelect(SparqlTemplate, Object[])
    */
   public static List<BindingSet> rawQuery( String query, Object... args ) {
-    SparqlEngine engine = singleton.retrieve();
+    SparqlEngine engine = engine();
+    boolean healthy = false;
     try {
-      return engine.sparqlRawSelect(Sparql.query(query, args));
+      List<BindingSet> result = engine.sparqlRawSelect( Sparql.compile( query ), args );
+      healthy = true;
+      return result;
     } finally {
-      singleton.release( engine );
+      done( engine, healthy );
     }
   }
 
+  /**
+   * Performs a SPARQL query on the engine and hands the rows to {@code handler} one at a time.
+   * <p/>
+   * The query is compiled using {@link Sparql#compile(String)}.
+   * The template is executed using {@link SparqlEngine#sparqlStreamingSelect(SparqlTemplate,
+   * Object[], RowHandler)}.  The engine is returned to the pool when the iteration ends.
+   *
+   * @param handler Handler which receives the rows.
+   * @param query   SPARQL query template.
+   * @param args    SPARQL query template parameters.
+   * @return Amount of rows which were handed to the handler.
+   */
+  public static int streamQuery( RowHandler handler, String query, Object... args ) {
+    SparqlEngine engine = engine();
+    boolean healthy = false;
+    try {
+      int result = engine.sparqlStreamingSelect( Sparql.compile( query ), args, handler );
+      healthy = true;
+      return result;
+    } finally {
+      done( engine, healthy );
+    }
+  }
+
+  /**
+   * Returns true iff the store evaluates sub-selects, so a page of resources and their
+   * description can be fetched with a single query.  The setting is read once from
+   * sparql.properties, no connection is used.
+   *
+   * @see SparqlEngine#supportsSubSelects(java.util.Properties)
+   */
+  public static boolean supportsSubSelects() {
+    return subSelects;
+  }
+
   /**
    * Performs a SPARQL construct query on the engine and returns the resulting statements.
    * @param query SPARQL query template.
@@ -87,20 +164,26 @@ public class Db {
    * @return Model statements
    */
   public static Model graphQuery(String query,Object... args) {
-    SparqlEngine engine = singleton.retrieve();
+    SparqlEngine engine = engine();
+    boolean healthy = false;
     try {
-      return engine.sparqlGraphQuery(Sparql.query(query, args));
+      Model result = engine.sparqlModelConstruct( Sparql.compile( query ), args );
+      healthy = true;
+      return result;
     } finally {
-      singleton.release( engine );
+      done( engine, healthy );
     }
   }
 
   public static boolean hasStatement(Resource subject,URI predicate,Value value,Resource...contexts) {
-    SparqlEngine engine = singleton.retrieve();
-    try{
-      return engine.hasStatement(subject,predicate,value,false,contexts);
+    SparqlEngine engine = engine();
+    boolean healthy = false;
+    try {
+      boolean result = engine.hasStatement(subject,predicate,value,false,contexts);
+      healthy = true;
+      return result;
     } finally {
-      singleton.release(engine);
+      done( engine, healthy );
     }
   }
 
@@ -108,37 +191,110 @@ public class Db {
   /**
    * Performs a SPARQL construct on the engine and returns a Model containing the statements.
    * <p/>
-   * The query is built using {@link Sparql#query(String, Object...)}.
-   * The built query is executed using {@link SparqlEngine#sparqlModelConstruct(String)}.
+   * The query is compiled using {@link Sparql#compile(String)}.
+   * The template is executed using {@link SparqlEngine#sparqlModelConstruct(SparqlTemplate,
+   * Object[])}.
    *
    * @param query SPARQL query template.
    * @param args  SPARQL query template parameters.
    * @return Model containing the resulting triples.
    */
   public static Model construct( String query, Object... args ) {
-    SparqlEngine engine = singleton.retrieve();
+    SparqlEngine engine = engine();
+    boolean healthy = false;
     try {
-      return engine.sparqlModelConstruct(Sparql.query(query, args));
+      Model result = engine.sparqlModelConstruct( Sparql.compile( query ), args );
+      healthy = true;
+      return result;
     } finally {
-      singleton.release( engine );
+      done( engine, healthy );
+    }
+  }
+
+  /**
+   * Performs a SPARQL construct on the engine and hands the statements to {@code handler} as they
+   * are read from the store.
+   * <p/>
+   * The query is compiled using {@link Sparql#compile(String)}.
+   * The template is executed using {@link SparqlEngine#sparqlStreamingConstruct(SparqlTemplate,
+   * Object[], org.openrdf.rio.RDFHandler)}.  The engine is returned to the pool when the handler has been
+   * ended.
+   *
+   * @param handler Handler which receives the statements, e.g. an RDFWriter.
+   * @param query   SPARQL query template.
+   * @param args    SPARQL query template parameters.
+   */
+  public static void streamConstruct( RDFHandler handler, String query, Object... args ) {
+    SparqlEngine engine = engine();
+    boolean healthy = false;
+    try {
+      engine.sparqlStreamingConstruct( Sparql.compile( query ), args, handler );
+      healthy = true;
+    } finally {
+      done( engine, healthy );
     }
   }
 
   /**
    * Executes a Sparql update query.
    * <p/>
-   * The query is built using {@link Sparql#query(String, Object...)}.
-   * The built query is executed using {@link SparqlEngine#sparqlSelect(String)}.
+   * The query is compiled using {@link Sparql#compile(String)}.
+   * The template is executed using {@link SparqlEngine#sparqlUpdate(SparqlTemplate, Object[])}.
    *
    * @param query Query as sent to Sparql#query.
    * @param args  Arguments supplied to Sparql#query.
    */
   public static void update( String query, Object... args ) {
-    SparqlEngine engine = singleton.retrieve();
+    SparqlEngine engine = engine();
+    boolean healthy = false;
     try {
-      engine.sparqlUpdate(Sparql.query(query, args));
+      engine.sparqlUpdate( Sparql.compile( query ), args );
+      healthy = true;
     } finally {
-      singleton.release( engine );
+      done( engine, healthy );
+    }
+  }
+
+  /**
+   * Executes several Sparql update operations as one batch.
+   * <p/>
+   * The operations share the prologue and the arguments: the @PREFIX block is expanded once in
+   * front of the batch, so the operations must not contain it.  If the store accepts compound
+   * updates (see {@link SparqlEngine#supportsCompoundUpdates()}) the operations are sent as a
+   * single update request, separated by ';'.  Otherwise they are executed one by one in a single
+   * transaction on a single connection.
+   *
+   * @param operations Sparql update operations as sent to Sparql#query, without prologue.
+   * @param args       Arguments supplied to Sparql#query for each of the operations.
+   */
+  public static void updateBatch( String[] operations, Object... args ) {
+    SparqlEngine engine = engine();
+    boolean healthy = false;
+    try {
+      if ( engine.supportsCompoundUpdates() ) {
+        StringBuilder batch = new StringBuilder( " @PREFIX" );
+        for ( int i = 0; i < operations.length; i++ )
+          batch.append( i == 0 ? "" : " ;" ).append( operations[i] );
+        engine.sparqlUpdate( Sparql.compile( batch.toString() ), args );
+      } else {
+        boolean ownTransaction = !engine.isInTransaction();
+        if ( ownTransaction )
+          engine.begin();
+        try {
+          for ( String operation : operations )
+            engine.sparqlUpdate( Sparql.compile( " @PREFIX" + operation ), args );
+          if ( ownTransaction ) {
+            engine.commit();
+            ownTransaction = false;
+          }
+        } finally {
+          if ( ownTransaction )
+            engine.rollback();
+        }
+      }
+      healthy = true;
+    } finally {
+      done( engine, healthy );
     }
   }
 
@@ -149,11 +305,13 @@ public class Db {
    * org.openrdf.model.Resource...)}
    */
   public static void add( Model statements, Resource... contexts ) {
-    SparqlEngine engine = singleton.retrieve();
+    SparqlEngine engine = engine();
+    boolean healthy = false;
     try {
       engine.addStatements(statements, contexts);
+      healthy = true;
     } finally {
-      singleton.release( engine );
+      done( engine, healthy );
     }
   }
 
@@ -165,11 +323,13 @@ public class Db {
    * @param graph
    */
   public static void clearGraph( URI graph ) {
-    SparqlEngine engine = singleton.retrieve();
+    SparqlEngine engine = engine();
+    boolean healthy = false;
     try {
       engine.clearGraph( graph );
+      healthy = true;
     } finally {
-      singleton.release( engine );
+      done( engine, healthy );
     }
   }
 
@@ -179,11 +339,14 @@ public class Db {
    * Dispatches to {@link eu.lod2.edcat.utils.SparqlEngine#getStatements()}.
    */
   public static Map<String, Map<String, Set<Value>>> getStatements() {
-    SparqlEngine engine = singleton.retrieve();
+    SparqlEngine engine = engine();
+    boolean healthy = false;
     try {
-      return engine.getStatements();
+      Map<String, Map<String, Set<Value>>> result = engine.getStatements();
+      healthy = true;
+      return result;
     } finally {
-      singleton.release( engine );
+      done( engine, healthy );
     }
   }
 
@@ -194,11 +357,32 @@ public class Db {
    * org.openrdf.model.URI, org.openrdf.model.Value, boolean, org.openrdf.model.Resource...)}.
    */
   public static Model getStatements( Resource subject, URI predicate, Value value, boolean includeInferred, Resource... contexts ) {
-    SparqlEngine engine = singleton.retrieve();
+    SparqlEngine engine = engine();
+    boolean healthy = false;
     try {
-      return engine.getStatements( subject, predicate, value, includeInferred, contexts );
+      Model result = engine.getStatements( subject, predicate, value, includeInferred, contexts );
+      healthy = true;
+      return result;
     } finally {
-      singleton.release( engine );
+      done( engine, healthy );
+    }
+  }
+
+  /**
+   * Streams the statements matching the pattern to {@code handler}.
+   * <p/>
+   * Dispatches to {@link SparqlEngine#exportStatements(org.openrdf.rio.RDFHandler,
+   * org.openrdf.model.Resource, org.openrdf.model.URI, org.openrdf.model.Value, boolean,
+   * org.openrdf.model.Resource...)}.
+   */
+  public static void exportStatements( RDFHandler handler, Resource subject, URI predicate, Value value, boolean includeInferred, Resource... contexts ) {
+    SparqlEngine engine = engine();
+    boolean healthy = false;
+    try {
+      engine.exportStatements( handler, subject, predicate, value, includeInferred, contexts );
+      healthy = true;
+    } finally {
+      done( engine, healthy );
     }
   }
 
@@ -209,27 +393,75 @@ public class Db {
    * @throws NotFoundException if not statements are found in specified contexts
    */
   public static Model getStatements( Resource resource ) throws NotFoundException {
-    SparqlEngine engine = singleton.retrieve();
+    SparqlEngine engine = engine();
+    boolean healthy = false;
     try {
       Model statements = engine.getStatements( resource );
+      healthy = true;
       if (statements.size() == 0)
         throw new NotFoundException();
       return statements;
     } finally {
-      singleton.release( engine );
+      done( engine, healthy );
     }
   }
 
   // --- POOL SUPPORT IMPLEMENTATION
 
-  /** Singleton database on which requests can be made. */
-  public static Pool<SparqlEngine> singleton = new Pool<SparqlEngine>() {
+  /** Contents of sparql.properties, read once. */
+  private static final Properties configuration = SparqlEngine.loadConfiguration();
+
+  /** Whether the store evaluates sub-selects, see {@link #supportsSubSelects()}. */
+  private static final boolean subSelects = SparqlEngine.supportsSubSelects( configuration );
+
+  /**
+   * Singleton database on which requests can be made.
+   * <p/>
+   * The pool is bounded by the pool.* settings in sparql.properties, see {@link PoolConfiguration}.
+   */
+  public static Pool<SparqlEngine> singleton = new Pool<SparqlEngine>( PoolConfiguration.fromProperties( configuration ) ) {
     @Override
     SparqlEngine buildPooledObject() {
       return new SparqlEngine();
     }
+
+    @Override
+    boolean validatePooledObject( SparqlEngine engine ) {
+      return engine.isAlive();
+    }
+
+    @Override
+    void destroyPooledObject( SparqlEngine engine ) {
+      engine.terminate();
+    }
   };
 
+  /**
+   * Retrieves the engine on which an operation should run: the engine of the active unit of work
+   * or an engine from the pool.
+   */
+  private static SparqlEngine engine() {
+    UnitOfWork work = UnitOfWork.current();
+    return work == null ? singleton.retrieve() : work.getEngine();
+  }
+
+  /**
+   * Hands an engine which was retrieved through {@link #engine()} back to the pool, unless it
+   * belongs to the active unit of work.  An engine whose operation threw may have been left in an
+   * unknown state (e.g. a broken connection or a half-read result) and is destroyed instead.
+   *
+   * @param healthy false if the operation on the engine threw.
+   */
+  private static void done( SparqlEngine engine, boolean healthy ) {
+    UnitOfWork work = UnitOfWork.current();
+    if ( work != null && work.getEngine() == engine )
+      return;
+    if ( healthy )
+      singleton.release( engine );
+    else
+      singleton.invalidate( engine );
+  }
+
   /** Empty constructor */
   private Db() { super(); }
 }
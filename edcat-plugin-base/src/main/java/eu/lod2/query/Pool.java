@@ -1,43 +1,328 @@
 package eu.lod2.query;
 
-import java.util.ArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Dumb pool which never destructs objects.
+ * Bounded pool which validates and evicts the objects it hands out.
+ * <p/>
+ * At most {@link PoolConfiguration#getMaxSize()} objects are borrowed at the same time.  Callers
+ * which can't obtain an object within {@link PoolConfiguration#getBorrowTimeoutMillis()} receive
+ * an IllegalStateException.  Idle objects are kept in a deque and borrowed LIFO: the most recently
+ * released object is handed out first, so under light load the surplus objects stay cold at the
+ * other end.  Objects which have been idle for longer than {@link
+ * PoolConfiguration#getMaxIdleMillis()} are destroyed from that end by {@link #evictIdle()}, which
+ * runs periodically in the background, as long as at least {@link PoolConfiguration#getMinSize()}
+ * idle objects remain.  Only objects which have been idle for at
+ * least {@link PoolConfiguration#getValidateAfterIdleMillis()} are validated before they are
+ * handed out again; objects which broke whilst borrowed should be returned through {@link
+ * #invalidate(Object)}.
+ * <p/>
+ * The pool keeps track of the objects it handed out.  Returning an object which is not borrowed,
+ * e.g. returning it twice, is logged and ignored, so it can't push the pool beyond its bounds.
+ * <p/>
+ * Subclasses construct objects through {@link #buildPooledObject()} and may override {@link
+ * #validatePooledObject(Object)} and {@link #destroyPooledObject(Object)}.
  */
 public abstract class Pool<T> {
 
-  /** Contains the elements of the pool */
-  private ArrayList<T> pool = new ArrayList();
+  private static final Logger log = LoggerFactory.getLogger( Pool.class );
+
+  /** Settings with which this pool was constructed. */
+  private final PoolConfiguration configuration;
+
+  /** Contains the idle elements of the pool, most recently released first. */
+  private final LinkedBlockingDeque<Entry<T>> idle = new LinkedBlockingDeque<Entry<T>>();
+
+  /** Elements which are currently borrowed, compared by identity. */
+  private final Set<T> borrowed = Collections.synchronizedSet( Collections.newSetFromMap( new IdentityHashMap<T, Boolean>() ) );
+
+  /** Permits for borrowing an element, bounds the amount of borrowed elements. */
+  private final Semaphore permits;
+
+  /** Amount of elements currently in the idle deque. */
+  private final AtomicInteger idleCount = new AtomicInteger( 0 );
+
+  /** Amount of elements which have been constructed and not yet destroyed. */
+  private final AtomicInteger liveCount = new AtomicInteger( 0 );
+
+  /** Executor which runs the idle eviction, null if background eviction is disabled. */
+  private final ScheduledExecutorService evictor;
+
+  /**
+   * Constructs a pool with the default {@link PoolConfiguration}.
+   */
+  public Pool() {
+    this( new PoolConfiguration() );
+  }
+
+  /**
+   * Constructs a pool with the supplied configuration.
+   *
+   * @param configuration Settings which bound the behaviour of the pool.
+   * @throws IllegalArgumentException Thrown if the configuration is not valid.
+   */
+  public Pool( PoolConfiguration configuration ) {
+    configuration.verify();
+    this.configuration = configuration;
+    this.permits = new Semaphore( configuration.getMaxSize(), true );
+    if ( configuration.getEvictionIntervalMillis() > 0 ) {
+      evictor = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+        @Override
+        public Thread newThread( Runnable runnable ) {
+          Thread thread = new Thread( runnable, "edcat-pool-evictor" );
+          thread.setDaemon( true );
+          return thread;
+        }
+      } );
+      evictor.scheduleWithFixedDelay( new Runnable() {
+        @Override
+        public void run() {
+          try {
+            evictIdle();
+          } catch ( RuntimeException e ) {
+            log.warn( "Could not evict idle pool objects: {}", e );
+          }
+        }
+      }, configuration.getEvictionIntervalMillis(), configuration.getEvictionIntervalMillis(), TimeUnit.MILLISECONDS );
+    } else {
+      evictor = null;
+    }
+  }
+
+
+  // --- PUBLIC API
 
   /**
-   * Retrieves an object from the pool or creates one if one didn't exist yet.
+   * Retrieves an object from the pool or creates one if no valid idle object exists.
+   * <p/>
+   * Blocks until an object is available, or until the borrow timeout expires.
    *
    * @return Element from the Pool.
+   * @throws IllegalStateException Thrown if no object became available within the borrow timeout,
+   *                               or if the calling thread was interrupted whilst waiting.
    */
-  public synchronized T retrieve(){
-    if( pool.isEmpty() )
-      return buildPooledObject();
-    else {
-      T element = pool.get(0);
-      pool.remove(0);
+  public T retrieve() {
+    acquirePermit();
+    try {
+      Entry<T> entry;
+      while ( ( entry = idle.pollFirst() ) != null ) {
+        idleCount.decrementAndGet();
+        if ( !needsValidation( entry ) || isValid( entry.element ) ) {
+          borrowed.add( entry.element );
+          return entry.element;
+        }
+        destroy( entry.element );
+      }
+      T element = buildPooledObject();
+      liveCount.incrementAndGet();
+      borrowed.add( element );
       return element;
+    } catch ( RuntimeException e ) {
+      permits.release();
+      throw e;
     }
   }
 
   /**
-   * Returns an element to the pool.
+   * Returns an element to the pool.  Elements which are not borrowed from this pool are ignored.
    *
    * @param element Element to return.
    */
-  public synchronized void release(T element){
-    pool.add( element );
+  public void release( T element ) {
+    if ( !borrowed.remove( element ) ) {
+      log.warn( "Ignoring release of an object which is not borrowed from the pool: {}", element );
+      return;
+    }
+    idle.offerFirst( new Entry<T>( element ) );
+    idleCount.incrementAndGet();
+    permits.release();
+  }
+
+  /**
+   * Returns an element which is known to be broken.  The element is destroyed instead of being
+   * handed out again.  Elements which are not borrowed from this pool are ignored.
+   *
+   * @param element Element which was retrieved from the pool and which may not be reused.
+   */
+  public void invalidate( T element ) {
+    if ( !borrowed.remove( element ) ) {
+      log.warn( "Ignoring invalidation of an object which is not borrowed from the pool: {}", element );
+      return;
+    }
+    try {
+      destroy( element );
+    } finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * Destroys the idle objects which have been idle for longer than the configured maximum idle
+   * time, keeping at least the configured minimum amount of idle objects.
+   *
+   * @return Amount of objects which were destroyed.
+   */
+  public int evictIdle() {
+    long threshold = System.currentTimeMillis() - configuration.getMaxIdleMillis();
+    int evicted = 0;
+    // start at the cold end, the deque is ordered by release time
+    Iterator<Entry<T>> entries = idle.descendingIterator();
+    while ( entries.hasNext() && idleCount.get() > configuration.getMinSize() ) {
+      Entry<T> entry = entries.next();
+      if ( entry.releasedAt > threshold )
+        break;
+      // remove may fail if the entry was borrowed concurrently
+      if ( idle.removeLastOccurrence( entry ) ) {
+        idleCount.decrementAndGet();
+        destroy( entry.element );
+        evicted++;
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * Destroys all idle objects and stops the background eviction.  Borrowed objects are destroyed
+   * neither by this call nor when they are released afterwards.
+   */
+  public void shutdown() {
+    if ( evictor != null )
+      evictor.shutdownNow();
+    Entry<T> entry;
+    while ( ( entry = idle.pollFirst() ) != null ) {
+      idleCount.decrementAndGet();
+      destroy( entry.element );
+    }
+  }
+
+  /**
+   * @return Amount of objects which are currently idle in the pool.
+   */
+  public int getIdleCount() {
+    return idleCount.get();
+  }
+
+  /**
+   * @return Amount of objects which are currently borrowed from the pool.
+   */
+  public int getBorrowedCount() {
+    return borrowed.size();
   }
 
+  /**
+   * @return Amount of objects which have been constructed and not yet destroyed.
+   */
+  public int getLiveCount() {
+    return liveCount.get();
+  }
+
+  /**
+   * @return Settings with which this pool was constructed.
+   */
+  public PoolConfiguration getConfiguration() {
+    return configuration;
+  }
+
+
+  // --- EXTENSION POINTS
+
   /**
    * Constructs a new object for the pool.
    *
    * @return Object which may be stored in and retrieved from the Pool.
    */
   abstract T buildPooledObject();
+
+  /**
+   * Checks whether an idle object may still be handed out.  Only called when validation on borrow
+   * is enabled, for objects which have been idle for at least the configured time.
+   *
+   * @param element Idle element which is about to be handed out.
+   * @return true iff the element is still usable.
+   */
+  boolean validatePooledObject( T element ) {
+    return true;
+  }
+
+  /**
+   * Frees the resources held by an object which is removed from the pool.
+   *
+   * @param element Element which will not be handed out anymore.
+   */
+  void destroyPooledObject( T element ) {
+  }
+
+
+  // --- HELPERS
+
+  /**
+   * Acquires a borrow permit, waiting at most the configured borrow timeout.
+   */
+  private void acquirePermit() {
+    try {
+      if ( !permits.tryAcquire( configuration.getBorrowTimeoutMillis(), TimeUnit.MILLISECONDS ) )
+        throw new IllegalStateException( "Could not retrieve an object from the pool within " + configuration.getBorrowTimeoutMillis() + "ms" );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException( e );
+    }
+  }
+
+  /**
+   * Returns true iff the idle entry has to be validated before it is handed out.
+   */
+  private boolean needsValidation( Entry<T> entry ) {
+    return configuration.isValidateOnBorrow()
+        && System.currentTimeMillis() - entry.releasedAt >= configuration.getValidateAfterIdleMillis();
+  }
+
+  /**
+   * Validates an element, treating exceptions as a failed validation.
+   */
+  private boolean isValid( T element ) {
+    try {
+      return validatePooledObject( element );
+    } catch ( RuntimeException e ) {
+      log.warn( "Validation of pooled object failed: {}", e );
+      return false;
+    }
+  }
+
+  /**
+   * Destroys an element, logging rather than propagating failures.
+   */
+  private void destroy( T element ) {
+    liveCount.decrementAndGet();
+    try {
+      destroyPooledObject( element );
+    } catch ( RuntimeException e ) {
+      log.warn( "Could not destroy pooled object: {}", e );
+    }
+  }
+
+  /**
+   * Idle element with the moment it was released to the pool.
+   */
+  private static class Entry<T> {
+    final T element;
+    final long releasedAt;
+
+    Entry( T element ) {
+      this.element = element;
+      this.releasedAt = System.currentTimeMillis();
+    }
+  }
 }
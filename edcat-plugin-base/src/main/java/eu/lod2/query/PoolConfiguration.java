@@ -0,0 +1,181 @@
+package eu.lod2.query;
+
+import java.util.Properties;
+
+/**
+ * Contains the settings which bound the behaviour of a {@link Pool}.
+ * <p/>
+ * The settings can be read from the {@code sparql.properties} file through {@link
+ * #fromProperties(java.util.Properties)}.  The following keys are understood:
+ * <ul>
+ * <li>{@code pool.minSize}: amount of idle objects which are never evicted (default 0)</li>
+ * <li>{@code pool.maxSize}: maximum amount of objects which may be alive at once (default 20)</li>
+ * <li>{@code pool.maxIdleMillis}: time after which an idle object is evicted (default 300000)</li>
+ * <li>{@code pool.evictionIntervalMillis}: time between two eviction runs, 0 disables the
+ * background eviction (default 60000)</li>
+ * <li>{@code pool.borrowTimeoutMillis}: time we wait for an object to become available
+ * (default 30000)</li>
+ * <li>{@code pool.validateOnBorrow}: validate idle objects before handing them out (default
+ * true)</li>
+ * <li>{@code pool.validateAfterIdleMillis}: time an object must have been idle before it is
+ * validated, objects which were released more recently are handed out as they are (default
+ * 30000)</li>
+ * </ul>
+ */
+public class PoolConfiguration {
+
+  /** Amount of idle objects which are never evicted. */
+  private int minSize = 0;
+
+  /** Maximum amount of objects which may be alive at the same time. */
+  private int maxSize = 20;
+
+  /** Time in milliseconds after which an idle object may be evicted. */
+  private long maxIdleMillis = 300000;
+
+  /** Time in milliseconds between two eviction runs.  0 disables background eviction. */
+  private long evictionIntervalMillis = 60000;
+
+  /** Time in milliseconds we wait for an object to become available. */
+  private long borrowTimeoutMillis = 30000;
+
+  /** Whether idle objects are validated before being handed out. */
+  private boolean validateOnBorrow = true;
+
+  /** Time in milliseconds an object must have been idle before it is validated. */
+  private long validateAfterIdleMillis = 30000;
+
+  /**
+   * Constructs a configuration with the default settings.
+   */
+  public PoolConfiguration() {
+  }
+
+  /**
+   * Constructs a configuration from the {@code pool.*} keys in {@code properties}.  Keys which
+   * are not supplied keep their default value.
+   *
+   * @param properties Properties as read from sparql.properties.
+   * @return New PoolConfiguration.
+   * @throws IllegalArgumentException Thrown if the resulting configuration is not valid.
+   */
+  public static PoolConfiguration fromProperties( Properties properties ) {
+    PoolConfiguration configuration = new PoolConfiguration();
+    configuration.minSize = intProperty( properties, "pool.minSize", configuration.minSize );
+    configuration.maxSize = intProperty( properties, "pool.maxSize", configuration.maxSize );
+    configuration.maxIdleMillis = longProperty( properties, "pool.maxIdleMillis", configuration.maxIdleMillis );
+    configuration.evictionIntervalMillis = longProperty( properties, "pool.evictionIntervalMillis", configuration.evictionIntervalMillis );
+    configuration.borrowTimeoutMillis = longProperty( properties, "pool.borrowTimeoutMillis", configuration.borrowTimeoutMillis );
+    configuration.validateAfterIdleMillis = longProperty( properties, "pool.validateAfterIdleMillis", configuration.validateAfterIdleMillis );
+    String validate = properties.getProperty( "pool.validateOnBorrow" );
+    if ( validate != null )
+      configuration.validateOnBorrow = Boolean.parseBoolean( validate.trim() );
+    configuration.verify();
+    return configuration;
+  }
+
+  public int getMinSize() {
+    return minSize;
+  }
+
+  public PoolConfiguration setMinSize( int minSize ) {
+    this.minSize = minSize;
+    return this;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public PoolConfiguration setMaxSize( int maxSize ) {
+    this.maxSize = maxSize;
+    return this;
+  }
+
+  public long getMaxIdleMillis() {
+    return maxIdleMillis;
+  }
+
+  public PoolConfiguration setMaxIdleMillis( long maxIdleMillis ) {
+    this.maxIdleMillis = maxIdleMillis;
+    return this;
+  }
+
+  public long getEvictionIntervalMillis() {
+    return evictionIntervalMillis;
+  }
+
+  public PoolConfiguration setEvictionIntervalMillis( long evictionIntervalMillis ) {
+    this.evictionIntervalMillis = evictionIntervalMillis;
+    return this;
+  }
+
+  public long getBorrowTimeoutMillis() {
+    return borrowTimeoutMillis;
+  }
+
+  public PoolConfiguration setBorrowTimeoutMillis( long borrowTimeoutMillis ) {
+    this.borrowTimeoutMillis = borrowTimeoutMillis;
+    return this;
+  }
+
+  public boolean isValidateOnBorrow() {
+    return validateOnBorrow;
+  }
+
+  public PoolConfiguration setValidateOnBorrow( boolean validateOnBorrow ) {
+    this.validateOnBorrow = validateOnBorrow;
+    return this;
+  }
+
+  public long getValidateAfterIdleMillis() {
+    return validateAfterIdleMillis;
+  }
+
+  public PoolConfiguration setValidateAfterIdleMillis( long validateAfterIdleMillis ) {
+    this.validateAfterIdleMillis = validateAfterIdleMillis;
+    return this;
+  }
+
+  /**
+   * Verifies that the settings are consistent with each other.
+   *
+   * @throws IllegalArgumentException Thrown if the settings can't be used to construct a Pool.
+   */
+  public void verify() {
+    if ( maxSize < 1 )
+      throw new IllegalArgumentException( "pool.maxSize must be at least 1" );
+    if ( minSize < 0 || minSize > maxSize )
+      throw new IllegalArgumentException( "pool.minSize must be between 0 and pool.maxSize" );
+    if ( maxIdleMillis < 0 || evictionIntervalMillis < 0 || borrowTimeoutMillis < 0 || validateAfterIdleMillis < 0 )
+      throw new IllegalArgumentException( "pool timings must not be negative" );
+  }
+
+  /**
+   * Retrieves an integer property, falling back to {@code defaultValue} if it was not supplied.
+   */
+  private static int intProperty( Properties properties, String key, int defaultValue ) {
+    String value = properties.getProperty( key );
+    if ( value == null )
+      return defaultValue;
+    try {
+      return Integer.parseInt( value.trim() );
+    } catch ( NumberFormatException e ) {
+      throw new IllegalArgumentException( key + " is not a valid integer: " + value );
+    }
+  }
+
+  /**
+   * Retrieves a long property, falling back to {@code defaultValue} if it was not supplied.
+   */
+  private static long longProperty( Properties properties, String key, long defaultValue ) {
+    String value = properties.getProperty( key );
+    if ( value == null )
+      return defaultValue;
+    try {
+      return Long.parseLong( value.trim() );
+    } catch ( NumberFormatException e ) {
+      throw new IllegalArgumentException( key + " is not a valid number: " + value );
+    }
+  }
+}
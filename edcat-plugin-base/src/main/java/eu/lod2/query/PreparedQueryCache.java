@@ -0,0 +1,236 @@
+package eu.lod2.query;
+
+import org.openrdf.model.Value;
+import org.openrdf.query.*;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Least recently used cache of the prepared queries and updates of a single connection.
+ * <p/>
+ * Operations are built from a {@link SparqlTemplate} and cached by their query text.  When
+ * parameter binding is enabled, the slots of a template which receive an RDF {@link Value} are
+ * left in the query as SPARQL variables (a template slot {@code $name} is a valid SPARQL variable)
+ * and the value is supplied through {@link Operation#setBinding(String, Value)}.  The query is
+ * then parsed once per template instead of once per request.  Other values (plain strings,
+ * numbers) are still substituted in the text, as are all values of a template which can't be
+ * parsed with variables in place of the values (e.g. {@code FROM $graph}).
+ * <p/>
+ * A cache is tied to the connection it was built for and is not thread-safe, just like the
+ * connection itself.  The following keys of sparql.properties are understood:
+ * <ul>
+ * <li>{@code preparedQueries.cacheSize}: amount of prepared operations which are kept, 0
+ * disables the cache (default 64)</li>
+ * <li>{@code preparedQueries.bindParameters}: supply RDF values through bindings instead of
+ * through the query text (default true for memory and native stores, false otherwise)</li>
+ * </ul>
+ */
+public class PreparedQueryCache {
+
+  /** Default amount of prepared operations which are kept. */
+  public static final int DEFAULT_CACHE_SIZE = 64;
+
+  /** Marks a template which can't be parsed with variables in place of its values. */
+  private static final Object UNBINDABLE = new Object();
+
+  /** Connection on which the operations are prepared. */
+  private final RepositoryConnection connection;
+
+  /** Whether RDF values are supplied as bindings. */
+  private final boolean bindParameters;
+
+  /** Prepared operations, keyed by their kind and query text, in access order. */
+  private final Map<String, Object> operations;
+
+  /**
+   * Constructs a new cache for {@code connection}.
+   *
+   * @param connection     Connection on which the operations are prepared.
+   * @param cacheSize      Amount of prepared operations which are kept.
+   * @param bindParameters Whether RDF values are supplied as bindings.
+   */
+  public PreparedQueryCache( RepositoryConnection connection, final int cacheSize, boolean bindParameters ) {
+    this.connection = connection;
+    this.bindParameters = bindParameters;
+    this.operations = new LinkedHashMap<String, Object>( 16, 0.75f, true ) {
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<String, Object> eldest ) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /**
+   * Constructs a new cache for {@code connection} from the {@code preparedQueries.*} keys in
+   * {@code properties}.
+   *
+   * @param connection        Connection on which the operations are prepared.
+   * @param properties        Properties as read from sparql.properties.
+   * @param bindByDefault     Whether RDF values are supplied as bindings when the properties
+   *                          don't say otherwise.
+   * @return New PreparedQueryCache.
+   */
+  public static PreparedQueryCache fromProperties( RepositoryConnection connection, Properties properties, boolean bindByDefault ) {
+    int cacheSize = DEFAULT_CACHE_SIZE;
+    String size = properties.getProperty( "preparedQueries.cacheSize" );
+    if ( size != null ) {
+      try {
+        cacheSize = Integer.parseInt( size.trim() );
+      } catch ( NumberFormatException e ) {
+        throw new IllegalArgumentException( "preparedQueries.cacheSize must be a number, got " + size, e );
+      }
+    }
+    if ( cacheSize < 0 )
+      throw new IllegalArgumentException( "preparedQueries.cacheSize must not be negative" );
+    String bind = properties.getProperty( "preparedQueries.bindParameters" );
+    boolean bindParameters = bind == null ? bindByDefault : Boolean.parseBoolean( bind.trim() );
+    return new PreparedQueryCache( connection, cacheSize, bindParameters );
+  }
+
+  /**
+   * Retrieves a prepared tuple query for {@code template} with {@code variables} supplied.
+   *
+   * @param template  Template of the query.
+   * @param variables Plist containing the local key-value pairs, see {@link
+   *                  SparqlTemplate#render(Object...)}.
+   */
+  public TupleQuery tupleQuery( SparqlTemplate template, Object[] variables ) throws RepositoryException, MalformedQueryException {
+    return ( TupleQuery ) prepare( Kind.TUPLE, template, variables );
+  }
+
+  /**
+   * Retrieves a prepared graph query for {@code template} with {@code variables} supplied.
+   *
+   * @see #tupleQuery(SparqlTemplate, Object[])
+   */
+  public GraphQuery graphQuery( SparqlTemplate template, Object[] variables ) throws RepositoryException, MalformedQueryException {
+    return ( GraphQuery ) prepare( Kind.GRAPH, template, variables );
+  }
+
+  /**
+   * Retrieves a prepared update for {@code template} with {@code variables} supplied.
+   *
+   * @see #tupleQuery(SparqlTemplate, Object[])
+   */
+  public Update update( SparqlTemplate template, Object[] variables ) throws RepositoryException, MalformedQueryException {
+    return ( Update ) prepare( Kind.UPDATE, template, variables );
+  }
+
+  /**
+   * Drops all prepared operations, e.g. because the connection is closed.
+   */
+  public void clear() {
+    operations.clear();
+  }
+
+  /**
+   * @return Amount of prepared operations in the cache.
+   */
+  public int size() {
+    return operations.size();
+  }
+
+
+  // --- IMPLEMENTATION
+
+  /** Kinds of operations which can be prepared. */
+  private enum Kind {
+    TUPLE, GRAPH, UPDATE
+  }
+
+  /** Template slots which are valid SPARQL variable names, '-' is allowed in the former only. */
+  private static final Pattern VARIABLE_NAME = Pattern.compile( "[A-Za-z_]+" );
+
+  /** Empty plist of bindings. */
+  private static final Object[] NO_BINDINGS = new Object[0];
+
+  /**
+   * Prepares {@code template}, binding the RDF values in {@code variables} if possible.
+   */
+  private Operation prepare( Kind kind, SparqlTemplate template, Object[] variables ) throws RepositoryException, MalformedQueryException {
+    if ( bindParameters ) {
+      List<Object> substituted = new ArrayList<Object>( variables.length );
+      List<Object> bound = new ArrayList<Object>( variables.length );
+      splitVariables( variables, substituted, bound );
+      if ( !bound.isEmpty() ) {
+        String query = template.render( substituted.toArray() );
+        if ( operations.get( key( kind, query ) ) != UNBINDABLE ) {
+          try {
+            return prepare( kind, query, bound.toArray() );
+          } catch ( MalformedQueryException e ) {
+            // the values are used where SPARQL doesn't accept variables, substitute them instead
+            operations.put( key( kind, query ), UNBINDABLE );
+          }
+        }
+      }
+    }
+    return prepare( kind, template.render( variables ), NO_BINDINGS );
+  }
+
+  /**
+   * Retrieves the prepared operation for {@code query} from the cache or prepares it, and applies
+   * {@code bindings} to it.
+   *
+   * @param bindings Plist containing the variable names and the Values to bind.
+   */
+  private Operation prepare( Kind kind, String query, Object[] bindings ) throws RepositoryException, MalformedQueryException {
+    String key = key( kind, query );
+    Object cached = operations.get( key );
+    Operation operation;
+    if ( cached instanceof Operation ) {
+      operation = ( Operation ) cached;
+      operation.clearBindings();
+    } else {
+      operation = prepareOnConnection( kind, query );
+      operations.put( key, operation );
+    }
+    for ( int i = 0; i < bindings.length; i += 2 )
+      operation.setBinding( ( String ) bindings[i], ( Value ) bindings[i + 1] );
+    return operation;
+  }
+
+  /**
+   * Prepares {@code query} on the connection.
+   */
+  private Operation prepareOnConnection( Kind kind, String query ) throws RepositoryException, MalformedQueryException {
+    switch ( kind ) {
+      case TUPLE:
+        return connection.prepareTupleQuery( QueryLanguage.SPARQL, query );
+      case GRAPH:
+        return connection.prepareGraphQuery( QueryLanguage.SPARQL, query );
+      default:
+        return connection.prepareUpdate( QueryLanguage.SPARQL, query );
+    }
+  }
+
+  /**
+   * Splits the plist {@code variables} into the variables which are substituted in the query text
+   * and the variables which are bound as RDF values.
+   */
+  private static void splitVariables( Object[] variables, List<Object> substituted, List<Object> bound ) {
+    if ( variables.length % 2 != 0 )
+      throw new IllegalArgumentException( "Map did not contain an even amount of key/values.  Key " + variables[variables.length - 1].toString() + " did not get a value assigned." );
+    for ( int i = 0; i < variables.length; i += 2 ) {
+      boolean bindable = variables[i + 1] instanceof Value
+          && variables[i] instanceof String
+          && VARIABLE_NAME.matcher( ( String ) variables[i] ).matches();
+      List<Object> target = bindable ? bound : substituted;
+      target.add( variables[i] );
+      target.add( variables[i + 1] );
+    }
+  }
+
+  /**
+   * @return Key of the operation of kind {@code kind} for {@code query} in the cache.
+   */
+  private static String key( Kind kind, String query ) {
+    return kind.name() + ":" + query;
+  }
+}
@@ -0,0 +1,24 @@
+package eu.lod2.query;
+
+import org.openrdf.query.BindingSet;
+
+/**
+ * Receives the rows of a SPARQL SELECT query one at a time, as they are read from the store.
+ * <p/>
+ * Used by {@link Db#streamQuery(RowHandler, String, Object...)} and {@link
+ * eu.lod2.edcat.utils.SparqlEngine#sparqlStreamingSelect(String, RowHandler)} so large results
+ * don't need to be materialized before they are processed.
+ */
+public interface RowHandler {
+
+  /**
+   * Handles a single row of the result.
+   * <p/>
+   * The BindingSet should not be kept after this call returns if the intent is to keep memory use
+   * bounded.
+   *
+   * @param row Current row of the result.
+   * @return true if the next row should be visited, false to stop the iteration early.
+   */
+  public boolean handleRow( BindingSet row );
+}
@@ -6,6 +6,8 @@ import org.openrdf.model.impl.URIImpl;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -46,9 +48,15 @@ public class Sparql {
    */
   private static Pattern constantPattern = Pattern.compile( "@([A-Za-z\\-_]+)" );
   /**
-   * Pattern which recognizes local variables
+   * Maximum amount of compiled templates which is kept in {@link #templates}.  Query patterns are
+   * constants, this only guards against callers which build their patterns dynamically.
    */
-  private static Pattern variablePattern = Pattern.compile( "\\$([A-Za-z\\-_]+)" );
+  private static final int MAX_CACHED_TEMPLATES = 1024;
+
+  /**
+   * Compiled templates, keyed by their pattern.
+   */
+  private static final ConcurrentMap<String, SparqlTemplate> templates = new ConcurrentHashMap<String, SparqlTemplate>();
 
   /**
    * Contains all namespaces used in our Sparql queries.
@@ -80,13 +88,36 @@ public class Sparql {
    * local variable is the name which will be replaced (ie: "foo" for variable "$foo") and the
    * value is its replacement.
    *
+   * <p/>
+   * The pattern is compiled once through {@link #compile(String)}, later calls with the same
+   * pattern only render the cached template.
+   *
    * @param pattern   Sparql query in which the variables will be substituted.
    * @param variables Plist containing the local key-value pairs.
    * @return String representing an executable sparql query.
    */
   public static String query( String pattern, Object... variables ) {
-    Map<String, Object> localVariables = constructLocalVariableMap( variables );
-    return replaceClassVariables( replaceLocalVariables( pattern, localVariables ) );
+    return compile( pattern ).render( variables );
+  }
+
+  /**
+   * Compiles a query pattern into a reusable template.
+   * <p/>
+   * The class variables are expanded and the local variables are located once, rendering the
+   * template is a single pass over its segments.  Templates are cached by their pattern.
+   *
+   * @param pattern Sparql query in which the variables will be substituted, see {@link
+   *                #query(String, Object...)}.
+   * @return SparqlTemplate for {@code pattern}.
+   */
+  public static SparqlTemplate compile( String pattern ) {
+    SparqlTemplate template = templates.get( pattern );
+    if ( template == null ) {
+      template = new SparqlTemplate( pattern );
+      if ( templates.size() < MAX_CACHED_TEMPLATES )
+        templates.putIfAbsent( pattern, template );
+    }
+    return template;
   }
 
   /**
@@ -183,35 +214,13 @@ public class Sparql {
     return sb.toString();
   }
 
-  /**
-   * Replaces the local variables in the pattern and returns a new String containing {@code pattern}
-   * with the variables replaced.
-   *
-   * @param pattern Pattern in which we will replace the variables.
-   * @param varmap  key/value pair containing the variables to replace as keywords and their
-   *                corresponding value as the value.
-   * @return New String representing the pattern with the variables replaced.
-   */
-  private static String replaceLocalVariables( String pattern, Map<String, Object> varmap ) {
-    // see http://www.regular-expressions.info/java.html
-    StringBuffer buffer = new StringBuffer();
-    Matcher matcher = variablePattern.matcher( pattern );
-    while ( matcher.find() ) {
-      String matched = matcher.group( 1 );
-      if ( varmap.containsKey( matched ) )
-        matcher.appendReplacement( buffer, queryInjectionConversion( varmap.get( matched ) ) );
-    }
-    matcher.appendTail( buffer );
-    return buffer.toString();
-  }
-
   /**
    * Replaces the class variables in pattern.
    *
    * @param pattern Pattern in which the variables will be replaced.
    * @return New String containing consisting of pattern with the values replaced.
    */
-  private static String replaceClassVariables( String pattern ) {
+  static String replaceClassVariables( String pattern ) {
     // see http://ww.regular-expressions.info/java.html
     StringBuffer buffer = new StringBuffer();
     Matcher matcher = constantPattern.matcher( pattern );
@@ -234,7 +243,7 @@ public class Sparql {
    * - Object: o.toString() which represents the object inside a Sparql query.
    * - URI: "<#{o.stringValue()}>".
    */
-  private static String queryInjectionConversion( Object o ) {
+  static String queryInjectionConversion( Object o ) {
     if ( o instanceof URI )
       return "<" + ((URI) o).stringValue() + ">";
     else
@@ -0,0 +1,127 @@
+package eu.lod2.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A SPARQL query pattern which has been split into literal segments and variable slots.
+ * <p/>
+ * Templates are built through {@link Sparql#compile(String)}.  The class variables (the @
+ * variables, like @PREFIX) are expanded when the template is compiled, the local variables (the $
+ * variables) are the slots which are filled in by {@link #render(Object...)}.  A slot for which
+ * no value is supplied is rendered as it was written in the pattern.
+ * <p/>
+ * Templates are immutable and may be shared between threads.
+ */
+public class SparqlTemplate {
+
+  /** Pattern which recognizes local variables */
+  private static final Pattern variablePattern = Pattern.compile( "\\$([A-Za-z\\-_]+)" );
+
+  /** Literal text, segments[i] is rendered before slot i, the last segment follows the last slot. */
+  private final String[] segments;
+
+  /** Names of the local variables, in the order in which they appear in the pattern. */
+  private final String[] slots;
+
+  /** Length of the literal text, used to size the rendered query. */
+  private final int literalLength;
+
+  /**
+   * Compiles {@code pattern} into a template.
+   *
+   * @param pattern Sparql query pattern as accepted by {@link Sparql#query(String, Object...)}.
+   * @see Sparql#compile(String)
+   */
+  SparqlTemplate( String pattern ) {
+    this( pattern, true );
+  }
+
+  /**
+   * Builds a template for {@code pattern}.
+   *
+   * @param pattern  Sparql query pattern.
+   * @param expand   Whether the class and local variables in {@code pattern} are recognized, if
+   *                 false the template always renders {@code pattern} as is.
+   */
+  private SparqlTemplate( String pattern, boolean expand ) {
+    if ( !expand ) {
+      this.segments = new String[]{ pattern };
+      this.slots = new String[0];
+      this.literalLength = pattern.length();
+      return;
+    }
+
+    List<String> segmentList = new ArrayList<String>();
+    List<String> slotList = new ArrayList<String>();
+    Matcher matcher = variablePattern.matcher( pattern );
+    int segmentStart = 0;
+    while ( matcher.find() ) {
+      segmentList.add( Sparql.replaceClassVariables( pattern.substring( segmentStart, matcher.start() ) ) );
+      slotList.add( matcher.group( 1 ) );
+      segmentStart = matcher.end();
+    }
+    segmentList.add( Sparql.replaceClassVariables( pattern.substring( segmentStart ) ) );
+
+    this.segments = segmentList.toArray( new String[segmentList.size()] );
+    this.slots = slotList.toArray( new String[slotList.size()] );
+    int length = 0;
+    for ( String segment : segments )
+      length += segment.length();
+    this.literalLength = length;
+  }
+
+  /**
+   * Builds a template which renders {@code query} as is, for queries which have been built
+   * already.  These templates are not cached.
+   *
+   * @param query Executable SPARQL query.
+   * @return SparqlTemplate without variables.
+   */
+  public static SparqlTemplate literal( String query ) {
+    return new SparqlTemplate( query, false );
+  }
+
+  /**
+   * Renders the query with the supplied local variables.
+   *
+   * @param variables Plist containing the local key-value pairs, the key is the name of the
+   *                  variable without the $ prefix.
+   * @return String representing an executable sparql query.
+   * @throws IllegalArgumentException if {@code variables} doesn't contain an even amount of
+   *                                  elements.
+   */
+  public String render( Object... variables ) {
+    if ( variables.length % 2 != 0 )
+      throw new IllegalArgumentException( "Map did not contain an even amount of key/values.  Key " + variables[variables.length - 1].toString() + " did not get a value assigned." );
+
+    if ( slots.length == 0 )
+      return segments[0];
+    StringBuilder query = new StringBuilder( literalLength + 64 * slots.length );
+    query.append( segments[0] );
+    for ( int i = 0; i < slots.length; i++ ) {
+      Object value = lookup( slots[i], variables );
+      if ( value == null )
+        query.append( '$' ).append( slots[i] );
+      else
+        query.append( Sparql.queryInjectionConversion( value ) );
+      query.append( segments[i + 1] );
+    }
+    return query.toString();
+  }
+
+  /**
+   * Finds the value for {@code name} in the plist {@code variables}.  When a key is supplied more
+   * than once, the last value wins.
+   *
+   * @return Value for {@code name} or null if no value was supplied.
+   */
+  private static Object lookup( String name, Object[] variables ) {
+    for ( int i = variables.length - 2; i >= 0; i -= 2 )
+      if ( name.equals( variables[i] ) )
+        return variables[i + 1];
+    return null;
+  }
+}
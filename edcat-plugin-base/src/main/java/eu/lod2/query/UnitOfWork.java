@@ -0,0 +1,144 @@
+package eu.lod2.query;
+
+import eu.lod2.edcat.utils.SparqlEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Groups the database operations of a single request into one transaction on one connection.
+ * <p/>
+ * A unit of work is started through {@link Db#beginUnitOfWork()} and is bound to the thread which
+ * started it.  Until it is closed, every operation on {@link Db} from that thread runs on the
+ * connection of the unit of work, inside its transaction.  The intended use is:
+ * <p/>
+ * <code>
+ * UnitOfWork work = Db.beginUnitOfWork();
+ * try {
+ *   ... Db.add, Db.update, hooks which may abort ...
+ *   work.commit();
+ * } finally {
+ *   work.close();
+ * }
+ * </code>
+ * <p/>
+ * Closing a unit of work which wasn't committed rolls it back, so an exception thrown before the
+ * commit (e.g. an ActionAbortException from an At hook) leaves the store untouched.  A failure of
+ * that rollback is logged rather than thrown, so it doesn't hide the exception which left the
+ * block; the connection is destroyed instead of being handed back, which ends the transaction on
+ * the store's side.
+ */
+public class UnitOfWork {
+
+  private static final Logger log = LoggerFactory.getLogger( UnitOfWork.class );
+
+  /** UnitOfWork which is active on the current thread. */
+  private static final ThreadLocal<UnitOfWork> current = new ThreadLocal<UnitOfWork>();
+
+  /** Engine on which the transaction runs. */
+  private final SparqlEngine engine;
+
+  /** Pool from which the engine was retrieved and to which it is handed back. */
+  private final Pool<SparqlEngine> pool;
+
+  /** Whether the transaction has been committed or rolled back. */
+  private boolean finished = false;
+
+  /** Whether the unit of work has been closed and its engine handed back. */
+  private boolean closed = false;
+
+  /**
+   * Starts a transaction on {@code engine} and binds the unit of work to the current thread.
+   *
+   * @param engine Engine retrieved from {@code pool}, owned by this unit of work until it is
+   *               closed.
+   * @param pool   Pool to which the engine is handed back when the unit of work is closed.
+   * @throws IllegalStateException Thrown if a unit of work is already active on this thread.
+   */
+  UnitOfWork( SparqlEngine engine, Pool<SparqlEngine> pool ) {
+    if ( current.get() != null )
+      throw new IllegalStateException( "A unit of work is already active on this thread" );
+    this.engine = engine;
+    this.pool = pool;
+    engine.begin();
+    current.set( this );
+  }
+
+  /**
+   * @return UnitOfWork which is active on the current thread, null if there is none.
+   */
+  static UnitOfWork current() {
+    return current.get();
+  }
+
+  /**
+   * Commits all operations of this unit of work.
+   *
+   * @throws IllegalStateException Thrown if the unit of work was finished already, or if the
+   *                               store could not commit.  In the latter case closing the unit
+   *                               of work rolls it back.
+   */
+  public void commit() {
+    verifyActive();
+    engine.commit();
+    finished = true;
+  }
+
+  /**
+   * Discards all operations of this unit of work.
+   *
+   * @throws IllegalStateException Thrown if the unit of work was finished already, or if the
+   *                               store could not roll back.  In the latter case the unit of work
+   *                               stays active and closing it tries again.
+   */
+  public void rollback() {
+    verifyActive();
+    engine.rollback();
+    finished = true;
+  }
+
+  /**
+   * Ends this unit of work, rolling it back if it wasn't committed, and hands the connection back
+   * to the pool.  If the rollback fails the failure is logged and the connection is destroyed.
+   * Closing a unit of work twice has no effect.
+   */
+  public void close() {
+    if ( closed )
+      return;
+    closed = true;
+    if ( current.get() == this )
+      current.remove();
+    if ( !finished ) {
+      try {
+        engine.rollback();
+        finished = true;
+      } catch ( RuntimeException e ) {
+        log.error( "Could not roll back unit of work, discarding its connection: {}", e );
+        pool.invalidate( engine );
+        return;
+      }
+    }
+    pool.release( engine );
+  }
+
+  /**
+   * @return true iff the unit of work was neither committed nor rolled back yet.
+   */
+  public boolean isActive() {
+    return !finished;
+  }
+
+  /**
+   * @return Engine on which the operations of this unit of work run.
+   */
+  SparqlEngine getEngine() {
+    return engine;
+  }
+
+  /**
+   * @throws IllegalStateException if this unit of work was committed or rolled back already.
+   */
+  private void verifyActive() {
+    if ( finished )
+      throw new IllegalStateException( "Unit of work was already committed or rolled back" );
+  }
+}
@@ -0,0 +1,127 @@
+package eu.lod2.edcat.cache;
+
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.DCTERMS;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the building and refreshing of a CatalogListView, with a fake store.
+ */
+public class CatalogListViewTest {
+
+  static final URI CATALOG = new URIImpl( "http://lod2.tenforce.com/edcat/catalogs/1" );
+
+  /** View which describes one catalog, titled after the number of times it was fetched. */
+  static class CountingView extends CatalogListView {
+    volatile int fetches = 0;
+    volatile boolean fail = false;
+    /** Latch on which the next fetch waits, null if it doesn't wait. */
+    volatile CountDownLatch stall = null;
+
+    @Override
+    protected void fetchCatalogInfo( RDFHandler handler ) {
+      if ( fail )
+        throw new IllegalStateException( "store is down" );
+      if ( stall != null ) {
+        try {
+          stall.await();
+        } catch ( InterruptedException e ) {
+          throw new IllegalStateException( e );
+        }
+      }
+      fetches++;
+      try {
+        handler.startRDF();
+        handler.handleStatement( new StatementImpl( CATALOG, DCTERMS.TITLE, new LiteralImpl( "fetch " + fetches ) ) );
+        handler.endRDF();
+      } catch ( RDFHandlerException e ) {
+        throw new IllegalStateException( e );
+      }
+    }
+  }
+
+  @Test
+  public void itShouldBuildTheSnapshotOnce() {
+    CountingView view = new CountingView();
+
+    CatalogListView.Snapshot snapshot = view.snapshot();
+
+    Assert.assertSame( view.snapshot(), snapshot );
+    Assert.assertEquals( view.fetches, 1 );
+    Assert.assertEquals( snapshot.getStatements().size(), 1 );
+  }
+
+  @Test
+  public void itShouldDropTheSerializationsOnRefresh() {
+    CountingView view = new CountingView();
+    view.snapshot().putSerialized( "json", new byte[1] );
+
+    view.refresh();
+
+    Assert.assertNull( view.snapshot().getSerialized( "json" ) );
+    Assert.assertTrue( view.snapshot().getStatements().contains( CATALOG, DCTERMS.TITLE, new LiteralImpl( "fetch 2" ) ) );
+  }
+
+  @Test
+  public void itShouldServeThePreviousSnapshotDuringARefresh() throws Exception {
+    final CountingView view = new CountingView();
+    CatalogListView.Snapshot previous = view.snapshot();
+    view.stall = new CountDownLatch( 1 );
+    ExecutorService executor = Executors.newFixedThreadPool( 2 );
+    try {
+      Future<?> refresh = executor.submit( new Runnable() {
+        @Override
+        public void run() {
+          view.refresh();
+        }
+      } );
+      Future<CatalogListView.Snapshot> read = executor.submit( new Callable<CatalogListView.Snapshot>() {
+        @Override
+        public CatalogListView.Snapshot call() {
+          return view.snapshot();
+        }
+      } );
+
+      Assert.assertSame( read.get( 5, TimeUnit.SECONDS ), previous );
+      view.stall.countDown();
+      refresh.get( 5, TimeUnit.SECONDS );
+      Assert.assertNotSame( view.snapshot(), previous );
+    } finally {
+      view.stall.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void itShouldRebuildAfterAFailedRefresh() {
+    CountingView view = new CountingView();
+    view.snapshot();
+    view.fail = true;
+    try {
+      view.refresh();
+      Assert.fail( "refresh should pass on the failure of the store" );
+    } catch ( IllegalStateException expected ) {
+    }
+    view.fail = false;
+
+    Assert.assertTrue( view.snapshot().getStatements().contains( CATALOG, DCTERMS.TITLE, new LiteralImpl( "fetch 2" ) ) );
+  }
+
+  @Test( expectedExceptions = UnsupportedOperationException.class )
+  public void itShouldNotLetTheSnapshotBeModified() {
+    new CountingView().snapshot().getStatements().clear();
+  }
+}
@@ -0,0 +1,65 @@
+package eu.lod2.edcat.cache;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the lookup, eviction and invalidation of a ResponseCache.
+ */
+public class ResponseCacheTest {
+
+  static final String DATASET = "http://lod2.tenforce.com/edcat/dataset/1";
+  static final String OTHER_DATASET = "http://lod2.tenforce.com/edcat/dataset/2";
+
+  @Test
+  public void itShouldOnlyReturnResponsesWithTheSameValidator() {
+    ResponseCache cache = new ResponseCache( 100, 100 );
+    byte[] body = new byte[10];
+    cache.put( DATASET, "json", "1", body );
+
+    Assert.assertSame( cache.get( DATASET, "json", "1" ), body );
+    Assert.assertNull( cache.get( DATASET, "json", "2" ) );
+    Assert.assertNull( cache.get( DATASET, "turtle", "1" ) );
+    Assert.assertEquals( cache.getHits(), 1 );
+    Assert.assertEquals( cache.getMisses(), 2 );
+  }
+
+  @Test
+  public void itShouldEvictTheLeastRecentlyUsedResponses() {
+    ResponseCache cache = new ResponseCache( 25, 25 );
+    cache.put( DATASET, "json", "1", new byte[10] );
+    cache.put( OTHER_DATASET, "json", "1", new byte[10] );
+    cache.get( DATASET, "json", "1" );
+    cache.put( DATASET, "turtle", "1", new byte[10] );
+
+    Assert.assertNotNull( cache.get( DATASET, "json", "1" ) );
+    Assert.assertNull( cache.get( OTHER_DATASET, "json", "1" ) );
+    Assert.assertEquals( cache.getEvictions(), 1 );
+    Assert.assertEquals( cache.getWeight(), 20 );
+  }
+
+  @Test
+  public void itShouldNotCacheLargeResponses() {
+    ResponseCache cache = new ResponseCache( 100, 10 );
+    cache.put( DATASET, "json", "1", new byte[11] );
+
+    Assert.assertNull( cache.get( DATASET, "json", "1" ) );
+    Assert.assertEquals( cache.getEntries(), 0 );
+  }
+
+  @Test
+  public void itShouldInvalidateAllMediaTypesOfAResource() {
+    ResponseCache cache = new ResponseCache( 100, 100 );
+    cache.put( DATASET, "json", "1", new byte[10] );
+    cache.put( DATASET, "turtle", "1", new byte[10] );
+    cache.put( OTHER_DATASET, "json", "1", new byte[10] );
+
+    cache.invalidate( DATASET );
+
+    Assert.assertNull( cache.get( DATASET, "json", "1" ) );
+    Assert.assertNull( cache.get( DATASET, "turtle", "1" ) );
+    Assert.assertNotNull( cache.get( OTHER_DATASET, "json", "1" ) );
+    Assert.assertEquals( cache.getWeight(), 10 );
+    Assert.assertEquals( cache.getInvalidations(), 1 );
+  }
+}
@@ -0,0 +1,59 @@
+package eu.lod2.edcat.format;
+
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.DCTERMS;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.Rio;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Tests that the binary RDF written by BinaryRDFFormatter is read back by Rio.
+ */
+public class BinaryRDFFormatterTest {
+
+  static final URI DATASET = new URIImpl( "http://lod2.tenforce.com/edcat/dataset/1" );
+  static final URI OTHER = new URIImpl( "http://lod2.tenforce.com/edcat/dataset/2" );
+
+  static Model describe() {
+    Model statements = new LinkedHashModel();
+    statements.add( DATASET, DCTERMS.TITLE, new LiteralImpl( "Titel", "nl" ), DATASET );
+    statements.add( DATASET, DCTERMS.TITLE, new LiteralImpl( "Title" ), DATASET );
+    statements.add( OTHER, DCTERMS.IDENTIFIER, new LiteralImpl( "2" ), OTHER );
+    statements.add( OTHER, DCTERMS.IDENTIFIER, new LiteralImpl( "2" ) );
+    return statements;
+  }
+
+  @Test
+  public void itShouldWriteStatementsWithTheirContexts() throws Exception {
+    byte[] body = ( byte[] ) new BinaryRDFFormatter().format( describe() );
+
+    Model parsed = Rio.parse( new ByteArrayInputStream( body ), "", RDFFormat.BINARY );
+
+    Assert.assertEquals( parsed, describe() );
+    Assert.assertEquals( parsed.filter( null, null, null, DATASET ).size(), 2 );
+    Assert.assertEquals( parsed.filter( null, null, null, OTHER ).size(), 1 );
+    Assert.assertEquals( parsed.filter( null, null, null, ( URI ) null ).size(), 1 );
+  }
+
+  @Test
+  public void itShouldStreamTheSameBody() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    RDFHandler writer = new BinaryRDFFormatter().streamTo( output );
+    writer.startRDF();
+    for ( Statement statement : describe() )
+      writer.handleStatement( statement );
+    writer.endRDF();
+
+    Assert.assertEquals( output.toByteArray(), ( byte[] ) new BinaryRDFFormatter().format( describe() ) );
+  }
+}
@@ -0,0 +1,87 @@
+package eu.lod2.edcat.format;
+
+import org.openrdf.model.Model;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the nesting of resources by the CompactedJsonLDFormatter.
+ */
+public class CompactedJsonLDFormatterTest {
+
+  static final URI DATASET = new URIImpl( "http://example.com/dataset" );
+  static final URI THEME = new URIImpl( "http://example.com/theme" );
+  static final URI HAS_THEME = new URIImpl( "http://www.w3.org/ns/dcat#theme" );
+  static final URI TITLE = new URIImpl( "http://purl.org/dc/terms/title" );
+  static final URI RELATED = new URIImpl( "http://example.com/related" );
+
+  static final CompactedJsonLDFormatter formatter = new CompactedJsonLDFormatter() {};
+
+  @Test
+  @SuppressWarnings( "unchecked" )
+  public void itShouldNestDescribedObjects() throws Exception {
+    Model model = new LinkedHashModel();
+    model.add( DATASET, TITLE, new LiteralImpl( "dataset" ) );
+    model.add( DATASET, HAS_THEME, THEME );
+    model.add( THEME, TITLE, new LiteralImpl( "theme" ) );
+
+    List<Map<String, Object>> graph = ( List<Map<String, Object>> ) formatter.format( model );
+
+    Assert.assertEquals( graph.size(), 1 );
+    Assert.assertEquals( graph.get( 0 ).get( CompactedJsonLDFormatter.URI_KEY ), DATASET.stringValue() );
+    Map<String, Object> theme = ( Map<String, Object> ) graph.get( 0 ).get( HAS_THEME.stringValue() );
+    Assert.assertEquals( theme.get( CompactedJsonLDFormatter.URI_KEY ), THEME.stringValue() );
+    Assert.assertEquals( theme.get( TITLE.stringValue() ), "theme" );
+  }
+
+  @Test
+  @SuppressWarnings( "unchecked" )
+  public void itShouldNotNestResourcesInThemselves() throws Exception {
+    Model model = new LinkedHashModel();
+    model.add( DATASET, HAS_THEME, THEME );
+    model.add( THEME, TITLE, new LiteralImpl( "theme" ) );
+    model.add( THEME, RELATED, THEME );
+
+    List<Map<String, Object>> graph = ( List<Map<String, Object>> ) formatter.format( model );
+
+    Map<String, Object> theme = ( Map<String, Object> ) graph.get( 0 ).get( HAS_THEME.stringValue() );
+    Assert.assertEquals( theme.get( RELATED.stringValue() ), THEME.stringValue() );
+  }
+
+  @Test
+  public void itShouldNotListResourcesWhichAreReferredTo() throws Exception {
+    Assert.assertTrue( formatter.getTopNodes( model( DATASET, THEME ) ).isEmpty() );
+  }
+
+  @Test
+  @SuppressWarnings( "unchecked" )
+  public void itShouldRenderCyclesBelowTheTopNodeAsUris() throws Exception {
+    URI top = new URIImpl( "http://example.com/top" );
+    Model model = model( DATASET, THEME );
+    model.add( top, RELATED, DATASET );
+
+    List<Map<String, Object>> graph = ( List<Map<String, Object>> ) formatter.format( model );
+
+    Assert.assertEquals( graph.size(), 1 );
+    Map<String, Object> dataset = ( Map<String, Object> ) graph.get( 0 ).get( RELATED.stringValue() );
+    Map<String, Object> theme = ( Map<String, Object> ) dataset.get( HAS_THEME.stringValue() );
+    Assert.assertEquals( theme.get( RELATED.stringValue() ), DATASET.stringValue() );
+  }
+
+  /**
+   * @return Model in which {@code dataset} and {@code theme} refer to each other.
+   */
+  private static Model model( URI dataset, URI theme ) {
+    Model model = new LinkedHashModel();
+    model.add( dataset, HAS_THEME, theme );
+    model.add( theme, RELATED, dataset );
+    return model;
+  }
+}
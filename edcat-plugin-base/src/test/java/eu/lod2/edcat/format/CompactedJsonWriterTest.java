@@ -0,0 +1,106 @@
+package eu.lod2.edcat.format;
+
+import eu.lod2.edcat.utils.JsonLdContext;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openrdf.model.Model;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.rio.RDFHandler;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+
+/**
+ * Tests that the CompactedJsonWriter writes the JSON which the CompactedListFormatter builds.
+ */
+public class CompactedJsonWriterTest {
+
+  static final String DCAT = "http://www.w3.org/ns/dcat#";
+  static final URI DATASET = new URIImpl( "http://example.com/dataset" );
+  static final URI OTHER_DATASET = new URIImpl( "http://example.com/other" );
+  static final URI DISTRIBUTION = new URIImpl( "http://example.com/dataset/csv" );
+  static final URI TITLE = new URIImpl( "http://purl.org/dc/terms/title" );
+  static final URI KEYWORD = new URIImpl( DCAT + "keyword" );
+
+  static final JsonLdContext context = JsonLdContext.forLocation( CompactedJsonWriterTest.class.getResource( "/eu/lod2/edcat/utils/nuker.jsonld" ) );
+
+  @Test
+  public void itShouldWriteTheJsonOfTheFormatter() throws Exception {
+    Model model = new LinkedHashModel();
+    model.add( DATASET, TITLE, new LiteralImpl( "dataset", "en" ) );
+    model.add( DATASET, TITLE, new LiteralImpl( "dataset", "nl" ) );
+    model.add( DATASET, KEYWORD, new LiteralImpl( "first" ) );
+    model.add( DATASET, KEYWORD, new LiteralImpl( "second" ) );
+    model.add( DATASET, new URIImpl( DCAT + "distribution" ), DISTRIBUTION );
+    model.add( DISTRIBUTION, TITLE, new LiteralImpl( "csv" ) );
+    model.add( OTHER_DATASET, TITLE, new LiteralImpl( "other" ) );
+
+    Assert.assertEquals( unordered( streamed( model ) ), unordered( formatted( model ) ) );
+  }
+
+  @Test
+  @SuppressWarnings( "unchecked" )
+  public void itShouldCompactTheKeys() throws Exception {
+    Model model = new LinkedHashModel();
+    model.add( DATASET, new URIImpl( DCAT + "distribution" ), DISTRIBUTION );
+    model.add( DISTRIBUTION, TITLE, new LiteralImpl( "csv" ) );
+
+    List<Map<String, Object>> json = ( List<Map<String, Object>> ) streamed( model );
+
+    Map<String, Object> distribution = ( Map<String, Object> ) json.get( 0 ).get( "distribution" );
+    Assert.assertEquals( distribution.get( "uri" ), DISTRIBUTION.stringValue() );
+    Assert.assertEquals( distribution.get( TITLE.stringValue() ), "csv" );
+  }
+
+  @Test
+  public void itShouldWriteAnEmptyList() throws Exception {
+    Assert.assertEquals( streamed( new LinkedHashModel() ), Collections.emptyList() );
+  }
+
+  /**
+   * @return Parsed JSON as written by the CompactedJsonWriter for {@code model}.
+   */
+  private static Object streamed( Model model ) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RDFHandler handler = new CompactedListFormatter( context ).streamTo( out );
+    handler.startRDF();
+    for ( org.openrdf.model.Statement statement : model )
+      handler.handleStatement( statement );
+    handler.endRDF();
+    return new ObjectMapper().readValue( out.toByteArray(), Object.class );
+  }
+
+  /**
+   * @return JSON built by the CompactedListFormatter for {@code model}, as it would be parsed.
+   */
+  private static Object formatted( Model model ) throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    byte[] json = mapper.writeValueAsBytes( new CompactedListFormatter( context ).format( model ) );
+    return mapper.readValue( json, Object.class );
+  }
+
+  /**
+   * Replaces the arrays nested in {@code json} by sets, the order of multiple values of a key is
+   * not significant.
+   */
+  @SuppressWarnings( "unchecked" )
+  private static Object unordered( Object json ) {
+    if ( json instanceof Map ) {
+      Map<String, Object> map = new HashMap<String, Object>();
+      for ( Map.Entry<String, Object> entry : ( ( Map<String, Object> ) json ).entrySet() )
+        map.put( entry.getKey(), unordered( entry.getValue() ) );
+      return map;
+    }
+    if ( json instanceof List ) {
+      Set<Object> set = new HashSet<Object>();
+      for ( Object item : ( List<Object> ) json )
+        set.add( unordered( item ) );
+      return set;
+    }
+    return json;
+  }
+}
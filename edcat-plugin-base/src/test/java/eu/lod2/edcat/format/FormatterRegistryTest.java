@@ -0,0 +1,67 @@
+package eu.lod2.edcat.format;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the content negotiation of a FormatterRegistry.
+ */
+public class FormatterRegistryTest {
+
+  static final ResponseFormatter JSON = new CompactedListFormatter( null );
+
+  static FormatterRegistry registry() {
+    return new FormatterRegistry( FormatterRegistry.rdf() ).register( "json", "application/json;charset=UTF-8", JSON );
+  }
+
+  static String negotiate( FormatterRegistry registry, String accept, Class<? extends ResponseFormatter> type ) {
+    FormatterRegistry.Format format = registry.negotiate( accept, type );
+    return format == null ? null : format.getName();
+  }
+
+  @Test
+  public void ownFormatsPrecedeThoseOfTheParent() {
+    FormatterRegistry registry = registry();
+    Assert.assertEquals( negotiate( registry, null, ResponseFormatter.class ), "json" );
+    Assert.assertEquals( negotiate( registry, "*/*", ResponseFormatter.class ), "json" );
+    Assert.assertEquals( registry.getFormats().size(), FormatterRegistry.rdf().getFormats().size() + 1 );
+    Assert.assertSame( registry.get( "json" ).getFormatter(), JSON );
+  }
+
+  @Test
+  public void acceptedTypesAreTriedByQualityAndSpecificity() {
+    FormatterRegistry registry = registry();
+    Assert.assertEquals( negotiate( registry, "text/turtle", ResponseFormatter.class ), "turtle" );
+    Assert.assertEquals( negotiate( registry, "application/n-quads;q=0.5, application/trig", ResponseFormatter.class ), "trig" );
+    Assert.assertEquals( negotiate( registry, "text/*;q=0.9, application/x-binary-rdf", ResponseFormatter.class ), "binary" );
+    Assert.assertEquals( negotiate( registry, "application/rdf+xml;charset=UTF-8", ResponseFormatter.class ), "rdfxml" );
+    Assert.assertNull( negotiate( registry, "text/html", ResponseFormatter.class ) );
+    Assert.assertNull( negotiate( registry, "application/ld+json;q=0", ResponseFormatter.class ) );
+  }
+
+  @Test
+  public void refusedTypesAreNeverPicked() {
+    FormatterRegistry registry = registry();
+    Assert.assertEquals( negotiate( registry, "application/json;q=0, */*", ResponseFormatter.class ), "jsonld" );
+    Assert.assertEquals( negotiate( registry, "*/*, application/json;q=0, application/ld+json;q=0", ResponseFormatter.class ), "rdfxml" );
+    Assert.assertEquals( negotiate( registry, "application/*;q=0, */*", ResponseFormatter.class ), "turtle" );
+    Assert.assertEquals( negotiate( registry, "application/*;q=0, application/trig", ResponseFormatter.class ), "trig" );
+    Assert.assertNull( negotiate( registry, "*/*;q=0", ResponseFormatter.class ) );
+  }
+
+  @Test
+  public void onlyFormattersOfTheRequestedTypeArePicked() {
+    FormatterRegistry registry = new FormatterRegistry( FormatterRegistry.rdf() );
+    Assert.assertEquals( negotiate( registry, null, StreamingFormatter.class ), "rdfxml" );
+    Assert.assertNull( negotiate( registry, "application/ld+json", StreamingFormatter.class ) );
+  }
+
+  @Test
+  public void registeringAFormatReplacesItInPlace() {
+    FormatterRegistry registry = registry();
+    ResponseFormatter other = new CompactedListFormatter( null );
+    registry.register( "json", "application/json", other );
+    Assert.assertEquals( negotiate( registry, null, ResponseFormatter.class ), "json" );
+    Assert.assertSame( registry.get( "json" ).getFormatter(), other );
+  }
+}
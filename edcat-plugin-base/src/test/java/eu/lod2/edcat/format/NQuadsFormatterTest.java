@@ -0,0 +1,31 @@
+package eu.lod2.edcat.format;
+
+import org.openrdf.model.Model;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.DCTERMS;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the N-Quads written by NQuadsFormatter.
+ */
+public class NQuadsFormatterTest {
+
+  static final URI DATASET = new URIImpl( "http://lod2.tenforce.com/edcat/dataset/1" );
+
+  @Test
+  public void itShouldWriteTheContextOfEachStatement() throws FormatException {
+    Model statements = new LinkedHashModel();
+    statements.add( DATASET, DCTERMS.TITLE, new LiteralImpl( "Title \"quoted\"", "en" ), DATASET );
+    statements.add( DATASET, DCTERMS.IDENTIFIER, new LiteralImpl( "1" ) );
+
+    Object quads = new NQuadsFormatter().format( statements );
+
+    Assert.assertEquals( quads, "" +
+        "<http://lod2.tenforce.com/edcat/dataset/1> <http://purl.org/dc/terms/title> \"Title \\\"quoted\\\"\"@en <http://lod2.tenforce.com/edcat/dataset/1> .\n" +
+        "<http://lod2.tenforce.com/edcat/dataset/1> <http://purl.org/dc/terms/identifier> \"1\" .\n" );
+  }
+}
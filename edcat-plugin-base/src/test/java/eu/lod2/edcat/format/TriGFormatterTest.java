@@ -0,0 +1,40 @@
+package eu.lod2.edcat.format;
+
+import org.openrdf.model.Model;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.DCTERMS;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.Rio;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+
+/**
+ * Tests that the TriG written by TriGFormatter is read back by Rio.
+ */
+public class TriGFormatterTest {
+
+  static final URI DATASET = new URIImpl( "http://lod2.tenforce.com/edcat/dataset/1" );
+  static final URI OTHER = new URIImpl( "http://lod2.tenforce.com/edcat/dataset/2" );
+
+  @Test
+  public void itShouldWriteTheGraphOfEachStatement() throws Exception {
+    Model statements = new LinkedHashModel();
+    statements.add( DATASET, DCTERMS.TITLE, new LiteralImpl( "One", "en" ), DATASET );
+    statements.add( DATASET, DCTERMS.IDENTIFIER, new LiteralImpl( "1" ), DATASET );
+    statements.add( OTHER, DCTERMS.IDENTIFIER, new LiteralImpl( "2" ), OTHER );
+    statements.add( OTHER, DCTERMS.IDENTIFIER, new LiteralImpl( "2" ) );
+
+    String trig = ( String ) new TriGFormatter().format( statements );
+
+    Model parsed = Rio.parse( new StringReader( trig ), "", RDFFormat.TRIG );
+    Assert.assertEquals( parsed, statements, trig );
+    Assert.assertEquals( parsed.filter( null, null, null, DATASET ).size(), 2, trig );
+    Assert.assertEquals( parsed.filter( null, null, null, OTHER ).size(), 1, trig );
+    Assert.assertEquals( parsed.filter( null, null, null, ( URI ) null ).size(), 1, trig );
+  }
+}
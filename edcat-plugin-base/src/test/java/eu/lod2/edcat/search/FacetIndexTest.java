@@ -0,0 +1,97 @@
+package eu.lod2.edcat.search;
+
+import org.openrdf.model.Model;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.DCTERMS;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+/**
+ * Tests the counting, filtering and incremental updates of a FacetIndex.
+ */
+public class FacetIndexTest {
+
+  static final URI CATALOG = new URIImpl( "http://lod2.tenforce.com/edcat/catalogs/1" );
+  static final URI OTHER_CATALOG = new URIImpl( "http://lod2.tenforce.com/edcat/catalogs/2" );
+  static final URI THEME = new URIImpl( "http://www.w3.org/ns/dcat#theme" );
+  static final URI DISTRIBUTION = new URIImpl( "http://www.w3.org/ns/dcat#distribution" );
+  static final String TRANSPORT = "http://example.com/themes/transport";
+  static final String ECONOMY = "http://example.com/themes/economy";
+
+  FacetIndex index;
+
+  @BeforeMethod
+  public void setUp() {
+    index = new FacetIndex();
+  }
+
+  static URI dataset( int id ) {
+    return new URIImpl( "http://lod2.tenforce.com/edcat/datasets/" + id );
+  }
+
+  static Model describe( URI dataset, String language, String... themes ) {
+    Model model = new LinkedHashModel();
+    model.add( dataset, DCTERMS.LANGUAGE, new LiteralImpl( language ) );
+    for ( String theme : themes )
+      model.add( dataset, THEME, new URIImpl( theme ) );
+    return model;
+  }
+
+  static Model distribution( URI dataset, URI distribution, String format ) {
+    Model model = new LinkedHashModel();
+    model.add( dataset, DISTRIBUTION, distribution );
+    model.add( distribution, DCTERMS.FORMAT, new LiteralImpl( format ) );
+    return model;
+  }
+
+  @Test
+  public void countsAllDatasetsOfTheCatalog() {
+    index.index( CATALOG, dataset( 1 ), describe( dataset( 1 ), "en", TRANSPORT ) );
+    index.index( CATALOG, dataset( 2 ), describe( dataset( 2 ), "en", TRANSPORT, ECONOMY ) );
+    index.index( OTHER_CATALOG, dataset( 3 ), describe( dataset( 3 ), "nl", ECONOMY ) );
+
+    Map<String, Map<String, Integer>> counts = index.counts( CATALOG, null, 0 );
+    Assert.assertEquals( new ArrayList<String>( counts.get( "theme" ).keySet() ), Arrays.asList( TRANSPORT, ECONOMY ) );
+    Assert.assertEquals( counts.get( "theme" ).get( TRANSPORT ), Integer.valueOf( 2 ) );
+    Assert.assertEquals( counts.get( "language" ), Collections.singletonMap( "en", 2 ) );
+    Assert.assertTrue( counts.get( "publisher" ).isEmpty() );
+    Assert.assertEquals( index.counts( CATALOG, null, 1 ).get( "theme" ).size(), 1 );
+  }
+
+  @Test
+  public void filtersAndCountsWithinMatches() {
+    index.index( CATALOG, dataset( 1 ), describe( dataset( 1 ), "en", TRANSPORT ) );
+    index.index( CATALOG, dataset( 2 ), describe( dataset( 2 ), "fr", TRANSPORT, ECONOMY ) );
+
+    Set<URI> both = index.filter( CATALOG, FacetIndex.Facet.THEME, Arrays.asList( TRANSPORT, ECONOMY ) );
+    Assert.assertEquals( both, Collections.singleton( dataset( 2 ) ) );
+    Assert.assertTrue( index.filter( OTHER_CATALOG, FacetIndex.Facet.THEME, Arrays.asList( TRANSPORT ) ).isEmpty() );
+
+    Set<URI> transport = index.filter( CATALOG, FacetIndex.Facet.THEME, Arrays.asList( TRANSPORT ) );
+    Assert.assertEquals( index.counts( CATALOG, both, 0 ).get( "language" ), Collections.singletonMap( "fr", 1 ) );
+    Assert.assertEquals( index.counts( CATALOG, transport, 0 ).get( "language" ).size(), 2 );
+  }
+
+  @Test
+  public void updatesReplaceAndRemoveDatasets() {
+    Model model = describe( dataset( 1 ), "en", TRANSPORT );
+    model.addAll( distribution( dataset( 1 ), new URIImpl( dataset( 1 ) + "/distributions/1" ), "CSV" ) );
+    index.index( CATALOG, dataset( 1 ), model );
+    index.addDistribution( dataset( 1 ), new URIImpl( dataset( 1 ) + "/distributions/2" ),
+        distribution( dataset( 1 ), new URIImpl( dataset( 1 ) + "/distributions/2" ), "JSON" ) );
+    Assert.assertEquals( index.counts( CATALOG, null, 0 ).get( "format" ).keySet(), new HashSet<String>( Arrays.asList( "CSV", "JSON" ) ) );
+
+    index.index( CATALOG, dataset( 1 ), describe( dataset( 1 ), "en", ECONOMY ) );
+    Assert.assertTrue( index.filter( CATALOG, FacetIndex.Facet.THEME, Arrays.asList( TRANSPORT ) ).isEmpty() );
+    Assert.assertTrue( index.counts( CATALOG, null, 0 ).get( "format" ).isEmpty() );
+
+    index.remove( dataset( 1 ) );
+    Assert.assertTrue( index.counts( CATALOG, null, 0 ).get( "theme" ).isEmpty() );
+  }
+}
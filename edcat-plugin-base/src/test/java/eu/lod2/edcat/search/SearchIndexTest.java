@@ -0,0 +1,95 @@
+package eu.lod2.edcat.search;
+
+import org.openrdf.model.Model;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.DCTERMS;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests the ranking and the incremental updates of a SearchIndex.
+ */
+public class SearchIndexTest {
+
+  static final URI CATALOG = new URIImpl( "http://lod2.tenforce.com/edcat/catalogs/1" );
+  static final URI OTHER_CATALOG = new URIImpl( "http://lod2.tenforce.com/edcat/catalogs/2" );
+  static final URI KEYWORD = new URIImpl( "http://www.w3.org/ns/dcat#keyword" );
+
+  SearchIndex index;
+
+  @BeforeMethod
+  public void setUp() {
+    Map<URI, Float> fields = new HashMap<URI, Float>();
+    fields.put( DCTERMS.TITLE, SearchIndex.TITLE_WEIGHT );
+    fields.put( KEYWORD, SearchIndex.KEYWORD_WEIGHT );
+    fields.put( DCTERMS.DESCRIPTION, SearchIndex.DESCRIPTION_WEIGHT );
+    index = new SearchIndex( fields );
+  }
+
+  static URI dataset( int id ) {
+    return new URIImpl( "http://lod2.tenforce.com/edcat/datasets/" + id );
+  }
+
+  static Model describe( URI dataset, String title, String titleLanguage, String description ) {
+    Model model = new LinkedHashModel();
+    model.add( dataset, DCTERMS.TITLE, new LiteralImpl( title, titleLanguage ) );
+    if ( description != null )
+      model.add( dataset, DCTERMS.DESCRIPTION, new LiteralImpl( description ) );
+    return model;
+  }
+
+  @Test
+  public void tokenizeFoldsCaseAndDiacritics() {
+    Assert.assertEquals( SearchIndex.tokenize( "Élection présidentielle, 2014 (a)", "fr" ),
+        Arrays.asList( "election", "presidentielle", "2014" ) );
+  }
+
+  @Test
+  public void titleMatchesRankAboveDescriptionMatches() {
+    index.index( CATALOG, dataset( 1 ), describe( dataset( 1 ), "Budget", "en", "Road traffic counts" ) );
+    index.index( CATALOG, dataset( 2 ), describe( dataset( 2 ), "Road traffic", "en", "Counts per hour" ) );
+    index.index( CATALOG, dataset( 3 ), describe( dataset( 3 ), "Rail traffic", "en", null ) );
+
+    SearchIndex.Result result = index.search( CATALOG, "road TRAFFIC", null, 0, 10 );
+    Assert.assertEquals( result.getTotal(), 2 );
+    Assert.assertEquals( result.getDatasets(), Arrays.asList( dataset( 2 ), dataset( 1 ) ) );
+
+    result = index.search( CATALOG, "traffic", null, 1, 1 );
+    Assert.assertEquals( result.getTotal(), 3 );
+    Assert.assertEquals( result.getDatasets().size(), 1 );
+  }
+
+  @Test
+  public void languageRestrictsMatches() {
+    index.index( CATALOG, dataset( 1 ), describe( dataset( 1 ), "Verkeer", "nl", null ) );
+    index.index( CATALOG, dataset( 2 ), describe( dataset( 2 ), "Verkeer", "de-AT", null ) );
+    index.index( CATALOG, dataset( 3 ), describe( dataset( 3 ), "Verkeer", null, null ) );
+
+    Assert.assertEquals( index.search( CATALOG, "verkeer", "nl-BE", 0, 10 ).getDatasets(), Arrays.asList( dataset( 1 ), dataset( 3 ) ) );
+    Assert.assertEquals( index.search( CATALOG, "verkeer", "de", 0, 10 ).getDatasets(), Arrays.asList( dataset( 2 ), dataset( 3 ) ) );
+    Assert.assertEquals( index.search( CATALOG, "verkeer", null, 0, 10 ).getTotal(), 3 );
+  }
+
+  @Test
+  public void updatesReplaceAndRemoveDatasets() {
+    index.index( CATALOG, dataset( 1 ), describe( dataset( 1 ), "Water quality", "en", null ) );
+    index.index( OTHER_CATALOG, dataset( 2 ), describe( dataset( 2 ), "Water levels", "en", null ) );
+    Assert.assertEquals( index.search( CATALOG, "water", null, 0, 10 ).getDatasets(), Arrays.asList( dataset( 1 ) ) );
+
+    index.index( CATALOG, dataset( 1 ), describe( dataset( 1 ), "Air quality", "en", null ) );
+    Assert.assertEquals( index.search( CATALOG, "water", null, 0, 10 ).getTotal(), 0 );
+    Assert.assertEquals( index.search( CATALOG, "air", null, 0, 10 ).getTotal(), 1 );
+
+    index.remove( dataset( 1 ) );
+    Assert.assertEquals( index.search( CATALOG, "air", null, 0, 10 ).getTotal(), 0 );
+    Assert.assertEquals( index.size(), 1 );
+  }
+}
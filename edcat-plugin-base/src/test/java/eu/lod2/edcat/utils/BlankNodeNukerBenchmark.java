@@ -0,0 +1,58 @@
+package eu.lod2.edcat.utils;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Model;
+import org.openrdf.model.impl.BNodeImpl;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+
+/**
+ * Measures how the BlankNodeNuker scales with the amount of blank nodes in a posted document.
+ * <p/>
+ * Run the main method from the test classpath.  Each line prints the amount of blank nodes, the
+ * time per run and the time per blank node; the latter should stay roughly constant as the size
+ * doubles.
+ */
+public class BlankNodeNukerBenchmark {
+
+  /** Amount of timed runs per size */
+  private static final int RUNS = 5;
+
+  public static void main( String[] args ) {
+    JsonLdContext context = BlankNodeNukerTest.context();
+    // warm up
+    for ( int i = 0; i < 20; i++ )
+      BlankNodeNuker.nuke( buildModel( 500 ), context );
+
+    for ( int distributions = 250; distributions <= 64000; distributions *= 2 ) {
+      long elapsed = 0;
+      for ( int run = 0; run < RUNS; run++ ) {
+        Model model = buildModel( distributions );
+        long start = System.nanoTime();
+        BlankNodeNuker.nuke( model, context );
+        elapsed += System.nanoTime() - start;
+      }
+      long perRun = elapsed / RUNS;
+      System.out.println( String.format( "%8d blank nodes: %10.3f ms/run %8.1f ns/node",
+          distributions * 2, perRun / 1e6, perRun / ( distributions * 2.0 ) ) );
+    }
+  }
+
+  /**
+   * Builds a dataset with {@code distributions} blank distributions, each of which has a blank
+   * contact point nested in it.
+   */
+  private static Model buildModel( int distributions ) {
+    Model model = new LinkedHashModel();
+    for ( int i = 0; i < distributions; i++ ) {
+      BNode distribution = new BNodeImpl( "d" + i );
+      BNode address = new BNodeImpl( "a" + i );
+      model.add( BlankNodeNukerTest.DATASET, new URIImpl( BlankNodeNukerTest.DCAT + "distribution" ), distribution );
+      model.add( distribution, BlankNodeNukerTest.TITLE, new LiteralImpl( "distribution " + i ) );
+      model.add( distribution, new URIImpl( BlankNodeNukerTest.VCARD + "hasAddress" ), address );
+      model.add( address, BlankNodeNukerTest.TITLE, new LiteralImpl( "address " + i ) );
+    }
+    return model;
+  }
+}
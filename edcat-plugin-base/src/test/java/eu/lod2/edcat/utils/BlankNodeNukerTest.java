@@ -0,0 +1,73 @@
+package eu.lod2.edcat.utils;
+
+import org.openrdf.model.*;
+import org.openrdf.model.impl.BNodeImpl;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the naming of blank nodes by the BlankNodeNuker.
+ */
+public class BlankNodeNukerTest {
+
+  static final String DCAT = "http://www.w3.org/ns/dcat#";
+  static final String VCARD = "http://www.w3.org/2006/vcard/ns#";
+  static final URI DATASET = new URIImpl( "http://lod2.tenforce.com/edcat/dataset/1" );
+  static final URI TITLE = new URIImpl( "http://purl.org/dc/terms/title" );
+  static final URI UNKNOWN = new URIImpl( "http://example.com/unknown" );
+
+  /**
+   * @return JsonLdContext which knows distribution, contactPoint and address.
+   */
+  static JsonLdContext context() {
+    return JsonLdContext.forLocation( BlankNodeNukerTest.class.getResource( "/eu/lod2/edcat/utils/nuker.jsonld" ) );
+  }
+
+  @Test
+  public void itShouldNameBlankNodesAfterTheirParent() {
+    Model model = new LinkedHashModel();
+    BNode distribution = new BNodeImpl( "d" );
+    model.add( DATASET, new URIImpl( DCAT + "distribution" ), distribution );
+    model.add( distribution, TITLE, new LiteralImpl( "csv" ) );
+
+    BlankNodeNuker.nuke( model, context() );
+
+    Assert.assertEquals( model.size(), 2 );
+    URI name = model.filter( DATASET, null, null ).objectURI();
+    Assert.assertTrue( name.stringValue().startsWith( DATASET.stringValue() + "/distribution/" ) );
+    Assert.assertEquals( model.filter( name, TITLE, null ).objectString(), "csv" );
+  }
+
+  @Test
+  public void itShouldNameNestedBlankNodes() {
+    Model model = new LinkedHashModel();
+    BNode contact = new BNodeImpl( "c" );
+    BNode address = new BNodeImpl( "a" );
+    model.add( address, TITLE, new LiteralImpl( "street" ) );
+    model.add( contact, new URIImpl( VCARD + "hasAddress" ), address );
+    model.add( DATASET, new URIImpl( DCAT + "contactPoint" ), contact );
+
+    BlankNodeNuker.nuke( model, context() );
+
+    URI contactName = model.filter( DATASET, null, null ).objectURI();
+    URI addressName = model.filter( contactName, null, null ).objectURI();
+    Assert.assertTrue( addressName.stringValue().startsWith( contactName.stringValue() + "/address/" ) );
+    Assert.assertEquals( model.filter( addressName, TITLE, null ).objectString(), "street" );
+  }
+
+  @Test
+  public void itShouldKeepBlankNodesWithUnknownPredicates() {
+    Model model = new LinkedHashModel();
+    BNode node = new BNodeImpl( "u" );
+    model.add( DATASET, UNKNOWN, node );
+    model.add( node, TITLE, new LiteralImpl( "unknown" ) );
+
+    BlankNodeNuker.nuke( model, context() );
+
+    Assert.assertTrue( model.contains( DATASET, UNKNOWN, node ) );
+    Assert.assertTrue( model.contains( node, TITLE, null ) );
+  }
+}
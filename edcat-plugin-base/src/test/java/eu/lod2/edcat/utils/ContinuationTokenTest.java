@@ -0,0 +1,60 @@
+package eu.lod2.edcat.utils;
+
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the encoding and validation of ContinuationTokens.
+ */
+public class ContinuationTokenTest {
+
+  static final URI DATASET = new URIImpl( "http://lod2.tenforce.com/edcat/dataset/1" );
+
+  @Test
+  public void itShouldDecodeAnEncodedToken() {
+    ContinuationToken token = new ContinuationToken( new LiteralImpl( "2014-03-01T12:00:00.123+01:00", XMLSchema.DATETIME ), DATASET, 3 );
+
+    ContinuationToken decoded = ContinuationToken.decode( token.encode() );
+
+    Assert.assertEquals( decoded.getModified(), token.getModified() );
+    Assert.assertEquals( decoded.getResource(), DATASET );
+    Assert.assertEquals( decoded.getTies(), 3 );
+  }
+
+  @Test
+  public void itShouldEncodeTokensSafeForUrls() {
+    ContinuationToken token = new ContinuationToken( new LiteralImpl( "2014-03-01T12:00:00Z", XMLSchema.DATETIME ), new URIImpl( "http://example.com/ü?a=b&c" ), 1 );
+
+    Assert.assertTrue( token.encode().matches( "[0-9a-f]+" ) );
+  }
+
+  @Test( expectedExceptions = IllegalArgumentException.class )
+  public void itShouldRejectGarbage() {
+    ContinuationToken.decode( "not a token" );
+  }
+
+  @Test( expectedExceptions = IllegalArgumentException.class )
+  public void itShouldRejectUrisWhichCouldEscapeTheQuery() {
+    String forged = new ContinuationToken( new LiteralImpl( "2014-03-01T12:00:00Z", XMLSchema.DATETIME ), new URIImpl( "http://example.com/> } } DROP ALL #" ), 1 ).encode();
+    ContinuationToken.decode( forged );
+  }
+
+  @Test( expectedExceptions = IllegalArgumentException.class )
+  public void itShouldRejectInvalidTimestamps() {
+    String forged = new ContinuationToken( new LiteralImpl( "\" ) } DROP ALL #", XMLSchema.DATETIME ), DATASET, 3 ).encode();
+    ContinuationToken.decode( forged );
+  }
+
+  @Test( expectedExceptions = IllegalArgumentException.class )
+  public void itShouldRejectACountBelowOne() throws Exception {
+    byte[] plain = ( "2\n2014-03-01T12:00:00Z\n0\n" + DATASET.stringValue() ).getBytes( "UTF-8" );
+    StringBuilder forged = new StringBuilder();
+    for ( byte b : plain )
+      forged.append( String.format( "%02x", b ) );
+    ContinuationToken.decode( forged.toString() );
+  }
+}
@@ -0,0 +1,57 @@
+package eu.lod2.edcat.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Tests reading JSON arrays and NDJSON streams with a JsonItemReader.
+ */
+public class JsonItemReaderTest {
+
+  static JsonItemReader reader( String json ) throws IOException {
+    return new JsonItemReader( new ByteArrayInputStream( json.getBytes( "UTF-8" ) ) );
+  }
+
+  @Test
+  public void itShouldReadTheObjectsOfAnArray() throws IOException {
+    JsonItemReader reader = reader( "[ {\"title\": \"a\"}, {\"title\": \"b\", \"keyword\": [\"x\", 1, true, null]} ]" );
+
+    Assert.assertEquals( reader.next().get( "title" ), "a" );
+    Map<String, Object> second = reader.next();
+    Assert.assertEquals( second.get( "keyword" ), Arrays.asList( "x", 1, true, null ) );
+    Assert.assertNull( reader.next() );
+    Assert.assertEquals( reader.getCount(), 2 );
+  }
+
+  @Test
+  public void itShouldReadNewlineDelimitedObjects() throws IOException {
+    JsonItemReader reader = reader( "{\"title\": {\"en\": \"a\"}}\n{\"title\": \"b\"}\n" );
+
+    Assert.assertEquals( ( ( Map ) reader.next().get( "title" ) ).get( "en" ), "a" );
+    Assert.assertEquals( reader.next().get( "title" ), "b" );
+    Assert.assertNull( reader.next() );
+  }
+
+  @Test
+  public void itShouldReadAnEmptyStream() throws IOException {
+    Assert.assertNull( reader( "" ).next() );
+    Assert.assertNull( reader( "[]" ).next() );
+  }
+
+  @Test
+  public void itShouldRejectValuesWhichAreNoObjects() throws IOException {
+    JsonItemReader reader = reader( "[ {\"title\": \"a\"}, \"b\" ]" );
+    reader.next();
+    try {
+      reader.next();
+      Assert.fail( "a string is not a dataset" );
+    } catch ( IOException expected ) {
+      Assert.assertEquals( reader.getCount(), 1 );
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package eu.lod2.edcat.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests the queueing and shedding of a RequestLimiter.
+ */
+public class RequestLimiterTest {
+
+  @Test
+  public void itShouldShedWhenTheQueueIsFull() throws Exception {
+    RequestLimiter limiter = new RequestLimiter( 1, 0, 1000, 7 );
+    limiter.acquire();
+    try {
+      limiter.acquire();
+      Assert.fail( "the second request should have been shed" );
+    } catch ( ServiceUnavailableException e ) {
+      Assert.assertEquals( e.getRetryAfter(), 7 );
+    }
+    Assert.assertEquals( limiter.getShed(), 1 );
+  }
+
+  @Test( expectedExceptions = ServiceUnavailableException.class )
+  public void itShouldShedWhenTheWaitTimesOut() throws Exception {
+    RequestLimiter limiter = new RequestLimiter( 1, 1, 10, 1 );
+    limiter.acquire();
+    limiter.acquire();
+  }
+
+  @Test
+  public void itShouldHandAReleasedPermitToAWaitingRequest() throws Exception {
+    final RequestLimiter limiter = new RequestLimiter( 1, 1, 5000, 1 );
+    final CountDownLatch acquired = new CountDownLatch( 1 );
+    final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+    limiter.acquire();
+    Thread waiting = new Thread( new Runnable() {
+      public void run() {
+        try {
+          limiter.acquire();
+          acquired.countDown();
+        } catch ( Exception e ) {
+          failure.set( e );
+        }
+      }
+    } );
+    waiting.start();
+    limiter.release();
+
+    Assert.assertTrue( acquired.await( 5, TimeUnit.SECONDS ) );
+    Assert.assertNull( failure.get() );
+  }
+
+  @Test
+  public void itShouldNotLimitWithoutPermits() throws Exception {
+    RequestLimiter limiter = new RequestLimiter( 0, 0, 0, 1 );
+    for ( int i = 0; i < 100; i++ )
+      limiter.acquire();
+    Assert.assertEquals( limiter.getShed(), 0 );
+  }
+}
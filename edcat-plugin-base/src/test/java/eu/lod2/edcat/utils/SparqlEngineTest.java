@@ -0,0 +1,98 @@
+package eu.lod2.edcat.utils;
+
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.nativerdf.NativeStore;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Tests the configuration of the embedded native store.
+ */
+public class SparqlEngineTest {
+
+  @Test
+  public void itShouldShareTheNativeRepositoryOfADirectory() throws Exception {
+    Properties properties = nativeProperties( temporaryDirectory() );
+    SparqlEngine first = new SparqlEngine( properties );
+    SparqlEngine second = new SparqlEngine( properties );
+    try {
+      Assert.assertSame( second.repository, first.repository );
+
+      ValueFactory factory = ValueFactoryImpl.getInstance();
+      URI dataset = factory.createURI( "http://example.com/datasets/1" );
+      URI title = factory.createURI( "http://purl.org/dc/terms/title" );
+      LinkedHashModel statements = new LinkedHashModel();
+      statements.add( dataset, title, factory.createLiteral( "Dataset" ) );
+      first.addStatements( statements, dataset );
+      Assert.assertTrue( second.hasStatement( dataset, title, null, false, dataset ) );
+    } finally {
+      first.terminate();
+      second.terminate();
+    }
+    Assert.assertTrue( first.repository.isInitialized(), "terminating an engine must not shut the shared store down" );
+  }
+
+  @Test
+  public void itShouldApplyTheNativeKeys() throws Exception {
+    Properties properties = nativeProperties( temporaryDirectory() );
+    properties.setProperty( "native.tripleIndexes", " spoc,cspo " );
+    properties.setProperty( "native.forceSync", "true" );
+    properties.setProperty( "native.valueCacheSize", "128" );
+    properties.setProperty( "native.valueIDCacheSize", "64" );
+    SparqlEngine engine = new SparqlEngine( properties );
+    try {
+      NativeStore store = ( NativeStore ) ( ( SailRepository ) engine.repository ).getSail();
+      Assert.assertEquals( store.getTripleIndexes(), "spoc,cspo" );
+      Assert.assertTrue( store.getForceSync() );
+    } finally {
+      engine.terminate();
+    }
+  }
+
+  @Test
+  public void itShouldDefaultTheNativeTripleIndexes() throws Exception {
+    SparqlEngine engine = new SparqlEngine( nativeProperties( temporaryDirectory() ) );
+    try {
+      NativeStore store = ( NativeStore ) ( ( SailRepository ) engine.repository ).getSail();
+      Assert.assertEquals( store.getTripleIndexes(), SparqlEngine.DEFAULT_NATIVE_TRIPLE_INDEXES );
+      Assert.assertFalse( store.getForceSync() );
+    } finally {
+      engine.terminate();
+    }
+  }
+
+  @Test
+  public void itShouldRequireTheNativeDataDirectory() {
+    Properties properties = new Properties();
+    properties.setProperty( "storeType", "native" );
+    try {
+      new SparqlEngine( properties );
+      Assert.fail( "a native store without native.dataDir should be rejected" );
+    } catch ( RuntimeException e ) {
+      Assert.assertTrue( e.getCause() instanceof IllegalArgumentException );
+    }
+  }
+
+  private static Properties nativeProperties( File directory ) {
+    Properties properties = new Properties();
+    properties.setProperty( "storeType", "native" );
+    properties.setProperty( "native.dataDir", directory.getPath() );
+    return properties;
+  }
+
+  private static File temporaryDirectory() throws IOException {
+    File directory = File.createTempFile( "edcat-native", "" );
+    if ( !directory.delete() || !directory.mkdir() )
+      throw new IOException( "Could not create " + directory );
+    directory.deleteOnExit();
+    return directory;
+  }
+}
@@ -0,0 +1,145 @@
+package eu.lod2.query;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the bounds, validation and eviction of the Pool.
+ */
+public class PoolTest {
+
+  /**
+   * Pool which hands out increasing integers and rejects the ones which were marked as broken.
+   */
+  private static class CountingPool extends Pool<Integer> {
+    final AtomicInteger built = new AtomicInteger( 0 );
+    final AtomicInteger destroyed = new AtomicInteger( 0 );
+    final Set<Integer> broken = Collections.synchronizedSet( new HashSet<Integer>() );
+
+    CountingPool( PoolConfiguration configuration ) {
+      super( configuration );
+    }
+
+    @Override
+    Integer buildPooledObject() {
+      return built.incrementAndGet();
+    }
+
+    @Override
+    boolean validatePooledObject( Integer element ) {
+      return !broken.contains( element );
+    }
+
+    @Override
+    void destroyPooledObject( Integer element ) {
+      destroyed.incrementAndGet();
+    }
+  }
+
+  private PoolConfiguration configuration() {
+    return new PoolConfiguration()
+        .setMaxSize( 2 )
+        .setBorrowTimeoutMillis( 50 )
+        .setEvictionIntervalMillis( 0 )
+        .setValidateAfterIdleMillis( 0 );
+  }
+
+  @Test
+  public void testReuse() {
+    CountingPool pool = new CountingPool( configuration() );
+    Integer first = pool.retrieve();
+    pool.release( first );
+    Assert.assertEquals( pool.retrieve(), first );
+    Assert.assertEquals( pool.built.get(), 1 );
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testBorrowTimeout() {
+    CountingPool pool = new CountingPool( configuration() );
+    pool.retrieve();
+    pool.retrieve();
+    pool.retrieve();
+  }
+
+  @Test
+  public void testValidationDestroysInvalidObjects() {
+    CountingPool pool = new CountingPool( configuration() );
+    Integer first = pool.retrieve();
+    pool.broken.add( first );
+    pool.release( first );
+    Assert.assertEquals( pool.retrieve(), Integer.valueOf( 2 ) );
+    Assert.assertEquals( pool.destroyed.get(), 1 );
+    Assert.assertEquals( pool.getLiveCount(), 1 );
+  }
+
+  @Test
+  public void testRecentlyReleasedObjectsAreNotValidated() {
+    CountingPool pool = new CountingPool( configuration().setValidateAfterIdleMillis( 60000 ) );
+    Integer first = pool.retrieve();
+    pool.broken.add( first );
+    pool.release( first );
+    Assert.assertEquals( pool.retrieve(), first );
+    Assert.assertEquals( pool.destroyed.get(), 0 );
+  }
+
+  @Test
+  public void testInvalidateDestroysObject() {
+    CountingPool pool = new CountingPool( configuration() );
+    pool.invalidate( pool.retrieve() );
+    Assert.assertEquals( pool.destroyed.get(), 1 );
+    Assert.assertEquals( pool.getLiveCount(), 0 );
+    Assert.assertEquals( pool.retrieve(), Integer.valueOf( 2 ) );
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testRepeatedReleaseKeepsBound() {
+    CountingPool pool = new CountingPool( configuration() );
+    Integer first = pool.retrieve();
+    pool.release( first );
+    pool.release( first );
+    pool.release( 42 );
+    Assert.assertEquals( pool.getIdleCount(), 1 );
+    pool.retrieve();
+    pool.retrieve();
+    pool.retrieve();
+  }
+
+  @Test
+  public void testEvictionKeepsMinimum() {
+    CountingPool pool = new CountingPool( configuration().setMaxIdleMillis( 0 ).setMinSize( 1 ) );
+    Integer first = pool.retrieve();
+    Integer second = pool.retrieve();
+    pool.release( first );
+    pool.release( second );
+    Assert.assertEquals( pool.evictIdle(), 1 );
+    Assert.assertEquals( pool.getIdleCount(), 1 );
+    Assert.assertEquals( pool.getLiveCount(), 1 );
+  }
+
+  @Test
+  public void testPoolShrinksUnderLightLoadAfterABurst() throws InterruptedException {
+    CountingPool pool = new CountingPool( configuration().setMaxSize( 4 ).setMaxIdleMillis( 50 ).setMinSize( 1 ) );
+    Integer[] burst = new Integer[4];
+    for ( int i = 0; i < burst.length; i++ )
+      burst[i] = pool.retrieve();
+    for ( Integer element : burst )
+      pool.release( element );
+    // serial traffic keeps reusing the most recently released object
+    Set<Integer> used = new HashSet<Integer>();
+    for ( int i = 0; i < 20; i++ ) {
+      Integer element = pool.retrieve();
+      used.add( element );
+      pool.release( element );
+      Thread.sleep( 10 );
+    }
+    Assert.assertEquals( used.size(), 1 );
+    Assert.assertEquals( pool.evictIdle(), 3 );
+    Assert.assertEquals( pool.getLiveCount(), 1 );
+    Assert.assertEquals( pool.retrieve(), used.iterator().next() );
+  }
+}
@@ -0,0 +1,94 @@
+package eu.lod2.query;
+
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the preparation and reuse of queries by the PreparedQueryCache.
+ */
+public class PreparedQueryCacheTest {
+
+  private static final URI GRAPH = new URIImpl( "http://example.com/graph" );
+  private static final URI TITLE = new URIImpl( "http://purl.org/dc/terms/title" );
+  private static final URI FIRST = new URIImpl( "http://example.com/first" );
+  private static final URI SECOND = new URIImpl( "http://example.com/second" );
+
+  private SailRepository repository;
+  private RepositoryConnection connection;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    repository = new SailRepository( new MemoryStore() );
+    repository.initialize();
+    connection = repository.getConnection();
+    connection.add( FIRST, TITLE, new LiteralImpl( "first" ), GRAPH );
+    connection.add( SECOND, TITLE, new LiteralImpl( "second" ), GRAPH );
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    connection.close();
+    repository.shutDown();
+  }
+
+  @Test
+  public void itShouldReuseTheQueryForBoundValues() throws Exception {
+    PreparedQueryCache cache = new PreparedQueryCache( connection, 8, true );
+    SparqlTemplate template = Sparql.compile( "SELECT ?title WHERE { GRAPH $graph { $subject <" + TITLE + "> ?title } }" );
+
+    Assert.assertEquals( title( cache, template, FIRST ), "first" );
+    Assert.assertEquals( title( cache, template, SECOND ), "second" );
+    Assert.assertEquals( cache.size(), 1 );
+  }
+
+  @Test
+  public void itShouldSubstituteValuesWhereVariablesAreNotAllowed() throws Exception {
+    PreparedQueryCache cache = new PreparedQueryCache( connection, 8, true );
+    SparqlTemplate template = Sparql.compile( "SELECT ?title FROM $graph WHERE { $subject <" + TITLE + "> ?title }" );
+
+    Assert.assertEquals( title( cache, template, FIRST ), "first" );
+    Assert.assertEquals( title( cache, template, SECOND ), "second" );
+  }
+
+  @Test
+  public void itShouldBindValuesInUpdates() throws Exception {
+    PreparedQueryCache cache = new PreparedQueryCache( connection, 8, true );
+    SparqlTemplate template = Sparql.compile( "DELETE WHERE { GRAPH $graph { $subject ?p ?o } }" );
+
+    cache.update( template, new Object[]{ "graph", GRAPH, "subject", FIRST } ).execute();
+
+    Assert.assertFalse( connection.hasStatement( FIRST, TITLE, null, false, GRAPH ) );
+    Assert.assertTrue( connection.hasStatement( SECOND, TITLE, null, false, GRAPH ) );
+  }
+
+  @Test
+  public void itShouldEvictTheLeastRecentlyUsedQuery() throws Exception {
+    PreparedQueryCache cache = new PreparedQueryCache( connection, 1, false );
+    SparqlTemplate template = Sparql.compile( "SELECT ?title WHERE { GRAPH $graph { $subject <" + TITLE + "> ?title } }" );
+
+    Assert.assertEquals( title( cache, template, FIRST ), "first" );
+    Assert.assertEquals( title( cache, template, SECOND ), "second" );
+    Assert.assertEquals( cache.size(), 1 );
+  }
+
+  /**
+   * Retrieves the title of {@code subject} through {@code template}.
+   */
+  private static String title( PreparedQueryCache cache, SparqlTemplate template, URI subject ) throws Exception {
+    TupleQueryResult result = cache.tupleQuery( template, new Object[]{ "graph", GRAPH, "subject", subject } ).evaluate();
+    try {
+      return result.next().getValue( "title" ).stringValue();
+    } finally {
+      result.close();
+    }
+  }
+}
@@ -36,4 +36,23 @@ public class SparqlTest {
       generated.replaceAll( "\\s" , "" ),
       manuallyBuilt.replaceAll( "\\s", "" ));
   }
+
+  @org.testng.annotations.Test
+  public void testCompileCachesTemplates() throws Exception {
+    String pattern = "SELECT ?s FROM $graph WHERE { ?s a $type }";
+    Assert.assertSame( Sparql.compile( pattern ), Sparql.compile( pattern ) );
+  }
+
+  @org.testng.annotations.Test
+  public void testRenderKeepsUnboundVariables() throws Exception {
+    String rendered = Sparql.compile( "SELECT ?s FROM $graph WHERE { ?s a $type }" )
+      .render( "graph", new URIImpl( "http://example.com/g" ) );
+    Assert.assertEquals( rendered, "SELECT ?s FROM <http://example.com/g> WHERE { ?s a $type }" );
+  }
+
+  @org.testng.annotations.Test
+  public void testRenderInsertsValuesLiterally() throws Exception {
+    String rendered = Sparql.query( "INSERT DATA { <a> <b> $value }", "value", "\"$1 \\\\ costs\"" );
+    Assert.assertEquals( rendered, "INSERT DATA { <a> <b> \"$1 \\\\ costs\" }" );
+  }
 }
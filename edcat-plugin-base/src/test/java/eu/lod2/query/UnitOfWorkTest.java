@@ -0,0 +1,174 @@
+package eu.lod2.query;
+
+import eu.lod2.edcat.utils.SparqlEngine;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the commit, rollback and abort paths of a UnitOfWork.
+ */
+public class UnitOfWorkTest {
+
+  private static final ValueFactory factory = ValueFactoryImpl.getInstance();
+  private static final URI dataset = factory.createURI( "http://example.com/datasets/1" );
+  private static final URI title = factory.createURI( "http://purl.org/dc/terms/title" );
+
+  /**
+   * Engine whose rollback fails as long as {@link #failRollback} is set.
+   */
+  private static class FlakyEngine extends SparqlEngine {
+    boolean failRollback = false;
+    int rollbacks = 0;
+
+    FlakyEngine( Repository repository ) {
+      super( repository );
+    }
+
+    @Override
+    public void rollback() {
+      rollbacks++;
+      if ( failRollback )
+        throw new IllegalStateException( "connection lost" );
+      super.rollback();
+    }
+  }
+
+  /**
+   * Pool which hands out engines on a shared memory store.
+   */
+  private static class EnginePool extends Pool<SparqlEngine> {
+    final Repository repository;
+    int destroyed = 0;
+
+    EnginePool( Repository repository ) {
+      super( new PoolConfiguration().setEvictionIntervalMillis( 0 ) );
+      this.repository = repository;
+    }
+
+    @Override
+    SparqlEngine buildPooledObject() {
+      return new FlakyEngine( repository );
+    }
+
+    @Override
+    void destroyPooledObject( SparqlEngine engine ) {
+      destroyed++;
+      engine.terminate();
+    }
+  }
+
+  private EnginePool pool;
+
+  @BeforeMethod
+  public void createPool() throws Exception {
+    Repository repository = new SailRepository( new MemoryStore() );
+    repository.initialize();
+    pool = new EnginePool( repository );
+  }
+
+  @Test
+  public void itShouldStoreCommittedOperations() {
+    UnitOfWork work = new UnitOfWork( pool.retrieve(), pool );
+    try {
+      work.getEngine().addStatements( description() );
+      work.commit();
+    } finally {
+      work.close();
+    }
+    Assert.assertTrue( isStored() );
+    Assert.assertNull( UnitOfWork.current() );
+    Assert.assertEquals( pool.getIdleCount(), 1 );
+  }
+
+  @Test
+  public void itShouldRollBackWhenTheBlockIsAborted() {
+    UnitOfWork work = new UnitOfWork( pool.retrieve(), pool );
+    try {
+      try {
+        work.getEngine().addStatements( description() );
+        throw new IllegalArgumentException( "aborted by a hook" );
+      } finally {
+        work.close();
+      }
+    } catch ( IllegalArgumentException e ) {
+      Assert.assertEquals( e.getMessage(), "aborted by a hook" );
+    }
+    Assert.assertFalse( isStored() );
+    Assert.assertEquals( pool.getIdleCount(), 1 );
+    Assert.assertEquals( pool.destroyed, 0 );
+  }
+
+  @Test
+  public void itShouldNotHideTheAbortWhenTheRollbackFails() {
+    FlakyEngine engine = ( FlakyEngine ) pool.retrieve();
+    UnitOfWork work = new UnitOfWork( engine, pool );
+    try {
+      try {
+        engine.failRollback = true;
+        throw new IllegalArgumentException( "aborted by a hook" );
+      } finally {
+        work.close();
+      }
+    } catch ( IllegalArgumentException e ) {
+      Assert.assertEquals( e.getMessage(), "aborted by a hook" );
+    }
+    Assert.assertEquals( pool.destroyed, 1, "the engine should be destroyed, not handed back" );
+    Assert.assertEquals( pool.getIdleCount(), 0 );
+    Assert.assertNull( UnitOfWork.current() );
+  }
+
+  @Test
+  public void itShouldStayActiveWhenAnExplicitRollbackFails() {
+    FlakyEngine engine = ( FlakyEngine ) pool.retrieve();
+    UnitOfWork work = new UnitOfWork( engine, pool );
+    try {
+      work.getEngine().addStatements( description() );
+      engine.failRollback = true;
+      try {
+        work.rollback();
+        Assert.fail( "the rollback failure should be reported" );
+      } catch ( IllegalStateException e ) {
+        Assert.assertTrue( work.isActive() );
+      }
+      engine.failRollback = false;
+    } finally {
+      work.close();
+    }
+    Assert.assertEquals( engine.rollbacks, 2, "closing should retry the rollback" );
+    Assert.assertFalse( isStored() );
+    Assert.assertEquals( pool.getIdleCount(), 1 );
+  }
+
+  @Test( expectedExceptions = IllegalStateException.class )
+  public void itShouldRejectANestedUnitOfWork() {
+    UnitOfWork work = new UnitOfWork( pool.retrieve(), pool );
+    try {
+      new UnitOfWork( pool.retrieve(), pool );
+    } finally {
+      work.close();
+    }
+  }
+
+  private static LinkedHashModel description() {
+    LinkedHashModel statements = new LinkedHashModel();
+    statements.add( dataset, title, factory.createLiteral( "Dataset" ) );
+    return statements;
+  }
+
+  private boolean isStored() {
+    SparqlEngine engine = pool.retrieve();
+    try {
+      return engine.hasStatement( dataset, title, null, false );
+    } finally {
+      pool.release( engine );
+    }
+  }
+}
@@ -13,9 +13,15 @@ public class ConnectedGraph<HookHandler> {
     /** Stores all nodes in this ConnectedGraph */
     private Set<Node<HookHandler>> nodes;
 
-    /** Cache for the {@link ConnectedGraph#executionOrder()} */
+    /** Cache for the {@link ConnectedGraph#executionOrder()}, null until the graph has been scheduled */
     private List<Node<HookHandler>> executionOrderCache;
 
+    /** Cycle which was found while scheduling the graph, null if the graph is acyclic */
+    private List<Node<HookHandler>> cycleCache;
+
+    /** Whether {@link #schedule()} has run */
+    private boolean scheduled = false;
+
     /**
      * Constructs a new ConnectedGraph from a set of nodes.
      *
@@ -26,24 +32,28 @@ public class ConnectedGraph<HookHandler> {
      * @param nodes The nodes of which the new ConnectedGraph consists.
      */
     public ConnectedGraph (Set<Node<HookHandler>> nodes) {
-        this.nodes = new HashSet<Node<HookHandler>>(nodes);
+        this.nodes = new LinkedHashSet<Node<HookHandler>>(nodes);
     }
 
     /**
      * Splits a supplied set of nodes into a set of ConnectedGraphs with a
      * maximal amount of nodes in each ConnectedGraph.
+     * <p/>
+     * Each node and each reference is visited once, so this is linear in the size of the graph.
      *
      * @param nodes The nodes to split.
      * @return The set of ConnectedGraph instances existing in the supplied nodes.
      */
     public static <HookHandler> Set<ConnectedGraph<HookHandler>> discoverNodeSets(Set<Node<HookHandler>> nodes) {
-        HashSet<Node<HookHandler>> walkingNodes = new HashSet<Node<HookHandler>>(nodes);
-        Set<ConnectedGraph<HookHandler>> discoveredGraphs = new HashSet<ConnectedGraph<HookHandler>>();
-
-        while(!walkingNodes.isEmpty()) {
-            Set<Node<HookHandler>> pickedNodes = walkingNodes.iterator().next().getAccessibleNodes();
+        Set<Node<HookHandler>> visitedNodes = new HashSet<Node<HookHandler>>();
+        Set<ConnectedGraph<HookHandler>> discoveredGraphs = new LinkedHashSet<ConnectedGraph<HookHandler>>();
+
+        for(Node<HookHandler> node : nodes) {
+            if(visitedNodes.contains(node))
+                continue;
+            Set<Node<HookHandler>> pickedNodes = node.getAccessibleNodes();
+            visitedNodes.addAll(pickedNodes);
             discoveredGraphs.add(new ConnectedGraph<HookHandler>(pickedNodes));
-            walkingNodes.removeAll(pickedNodes);
         }
 
         return discoveredGraphs;
@@ -52,18 +62,38 @@ public class ConnectedGraph<HookHandler> {
     /**
      * Returns true iff the current ConnectedGraph has a cycle in it.
      *
-     * TODO: there might be a simpler and more efficient way to do this check.  if the current node is in the set of nodes accessible from itself, then there must be a cycle.  I should verify that this is allowed in the current implementation of Node.
-     *
      * @return true if the graph has a cycle in it, false otherwise.
      */
     public boolean cycleP() {
-        // if we can walk to a node, and the other node can walk forward towards us, it must mean we have a cycle.
-        // the same check could be done in the other direction, but that check would be redundant.
-        for(Node<HookHandler> source : nodes)
-            for(Node<HookHandler> target : source.getAllImplicitAfterMe())
-                if(target.getAllImplicitAfterMe().contains(source))
-                    return true;
-        return false;
+        return findCycle() != null;
+    }
+
+    /**
+     * Returns a cycle in the current ConnectedGraph, if there is one.
+     * <p/>
+     * The returned list starts and ends with the same node, each node in the list must be executed
+     * before the node which follows it.
+     *
+     * @return Nodes which form a cycle, or null if the graph has no cycles.
+     */
+    public List<Node<HookHandler>> findCycle() {
+        schedule();
+        return cycleCache == null ? null : new ArrayList<Node<HookHandler>>(cycleCache);
+    }
+
+    /**
+     * Builds a CycleException reporting the handlers of the cycle in this graph.
+     *
+     * @return CycleException describing the found cycle, or null if the graph has no cycles.
+     */
+    public CycleException cycleException() {
+        schedule();
+        if(cycleCache == null)
+            return null;
+        List<HookHandler> handlers = new ArrayList<HookHandler>(cycleCache.size());
+        for(Node<HookHandler> node : cycleCache)
+            handlers.add(node.getHandler());
+        return new CycleException(handlers);
     }
 
     /**
@@ -72,18 +102,7 @@ public class ConnectedGraph<HookHandler> {
      * @return Node which should be executed first in this graph.
      */
     public Node<HookHandler> firstNode() {
-        if( executionOrderCache != null )
-            return executionOrderCache.get(0);
-
-        ArrayList<Node<HookHandler>> sortedNodes = new ArrayList<Node<HookHandler>>(nodes);
-        Collections.sort(sortedNodes,
-                new Comparator<Node<HookHandler>>() {
-                    @Override
-                    public int compare(Node<HookHandler> a, Node<HookHandler> b) {
-                        return a.getAllImplicitBeforeMe().size() - b.getAllImplicitBeforeMe().size();
-                    }
-                });
-        return sortedNodes.get(0);
+        return executionOrder().get(0);
     }
 
     /**
@@ -92,53 +111,21 @@ public class ConnectedGraph<HookHandler> {
      * @return Node which should be executed last in this graph.
      */
     public Node<HookHandler> lastNode() {
-        if( executionOrder() != null )
-            return executionOrderCache.get(executionOrderCache.size() -1 );
-        ArrayList<Node<HookHandler>> sortedNodes = new ArrayList<Node<HookHandler>>(nodes);
-        Collections.sort(sortedNodes,
-                new Comparator<Node<HookHandler>>() {
-                    @Override
-                    public int compare(Node<HookHandler> a, Node<HookHandler> b) {
-                        return a.getAllImplicitAfterMe().size() - b.getAllImplicitAfterMe().size();
-                    }
-                });
-        return sortedNodes.get(0);
+        List<Node<HookHandler>> order = executionOrder();
+        return order.get(order.size() - 1);
     }
 
     /**
      * Returns a valid order of execution, as specified by the Node's constraints
      *
      * @return Valid order of execution for the HookHandler
+     * @throws IllegalStateException wrapping a {@link CycleException} if the graph contains a cycle.
      */
     public List<Node<HookHandler>> executionOrder(){
-        // In the current approach we take a valid starting node and add it to the list of accessible nodes.
-        // (A) For each node which isn't in the accessible list yet
-        //     Add to accessible nodes if all required nodes (for a single step) are in accessible nodes.
-        // Repeat (A) until all nodes are accessible.
-
-        if(executionOrderCache != null)
-            return new ArrayList<Node<HookHandler>>(executionOrderCache);
-
-        Set<Node<HookHandler>> availableNodes = new HashSet<Node<HookHandler>>(nodes);
-        List<Node<HookHandler>> executionOrder = new ArrayList<Node<HookHandler>>();
-
-        Node<HookHandler> firstNode = firstNode();
-        executionOrder.add(firstNode);
-        availableNodes.remove(firstNode);
-
-        // todo: for nodes which neither set a before, nor an after priority, it would make sense to have them injected by their requested priority.
-        while(!availableNodes.isEmpty()){
-            List<Node<HookHandler>> newlyAvailableNodes = new ArrayList<Node<HookHandler>>();
-            for(Node<HookHandler> availableNode : availableNodes )
-                if( allDirectNodeRequirementsInCollection(availableNode, executionOrder) )
-                    newlyAvailableNodes.add(availableNode);
-            executionOrder.addAll(newlyAvailableNodes);
-            availableNodes.removeAll(newlyAvailableNodes);
-        }
-
-        executionOrderCache = executionOrder;
-
-        return executionOrder;
+        schedule();
+        if(cycleCache != null)
+            throw new IllegalStateException(cycleException());
+        return new ArrayList<Node<HookHandler>>(executionOrderCache);
     }
 
     /**
@@ -168,13 +155,69 @@ public class ConnectedGraph<HookHandler> {
     }
 
     /**
-     * Returns true iff node can be executed, given that all nodes in *set* have been executed beforehand.
+     * Calculates the execution order and detects cycles in a single pass.
+     * <p/>
+     * This is Kahn's topological sort: each node counts the nodes which must run before it, nodes
+     * which have no such nodes left are executed in waves.  A node which can never be reached this
+     * way is part of, or waits on, a cycle; one such cycle is stored in {@link #cycleCache}.
+     */
+    private void schedule(){
+        if(scheduled)
+            return;
+
+        Map<Node<HookHandler>, Integer> waitingFor = new HashMap<Node<HookHandler>, Integer>();
+        List<Node<HookHandler>> executionOrder = new ArrayList<Node<HookHandler>>(nodes.size());
+        for(Node<HookHandler> node : nodes) {
+            int requirements = node.getSingleStepBeforeSelf().size();
+            if(requirements == 0)
+                executionOrder.add(node);
+            else
+                waitingFor.put(node, requirements);
+        }
+
+        // executionOrder doubles as the queue, nodes behind *next* have not released their successors yet
+        for(int next = 0; next < executionOrder.size(); next++)
+            for(Node<HookHandler> successor : executionOrder.get(next).getSingleStepAfterSelf()) {
+                int requirements = waitingFor.get(successor) - 1;
+                if(requirements == 0) {
+                    waitingFor.remove(successor);
+                    executionOrder.add(successor);
+                } else
+                    waitingFor.put(successor, requirements);
+            }
+
+        if(waitingFor.isEmpty())
+            executionOrderCache = executionOrder;
+        else
+            cycleCache = cycleIn(waitingFor.keySet());
+        scheduled = true;
+    }
+
+    /**
+     * Finds a cycle in the nodes which could not be scheduled.
+     * <p/>
+     * Each of these nodes waits for at least one other unscheduled node, so walking back over those
+     * must end up at a node we have seen before.
      *
-     * @param node The node of which we want to know if we can execute it.
-     * @param set The nodes which have been executed previously.
-     * @return true if node can be executed, false otherwise.
+     * @param unscheduled Nodes which are still waiting for other nodes.
+     * @return Nodes forming the cycle, in execution order, starting and ending with the same node.
      */
-    private boolean allDirectNodeRequirementsInCollection(Node<HookHandler> node, Collection<Node<HookHandler>> set){
-        return set.containsAll(node.getSingleStepBeforeSelf());
+    private List<Node<HookHandler>> cycleIn(Set<Node<HookHandler>> unscheduled){
+        Map<Node<HookHandler>, Integer> positions = new HashMap<Node<HookHandler>, Integer>();
+        List<Node<HookHandler>> path = new ArrayList<Node<HookHandler>>();
+        Node<HookHandler> current = unscheduled.iterator().next();
+        while(!positions.containsKey(current)) {
+            positions.put(current, path.size());
+            path.add(current);
+            for(Node<HookHandler> predecessor : current.getSingleStepBeforeSelf())
+                if(unscheduled.contains(predecessor)) {
+                    current = predecessor;
+                    break;
+                }
+        }
+        List<Node<HookHandler>> cycle = new ArrayList<Node<HookHandler>>(path.subList(positions.get(current), path.size()));
+        cycle.add(current);
+        Collections.reverse(cycle);
+        return cycle;
     }
 }
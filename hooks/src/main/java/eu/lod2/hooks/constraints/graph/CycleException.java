@@ -1,10 +1,50 @@
 package eu.lod2.hooks.constraints.graph;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * This exception indicates that there's a cycle in the supplied NodeSet.
  */
 public class CycleException extends Exception {
+
+  /** Elements forming the cycle, starting and ending with the same element */
+  private List<?> cycle;
+
   public CycleException() {
     super("Cycle found in graph");
+    this.cycle = Collections.emptyList();
+  }
+
+  /**
+   * Constructs a CycleException which reports the offending cycle.
+   *
+   * @param cycle Elements forming the cycle, each element must run before the element which
+   *              follows it.  The first and the last element are the same.
+   */
+  public CycleException( List<?> cycle ) {
+    super("Cycle found in graph: " + describe( cycle ));
+    this.cycle = Collections.unmodifiableList( new ArrayList<Object>( cycle ) );
+  }
+
+  /**
+   * @return Elements forming the cycle, empty if the cycle is unknown.
+   */
+  public List<?> getCycle() {
+    return cycle;
+  }
+
+  /**
+   * Builds a readable representation of the cycle.
+   */
+  private static String describe( List<?> cycle ) {
+    StringBuilder description = new StringBuilder();
+    for ( Object element : cycle ) {
+      if ( description.length() > 0 )
+        description.append( " -> " );
+      description.append( element );
+    }
+    return description.toString();
   }
 }
@@ -15,6 +15,9 @@ public class HookHandlerNodeSet extends NodeSet<HookHandler>{
   /** Canonical name of the hook we are finding the execution order for. */
   private String hookName;
 
+  /** HookHandlers indexed by their canonical class name, built when first needed. */
+  private Map<String, Set<HookHandler>> handlersByCanonicalName;
+
   /**
    * Constructs a new HookHandlerNodeSet.
    *
@@ -27,6 +30,12 @@ public class HookHandlerNodeSet extends NodeSet<HookHandler>{
     this.hookName = hookName;
   }
 
+  @Override
+  public void add( HookHandler handler ) {
+    handlersByCanonicalName = null;
+    super.add( handler );
+  }
+
   @Override
   public Collection<HookHandler> hookExecutesBefore(HookHandler hookHandler) {
     return hookExecutesRelativeTo(hookHandler, RelativePriority.Relation.BEFORE);
@@ -101,10 +110,19 @@ public class HookHandlerNodeSet extends NodeSet<HookHandler>{
    * @return Collection of HookHandlers which have the canonical name *name*.
    */
   private Collection<HookHandler> hookHandlersByCanonicalName(String name){
-    Set<HookHandler> foundHandlers = new HashSet<HookHandler>();
-    for(HookHandler handler : handlers)
-      if( handler.getClass().getCanonicalName().equals(name))
-        foundHandlers.add(handler);
-    return foundHandlers;
+    if( handlersByCanonicalName == null ) {
+      handlersByCanonicalName = new HashMap<String, Set<HookHandler>>();
+      for(HookHandler handler : handlers) {
+        String canonicalName = handler.getClass().getCanonicalName();
+        Set<HookHandler> namedHandlers = handlersByCanonicalName.get(canonicalName);
+        if( namedHandlers == null ) {
+          namedHandlers = new HashSet<HookHandler>();
+          handlersByCanonicalName.put(canonicalName, namedHandlers);
+        }
+        namedHandlers.add(handler);
+      }
+    }
+    Set<HookHandler> foundHandlers = handlersByCanonicalName.get(name);
+    return foundHandlers == null ? Collections.<HookHandler>emptySet() : foundHandlers;
   }
 }
@@ -31,12 +31,6 @@ public class Node<HookHandler> {
     /** Nodes which have implicitly been specified to be executed before this node (in a single step) */
     private Set<Node<HookHandler>> singleStepBeforeSelf = new HashSet<Node<HookHandler>>();
 
-    /** Nodes which have implicitly been specified to be executed after this node (any amount of steps) */
-    private Set<Node<HookHandler>> implicitAfterSelf = new HashSet<Node<HookHandler>>();
-
-    /** Nodes which have implicitly been specified to be executed before this node (any amount of steps) */
-    private Set<Node<HookHandler>> implicitBeforeSelf = new HashSet<Node<HookHandler>>();
-
 
     /**
      * Construct a new Node.
@@ -120,41 +114,67 @@ public class Node<HookHandler> {
 
     /**
      * Retrieves all accessible nodes from this node (including the current node)
+     * <p/>
+     * Walks the single step references in both directions, visiting each node and reference once.
      */
     public Set<Node<HookHandler>> getAccessibleNodes() {
         Set<Node<HookHandler>> accessibleNodes = new HashSet<Node<HookHandler>>();
-        Set<Node<HookHandler>> newNodes = new HashSet<Node<HookHandler>>();
-        newNodes.add(this);
-
-        while(! newNodes.isEmpty()){
-            accessibleNodes.addAll(newNodes);
-            Set<Node<HookHandler>> nextNewNodes = new HashSet<Node<HookHandler>>();
-            for(Node<HookHandler> newNode : newNodes){
-                nextNewNodes.addAll(newNode.getAllImplicitAfterMe());
-                nextNewNodes.addAll(newNode.getAllImplicitBeforeMe());
-            }
-            newNodes = nextNewNodes;
-            newNodes.removeAll(accessibleNodes);
+        Deque<Node<HookHandler>> worklist = new ArrayDeque<Node<HookHandler>>();
+        accessibleNodes.add(this);
+        worklist.add(this);
+
+        while(!worklist.isEmpty()){
+            Node<HookHandler> node = worklist.poll();
+            for(Node<HookHandler> neighbour : node.singleStepAfterSelf)
+                if(accessibleNodes.add(neighbour))
+                    worklist.add(neighbour);
+            for(Node<HookHandler> neighbour : node.singleStepBeforeSelf)
+                if(accessibleNodes.add(neighbour))
+                    worklist.add(neighbour);
         }
         return accessibleNodes;
     }
 
     /**
      * Returns all nodes which should be executed before self.
+     * <p/>
+     * The nodes are discovered by walking the single step references, they are not stored.
      *
      * @return All nodes which ought to be executed before this node.
      */
     public Set<Node<HookHandler>> getAllImplicitBeforeMe() {
-        return new HashSet<Node<HookHandler>>(implicitBeforeSelf);
+        return reachable(false);
     }
 
     /**
      * Returns all nodes which should be executed after self.
+     * <p/>
+     * The nodes are discovered by walking the single step references, they are not stored.
      *
      * @return All nodes which ought to be executed after this node.
      */
     public Set<Node<HookHandler>> getAllImplicitAfterMe() {
-        return new HashSet<Node<HookHandler>>(implicitAfterSelf);
+        return reachable(true);
+    }
+
+    /**
+     * Returns the nodes which can be reached from self by following single step references in one
+     * direction.  Self is only contained in the result if it is part of a cycle.
+     *
+     * @param forward true to follow the nodes which run after self, false for the nodes which run before.
+     * @return Nodes reachable from self.
+     */
+    private Set<Node<HookHandler>> reachable(boolean forward) {
+        Set<Node<HookHandler>> reached = new HashSet<Node<HookHandler>>();
+        Deque<Node<HookHandler>> worklist = new ArrayDeque<Node<HookHandler>>();
+        worklist.add(this);
+        while(!worklist.isEmpty()){
+            Node<HookHandler> node = worklist.poll();
+            for(Node<HookHandler> next : forward ? node.singleStepAfterSelf : node.singleStepBeforeSelf)
+                if(reached.add(next))
+                    worklist.add(next);
+        }
+        return reached;
     }
 
     /**
@@ -169,7 +189,6 @@ public class Node<HookHandler> {
     public void after(Node<HookHandler> attachment) {
         thisExplicitlyRunsAfter(attachment);
         attachment.addSingleStepAfter(this);
-        attachment.addImplicitAfter(this);
     }
 
     /**
@@ -184,7 +203,6 @@ public class Node<HookHandler> {
     public void before(Node<HookHandler> attachment) {
         thisExplicitlyRunsBefore(attachment);
         attachment.addSingleStepBefore(this);
-        attachment.addImplicitBefore(this);
     }
 
     /**
@@ -224,58 +242,4 @@ public class Node<HookHandler> {
         singleStepBeforeSelf.add(other);
         other.singleStepAfterSelf.add(this);
     }
-
-    /**
-     * Indicate that *other* should be executed *after* self, on any distance.
-     *
-     * @param other Node which should be executed after this.
-     */
-    private void addImplicitAfter(Node<HookHandler> other) {
-        this.addImplicitAfterDirectional(other);
-        other.addImplicitBeforeDirectional(this);
-    }
-
-    /**
-     * Indicate that *other* should be executed *before* self, on any distance.
-     *
-     * @param other Node which should be executed after this.
-     */
-    private void addImplicitBefore(Node<HookHandler> other) {
-        this.addImplicitBeforeDirectional(other);
-        other.addImplicitAfterDirectional(this);
-    }
-
-    /**
-     * Indicate that *other* should be executed *after* self, on any distance, but only in this direction.
-     *
-     * @param other Node which should be executed after this.
-     */
-    private void addImplicitAfterDirectional(Node<HookHandler> other) {
-        if(!implicitAfterSelf.contains(other)){
-            Set<Node<HookHandler>> newAfterMe = new HashSet<Node<HookHandler>>(other.implicitAfterSelf);
-            newAfterMe.remove(this);
-            newAfterMe.add(other);
-            implicitAfterSelf.addAll(newAfterMe);
-            for(Node<HookHandler> beforeSelf : implicitBeforeSelf)
-                for(Node<HookHandler> singleNewAfterMe : newAfterMe)
-                    beforeSelf.addImplicitAfterDirectional(singleNewAfterMe);
-        }
-    }
-
-    /**
-     * Indicate that *other* should be executed *before* self, on any distance, but only in this direction.
-     *
-     * @param other Node which should be executed before self.
-     */
-    private void addImplicitBeforeDirectional(Node<HookHandler> other) {
-        if(!implicitBeforeSelf.contains(other)){
-            Set<Node<HookHandler>> newBeforeMe = new HashSet<Node<HookHandler>>(other.implicitBeforeSelf);
-            newBeforeMe.remove(this);
-            newBeforeMe.add(other);
-            implicitBeforeSelf.addAll(newBeforeMe);
-            for(Node<HookHandler> afterSelf : implicitAfterSelf)
-                for(Node<HookHandler> singleNewBeforeMe : newBeforeMe)
-                    afterSelf.addImplicitBeforeDirectional(singleNewBeforeMe);
-        }
-    }
 }
\ No newline at end of file
@@ -25,6 +25,9 @@ public abstract class NodeSet<HookHandler> {
     /** Stores all nodes in the current set */
     protected Set<Node<HookHandler>> nodes = new HashSet<Node<HookHandler>>();
 
+    /** Index from each HookHandler to the node which describes it */
+    private Map<HookHandler, Node<HookHandler>> nodesByHandler = new IdentityHashMap<HookHandler, Node<HookHandler>>();
+
 
     //-----------------------------
     //- state change administration
@@ -93,14 +96,19 @@ public abstract class NodeSet<HookHandler> {
 
     /**
      * Discovers an order in which the handlers can be executed.
+     * <p/>
+     * The order is found through a topological sort of each ConnectedGraph, which also detects
+     * cycles.  The whole operation is linear in the amount of handlers and constraints.
      *
      * @return Ordered list of HookHandlers.  The first handler in the list should be executed first.
-     * /@pre Graph must not contain cycles
+     * @throws CycleException if the constraints contain a cycle, the exception reports the cycle.
      */
-    public List<HookHandler> handlersExecutionList() {
+    public List<HookHandler> handlersExecutionList() throws CycleException {
         inRetrievingState();
-        Set<Node<HookHandler>> clonedNodes = new HashSet<Node<HookHandler>>(nodes);
-        Set<ConnectedGraph<HookHandler>> nodeSets = ConnectedGraph.discoverNodeSets(clonedNodes);
+        Set<ConnectedGraph<HookHandler>> nodeSets = ConnectedGraph.discoverNodeSets(nodes);
+        for (ConnectedGraph<HookHandler> graph : nodeSets)
+            if (graph.cycleP())
+                throw graph.cycleException();
         return unpackNodes(orderedExecutionPath(nodeSets));
     }
 
@@ -169,6 +177,7 @@ public abstract class NodeSet<HookHandler> {
      */
     private void clearNodes() {
         nodes = new HashSet<Node<HookHandler>>();
+        nodesByHandler = new IdentityHashMap<HookHandler, Node<HookHandler>>();
     }
 
     /**
@@ -177,8 +186,11 @@ public abstract class NodeSet<HookHandler> {
      * /@atStateChange: used during State change
      */
     private void constructNodes() {
-        for (HookHandler handler : handlers)
-            nodes.add(new Node<HookHandler>(handler));
+        for (HookHandler handler : handlers) {
+            Node<HookHandler> node = new Node<HookHandler>(handler);
+            nodes.add(node);
+            nodesByHandler.put(handler, node);
+        }
     }
 
     /**
@@ -205,10 +217,7 @@ public abstract class NodeSet<HookHandler> {
      * @return Node which has HookHandler
      */
     private Node<HookHandler> findNodeByHandler(HookHandler handler) {
-        for (Node<HookHandler> node : nodes)
-            if (node.getHandler() == handler)
-                return node;
-        return null;
+        return nodesByHandler.get(handler);
     }
 
     //-----------------------------
@@ -220,16 +229,16 @@ public abstract class NodeSet<HookHandler> {
      *
      * @param graphs The ConnectedGraphs which contain all nodes to be executed.
      * @return List of HookHandlers contained in the graphs, in the order in which they should be executed.
-     * /@pre graph must not contain cycles
+     * /@pre graphs must not contain cycles, see {@link ConnectedGraph#cycleP()}
      */
     private List<Node<HookHandler>> orderedExecutionPath(Set<ConnectedGraph<HookHandler>> graphs) {
         inRetrievingState();
         // In order to sort the complete graphs, we request the earliest unconstrained node and
         // the last unconstrained node.  We check their SchedulingPreference and sort as good as we can on that.
-        Set<List<Node<HookHandler>>> fromEarlyToEarly = new HashSet<List<Node<HookHandler>>>();
-        Set<List<Node<HookHandler>>> fromEarlyToLate = new HashSet<List<Node<HookHandler>>>();
-        Set<List<Node<HookHandler>>> fromLateToEarly = new HashSet<List<Node<HookHandler>>>();
-        Set<List<Node<HookHandler>>> fromLateToLate = new HashSet<List<Node<HookHandler>>>();
+        List<List<Node<HookHandler>>> fromEarlyToEarly = new ArrayList<List<Node<HookHandler>>>();
+        List<List<Node<HookHandler>>> fromEarlyToLate = new ArrayList<List<Node<HookHandler>>>();
+        List<List<Node<HookHandler>>> fromLateToEarly = new ArrayList<List<Node<HookHandler>>>();
+        List<List<Node<HookHandler>>> fromLateToLate = new ArrayList<List<Node<HookHandler>>>();
 
         for (ConnectedGraph<HookHandler> graph : graphs) {
             switch (graph.earliestUnconstrainedNode().getSchedulingPreference()) {
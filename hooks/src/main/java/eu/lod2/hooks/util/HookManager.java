@@ -11,10 +11,13 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The HookManager is your one-stop service for calling hooks.
@@ -30,20 +33,44 @@ import java.util.ServiceLoader;
  * It will also handle all providers of {@link eu.lod2.hooks.handlers.OptionalHookHandler}.  Each of
  * the handlers will be called in an order which abides their priority constraints as good as in a
  * best-effort manner.
+ * <p/>
+ * The ordered handlers and the methods to invoke are resolved once per hook and kept in a
+ * dispatch plan.  The plans are discarded when the handlers are reloaded through {@link
+ * #reloadHandlers()}.
  */
 public class HookManager {
 
   /** Contains all {@code HookHandler}s which have registered themselves for loading */
   static ServiceLoader<HookHandler> handlers = ServiceLoader.load( HookHandler.class );
 
+  /** Dispatch plans by hook interface and method name, see {@link #dispatchPlan(Class, String)} */
+  private static final ConcurrentMap<String, List<Invoker>> dispatchPlans = new ConcurrentHashMap<String, List<Invoker>>();
+
+  /** Providers by hook interface, see {@link #hasHandlers(Class)} */
+  private static final ConcurrentMap<Class<?>, Boolean> providedHooks = new ConcurrentHashMap<Class<?>, Boolean>();
+
+  /**
+   * Reloads the registered {@code HookHandler}s and discards the cached dispatch plans.
+   * <p/>
+   * Call this when the set of available handlers has changed, e.g. after plugins were added to
+   * the classpath at runtime.
+   */
+  public static synchronized void reloadHandlers() {
+    handlers.reload();
+    dispatchPlans.clear();
+    providedHooks.clear();
+  }
+
   /**
    * Searches for all providers which implement the given {@link HookHandler} interface. The
    * returned handlers have *not* been sorted by priority yet.
+   * <p/>
+   * Synchronized as the ServiceLoader may not be iterated by multiple threads at once.
    *
    * @param hookInterface Interface which the {@link HookHandler} should implement.
    * @return Collection of all providers which implement {@link HookHandler}.
    */
-  private static Collection<HookHandler> getHandlersFor( Class<?> hookInterface ) {
+  private static synchronized Collection<HookHandler> getHandlersFor( Class<?> hookInterface ) {
     List<HookHandler> filteredHandlers = new ArrayList<HookHandler>();
     for ( HookHandler handler : handlers ) {
 
@@ -62,7 +89,7 @@ public class HookManager {
    * <p/>
    * Each {@link HookHandler} in {@code hookHandlers} is assumed to have implemented the priority
    * functionality for {@code hook}.  If the priorities of the {@code hookHandler} has cycles in it,
-   * a {@link CycleException} is thrown.
+   * a {@link CycleException} reporting the cycle is thrown.
    *
    * @param hookHandlers Collection of HookHandlers to be sorted.
    * @param hook         Name of the method for which we are doing the sorting.
@@ -73,8 +100,6 @@ public class HookManager {
    */
   private static List<HookHandler> prioritySort( Collection<HookHandler> hookHandlers, String hook ) throws CycleException {
     NodeSet<HookHandler> nodeSet = new HookHandlerNodeSet( hookHandlers, hook );
-    if ( nodeSet.hasCycleP() )
-      throw new CycleException();
     return nodeSet.handlersExecutionList();
   }
 
@@ -109,6 +134,24 @@ public class HookManager {
     return prioritySort( getHandlersFor( hook ), hook.getCanonicalName() );
   }
 
+  /**
+   * Returns true iff at least one provider is registered for {@code handlerInterface}.
+   * <p/>
+   * Callers may use this to skip preparing information which only hooks would consume.
+   *
+   * @param handlerInterface The interface by which the hook is specified.
+   * @return true iff calling the hook would reach at least one provider.
+   */
+  public static boolean hasHandlers( Class<?> handlerInterface ) {
+    Boolean provided = providedHooks.get( handlerInterface );
+    if ( provided == null )
+      synchronized ( HookManager.class ) {
+        provided = !getHandlersFor( handlerInterface ).isEmpty();
+        providedHooks.put( handlerInterface, provided );
+      }
+    return provided;
+  }
+
   /**
    * Calls a hook, given the basic information about it.
    * <p/>
@@ -120,11 +163,47 @@ public class HookManager {
    * @param args              The arguments to supply to the hook's implementer.
    */
   public static void callHook( Class handlerInterface, String handlerMethodName, Object... args ) throws Throwable {
+    for ( Invoker invoker : dispatchPlan( handlerInterface, handlerMethodName ) )
+      invoker.invoke( handlerInterface, handlerMethodName, args );
+  }
+
+  /**
+   * Retrieves the dispatch plan for calling {@code handlerMethodName} on the providers of {@code
+   * handlerInterface}, building it if it wasn't cached yet.
+   *
+   * @param handlerInterface  The interface by which the hook is specified.
+   * @param handlerMethodName The method to call on the supplied interface.
+   * @return Invokers in the order in which they should be executed.
+   * @throws CycleException Thrown if the priorities of the providers contain a cycle.
+   */
+  private static List<Invoker> dispatchPlan( Class<?> handlerInterface, String handlerMethodName ) throws CycleException {
+    String key = handlerInterface.getName() + "#" + handlerMethodName;
+    List<Invoker> plan = dispatchPlans.get( key );
+    if ( plan == null )
+      // built under the lock of reloadHandlers so a reload can't be overwritten by a stale plan
+      synchronized ( HookManager.class ) {
+        plan = dispatchPlans.get( key );
+        if ( plan == null ) {
+          plan = buildDispatchPlan( handlerInterface, handlerMethodName );
+          dispatchPlans.put( key, plan );
+        }
+      }
+    return plan;
+  }
+
+  /**
+   * Builds the dispatch plan for calling {@code handlerMethodName} on the providers of {@code
+   * handlerInterface}.
+   *
+   * @see #dispatchPlan(Class, String)
+   */
+  private static List<Invoker> buildDispatchPlan( Class<?> handlerInterface, String handlerMethodName ) throws CycleException {
+    List<Invoker> plan = new ArrayList<Invoker>();
     for ( HookHandler h : orderedHandlers( handlerInterface ) )
       if ( h instanceof OptionalHookHandler )
         // todo: splash the arguments
         // (aad) isn't this handled automatically?
-        (( OptionalHookHandler ) h).handle( handlerInterface.getCanonicalName(), args );
+        plan.add( new Invoker( h, null, false ) );
       else {
         List<Method> correctlyNamedMethods = new ArrayList<Method>();
         for ( Method m : h.getClass().getMethods() )
@@ -135,18 +214,53 @@ public class HookManager {
             correctlyNamedMethods.add( m );
 
         if ( correctlyNamedMethods.size() > 1 )
-          throw new MultiImplementedHookException( handlerMethodName );
-        else if ( correctlyNamedMethods.size() == 1 ) {
-          try {
-            Method method = correctlyNamedMethods.get( 0 );
-            method.invoke( h, args );
-          } catch ( IllegalAccessException e ) {
-            e.printStackTrace();
-          } catch ( InvocationTargetException e ) {
-            throw e.getTargetException();
-          }
+          plan.add( new Invoker( h, null, true ) );
+        else if ( correctlyNamedMethods.size() == 1 )
+          plan.add( new Invoker( h, correctlyNamedMethods.get( 0 ), false ) );
+      }
+    return Collections.unmodifiableList( plan );
+  }
+
+  /**
+   * Resolved call of a hook on a single provider.
+   */
+  private static class Invoker {
+
+    /** Provider on which the hook is called */
+    private final HookHandler handler;
+
+    /** Method to invoke, null for {@link OptionalHookHandler}s */
+    private final Method method;
+
+    /** Whether the provider has multiple implementations for the hook's method */
+    private final boolean multiImplemented;
+
+    Invoker( HookHandler handler, Method method, boolean multiImplemented ) {
+      this.handler = handler;
+      this.method = method;
+      this.multiImplemented = multiImplemented;
+    }
+
+    /**
+     * Calls the hook on the provider.
+     *
+     * @see HookManager#callHook(Class, String, Object...)
+     */
+    void invoke( Class<?> handlerInterface, String handlerMethodName, Object[] args ) throws Throwable {
+      if ( multiImplemented )
+        throw new MultiImplementedHookException( handlerMethodName );
+      else if ( method == null )
+        (( OptionalHookHandler ) handler).handle( handlerInterface.getCanonicalName(), args );
+      else {
+        try {
+          method.invoke( handler, args );
+        } catch ( IllegalAccessException e ) {
+          e.printStackTrace();
+        } catch ( InvocationTargetException e ) {
+          throw e.getTargetException();
         }
       }
+    }
   }
 }
 
@@ -117,4 +117,18 @@ public class StringNodeSetTest {
         Assert.assertEquals(order.get(0),"r");
         Assert.assertTrue(order.get(5).equals("e") || order.get(5).equals("f"));
     }
+
+    @org.testng.annotations.Test
+    public void testHandlersExecutionListReportsCycle() throws Exception {
+        for(StringNodeSet set : DefaultGraphBuilder.buildCycledSets()) {
+            try {
+                set.handlersExecutionList();
+                Assert.fail("Expected a CycleException");
+            } catch (CycleException e) {
+                List<?> cycle = e.getCycle();
+                Assert.assertTrue(cycle.size() > 1);
+                Assert.assertSame(cycle.get(0), cycle.get(cycle.size() - 1));
+            }
+        }
+    }
 }
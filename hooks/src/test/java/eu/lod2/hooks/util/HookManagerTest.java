@@ -0,0 +1,65 @@
+package eu.lod2.hooks.util;
+
+import eu.lod2.hooks.constraints.Priority;
+import eu.lod2.hooks.handlers.HookHandler;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Tests dispatching hooks through the cached dispatch plans of the HookManager.
+ */
+public class HookManagerTest {
+
+    /** Hook which is provided by {@link RecordingHandler} */
+    public interface RecordingHook extends HookHandler {
+        public void handleRecord( List<String> calls );
+    }
+
+    /** Hook which has no providers */
+    public interface UnprovidedHook extends HookHandler {
+        public void handleNothing( List<String> calls );
+    }
+
+    /** Provider registered in META-INF/services of the test resources */
+    public static class RecordingHandler implements RecordingHook {
+        @Override
+        public void handleRecord( List<String> calls ) {
+            calls.add( "recorded" );
+        }
+
+        @Override
+        public Collection<Priority> getConstraints( String hook ) {
+            return null;
+        }
+    }
+
+    @Test
+    public void testRepeatedCallsUseTheSameProviders() throws Throwable {
+        List<String> calls = new ArrayList<String>();
+        HookManager.callHook( RecordingHook.class, "handleRecord", calls );
+        HookManager.callHook( RecordingHook.class, "handleRecord", calls );
+        Assert.assertEquals( calls.size(), 2 );
+    }
+
+    @Test
+    public void testHookWithoutProviders() throws Throwable {
+        List<String> calls = new ArrayList<String>();
+        HookManager.callHook( UnprovidedHook.class, "handleNothing", calls );
+        Assert.assertTrue( calls.isEmpty() );
+        Assert.assertFalse( HookManager.hasHandlers( UnprovidedHook.class ) );
+        Assert.assertTrue( HookManager.hasHandlers( RecordingHook.class ) );
+    }
+
+    @Test
+    public void testReloadRebuildsThePlans() throws Throwable {
+        List<String> calls = new ArrayList<String>();
+        HookManager.callHook( RecordingHook.class, "handleRecord", calls );
+        HookManager.reloadHandlers();
+        HookManager.callHook( RecordingHook.class, "handleRecord", calls );
+        Assert.assertEquals( calls.size(), 2 );
+    }
+}